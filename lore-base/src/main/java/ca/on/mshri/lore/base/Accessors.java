@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.ontology.Individual;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Helpers for single-valued accessors in the OWL-class wrappers. They read
+ * directly from the graph underneath the resource's model, using the property
+ * handles from the vocabulary classes (e.g. {@link BaseVocab}).
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public final class Accessors {
+
+    private Accessors() {
+    }
+
+    /**
+     * Gets the single value of a property.
+     * @param subject the resource
+     * @param p the property
+     * @param what description of the value for the error message.
+     * @return the value node, or null if there is none.
+     * @throws InconsistencyException if there is more than one value.
+     */
+    public static Node getObject(Resource subject, Property p, String what) {
+        return single(subject.getModel().getGraph().find(subject.asNode(), p.asNode(), Node.ANY),
+                false, subject, what);
+    }
+
+    /**
+     * Gets the single resource pointing to the given one via the property.
+     * @param object the resource
+     * @param p the property
+     * @param what description of the subject for the error message.
+     * @return the subject node, or null if there is none.
+     * @throws InconsistencyException if there is more than one.
+     */
+    public static Node getSubject(Resource object, Property p, String what) {
+        return single(object.getModel().getGraph().find(Node.ANY, p.asNode(), object.asNode()),
+                true, object, what);
+    }
+
+    private static Node single(ExtendedIterator<Triple> it, boolean subjects, Resource r, String what) {
+        try {
+            Node out = null;
+            while (it.hasNext()) {
+                Triple t = it.next();
+                if (out != null) {
+                    throw new InconsistencyException(r.getURI()+" has more than one "+what+"!");
+                }
+                out = subjects ? t.getSubject() : t.getObject();
+            }
+            return out;
+        } finally {
+            it.close();
+        }
+    }
+
+    /**
+     * Gets the single string value of a property.
+     * @return the lexical form of the value or null if there is none.
+     * @throws InconsistencyException if there is more than one value.
+     */
+    public static String getString(Resource subject, Property p, String what) {
+        Node n = getObject(subject, p, what);
+        return n == null ? null : n.getLiteralLexicalForm();
+    }
+
+    /**
+     * Gets the single integer value of a property.
+     * @return the value or null if there is none.
+     * @throws InconsistencyException if there is more than one value.
+     */
+    public static Integer getInt(Resource subject, Property p, String what) {
+        Node n = getObject(subject, p, what);
+        if (n == null) {
+            return null;
+        }
+        Object value = n.getLiteralValue();
+        return value instanceof Number
+                ? ((Number) value).intValue()
+                : Integer.parseInt(n.getLiteralLexicalForm());
+    }
+
+    /**
+     * Gets the single individual the property points to.
+     * @return the individual, or null if there is none.
+     * @throws InconsistencyException if there is more than one value.
+     */
+    public static Individual getIndividual(Resource subject, Property p, String what) {
+        Node n = getObject(subject, p, what);
+        return n == null ? null : subject.getModel().asRDFNode(n).as(Individual.class);
+    }
+
+}
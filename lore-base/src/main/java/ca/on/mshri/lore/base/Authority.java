@@ -43,15 +43,18 @@ public class Authority extends IndividualImpl {
     }
     
     public static Authority createOrGet(LoreModel model, String id) {
-        return Authority.fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual(IND_URI_PRE+id));
+        Authority out = new Authority(Node.createURI(IND_URI_PRE+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            known.add(out.getURI());
+        }
+        return out;
     }
     
     public static Authority fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl) i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                  
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new Authority(impl.asNode(),impl.getGraph());
             
         } else {
@@ -60,13 +63,13 @@ public class Authority extends IndividualImpl {
     }
     
     public URL getURL() throws MalformedURLException {
-        String string = getPropertyValue(getModel().getProperty(LoreModel.URI+"#hasURL"))
+        String string = getPropertyValue(BaseVocab.hasURL)
                 .asLiteral().getString();
         return new URL(string);
     }
     
     public void setURL(URL url) {
-        setPropertyValue(getModel().getProperty(LoreModel.URI+"#hasURL"), 
+        setPropertyValue(BaseVocab.hasURL, 
                 getModel().createLiteral(url.toString()));
     }
     
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.ResourceFactory;
+
+/**
+ * Property handles of the lore-base ontology. The handles are created once and are
+ * independent of any model, so accessors can use them directly instead of 
+ * looking up the property by URI on every call.
+ * 
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public final class BaseVocab {
+    
+    /**
+     * The namespace of the ontology.
+     */
+    public static final String NS = LoreModel.URI+"#";
+    
+    public static final Property hasAuthority = property("hasAuthority");
+
+    public static final Property hasXRef = property("hasXRef");
+
+    public static final Property observedIn = property("observedIn");
+
+    public static final Property publishedIn = property("publishedIn");
+
+    public static final Property hasCitationInfo = property("hasCitationInfo");
+
+    public static final Property hasExperimentType = property("hasExperimentType");
+
+    public static final Property hasURL = property("hasURL");
+
+    public static final Property hasValue = property("hasValue");
+
+    public static final Property fromSpecies = property("fromSpecies");
+    
+    private BaseVocab() {
+    }
+    
+    private static Property property(String localName) {
+        return ResourceFactory.createProperty(NS, localName);
+    }
+    
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+/**
+ * A Bloom filter over strings. It answers whether a string may have been added,
+ * with no false negatives and a false positive rate of about one percent while
+ * no more than the expected number of strings have been added.
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class BloomFilter {
+
+    /**
+     * bits per expected string, for a false positive rate of about 1%.
+     */
+    private static final int BITS_PER_ELEMENT = 10;
+
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+
+    private final long numBits;
+
+    /**
+     * @param expected the expected number of strings.
+     */
+    public BloomFilter(long expected) {
+        long n = Math.max(64, Math.max(1, expected) * BITS_PER_ELEMENT);
+        bits = new long[(int) Math.min((n + 63) / 64, Integer.MAX_VALUE - 8)];
+        numBits = (long) bits.length * 64;
+    }
+
+    /**
+     * Adds a string.
+     * @param s the string
+     */
+    public synchronized void add(String s) {
+        long h = hash(s);
+        long h1 = h >>> 32, h2 = h & 0xffffffffL;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @param s a string
+     * @return false if the string has definitely not been added.
+     */
+    public synchronized boolean mightContain(String s) {
+        long h = hash(s);
+        long h1 = h >>> 32, h2 = h & 0xffffffffL;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64-bit FNV-1a over the characters, with a final mix.
+     */
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>The transitive closure of the <code>rdfs:subClassOf</code> relation in a model.
+ * Each class is given an index and a bitset of the indices of all its ancestors
+ * (including itself), so that subclass tests and class membership tests don't have
+ * to walk the class hierarchy through the ontology API.</p>
+ *
+ * <p>There is one instance per model. It is dropped when a
+ * <code>rdfs:subClassOf</code> statement is added to or removed from the model,
+ * and rebuilt on the next request. Looking up an instance that is up to date
+ * is a single concurrent map lookup by graph identity and takes no lock.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class ClassHierarchy {
+
+    /**
+     * instances by model graph. Entries are removed when their hierarchy 
+     * changes, and when their graph has been garbage collected.
+     */
+    private static final Map<GraphKey,ClassHierarchy> instances = 
+            new ConcurrentHashMap<GraphKey, ClassHierarchy>();
+
+    /**
+     * receives the keys of collected graphs.
+     */
+    private static final ReferenceQueue<Graph> collected = new ReferenceQueue<Graph>();
+
+    /**
+     * graphs that already have a listener. Guarded by the class lock.
+     */
+    private static final Map<Graph,Boolean> listening = new WeakHashMap<Graph, Boolean>();
+
+    private static final Node TYPE = RDF.type.asNode();
+
+    private static final Node SUBCLASS = RDFS.subClassOf.asNode();
+
+    /**
+     * weakly referenced, so the cache entry doesn't keep its own key alive.
+     */
+    private WeakReference<Graph> graph;
+
+    /**
+     * class indices
+     */
+    private Map<Node,Integer> index = new HashMap<Node, Integer>();
+
+    /**
+     * ancestor sets by class index.
+     */
+    private List<BitSet> ancestors = new ArrayList<BitSet>();
+
+    private ClassHierarchy(Graph graph) {
+        this.graph = new WeakReference<Graph>(graph);
+        build(graph);
+    }
+
+    /**
+     * Returns the class hierarchy of the given model.
+     * @param model the model
+     * @return the class hierarchy.
+     */
+    public static ClassHierarchy getInstance(Model model) {
+        ClassHierarchy h = instances.get(new GraphKey(model.getGraph(), null));
+        return h != null ? h : lookup(model);
+    }
+
+    /**
+     * builds the hierarchy of a model under the lock, unless another thread 
+     * just did.
+     */
+    private static synchronized ClassHierarchy lookup(Model model) {
+        Graph graph = model.getGraph();
+        GraphKey key = new GraphKey(graph, collected);
+        ClassHierarchy h = instances.get(key);
+        if (h == null) {
+            if (listening.put(graph, Boolean.TRUE) == null) {
+                model.register(new Listener(graph));
+            }
+            h = new ClassHierarchy(graph);
+            instances.put(key, h);
+        }
+        //drop the entries of collected graphs
+        Reference<? extends Graph> ref;
+        while ((ref = collected.poll()) != null) {
+            instances.remove((GraphKey) ref);
+        }
+        return h;
+    }
+
+    /**
+     * Forces the hierarchy of the given model to be rebuilt on the next request.
+     * This is necessary when the schema changes without any statements being
+     * added, e.g. when another schema graph is attached.
+     * @param model the model.
+     */
+    static synchronized void invalidate(Model model) {
+        instances.remove(new GraphKey(model.getGraph(), null));
+    }
+
+    /**
+     * computes the closure.
+     */
+    private void build(Graph graph) {
+
+        List<List<Integer>> parents = new ArrayList<List<Integer>>();
+
+        ExtendedIterator<Triple> it = graph.find(Node.ANY, SUBCLASS, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                int sub = indexOf(t.getSubject(), parents);
+                int sup = indexOf(t.getObject(), parents);
+                parents.get(sub).add(sup);
+            }
+        } finally {
+            it.close();
+        }
+
+        //breadth-first search upwards from each class
+        for (int i = 0; i < parents.size(); i++) {
+            BitSet set = new BitSet(parents.size());
+            set.set(i);
+            LinkedList<Integer> queue = new LinkedList<Integer>();
+            queue.add(i);
+            while (!queue.isEmpty()) {
+                for (int sup : parents.get(queue.poll())) {
+                    if (!set.get(sup)) {
+                        set.set(sup);
+                        queue.add(sup);
+                    }
+                }
+            }
+            ancestors.add(set);
+        }
+    }
+
+    private int indexOf(Node n, List<List<Integer>> parents) {
+        Integer i = index.get(n);
+        if (i == null) {
+            i = parents.size();
+            index.put(n, i);
+            parents.add(new ArrayList<Integer>(2));
+        }
+        return i;
+    }
+
+    /**
+     * Checks whether one class is a subclass of another. Every class is a
+     * subclass of itself.
+     * @param sub the potential subclass
+     * @param sup the potential superclass
+     * @return true if sub is equal to or a (transitive) subclass of sup.
+     */
+    public boolean isSubClassOf(Node sub, Node sup) {
+        if (sub.equals(sup)) {
+            return true;
+        }
+        Integer i = index.get(sub);
+        Integer j = index.get(sup);
+        return i != null && j != null && ancestors.get(i).get(j);
+    }
+
+    /**
+     * Checks whether a resource is a member of a class, i.e. whether any of
+     * its types is a subclass of it.
+     * @param individual the resource
+     * @param clazz the class
+     * @return whether the resource is a member.
+     */
+    public boolean hasClass(Node individual, Node clazz) {
+        ExtendedIterator<Triple> it = graph.get().find(individual, TYPE, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                if (isSubClassOf(it.next().getObject(), clazz)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            it.close();
+        }
+    }
+
+    /**
+     * Checks whether the class is a direct type of the resource, i.e. it is one
+     * of the resource's types and none of its other types is a subclass of it.
+     * @param individual the resource
+     * @param clazz the class
+     * @return whether the class is a direct type of the resource.
+     */
+    public boolean hasDirectClass(Node individual, Node clazz) {
+        boolean found = false;
+        ExtendedIterator<Triple> it = graph.get().find(individual, TYPE, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Node type = it.next().getObject();
+                if (type.equals(clazz)) {
+                    found = true;
+                } else if (isSubClassOf(type, clazz)) {
+                    return false;
+                }
+            }
+            return found;
+        } finally {
+            it.close();
+        }
+    }
+
+    /**
+     * A map key that holds a graph weakly and compares it by identity.
+     */
+    private static class GraphKey extends WeakReference<Graph> {
+
+        private final int hash;
+
+        GraphKey(Graph graph, ReferenceQueue<Graph> queue) {
+            super(graph, queue);
+            this.hash = System.identityHashCode(graph);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof GraphKey)) {
+                return false;
+            }
+            Graph graph = get();
+            return graph != null && graph == ((GraphKey) obj).get();
+        }
+    }
+
+    /**
+     * drops the hierarchy when a subclass statement changes.
+     */
+    private static class Listener extends StatementListener {
+
+        private WeakReference<Graph> graph;
+
+        Listener(Graph graph) {
+            this.graph = new WeakReference<Graph>(graph);
+        }
+
+        @Override
+        public void addedStatement(Statement s) {
+            check(s);
+        }
+
+        @Override
+        public void removedStatement(Statement s) {
+            check(s);
+        }
+
+        private void check(Statement s) {
+            Graph g = graph.get();
+            if (g != null && s.getPredicate().equals(RDFS.subClassOf)) {
+                //under the lock, so that no hierarchy is being built meanwhile
+                synchronized (ClassHierarchy.class) {
+                    instances.remove(new GraphKey(g, null));
+                }
+            }
+        }
+    }
+}
@@ -43,9 +43,8 @@ public class Experiment extends IndividualImpl {
         
         IndividualImpl impl = (IndividualImpl) i;
         
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new Experiment(impl.asNode(), impl.getGraph());
         } else {
             throw new ConversionException(i.getURI()+" cannot be cast as Experiment!");
@@ -54,7 +53,7 @@ public class Experiment extends IndividualImpl {
     }
     
     public Publication getPublication() {
-        NodeIterator it = listPropertyValues(getModel().getProperty(LoreModel.URI+"#publishedIn"));
+        NodeIterator it = listPropertyValues(BaseVocab.publishedIn);
         Publication out = null;
         while (it.hasNext()) {
             if (out == null) {
@@ -69,7 +68,7 @@ public class Experiment extends IndividualImpl {
     
     public void setPublication(Publication p) {
         
-        Property pubIn = getModel().getProperty(LoreModel.URI+"#publishedIn");
+        Property pubIn = BaseVocab.publishedIn;
         
         Publication oldP = getPublication();
         if (oldP != null) {
@@ -90,8 +89,11 @@ public class Experiment extends IndividualImpl {
      * @return 
      */
     public static Experiment createOrGet(LoreModel model, String id) {
-        Experiment out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:Experiment#"+id));
+        Experiment out = new Experiment(Node.createURI("urn:lore:Experiment#"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            known.add(out.getURI());
+        }
         return out;
     }
 }
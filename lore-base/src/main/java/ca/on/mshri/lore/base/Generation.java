@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.GraphEvents;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Statement;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>A random stamp for the state of the data in a model, kept in a file
+ * next to the database rather than in the data itself. Files derived from the
+ * data, such as the persisted {@link XRefIndex} and {@link ModelStatistics},
+ * record the stamp they were written at, and are only loaded while the file
+ * still holds the same stamp.</p>
+ *
+ * <p>There is one instance per underlying data graph. It is attached by
+ * {@link LoreModel}, and the first change to the data after that deletes
+ * the file. {@link #stamp()} writes a new one. Writers that bypass
+ * <code>LoreModel</code> must delete the file themselves.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class Generation {
+
+    /**
+     * System property holding the location of the generation file.
+     */
+    public static final String FILE_KEY = "lore.generation";
+
+    /**
+     * one instance per data graph.
+     */
+    private static final Map<Graph,Generation> instances = new WeakHashMap<Graph, Generation>();
+
+    /**
+     * whether the data has changed since the file was read or written.
+     */
+    private boolean changed = false;
+
+    private Generation() {
+    }
+
+    /**
+     * Returns the generation of the data underlying the given model. It is
+     * created on the first call for each data graph.
+     * @param model a model
+     * @return the generation
+     */
+    public static Generation getInstance(Model model) {
+        Model base = LoreModel.dataModel(model);
+        synchronized (instances) {
+            Generation generation = instances.get(base.getGraph());
+            if (generation == null) {
+                generation = new Generation();
+                base.register(generation.new Listener());
+                instances.put(base.getGraph(), generation);
+            }
+            return generation;
+        }
+    }
+
+    private static File generationFile() {
+        String path = System.getProperty(FILE_KEY);
+        return path == null ? null : new File(path);
+    }
+
+    /**
+     * @return the current stamp, or null if there is none, either because no
+     * file is configured or because the data has changed since it was written.
+     */
+    public synchronized String current() {
+        File file = generationFile();
+        if (changed || file == null || !file.exists()) {
+            return null;
+        }
+        BufferedReader r = null;
+        try {
+            r = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            return r.readLine();
+        } catch (IOException e) {
+            Logger.getLogger(Generation.class.getName())
+                    .log(Level.WARNING, "Unable to read generation from "+file, e);
+            return null;
+        } finally {
+            if (r != null) {
+                try {
+                    r.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(Generation.class.getName())
+                            .log(Level.WARNING, "Unable to close stream!", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the current stamp, writing a new one first if there is none.
+     * @return the stamp, or null if no file is configured or it cannot be written.
+     */
+    public synchronized String stamp() {
+        String generation = current();
+        File file = generationFile();
+        if (generation != null || file == null) {
+            return generation;
+        }
+        generation = UUID.randomUUID().toString();
+        Writer w = null;
+        try {
+            w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            w.write(generation+"\n");
+        } catch (IOException e) {
+            Logger.getLogger(Generation.class.getName())
+                    .log(Level.WARNING, "Unable to write generation to "+file, e);
+            return null;
+        } finally {
+            if (w != null) {
+                try {
+                    w.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(Generation.class.getName())
+                            .log(Level.WARNING, "Unable to close stream!", ex);
+                }
+            }
+        }
+        changed = false;
+        return generation;
+    }
+
+    /**
+     * called on every change to the data. Deletes the file on the first one.
+     */
+    private synchronized void changed() {
+        if (changed) {
+            return;
+        }
+        changed = true;
+        File file = generationFile();
+        if (file != null && file.exists() && !file.delete()) {
+            Logger.getLogger(Generation.class.getName())
+                    .log(Level.WARNING, "Unable to delete "+file);
+        }
+    }
+
+    /**
+     * invalidates the generation on any change to the data.
+     */
+    private class Listener extends StatementListener {
+
+        @Override
+        public void addedStatement(Statement s) {
+            changed();
+        }
+
+        @Override
+        public void removedStatement(Statement s) {
+            changed();
+        }
+
+        @Override
+        public void notifyEvent(Model m, Object event) {
+            if (event instanceof GraphEvents
+                    && event != GraphEvents.startRead && event != GraphEvents.finishRead) {
+                changed();
+            }
+        }
+
+    }
+
+}
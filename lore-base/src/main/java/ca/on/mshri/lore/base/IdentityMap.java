@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.GraphEvents;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.RDF;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Remembers the individuals that have been fully created by a
+ * <code>createOrGet()</code> method, so that repeated calls with the same
+ * arguments return a wrapper right away instead of looking up and re-adding
+ * the same statements. Any removal of a statement about a remembered
+ * individual makes it be created again on the next call.</p>
+ *
+ * <p>{@link #ensure(Resource, Property, RDFNode)} adds a statement only if it is
+ * not present yet, so that listeners and the store do not see no-op writes.
+ * If the system property {@value #BLOOM_KEY} is set to the expected number of
+ * individuals, the URIs of all typed resources in the model are put in a
+ * {@link BloomFilter} first. Statements about resources that are definitely
+ * not in the model are then added without checking.</p>
+ *
+ * <p>There is one map per underlying data graph, dropped along with the graph.
+ * Workflows release it after each operation (see {@link #release(Model)}), so
+ * there it holds at most the individuals created by one operation.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class IdentityMap {
+
+    /**
+     * System property holding the expected number of individuals. If set, a
+     * Bloom filter over the existing URIs is used.
+     */
+    public static final String BLOOM_KEY = "lore.identity.bloom";
+
+    /**
+     * one map per data graph.
+     */
+    private static final Map<Graph,IdentityMap> instances = new WeakHashMap<Graph, IdentityMap>();
+
+    /**
+     * the model holding the data. Weakly referenced, so that the instance map
+     * does not keep its graph alive. The listener registered on the graph
+     * keeps the model alive for as long as the graph is.
+     */
+    private final WeakReference<Model> base;
+
+    private final Listener listener = new Listener();
+
+    /**
+     * the URIs of the individuals known to be complete.
+     */
+    private final Set<String> known = new HashSet<String>();
+
+    /**
+     * URIs of all resources that may exist in the model, or null.
+     */
+    private BloomFilter existing;
+
+    private IdentityMap(Model base) {
+        this.base = new WeakReference<Model>(base);
+    }
+
+    /**
+     * Returns the identity map for the data underlying the given model. It is
+     * created on the first call for each data graph, or after a release.
+     * @param model a model
+     * @return the identity map
+     */
+    public static IdentityMap getInstance(Model model) {
+        Model base = LoreModel.dataModel(model);
+        synchronized (instances) {
+            IdentityMap map = instances.get(base.getGraph());
+            if (map == null) {
+                map = new IdentityMap(base);
+                String expected = System.getProperty(BLOOM_KEY);
+                if (expected != null) {
+                    map.existing = map.scan(Long.parseLong(expected));
+                }
+                base.register(map.listener);
+                instances.put(base.getGraph(), map);
+            }
+            return map;
+        }
+    }
+
+    /**
+     * Drops the identity map of the given model, if there is one.
+     * @param model a model
+     */
+    public static void release(Model model) {
+        IdentityMap map;
+        synchronized (instances) {
+            map = instances.remove(LoreModel.dataModel(model).getGraph());
+        }
+        Model base = map == null ? null : map.base.get();
+        if (base != null) {
+            base.unregister(map.listener);
+        }
+    }
+
+    /**
+     * puts the subjects of all type statements in a new Bloom filter.
+     */
+    private BloomFilter scan(long expected) {
+        BloomFilter filter = new BloomFilter(expected);
+        long count = 0;
+        ExtendedIterator<Triple> it = base.get().getGraph().find(Node.ANY, RDF.type.asNode(), Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Node s = it.next().getSubject();
+                if (s.isURI()) {
+                    filter.add(s.getURI());
+                    count++;
+                }
+            }
+        } finally {
+            it.close();
+        }
+        Logger.getLogger(IdentityMap.class.getName()).log(Level.FINE,
+                "Bloom filter built over "+count+" type statements.");
+        return filter;
+    }
+
+    /**
+     * @param uri the URI of an individual
+     * @return whether the individual has been fully created since the last
+     * change to it.
+     */
+    public synchronized boolean contains(String uri) {
+        return known.contains(uri);
+    }
+
+    /**
+     * Marks an individual as fully created. Called after all of its
+     * statements have been written.
+     * @param uri the URI of the individual
+     */
+    public synchronized void add(String uri) {
+        known.add(uri);
+    }
+
+    /**
+     * Starts creating an individual, unless it is already known. If it is not
+     * known, its type statement is ensured. The caller then adds the rest of
+     * its statements and marks it as known with {@link #add(String)}, so that
+     * a failed or concurrent creation is never taken for a complete one.
+     * @param individual the individual
+     * @param classURI the URI of its class
+     * @return false if the individual is known and nothing needs to be done.
+     */
+    public boolean create(Resource individual, String classURI) {
+        if (contains(individual.getURI())) {
+            return false;
+        }
+        ensure(individual, RDF.type, individual.getModel().getResource(classURI));
+        return true;
+    }
+
+    /**
+     * Adds a statement unless it is already present.
+     * @param s the subject
+     * @param p the predicate
+     * @param o the object
+     * @return true if the statement was added.
+     */
+    public boolean ensure(Resource s, Property p, RDFNode o) {
+        Graph graph = s.getModel().getGraph();
+        Triple t = Triple.create(s.asNode(), p.asNode(), o.asNode());
+        boolean isNew;
+        synchronized (this) {
+            isNew = existing != null && s.isURIResource()
+                    && !existing.mightContain(s.getURI());
+        }
+        if (!isNew && graph.contains(t)) {
+            return false;
+        }
+        graph.add(t);
+        return true;
+    }
+
+    /**
+     * forgets the individuals that a removed statement was about.
+     */
+    private synchronized void forget(Node n) {
+        if (n.isURI()) {
+            known.remove(n.getURI());
+        }
+    }
+
+    /**
+     * keeps track of new resources and forgets changed ones.
+     */
+    private class Listener extends StatementListener {
+
+        @Override
+        public void addedStatement(Statement s) {
+            if (existing != null && s.getSubject().isURIResource()) {
+                synchronized (IdentityMap.this) {
+                    existing.add(s.getSubject().getURI());
+                }
+            }
+        }
+
+        @Override
+        public void removedStatement(Statement s) {
+            forget(s.getSubject().asNode());
+            forget(s.getObject().asNode());
+        }
+
+        @Override
+        public void notifyEvent(Model m, Object event) {
+            //bulk removals do not report each statement
+            if (event instanceof GraphEvents
+                    && event != GraphEvents.startRead && event != GraphEvents.finishRead) {
+                synchronized (IdentityMap.this) {
+                    known.clear();
+                }
+            }
+        }
+
+    }
+
+}
@@ -16,15 +16,19 @@
  */
 package ca.on.mshri.lore.base;
 
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntClass;
+import com.hp.hpl.jena.ontology.OntModel;
 import com.hp.hpl.jena.ontology.OntModelSpec;
-import com.hp.hpl.jena.ontology.OntResource;
 import com.hp.hpl.jena.ontology.impl.OntModelImpl;
+import com.hp.hpl.jena.rdf.model.InfModel;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.util.iterator.ExtendedIterator;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
+import com.hp.hpl.jena.util.iterator.Filter;
+import com.hp.hpl.jena.util.iterator.Map1;
+import com.hp.hpl.jena.vocabulary.RDF;
 import java.util.List;
 
 /**
@@ -32,6 +36,13 @@ import java.util.List;
  * a class that extends this module, that way the OWL dependencies are automatically
  * loaded when super() is called.</p>
  * 
+ * <p>The OWL schemas are not copied into the wrapped model. Instead, the shared 
+ * schema graphs from {@link OntologySchema} are attached as sub-models, so wrapping
+ * a model is cheap and the underlying data only contains the actual data.</p>
+ * 
+ * <p>Each model keeps {@link ModelStatistics}, the {@link XRefIndex} and the
+ * {@link Generation} of its data up to date.</p>
+ * 
  * <p>Currently this class also contains fields for standardized authorities. This 
  * might be moved out to another class at some point though, together with fields
  * for commonly used properties etc.</p>
@@ -63,11 +74,43 @@ public class LoreModel extends OntModelImpl {
      */
     public LoreModel(OntModelSpec spec, Model model) {
         super(spec, model);
-        read(LoreModel.class.getClassLoader().getResourceAsStream("lore-base.owl"), null);
+        Generation.getInstance(this);
+        ModelStatistics.getInstance(this);
+        XRefIndex.getInstance(this);
+        addSchema("lore-base.owl");
         
         PUBMED = Authority.createOrGet(this, "PubMed");
     }
     
+    /**
+     * Unwraps ontology and inference models down to the model holding the actual data.
+     * @param model a model
+     * @return the innermost base or raw model.
+     */
+    public static Model dataModel(Model model) {
+        while (true) {
+            if (model instanceof OntModel) {
+                model = ((OntModel)model).getBaseModel();
+            } else if (model instanceof InfModel) {
+                model = ((InfModel)model).getRawModel();
+            } else {
+                return model;
+            }
+        }
+    }
+    
+    /**
+     * Attaches the shared schema from the given OWL resource to this model. 
+     * Subclasses call this in their constructors for their own OWL files.
+     * @param resource the name of the OWL resource on the classpath.
+     */
+    protected final void addSchema(String resource) {
+        Model schema = OntologySchema.get(resource, getClass().getClassLoader());
+        addSubModel(schema);
+        withDefaultMappings(schema);
+        ClassHierarchy.invalidate(this);
+    }
+    
 //    /**
 //     * creates a new lore model around an existing ontmodel.
 //     * @param m the ontmodel to wrap.
@@ -127,25 +170,45 @@ public class LoreModel extends OntModelImpl {
      * @return a list of the instances.
      */
     public <T extends Individual> List<T> listIndividualsOfClass(Class<T> clazz, boolean direct) {
+        return iterateIndividualsOfClass(clazz, direct).toList();
+    }
+    
+    /**
+     * Iterates over the instances of the given class, wrapping each one only
+     * when it is reached. Unlike {@link #listIndividualsOfClass(Class, boolean)},
+     * this takes constant memory. The model must not be modified while the 
+     * iterator is open, and the iterator must be closed if it is not consumed entirely.
+     * @param <T> The class in question.
+     * @param clazz The class in question.
+     * @param direct Whether or not to only list direct class members or also members of subclasses.
+     * @return an iterator over the instances.
+     */
+    public <T extends Individual> ExtendedIterator<T> iterateIndividualsOfClass(Class<T> clazz, boolean direct) {
         
-        try {
-            
-            String classURI = (String) clazz.getDeclaredField("CLASS_URI").get(null);
-            Method fromIndividualMethod = clazz.getMethod("fromIndividual", Individual.class);
-            
-            ExtendedIterator<? extends OntResource> it = getOntClass(classURI).listInstances(direct);
-            List<T> list = new ArrayList<T>();
-            while (it.hasNext()) {
-                T t = (T) fromIndividualMethod.invoke(null, it.next().asIndividual());
-                list.add(t);
+        final WrapperFactory<T> factory = WrapperFactory.forClass(clazz);
+        final ClassHierarchy hierarchy = ClassHierarchy.getInstance(this);
+        
+        ExtendedIterator<Node> it = getGraph().find(Node.ANY, RDF.type.asNode(), factory.getClassNode())
+                .mapWith(new Map1<Triple, Node>() {
+            @Override
+            public Node map1(Triple t) {
+                return t.getSubject();
             }
-            it.close();
-            return list;
-            
-        } catch (Exception ex) {
-            //FIXME: maybe using an abstract method for this would be better getClassURI() or something?
-            throw new RuntimeException("Class wrapper is missing CLASS_URI field or fromIndividual() method. Report this as a bug!",ex);
-        } 
+        });
+        if (direct) {
+            it = it.filterKeep(new Filter<Node>() {
+                @Override
+                public boolean accept(Node node) {
+                    return hierarchy.hasDirectClass(node, factory.getClassNode());
+                }
+            });
+        }
+        return it.mapWith(new Map1<Node, T>() {
+            @Override
+            public T map1(Node node) {
+                return factory.wrap(node, LoreModel.this);
+            }
+        });
         
     }
     
@@ -176,25 +239,29 @@ public class LoreModel extends OntModelImpl {
 //    }
     
     public static boolean hasClass(Individual in, OntClass clazz) { 
-        OntClass currClass = in.getOntClass();
-        return isSubClassOf(currClass, clazz);
-        
+        return ClassHierarchy.getInstance(in.getModel()).hasClass(in.asNode(), clazz.asNode());
     }
-
     
+    /**
+     * Tests class membership like {@link #hasClass(Individual, OntClass)}, without 
+     * having to obtain the class object first.
+     * @param in an individual
+     * @param classURI the URI of the class in question
+     * @return whether or not the individual is a member of the given class.
+     */
+    public static boolean hasClass(Individual in, String classURI) { 
+        return ClassHierarchy.getInstance(in.getModel()).hasClass(in.asNode(), Node.createURI(classURI));
+    }
+
+    /**
+     * Tests whether one class is a (transitive) subclass of another, using the 
+     * model's {@link ClassHierarchy}.
+     * @param subClass the potential subclass
+     * @param clazz the potential superclass
+     * @return whether subClass is equal to or a subclass of clazz.
+     */
     public static boolean isSubClassOf(OntClass subClass, OntClass clazz) {
-        
-        if (subClass.equals(clazz)) {
-            return true;
-        } else {
-            ExtendedIterator<OntClass> it = subClass.listSuperClasses(true);
-            while (it.hasNext()) {
-                if (isSubClassOf(it.next(), clazz)) {
-                    return true;
-                }
-            }
-            return false;
-        }
+        return ClassHierarchy.getInstance(subClass.getModel()).isSubClassOf(subClass.asNode(), clazz.asNode());
     }
     
 }
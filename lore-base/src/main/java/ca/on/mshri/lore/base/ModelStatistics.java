@@ -0,0 +1,581 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.GraphEvents;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.RDF;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * <p>Member counts per class and statement counts per property in a model.
+ * The member count of a class is the number of <code>rdf:type</code> 
+ * statements for it.</p>
+ *
+ * <p>There is one instance per underlying data graph. It is attached by
+ * {@link LoreModel} and built with a single scan of the graph on the first
+ * read. After that, a listener keeps the counts up to date, so reading them
+ * takes time in the number of classes or properties. It also tracks how many
+ * members were added to and removed from each class since the last call to
+ * {@link #takeDelta()}. Bulk changes, which do not report each statement,
+ * drop the counts, and they are rebuilt on the next read.</p>
+ *
+ * <p>Jena notifies listeners of additions of statements that were already present
+ * and removals of statements that were not, so the counts are only exact if
+ * writers check whether a statement is present before writing it, as
+ * {@link IdentityMap#ensure}, the bulk {@link ca.on.mshri.lore.operations.Merger}
+ * and the line-based <code>RDFImport</code> do. As a safeguard, {@link #verify()}
+ * compares the running total of statements to the size of the graph. If they 
+ * differ, the classes and properties changed since the last verification are
+ * recounted. It is called before the counts are saved.</p>
+ *
+ * <p>If the system property {@value #FILE_KEY} points to a file, the counts are
+ * loaded from there instead of being rebuilt, provided the data is still at the
+ * {@link Generation} the file was written at. {@link #persist(Model)} writes
+ * them back.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class ModelStatistics {
+
+    /**
+     * System property holding the location of the persisted statistics.
+     */
+    public static final String FILE_KEY = "lore.statistics";
+
+    /**
+     * file header tag.
+     */
+    private static final String HEADER = "#lore-statistics";
+
+    /**
+     * one instance per data graph.
+     */
+    private static final Map<Graph,ModelStatistics> instances = new WeakHashMap<Graph, ModelStatistics>();
+
+    private static final Node TYPE = RDF.type.asNode();
+
+    /**
+     * the counted graph. Weakly referenced, so that the instance map does not
+     * keep it alive.
+     */
+    private final WeakReference<Graph> graph;
+
+    /**
+     * the generation of the graph's data.
+     */
+    private final Generation generation;
+
+    /**
+     * whether the counts have been loaded or built.
+     */
+    private boolean built = false;
+
+    /**
+     * number of rdf:type statements per class.
+     */
+    private Map<Node,Long> classCounts = new HashMap<Node, Long>();
+
+    /**
+     * number of statements per property.
+     */
+    private Map<Node,Long> propertyCounts = new HashMap<Node, Long>();
+
+    /**
+     * total number of statements according to the events.
+     */
+    private long total = 0;
+
+    /**
+     * members added and removed per class since the last call to takeDelta().
+     */
+    private Map<Node,long[]> delta = new HashMap<Node, long[]>();
+
+    /**
+     * members added and removed per class according to the events since the
+     * last read.
+     */
+    private Map<Node,long[]> events = new HashMap<Node, long[]>();
+
+    /**
+     * classes and properties changed since the last verification.
+     */
+    private Set<Node> touchedClasses = new HashSet<Node>(),
+            touchedProperties = new HashSet<Node>();
+
+    private ModelStatistics(Graph graph, Generation generation) {
+        this.graph = new WeakReference<Graph>(graph);
+        this.generation = generation;
+    }
+
+    /**
+     * Returns the statistics for the data underlying the given model. They
+     * are created on the first call for each data graph, and loaded or built
+     * on the first read.
+     * @param model a model
+     * @return the statistics
+     */
+    public static ModelStatistics getInstance(Model model) {
+        Model base = LoreModel.dataModel(model);
+        synchronized (instances) {
+            ModelStatistics stats = instances.get(base.getGraph());
+            if (stats == null) {
+                stats = new ModelStatistics(base.getGraph(), Generation.getInstance(model));
+                base.register(stats.new Listener());
+                instances.put(base.getGraph(), stats);
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * Writes the statistics for the given model to the file configured under
+     * {@value #FILE_KEY}, if a file is configured.
+     * @param model a model
+     */
+    public static void persist(Model model) {
+        File file = statisticsFile();
+        if (file == null) {
+            return;
+        }
+        ModelStatistics stats;
+        synchronized (instances) {
+            stats = instances.get(LoreModel.dataModel(model).getGraph());
+        }
+        if (stats != null) {
+            stats.save(file);
+        }
+    }
+
+    private static File statisticsFile() {
+        String path = System.getProperty(FILE_KEY);
+        return path == null ? null : new File(path);
+    }
+
+    /**
+     * @return the number of <code>rdf:type</code> statements for each class.
+     */
+    public synchronized Map<Node,Long> getClassCounts() {
+        check();
+        return new HashMap<Node, Long>(classCounts);
+    }
+
+    /**
+     * @param clazz a class
+     * @return the number of <code>rdf:type</code> statements for the class.
+     */
+    public synchronized long getCount(Node clazz) {
+        check();
+        Long c = classCounts.get(clazz);
+        return c == null ? 0 : c;
+    }
+
+    /**
+     * @return the number of statements for each property.
+     */
+    public synchronized Map<Node,Long> getPropertyCounts() {
+        check();
+        return new HashMap<Node, Long>(propertyCounts);
+    }
+
+    /**
+     * @param property a property
+     * @return the number of statements for the property.
+     */
+    public synchronized long getPropertyCount(Node property) {
+        check();
+        Long c = propertyCounts.get(property);
+        return c == null ? 0 : c;
+    }
+
+    /**
+     * Returns the number of members added to and removed from each class
+     * since the last call, and starts a new delta.
+     * @return a map from class to a pair of {added, removed}. Classes without
+     * changes are left out.
+     */
+    public synchronized Map<Node,long[]> takeDelta() {
+        check();
+        Map<Node,long[]> out = delta;
+        delta = new HashMap<Node, long[]>();
+        return out;
+    }
+
+    /**
+     * loads or builds the counts on the first read, and adds the events since
+     * the last read to the delta.
+     */
+    private void check() {
+        if (!built) {
+            if (!load(statisticsFile())) {
+                build();
+            }
+            built = true;
+            touchedClasses.clear();
+            touchedProperties.clear();
+        }
+        //the counts already include the events
+        for (Map.Entry<Node,long[]> entry : events.entrySet()) {
+            addDelta(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+        }
+        events.clear();
+    }
+
+    /**
+     * Compares the running total of statements to the size of the graph. If
+     * they differ, redundant events have been counted, and the classes and
+     * properties changed since the last verification are recounted from the
+     * graph's indexes. Their added and removed members are corrected by the
+     * difference. This takes a count of the whole graph, so it is only done 
+     * before the counts are saved.
+     */
+    public synchronized void verify() {
+        check();
+        long size = graph.get().size();
+        if (total != size) {
+            Logger.getLogger(ModelStatistics.class.getName())
+                    .log(Level.INFO, "Statistics out of sync with graph. Recounting...");
+            for (Node clazz : touchedClasses) {
+                long n = size(Node.ANY, TYPE, clazz);
+                Long c = classCounts.get(clazz);
+                correctDelta(clazz, n - (c == null ? 0 : c));
+                set(classCounts, clazz, n);
+            }
+            for (Node property : touchedProperties) {
+                if (property.equals(TYPE)) {
+                    long n = 0;
+                    for (long c : classCounts.values()) {
+                        n += c;
+                    }
+                    set(propertyCounts, TYPE, n);
+                } else {
+                    set(propertyCounts, property, size(Node.ANY, property, Node.ANY));
+                }
+            }
+            total = size;
+        }
+        touchedClasses.clear();
+        touchedProperties.clear();
+    }
+
+    /**
+     * counts the statements matching a pattern.
+     */
+    private long size(Node s, Node p, Node o) {
+        long n = 0;
+        ExtendedIterator<Triple> it = graph.get().find(s, p, o);
+        try {
+            while (it.hasNext()) {
+                it.next();
+                n++;
+            }
+        } finally {
+            it.close();
+        }
+        return n;
+    }
+
+    private void addDelta(Node clazz, long added, long removed) {
+        if (added == 0 && removed == 0) {
+            return;
+        }
+        long[] ar = delta.get(clazz);
+        if (ar == null) {
+            ar = new long[2];
+            delta.put(clazz, ar);
+        }
+        ar[0] += added;
+        ar[1] += removed;
+    }
+
+    /**
+     * corrects the delta of a class by the difference between its recounted
+     * and its counted members. Redundant additions are taken back from the 
+     * added members first, redundant removals from the removed ones.
+     */
+    private void correctDelta(Node clazz, long correction) {
+        if (correction == 0) {
+            return;
+        }
+        long[] ar = delta.get(clazz);
+        if (ar == null) {
+            ar = new long[2];
+            delta.put(clazz, ar);
+        }
+        if (correction < 0) {
+            long back = Math.min(ar[0], -correction);
+            ar[0] -= back;
+            ar[1] += -correction - back;
+        } else {
+            long back = Math.min(ar[1], correction);
+            ar[1] -= back;
+            ar[0] += correction - back;
+        }
+        if (ar[0] == 0 && ar[1] == 0) {
+            delta.remove(clazz);
+        }
+    }
+
+    /**
+     * counts the statements from scratch.
+     */
+    private void build() {
+
+        Logger.getLogger(ModelStatistics.class.getName())
+                .log(Level.INFO, "Building model statistics...");
+
+        classCounts.clear();
+        propertyCounts.clear();
+        total = 0;
+        ExtendedIterator<Triple> it = graph.get().find(Node.ANY, Node.ANY, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                increment(propertyCounts, t.getPredicate(), 1);
+                if (t.getPredicate().equals(TYPE)) {
+                    increment(classCounts, t.getObject(), 1);
+                }
+                total++;
+            }
+        } finally {
+            it.close();
+        }
+    }
+
+    /**
+     * records an event from the listener. Before the first read, only the
+     * class events are kept for the delta, since the counts are built from 
+     * the graph then.
+     * @param t the statement added or removed
+     * @param d 1 for an addition, -1 for a removal
+     */
+    private void event(Triple t, int d) {
+        if (built) {
+            total += d;
+            increment(propertyCounts, t.getPredicate(), d);
+            touchedProperties.add(t.getPredicate());
+        }
+        if (t.getPredicate().equals(TYPE)) {
+            if (built) {
+                increment(classCounts, t.getObject(), d);
+                touchedClasses.add(t.getObject());
+            }
+            long[] ar = events.get(t.getObject());
+            if (ar == null) {
+                ar = new long[2];
+                events.put(t.getObject(), ar);
+            }
+            ar[d > 0 ? 0 : 1]++;
+        }
+    }
+
+    /**
+     * drops the counts after a bulk change, so that they are rebuilt on the
+     * next read.
+     */
+    private void reset() {
+        if (built) {
+            Logger.getLogger(ModelStatistics.class.getName())
+                    .log(Level.INFO, "Bulk change to the model. Statistics will be rebuilt.");
+        }
+        built = false;
+        classCounts.clear();
+        propertyCounts.clear();
+        total = 0;
+    }
+
+    /**
+     * changes a count, leaving out zeros.
+     */
+    private static void increment(Map<Node,Long> counts, Node key, long d) {
+        Long c = counts.get(key);
+        long n = (c == null ? 0 : c) + d;
+        if (n == 0) {
+            counts.remove(key);
+        } else {
+            counts.put(key, n);
+        }
+    }
+
+    /**
+     * sets a count, leaving out zeros.
+     */
+    private static void set(Map<Node,Long> counts, Node key, long n) {
+        if (n <= 0) {
+            counts.remove(key);
+        } else {
+            counts.put(key, n);
+        }
+    }
+
+    /**
+     * verifies the counts and writes them to a file, along with the current
+     * generation of the data.
+     * @param file the file
+     */
+    public synchronized void save(File file) {
+
+        verify();
+
+        String stamp = generation.stamp();
+        if (stamp == null) {
+            Logger.getLogger(ModelStatistics.class.getName())
+                    .log(Level.WARNING, "No data generation available. Model statistics not saved.");
+            return;
+        }
+
+        BufferedWriter w = null;
+        try {
+            w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            w.write(HEADER+"\t"+stamp+"\t"+total+"\n");
+            write(w, "C", classCounts);
+            write(w, "P", propertyCounts);
+        } catch (IOException e) {
+            Logger.getLogger(ModelStatistics.class.getName())
+                    .log(Level.WARNING, "Unable to save model statistics!", e);
+        } finally {
+            if (w != null) {
+                try {
+                    w.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(ModelStatistics.class.getName())
+                            .log(Level.WARNING, "Unable to close stream!", ex);
+                }
+            }
+        }
+    }
+
+    private void write(BufferedWriter w, String kind, Map<Node,Long> counts) throws IOException {
+        for (Map.Entry<Node,Long> entry : counts.entrySet()) {
+            if (entry.getKey().isURI()) {
+                w.write(kind+"\t"+entry.getKey().getURI()+"\t"+entry.getValue()+"\n");
+            }
+        }
+    }
+
+    /**
+     * loads the counts from a file, if the file exists and was written at the
+     * current generation of the data.
+     * @param file the file. may be null.
+     * @return whether the counts were loaded.
+     */
+    private boolean load(File file) {
+
+        if (file == null || !file.exists()) {
+            return false;
+        }
+
+        BufferedReader r = null;
+        try {
+            r = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+            String line = r.readLine();
+            String[] header = line == null ? new String[0] : line.split("\t");
+            if (header.length < 3 || !header[0].equals(HEADER)
+                    || !header[1].equals(generation.current())) {
+                Logger.getLogger(ModelStatistics.class.getName())
+                        .log(Level.INFO, "Model statistics at "+file+" are out of date.");
+                return false;
+            }
+
+            while ((line = r.readLine()) != null) {
+                String[] cols = line.split("\t");
+                if (cols.length < 3) {
+                    continue;
+                }
+                if ("C".equals(cols[0])) {
+                    classCounts.put(Node.createURI(cols[1]), Long.parseLong(cols[2]));
+                } else if ("P".equals(cols[0])) {
+                    propertyCounts.put(Node.createURI(cols[1]), Long.parseLong(cols[2]));
+                }
+            }
+            total = Long.parseLong(header[2]);
+            return true;
+
+        } catch (Exception e) {
+            Logger.getLogger(ModelStatistics.class.getName())
+                    .log(Level.WARNING, "Unable to load model statistics. Rebuilding...", e);
+            classCounts.clear();
+            propertyCounts.clear();
+            return false;
+        } finally {
+            if (r != null) {
+                try {
+                    r.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(ModelStatistics.class.getName())
+                            .log(Level.WARNING, "Unable to close stream!", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * keeps the counts in sync with the graph.
+     */
+    private class Listener extends StatementListener {
+
+        @Override
+        public void addedStatement(Statement s) {
+            synchronized (ModelStatistics.this) {
+                event(s.asTriple(), 1);
+            }
+        }
+
+        @Override
+        public void removedStatement(Statement s) {
+            synchronized (ModelStatistics.this) {
+                event(s.asTriple(), -1);
+            }
+        }
+
+        @Override
+        public void notifyEvent(Model m, Object event) {
+            //bulk removals do not report each statement
+            if (event instanceof GraphEvents
+                    && event != GraphEvents.startRead && event != GraphEvents.finishRead) {
+                synchronized (ModelStatistics.this) {
+                    reset();
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.TripleMatch;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.impl.GraphBase;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Keeps the parsed OWL schemas of the lore modules. Each schema file is parsed
+ * only once per JVM; all models then share the same immutable schema graph, which
+ * they attach as a sub-model rather than copying its triples into their own data.</p>
+ *
+ * <p>The shared graphs reject all modifications, so no model can accidentally
+ * change the schema seen by all the others.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public final class OntologySchema {
+
+    /**
+     * parsed schemas by resource name.
+     */
+    private static final Map<String,Model> schemas = new HashMap<String, Model>();
+
+    private OntologySchema() {
+    }
+
+    /**
+     * Returns the schema stored in the given classpath resource, parsing it if
+     * it hasn't been requested before.
+     * @param resource the name of the OWL resource, e.g. "lore-base.owl"
+     * @param loader the class loader used to find the resource.
+     * @return a read-only model of the schema.
+     */
+    public static synchronized Model get(String resource, ClassLoader loader) {
+
+        Model schema = schemas.get(resource);
+        if (schema == null) {
+            schema = parse(resource, loader);
+            schemas.put(resource, schema);
+        }
+        return schema;
+
+    }
+
+    /**
+     * parses the schema and wraps it into a read-only graph.
+     */
+    private static Model parse(String resource, ClassLoader loader) {
+
+        InputStream in = loader.getResourceAsStream(resource);
+        if (in == null) {
+            throw new RuntimeException("Schema "+resource+" not found on classpath!");
+        }
+
+        Model parsed = ModelFactory.createDefaultModel();
+        try {
+            parsed.read(in, null);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ex) {
+                Logger.getLogger(OntologySchema.class.getName())
+                        .log(Level.WARNING, "Unable to close stream.", ex);
+            }
+        }
+
+        Model schema = ModelFactory.createModelForGraph(new ReadOnlyGraph(parsed.getGraph()));
+        schema.setNsPrefixes(parsed.getNsPrefixMap());
+        schema.lock();
+
+        return schema;
+    }
+
+    /**
+     * A view on a graph that rejects all additions and deletions. {@link GraphBase}
+     * already denies both, so only the read access needs to be delegated.
+     */
+    private static class ReadOnlyGraph extends GraphBase {
+
+        private Graph graph;
+
+        ReadOnlyGraph(Graph graph) {
+            this.graph = graph;
+        }
+
+        @Override
+        protected ExtendedIterator<Triple> graphBaseFind(TripleMatch m) {
+            return graph.find(m);
+        }
+
+        @Override
+        protected boolean graphBaseContains(Triple t) {
+            return graph.contains(t);
+        }
+
+        @Override
+        protected int graphBaseSize() {
+            return graph.size();
+        }
+
+    }
+}
@@ -37,9 +37,8 @@ public class Publication extends RecordObject {
     
     public static Publication fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl) i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                     
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new Publication(impl.asNode(), impl.getGraph());
         } else {
             throw new ConversionException(i.getURI()+" cannot be cast as Publication!");
@@ -55,9 +54,12 @@ public class Publication extends RecordObject {
      * @return 
      */
     public static Publication createOrGet(LoreModel model, Authority auth, String id) {
-        Publication out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:Publication#"+auth.getAuthorityId()+":"+id));
-        out.addXRef(auth, id);
+        Publication out = new Publication(Node.createURI("urn:lore:Publication#"+auth.getAuthorityId()+":"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            out.addXRef(auth, id);
+            known.add(out.getURI());
+        }
         return out;
     }
 }
@@ -58,9 +58,8 @@ public class RecordObject extends IndividualImpl {
      */
     public static RecordObject fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl) i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new RecordObject(impl.asNode(), impl.getGraph());
         } else {
             throw new ConversionException(i.getURI()+" cannot be cast as RecordObject!");
@@ -73,7 +72,7 @@ public class RecordObject extends IndividualImpl {
      */
     public List<XRef> listXRefs() {
         List<XRef> list = new ArrayList<XRef>();
-        NodeIterator it = listPropertyValues(getModel().getProperty(LoreModel.URI+"#hasXRef"));
+        NodeIterator it = listPropertyValues(BaseVocab.hasXRef);
         while (it.hasNext()) {
             list.add(XRef.fromIndividual(it.next().as(Individual.class)));
         }
@@ -85,16 +84,22 @@ public class RecordObject extends IndividualImpl {
      * Returns the value of one of the xrefs with the given authority for this object.
      * If there are multiple xrefs of that authority associated with this object, it 
      * is not defined, which one will be returned. If none are found, null is returned.
+     * The lookup is served from the model's {@link XRefIndex}.
      * @param a the authority.
      * @return 
      */
     public String getXRefValue(Authority a) {
-        for (XRef xref : listXRefs()) {
-            if (xref.getAuthority().equals(a)) {
-                return xref.getValue();
-            }
-        }
-        return null;
+        return XRefIndex.getInstance(getModel()).getValue(asNode(), a);
+    }
+    
+    /**
+     * Returns the values of all xrefs with the given authority for this object.
+     * The lookup is served from the model's {@link XRefIndex}.
+     * @param a the authority.
+     * @return the values. Empty if there are none.
+     */
+    public List<String> listXRefValues(Authority a) {
+        return XRefIndex.getInstance(getModel()).getValues(asNode(), a);
     }
     
     /**
@@ -102,7 +107,7 @@ public class RecordObject extends IndividualImpl {
      * @param xref 
      */
     public void addXRef(XRef xref) {
-        addProperty(getModel().getProperty(LoreModel.URI+"#hasXRef"), xref);
+        IdentityMap.getInstance(getModel()).ensure(this, BaseVocab.hasXRef, xref);
     }
     
     /**
@@ -131,9 +136,12 @@ public class RecordObject extends IndividualImpl {
      * @return 
      */
     public static RecordObject createOrGet(LoreModel model, Authority auth, String id) {
-        RecordObject out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:RecordObject#"+auth.getAuthorityId()+":"+id));
-        out.addXRef(auth, id);
+        RecordObject out = new RecordObject(Node.createURI("urn:lore:RecordObject#"+auth.getAuthorityId()+":"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            out.addXRef(auth, id);
+            known.add(out.getURI());
+        }
         return out;
     }
         
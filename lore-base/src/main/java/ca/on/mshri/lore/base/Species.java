@@ -37,9 +37,8 @@ public class Species extends RecordObject {
     
     public static Species fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl) i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                     
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new Species(impl.asNode(), impl.getGraph());
         } else {
             throw new ConversionException(i.getURI()+" cannot be cast as Species!");
@@ -55,9 +54,12 @@ public class Species extends RecordObject {
      * @return 
      */
     public static Species createOrGet(LoreModel model, Authority auth, String id) {
-        Species out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:Species#"+auth.getAuthorityId()+":"+id));
-        out.addXRef(auth, id);
+        Species out = new Species(Node.createURI("urn:lore:Species#"+auth.getAuthorityId()+":"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            out.addXRef(auth, id);
+            known.add(out.getURI());
+        }
         return out;
     }
 }
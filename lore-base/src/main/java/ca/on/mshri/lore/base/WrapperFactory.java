@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+import com.hp.hpl.jena.enhanced.EnhGraph;
+import com.hp.hpl.jena.enhanced.EnhNode;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.ontology.ConversionException;
+import com.hp.hpl.jena.ontology.Individual;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Creates instances of an OWL-class wrapper (like {@link RecordObject}). The
+ * wrapper's <code>CLASS_URI</code> field and its <code>(Node, EnhGraph)</code>
+ * constructor are looked up once per wrapper class and kept in a registry, so
+ * casting an individual is only a class membership test via the
+ * {@link ClassHierarchy} plus a constructor call.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public final class WrapperFactory<T extends Individual> {
+
+    /**
+     * the registry
+     */
+    private static final Map<Class<?>,WrapperFactory<?>> factories = new HashMap<Class<?>, WrapperFactory<?>>();
+
+    private Class<T> type;
+
+    private Node classNode;
+
+    private Constructor<T> constructor;
+
+    private WrapperFactory(Class<T> type) {
+        this.type = type;
+        try {
+            classNode = Node.createURI((String) type.getDeclaredField("CLASS_URI").get(null));
+            constructor = type.getDeclaredConstructor(Node.class, EnhGraph.class);
+            constructor.setAccessible(true);
+        } catch (Exception ex) {
+            throw new RuntimeException("Class wrapper "+type.getName()
+                    +" is missing CLASS_URI field or (Node,EnhGraph) constructor. Report this as a bug!",ex);
+        }
+    }
+
+    /**
+     * Returns the factory for the given wrapper class.
+     * @param type the wrapper class.
+     * @return the factory.
+     */
+    public static synchronized <T extends Individual> WrapperFactory<T> forClass(Class<T> type) {
+        WrapperFactory<T> f = (WrapperFactory<T>) factories.get(type);
+        if (f == null) {
+            f = new WrapperFactory<T>(type);
+            factories.put(type, f);
+        }
+        return f;
+    }
+
+    /**
+     * @return the OWL class the wrapper represents.
+     */
+    public Node getClassNode() {
+        return classNode;
+    }
+
+    /**
+     * @param i an individual
+     * @return whether the individual can be cast to the wrapper class.
+     */
+    public boolean canCast(Individual i) {
+        return ClassHierarchy.getInstance(i.getModel()).hasClass(i.asNode(), classNode);
+    }
+
+    /**
+     * "Casts" an individual to the wrapper class.
+     * @param i the individual.
+     * @return the wrapped individual.
+     * @throws ConversionException if the individual is not a member of the class.
+     */
+    public T cast(Individual i) {
+        if (!canCast(i)) {
+            throw new ConversionException(i.getURI()+" cannot be cast as "+type.getSimpleName()+"!");
+        }
+        return wrap(i.asNode(), ((EnhNode) i).getGraph());
+    }
+
+    /**
+     * Wraps a node without checking class membership.
+     * @param node the node
+     * @param graph the model the node belongs to.
+     * @return the wrapped node.
+     */
+    public T wrap(Node node, EnhGraph graph) {
+        try {
+            return constructor.newInstance(node, graph);
+        } catch (InstantiationException ex) {
+            throw new RuntimeException("Unable to instantiate "+type.getName(), ex);
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException("Unable to instantiate "+type.getName(), ex);
+        } catch (InvocationTargetException ex) {
+            throw new RuntimeException("Unable to instantiate "+type.getName(), ex.getCause());
+        }
+    }
+}
@@ -23,7 +23,6 @@ import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntClass;
 import com.hp.hpl.jena.ontology.OntModel;
 import com.hp.hpl.jena.ontology.impl.IndividualImpl;
-import com.hp.hpl.jena.rdf.model.NodeIterator;
 
 /**
  * An XRef is defined by its namespace (=authority) and value, so xrefs with
@@ -43,9 +42,8 @@ public class XRef extends IndividualImpl {
     public static XRef fromIndividual(Individual i) {
         
         IndividualImpl impl = (IndividualImpl) i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new XRef(impl.asNode(),impl.getGraph());
         } else {
             throw new ConversionException(i.getURI()+" cannot be cast as XRef object!");
@@ -53,41 +51,23 @@ public class XRef extends IndividualImpl {
     }
     
     public Authority getAuthority() {
-        
-        NodeIterator it = listPropertyValues(getModel().getProperty(LoreModel.URI+"#hasAuthority"));
-        Authority out = null;
-        while (it.hasNext()) {
-            if (out == null) {
-                out = Authority.fromIndividual(it.next().as(Individual.class));
-            } else {
-                throw new InconsistencyException("XRef "+getURI()+" should only have one namespace!");
-            }
-        }
-        it.close();
-        return out;
+        Individual a = Accessors.getIndividual(this, BaseVocab.hasAuthority, "namespace");
+        return a == null ? null : Authority.fromIndividual(a);
     }
     
     public String getValue() {
-        
-        NodeIterator it = listPropertyValues(getModel().getProperty(LoreModel.URI+"#hasValue"));
-        String out = null;
-        while (it.hasNext()) {
-            if (out == null) {
-                out = it.next().asLiteral().getString();
-            } else {
-                throw new InconsistencyException("XRef "+getURI()+" should only have one value!");
-            }
-        }
-        it.close();
-        return out;
+        return Accessors.getString(this, BaseVocab.hasValue, "value");
     }
     
     public static XRef createOrGet(LoreModel model, Authority auth, String value) {
         
-        XRef xref = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:XRef#"+auth.getAuthorityId()+":"+value));
-        xref.addProperty(model.getProperty(LoreModel.URI+"#hasAuthority"), auth);
-        xref.addLiteral(model.getProperty(LoreModel.URI+"#hasValue"), value);
+        XRef xref = new XRef(Node.createURI("urn:lore:XRef#"+auth.getAuthorityId()+":"+value), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(xref, CLASS_URI)) {
+            known.ensure(xref, BaseVocab.hasAuthority, auth);
+            known.ensure(xref, BaseVocab.hasValue, model.createTypedLiteral(value));
+            known.add(xref.getURI());
+        }
         return xref;
     }
     
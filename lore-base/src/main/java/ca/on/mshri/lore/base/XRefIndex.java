@@ -0,0 +1,652 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.GraphEvents;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>An index of all XRefs in a model, keyed by authority and value. It allows
+ * looking up the RecordObjects that carry a given XRef and the XRef values of
+ * a given object without walking the graph for every XRef.</p>
+ *
+ * <p>There is one index per underlying data graph, shared by all model wrappers
+ * around that graph. It is attached by {@link LoreModel} and built with a
+ * single scan over the <code>hasXRef</code>, <code>hasAuthority</code> and
+ * <code>hasValue</code> statements on the first lookup. From then on it is
+ * kept up to date by a listener on the graph, so that <code>RecordObject.addXRef()</code>,
+ * <code>XRef.createOrGet()</code> and any removals are reflected immediately.</p>
+ *
+ * <p>Bulk removals, which do not report the removed statements, mark the
+ * index as stale, and it is rebuilt on the next lookup.</p>
+ *
+ * <p>If the system property {@value #FILE_KEY} points to a file, the index is
+ * loaded from there instead of being rebuilt. {@link #persist(Model)} writes it
+ * back along with the {@link Generation} of the data, and the file is only 
+ * loaded while the data is still at that generation.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class XRefIndex {
+
+    /**
+     * System property holding the location of the persisted index.
+     */
+    public static final String FILE_KEY = "lore.xrefindex";
+
+    /**
+     * file header tag.
+     */
+    private static final String HEADER = "#lore-xref-index";
+
+    /**
+     * one index per data graph.
+     */
+    private static final Map<Graph,XRefIndex> instances = new WeakHashMap<Graph, XRefIndex>();
+
+    private final Node hasXRef = BaseVocab.hasXRef.asNode();
+    private final Node hasAuthority = BaseVocab.hasAuthority.asNode();
+    private final Node hasValue = BaseVocab.hasValue.asNode();
+
+    /**
+     * the indexed graph. Weakly referenced, so that the instance map does not
+     * keep it alive.
+     */
+    private final WeakReference<Graph> graph;
+
+    /**
+     * the generation of the graph's data.
+     */
+    private final Generation generation;
+
+    /**
+     * authority and value of each XRef.
+     */
+    private Map<Node,Key> xrefKeys = new HashMap<Node, Key>();
+
+    /**
+     * the XRefs for each authority/value combination.
+     */
+    private Map<Key,Set<Node>> keyXRefs = new HashMap<Key, Set<Node>>();
+
+    /**
+     * the objects holding each XRef.
+     */
+    private Map<Node,Set<Node>> holders = new HashMap<Node, Set<Node>>();
+
+    /**
+     * the XRefs held by each object.
+     */
+    private Map<Node,Set<Node>> objectXRefs = new HashMap<Node, Set<Node>>();
+
+    /**
+     * whether the index has been loaded or built.
+     */
+    private boolean loaded = false;
+
+    /**
+     * whether a bulk removal has left the index out of date.
+     */
+    private boolean stale = false;
+
+    private XRefIndex(Graph graph, Generation generation) {
+        this.graph = new WeakReference<Graph>(graph);
+        this.generation = generation;
+    }
+
+    /**
+     * Returns the index for the data underlying the given model. The index is
+     * created on the first call for each data graph, and loaded or built on
+     * the first lookup.
+     * @param model a model
+     * @return the index
+     */
+    public static XRefIndex getInstance(Model model) {
+        Model base = LoreModel.dataModel(model);
+        synchronized (instances) {
+            XRefIndex index = instances.get(base.getGraph());
+            if (index == null) {
+                index = new XRefIndex(base.getGraph(), Generation.getInstance(model));
+                base.register(index.new Listener());
+                instances.put(base.getGraph(), index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Writes the index for the given model to the file configured under
+     * {@value #FILE_KEY}, if the index has been used and a file is configured.
+     * @param model a model
+     */
+    public static void persist(Model model) {
+        File file = indexFile();
+        if (file == null) {
+            return;
+        }
+        XRefIndex index;
+        synchronized (instances) {
+            index = instances.get(LoreModel.dataModel(model).getGraph());
+        }
+        if (index != null && index.isLoaded()) {
+            index.save(file);
+        }
+    }
+
+    private static File indexFile() {
+        String path = System.getProperty(FILE_KEY);
+        return path == null ? null : new File(path);
+    }
+
+    /**
+     * Lists the objects that hold an XRef with the given authority and value.
+     * @param auth the authority
+     * @param value the value
+     * @return the nodes of the objects. Empty if there are none.
+     */
+    public synchronized Set<Node> lookup(Authority auth, String value) {
+        refresh();
+        Set<Node> xrefs = keyXRefs.get(new Key(auth.asNode(), value));
+        if (xrefs == null) {
+            return Collections.emptySet();
+        }
+        Set<Node> out = new HashSet<Node>();
+        for (Node xref : xrefs) {
+            Set<Node> h = holders.get(xref);
+            if (h != null) {
+                out.addAll(h);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Lists the values of all XRefs of the given authority held by the given object.
+     * @param object the object
+     * @param auth the authority
+     * @return the list of values. Empty if there are none.
+     */
+    public synchronized List<String> getValues(Node object, Authority auth) {
+        refresh();
+        List<String> out = new ArrayList<String>();
+        Set<Node> xrefs = objectXRefs.get(object);
+        if (xrefs != null) {
+            Node authNode = auth.asNode();
+            for (Node xref : xrefs) {
+                Key key = xrefKeys.get(xref);
+                if (key != null && key.authority.equals(authNode)) {
+                    out.add(key.value);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns one of the values of the XRefs of the given authority held by the given object.
+     * @param object the object
+     * @param auth the authority
+     * @return the value, or null if there is none.
+     */
+    public synchronized String getValue(Node object, Authority auth) {
+        refresh();
+        Set<Node> xrefs = objectXRefs.get(object);
+        if (xrefs != null) {
+            Node authNode = auth.asNode();
+            for (Node xref : xrefs) {
+                Key key = xrefKeys.get(xref);
+                if (key != null && key.authority.equals(authNode)) {
+                    return key.value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lists all values of the given authority along with the objects holding them.
+     * @param auth the authority
+     * @return a map from XRef value to object nodes.
+     */
+    public synchronized Map<String,Set<Node>> listValues(Authority auth) {
+        refresh();
+        Map<String,Set<Node>> out = new HashMap<String, Set<Node>>();
+        Node authNode = auth.asNode();
+        for (Map.Entry<Key,Set<Node>> entry : keyXRefs.entrySet()) {
+            if (!entry.getKey().authority.equals(authNode)) {
+                continue;
+            }
+            Set<Node> objects = new HashSet<Node>();
+            for (Node xref : entry.getValue()) {
+                Set<Node> h = holders.get(xref);
+                if (h != null) {
+                    objects.addAll(h);
+                }
+            }
+            if (!objects.isEmpty()) {
+                out.put(entry.getKey().value, objects);
+            }
+        }
+        return out;
+    }
+
+    private synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * loads or builds the index on the first lookup, and rebuilds it if a 
+     * bulk removal has left it out of date.
+     */
+    private void refresh() {
+        if (!loaded) {
+            if (!load(indexFile())) {
+                build();
+            }
+            loaded = true;
+        } else if (stale) {
+            build();
+        }
+        stale = false;
+    }
+
+    /**
+     * builds the index from scratch.
+     */
+    private synchronized void build() {
+
+        Logger.getLogger(XRefIndex.class.getName())
+                .log(Level.INFO, "Building XRef index...");
+
+        xrefKeys.clear();
+        keyXRefs.clear();
+        holders.clear();
+        objectXRefs.clear();
+
+        Map<Node,Node> authorities = new HashMap<Node, Node>();
+        Graph graph = this.graph.get();
+        ExtendedIterator<Triple> it = graph.find(Node.ANY, hasAuthority, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                authorities.put(t.getSubject(), t.getObject());
+            }
+        } finally {
+            it.close();
+        }
+
+        it = graph.find(Node.ANY, hasValue, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                Node auth = authorities.get(t.getSubject());
+                if (auth != null && t.getObject().isLiteral()) {
+                    putKey(t.getSubject(), new Key(auth, t.getObject().getLiteralLexicalForm()));
+                }
+            }
+        } finally {
+            it.close();
+        }
+
+        it = graph.find(Node.ANY, hasXRef, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                putHolder(t.getObject(), t.getSubject());
+            }
+        } finally {
+            it.close();
+        }
+    }
+
+    private void putKey(Node xref, Key key) {
+        xrefKeys.put(xref, key);
+        Set<Node> set = keyXRefs.get(key);
+        if (set == null) {
+            set = new HashSet<Node>(2);
+            keyXRefs.put(key, set);
+        }
+        set.add(xref);
+    }
+
+    private void removeKey(Node xref) {
+        Key key = xrefKeys.remove(xref);
+        if (key != null) {
+            Set<Node> set = keyXRefs.get(key);
+            if (set != null) {
+                set.remove(xref);
+                if (set.isEmpty()) {
+                    keyXRefs.remove(key);
+                }
+            }
+        }
+    }
+
+    private void putHolder(Node xref, Node object) {
+        Set<Node> set = holders.get(xref);
+        if (set == null) {
+            set = new HashSet<Node>(2);
+            holders.put(xref, set);
+        }
+        set.add(object);
+        set = objectXRefs.get(object);
+        if (set == null) {
+            set = new HashSet<Node>(2);
+            objectXRefs.put(object, set);
+        }
+        set.add(xref);
+    }
+
+    private void removeHolder(Node xref, Node object) {
+        Set<Node> set = holders.get(xref);
+        if (set != null) {
+            set.remove(object);
+            if (set.isEmpty()) {
+                holders.remove(xref);
+            }
+        }
+        set = objectXRefs.get(object);
+        if (set != null) {
+            set.remove(xref);
+            if (set.isEmpty()) {
+                objectXRefs.remove(object);
+            }
+        }
+    }
+
+    /**
+     * Completes a key for an XRef for which either the authority or the value
+     * has just been added.
+     */
+    private void completeKey(Node xref) {
+        Node auth = null;
+        String value = null;
+        Graph graph = this.graph.get();
+        ExtendedIterator<Triple> it = graph.find(xref, hasAuthority, Node.ANY);
+        if (it.hasNext()) {
+            auth = it.next().getObject();
+        }
+        it.close();
+        it = graph.find(xref, hasValue, Node.ANY);
+        if (it.hasNext()) {
+            Node lit = it.next().getObject();
+            value = lit.isLiteral() ? lit.getLiteralLexicalForm() : null;
+        }
+        it.close();
+        removeKey(xref);
+        if (auth != null && value != null) {
+            putKey(xref, new Key(auth, value));
+        }
+    }
+
+    /**
+     * writes the index to a file, along with the current generation of the data.
+     * @param file the file
+     */
+    public synchronized void save(File file) {
+
+        refresh();
+
+        String stamp = generation.stamp();
+        if (stamp == null) {
+            Logger.getLogger(XRefIndex.class.getName())
+                    .log(Level.WARNING, "No data generation available. XRef index not saved.");
+            return;
+        }
+
+        Logger.getLogger(XRefIndex.class.getName())
+                .log(Level.INFO, "Saving XRef index to "+file);
+
+        BufferedWriter w = null;
+        try {
+            w = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(new FileOutputStream(file)), "UTF-8"));
+            w.write(HEADER+"\t"+stamp+"\n");
+            for (Map.Entry<Node,Key> entry : xrefKeys.entrySet()) {
+                Set<Node> h = holders.get(entry.getKey());
+                if (!entry.getKey().isURI() || h == null) {
+                    continue;
+                }
+                w.write(escape(entry.getKey().getURI()));
+                w.write('\t');
+                w.write(escape(entry.getValue().authority.getURI()));
+                w.write('\t');
+                w.write(escape(entry.getValue().value));
+                for (Node o : h) {
+                    if (o.isURI()) {
+                        w.write('\t');
+                        w.write(escape(o.getURI()));
+                    }
+                }
+                w.write('\n');
+            }
+        } catch (IOException e) {
+            Logger.getLogger(XRefIndex.class.getName())
+                    .log(Level.WARNING, "Unable to save XRef index!", e);
+        } finally {
+            if (w != null) {
+                try {
+                    w.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(XRefIndex.class.getName())
+                            .log(Level.WARNING, "Unable to close stream!", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * loads the index from a file, if the file exists and was written at the
+     * current generation of the data.
+     * @param file the file. may be null.
+     * @return whether the index was loaded.
+     */
+    private synchronized boolean load(File file) {
+
+        if (file == null || !file.exists()) {
+            return false;
+        }
+
+        BufferedReader r = null;
+        try {
+            r = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(file)), "UTF-8"));
+
+            String line = r.readLine();
+            String[] header = line == null ? new String[0] : line.split("\t");
+            if (header.length < 2 || !header[0].equals(HEADER)
+                    || !header[1].equals(generation.current())) {
+                Logger.getLogger(XRefIndex.class.getName())
+                        .log(Level.INFO, "XRef index at "+file+" is out of date.");
+                return false;
+            }
+
+            Logger.getLogger(XRefIndex.class.getName())
+                    .log(Level.INFO, "Loading XRef index from "+file);
+
+            while ((line = r.readLine()) != null) {
+                String[] cols = line.split("\t");
+                if (cols.length < 3) {
+                    continue;
+                }
+                Node xref = Node.createURI(unescape(cols[0]));
+                putKey(xref, new Key(Node.createURI(unescape(cols[1])), unescape(cols[2])));
+                for (int i = 3; i < cols.length; i++) {
+                    putHolder(xref, Node.createURI(unescape(cols[i])));
+                }
+            }
+            return true;
+
+        } catch (Exception e) {
+            Logger.getLogger(XRefIndex.class.getName())
+                    .log(Level.WARNING, "Unable to load XRef index. Rebuilding...", e);
+            xrefKeys.clear();
+            keyXRefs.clear();
+            holders.clear();
+            objectXRefs.clear();
+            return false;
+        } finally {
+            if (r != null) {
+                try {
+                    r.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(XRefIndex.class.getName())
+                            .log(Level.WARNING, "Unable to close stream!", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * escapes the characters that separate columns and lines.
+     */
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t")
+                .replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0) {
+            return s;
+        }
+        StringBuilder b = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i+1 < s.length()) {
+                char n = s.charAt(++i);
+                b.append(n == 't' ? '\t' : n == 'n' ? '\n' : n == 'r' ? '\r' : n);
+            } else {
+                b.append(c);
+            }
+        }
+        return b.toString();
+    }
+
+    /**
+     * An authority/value combination.
+     */
+    private static class Key {
+
+        private final Node authority;
+        private final String value;
+
+        Key(Node authority, String value) {
+            this.authority = authority;
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 3;
+            hash = 41 * hash + authority.hashCode();
+            hash = 41 * hash + value.hashCode();
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return authority.equals(other.authority) && value.equals(other.value);
+        }
+
+    }
+
+    /**
+     * keeps the index in sync with the graph.
+     */
+    private class Listener extends StatementListener {
+
+        @Override
+        public void addedStatement(Statement s) {
+            Node p = s.getPredicate().asNode();
+            if (p.equals(hasXRef)) {
+                synchronized (XRefIndex.this) {
+                    if (loaded) {
+                        putHolder(s.getObject().asNode(), s.getSubject().asNode());
+                    }
+                }
+            } else if (p.equals(hasAuthority) || p.equals(hasValue)) {
+                synchronized (XRefIndex.this) {
+                    if (loaded) {
+                        completeKey(s.getSubject().asNode());
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void removedStatement(Statement s) {
+            Node p = s.getPredicate().asNode();
+            if (p.equals(hasXRef)) {
+                synchronized (XRefIndex.this) {
+                    if (loaded) {
+                        removeHolder(s.getObject().asNode(), s.getSubject().asNode());
+                    }
+                }
+            } else if (p.equals(hasAuthority) || p.equals(hasValue)) {
+                synchronized (XRefIndex.this) {
+                    if (loaded) {
+                        completeKey(s.getSubject().asNode());
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void notifyEvent(Model m, Object event) {
+            //bulk removals do not report each statement
+            if (event instanceof GraphEvents
+                    && event != GraphEvents.startRead && event != GraphEvents.finishRead) {
+                synchronized (XRefIndex.this) {
+                    stale = true;
+                }
+            }
+        }
+
+    }
+
+}
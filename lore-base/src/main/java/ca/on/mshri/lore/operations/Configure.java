@@ -18,6 +18,8 @@ package ca.on.mshri.lore.operations;
 
 import ca.on.mshri.lore.operations.util.Parameter;
 import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  *
@@ -36,11 +38,126 @@ public class Configure extends LoreOperation {
     public static final String COMMIT_KEY = "lore.commit";
     public final Parameter<Boolean> commitP = Parameter.make("commit", Boolean.class, true);
     
+    /**
+     * number of threads for running independent workflow operations concurrently.
+     */
+    public static final String THREADS_KEY = "lore.threads";
+    public final Parameter<Integer> threadsP = Parameter.make("threads", Integer.class, 1);
+    
+    /**
+     * number of rows after which long-running operations commit.
+     */
+    public static final String COMMIT_ROWS_KEY = "lore.commit.rows";
+    public final Parameter<Integer> commitRowsP = Parameter.make("commitRows", Integer.class, 100000);
+    
+    /**
+     * number of changed statements after which long-running operations commit.
+     */
+    public static final String COMMIT_TRIPLES_KEY = "lore.commit.triples";
+    public final Parameter<Integer> commitTriplesP = Parameter.make("commitTriples", Integer.class, 1000000);
+    
+    /**
+     * number of XRef keys that joins hold in memory before spilling to disk.
+     */
+    public static final String MEMORY_KEYS_KEY = "lore.memory.keys";
+    public final Parameter<Integer> memoryKeysP = Parameter.make("memoryKeys", Integer.class, 2000000);
+    
+    /**
+     * run read-only operations against a compact in-memory copy of the model?
+     */
+    public static final String COMPACT_KEY = "lore.compact";
+    public final Parameter<Boolean> compactP = Parameter.make("compact", Boolean.class, false);
+    
+    /**
+     * file to which the JSON run report of the workflow is written.
+     */
+    public static final String REPORT_KEY = "lore.report";
+    public final Parameter<String> reportP = Parameter.make("report", String.class);
+    
     @Override
     public void run() {
         Properties p = System.getProperties();
         p.setProperty(SUMMARIES_KEY, getParameterValue(summariesP)+"");
         p.setProperty(COMMIT_KEY, getParameterValue(commitP)+"");
+        p.setProperty(THREADS_KEY, getParameterValue(threadsP)+"");
+        p.setProperty(COMMIT_ROWS_KEY, getParameterValue(commitRowsP)+"");
+        p.setProperty(COMMIT_TRIPLES_KEY, getParameterValue(commitTriplesP)+"");
+        p.setProperty(MEMORY_KEYS_KEY, getParameterValue(memoryKeysP)+"");
+        p.setProperty(COMPACT_KEY, getParameterValue(compactP)+"");
+        if (getParameterValue(reportP) != null) {
+            p.setProperty(REPORT_KEY, getParameterValue(reportP));
+        }
+    }
+    
+    /**
+     * @return whether changes should be committed to the database.
+     */
+    public static boolean isCommitEnabled() {
+        String commitProp = System.getProperties().getProperty(COMMIT_KEY);
+        return commitProp == null || Boolean.parseBoolean(commitProp);
+    }
+    
+    /**
+     * @return the number of rows after which long-running operations commit.
+     */
+    public static long getCommitRows() {
+        return getLong(COMMIT_ROWS_KEY, 100000);
+    }
+    
+    /**
+     * @return the number of changed statements after which long-running 
+     * operations commit.
+     */
+    public static long getCommitTriples() {
+        return getLong(COMMIT_TRIPLES_KEY, 1000000);
+    }
+    
+    /**
+     * @return the number of XRef keys that joins hold in memory before
+     * spilling to disk.
+     */
+    public static long getMemoryKeys() {
+        return getLong(MEMORY_KEYS_KEY, 2000000);
+    }
+    
+    /**
+     * @return whether read-only operations run against a compact in-memory 
+     * copy of the model.
+     */
+    public static boolean isCompactEnabled() {
+        return Boolean.parseBoolean(System.getProperties().getProperty(COMPACT_KEY));
+    }
+    
+    private static long getLong(String key, long defaultValue) {
+        String prop = System.getProperties().getProperty(key);
+        if (prop == null) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Long.parseLong(prop));
+        } catch (NumberFormatException e) {
+            Logger.getLogger(Configure.class.getName())
+                    .log(Level.WARNING, "Invalid value for "+key+": "+prop);
+            return defaultValue;
+        }
+    }
+    
+    /**
+     * @return the number of threads configured for running operations and
+     * for parallel work within operations.
+     */
+    public static int getThreads() {
+        String threadsProp = System.getProperties().getProperty(THREADS_KEY);
+        if (threadsProp == null) {
+            return 1;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(threadsProp));
+        } catch (NumberFormatException e) {
+            Logger.getLogger(Configure.class.getName())
+                    .log(Level.WARNING, "Invalid thread count: "+threadsProp);
+            return 1;
+        }
     }
 
     @Override
@@ -16,19 +16,32 @@
  */
 package ca.on.mshri.lore.operations;
 
-import ca.on.mshri.lore.base.LoreModel;
-import ca.on.mshri.lore.operations.util.Connection;
+import ca.on.mshri.lore.base.ClassHierarchy;
 import ca.on.mshri.lore.operations.util.RefListParameter;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntClass;
-import com.hp.hpl.jena.rdf.model.RDFNode;
-import de.jweile.yogiutil.CliProgressBar;
-import de.jweile.yogiutil.LazyInitMap;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.RDF;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,10 +51,35 @@ import java.util.logging.Logger;
  * published in the same journal it is very likely that they both are duplicates of the 
  * same experiment. These cases can be identified and merged with this algorithm.
  * 
+ * <p>The context of an individual is its direct classes plus the 
+ * (predicate, neighbour) pairs of its incoming and outgoing statements, where the
+ * neighbour is a member of one of the restriction classes. Nodes are encoded as
+ * integer IDs, and each context is reduced to a 128-bit fingerprint. Individuals 
+ * are indexed by fingerprint in parallel, over a number of partitions. Only 
+ * individuals that share a fingerprint have their full contexts compared, so that
+ * hash collisions never cause a merge.</p>
+ * 
  * @author Jochen Weile <jochenweile@gmail.com>
  */
 public class ContextBasedMerger extends LoreOperation {
     
+    /**
+     * number of individuals handed to a worker at once.
+     */
+    private static final int CHUNK_SIZE = 1024;
+    
+    /**
+     * maximum number of chunks waiting per worker thread.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+    
+    /**
+     * number of index partitions per worker thread.
+     */
+    private static final int PARTITIONS_PER_THREAD = 8;
+    
+    private static final Node TYPE = RDF.type.asNode();
+    
     /**
      * A selection of individuals which will be considered for merging.
      */
@@ -54,6 +92,25 @@ public class ContextBasedMerger extends LoreOperation {
      * individuals to be considered redundant.
      */
     public final RefListParameter<OntClass> contextRestrictionsP = new RefListParameter<OntClass>("contextRestrictions", OntClass.class);
+    
+    private Graph graph;
+    
+    private ClassHierarchy hierarchy;
+    
+    private Node[] restriction;
+    
+    /**
+     * dictionary of node IDs.
+     */
+    private final ConcurrentMap<Node,Integer> ids = new ConcurrentHashMap<Node, Integer>();
+    
+    private final AtomicInteger nextId = new AtomicInteger();
+    
+    /**
+     * whether a neighbour is in the context restriction.
+     */
+    private final ConcurrentMap<Node,Boolean> inContext = new ConcurrentHashMap<Node, Boolean>();
+    
     /**
      * Perform the merging operation.
      * @param selection The a selection of objects on which the algorithm will run.
@@ -68,55 +125,269 @@ public class ContextBasedMerger extends LoreOperation {
                 .log(Level.INFO, "Context-based merger: Indexing...");
         
         //get parameters
-        List<Individual> selection = getParameterValue(selectionP).resolve(getModel());
-        OntClass[] contextRestrictions = ((List<OntClass>)getParameterValue(contextRestrictionsP)
-                .resolve(getModel())).toArray(new OntClass[0]);
-        
-        LazyInitMap<String,Set<Individual>> index = new LazyInitMap<String, Set<Individual>>(HashSet.class);
+        ExtendedIterator<Individual> selection = getParameterValue(selectionP).iterate(getModel());
+        List<OntClass> classes = getParameterValue(contextRestrictionsP).resolve(getModel());
+        restriction = new Node[classes.size()];
+        for (int i = 0; i < restriction.length; i++) {
+            restriction[i] = classes.get(i).asNode();
+        }
+        graph = getModel().getGraph();
+        hierarchy = ClassHierarchy.getInstance(getModel());
         
-        CliProgressBar pro = new CliProgressBar(selection.size());
+        int threads = Configure.getThreads();
+        List<Map<Fingerprint,List<Individual>>> partitions = new ArrayList<Map<Fingerprint, List<Individual>>>();
+        for (int i = 0; i < threads * PARTITIONS_PER_THREAD; i++) {
+            partitions.add(new HashMap<Fingerprint, List<Individual>>());
+        }
         
-        for (Individual ind : selection ) {
-            
-            Set<Connection> context = Connection.findConnections(ind);
-            List<String> connectionKeys = new ArrayList<String>();
-            for (Connection conn : context) {
-                if (inRestriction(conn.getNeighbour(), contextRestrictions)) {
-                    connectionKeys.add(conn.getPredicate().getURI() + "-"
-                            + conn.getNeighbour().asResource().getURI());
-                }
-            }
+        List<Set<Individual>> mergeSets;
+        ExecutorService workers = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        try {
             
-            Collections.sort(connectionKeys);
-            StringBuilder b = new StringBuilder();
-            b.append(ind.getOntClass(true).getURI()).append("(");
-            for (String key : connectionKeys) {
-                b.append(key).append(",");
-            }
-            b.deleteCharAt(b.length()-1).append(")");
+            long count = index(selection, partitions, workers, threads);
             
-            String key = b.toString();
+            Logger.getLogger(ContextBasedMerger.class.getName())
+                    .log(Level.INFO, "Context-based merger: Indexed "+count
+                    +" individuals. Verifying candidates...");
             
-            index.getOrCreate(key).add(ind);
+            mergeSets = verify(partitions, workers);
             
-            pro.next();
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+            ids.clear();
+            inContext.clear();
         }
         
         Merger merger = new Merger();
-        merger.setParameter(merger.mergeSetsP, index.values());
+        merger.setModel(getModel());
+        merger.setParameter(merger.mergeSetsP, mergeSets);
         merger.run();
         
     }
     
-    private boolean inRestriction(RDFNode node, OntClass[] restriction) {
-        if (!node.canAs(Individual.class) 
-                || node.canAs(OntClass.class)) {//apparently classes are also individuals O_o
+    /**
+     * adds each individual of the selection to the partition of its fingerprint.
+     * @return the number of individuals indexed.
+     */
+    private long index(ExtendedIterator<Individual> selection, 
+            final List<Map<Fingerprint,List<Individual>>> partitions, 
+            ExecutorService workers, int threads) {
+        
+        LinkedList<Future<Object>> pending = new LinkedList<Future<Object>>();
+        int maxPending = threads * CHUNKS_PER_THREAD;
+        long count = 0;
+        try {
+            List<Individual> chunk = new ArrayList<Individual>(CHUNK_SIZE);
+            while (selection.hasNext()) {
+                chunk.add(selection.next());
+                count++;
+                if (chunk.size() == CHUNK_SIZE || !selection.hasNext()) {
+                    final List<Individual> inds = chunk;
+                    Callable<Object> task = new Callable<Object>() {
+                        @Override
+                        public Object call() {
+                            for (Individual ind : inds) {
+                                Fingerprint f = new Fingerprint(encode(ind.asNode()));
+                                Map<Fingerprint,List<Individual>> partition = partitions.get(f.partition(partitions.size()));
+                                synchronized (partition) {
+                                    List<Individual> bucket = partition.get(f);
+                                    if (bucket == null) {
+                                        bucket = new ArrayList<Individual>(1);
+                                        partition.put(f, bucket);
+                                    }
+                                    bucket.add(ind);
+                                }
+                            }
+                            return null;
+                        }
+                    };
+                    if (workers == null) {
+                        task.call();
+                    } else {
+                        pending.add(workers.submit(task));
+                        //block if too much is pending
+                        while (!pending.isEmpty() && (pending.size() > maxPending
+                                || pending.getFirst().isDone())) {
+                            get(pending.removeFirst());
+                        }
+                    }
+                    chunk = new ArrayList<Individual>(CHUNK_SIZE);
+                }
+            }
+            while (!pending.isEmpty()) {
+                get(pending.removeFirst());
+            }
+        } catch (Exception e) {
+            throw e instanceof RuntimeException ? (RuntimeException) e 
+                    : new RuntimeException("Indexing failed", e);
+        } finally {
+            selection.close();
+        }
+        return count;
+    }
+    
+    /**
+     * compares the full contexts within each bucket of equal fingerprints.
+     * @return the sets of individuals with equal contexts. Singletons are left out.
+     */
+    private List<Set<Individual>> verify(List<Map<Fingerprint,List<Individual>>> partitions, 
+            ExecutorService workers) {
+        
+        final List<Set<Individual>> mergeSets = Collections.synchronizedList(new ArrayList<Set<Individual>>());
+        List<Future<Object>> pending = new ArrayList<Future<Object>>();
+        for (final Map<Fingerprint,List<Individual>> partition : partitions) {
+            Callable<Object> task = new Callable<Object>() {
+                @Override
+                public Object call() {
+                    for (List<Individual> bucket : partition.values()) {
+                        if (bucket.size() < 2) {
+                            continue;
+                        }
+                        Map<Context,Set<Individual>> groups = new HashMap<Context, Set<Individual>>();
+                        for (Individual ind : bucket) {
+                            Context c = new Context(encode(ind.asNode()));
+                            Set<Individual> group = groups.get(c);
+                            if (group == null) {
+                                group = new HashSet<Individual>();
+                                groups.put(c, group);
+                            }
+                            group.add(ind);
+                        }
+                        if (groups.size() > 1) {
+                            Logger.getLogger(ContextBasedMerger.class.getName())
+                                    .log(Level.FINE, "Fingerprint collision between "+groups.size()+" contexts.");
+                        }
+                        for (Set<Individual> group : groups.values()) {
+                            if (group.size() > 1) {
+                                mergeSets.add(group);
+                            }
+                        }
+                    }
+                    return null;
+                }
+            };
+            try {
+                if (workers == null) {
+                    task.call();
+                } else {
+                    pending.add(workers.submit(task));
+                }
+            } catch (Exception e) {
+                throw e instanceof RuntimeException ? (RuntimeException) e 
+                        : new RuntimeException("Verification failed", e);
+            }
+        }
+        for (Future<Object> f : pending) {
+            get(f);
+        }
+        return mergeSets;
+    }
+    
+    private void get(Future<Object> future) {
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while indexing", ex);
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause()
+                    : new RuntimeException("Error while indexing", ex.getCause());
+        }
+    }
+    
+    /**
+     * Encodes the context of an individual: the number of its direct classes, 
+     * their IDs, and the sorted (predicate, neighbour) ID pairs of its connections 
+     * within the restriction.
+     */
+    long[] encode(Node node) {
+        
+        List<Node> types = new ArrayList<Node>(2);
+        ExtendedIterator<Triple> it = graph.find(node, TYPE, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                types.add(it.next().getObject());
+            }
+        } finally {
+            it.close();
+        }
+        long[] classIds = new long[types.size()];
+        int numClasses = 0;
+        for (Node type : types) {
+            boolean direct = true;
+            for (Node other : types) {
+                if (!other.equals(type) && hierarchy.isSubClassOf(other, type)) {
+                    direct = false;
+                    break;
+                }
+            }
+            if (direct) {
+                classIds[numClasses++] = id(type);
+            }
+        }
+        Arrays.sort(classIds, 0, numClasses);
+        
+        long[] pairs = new long[16];
+        int numPairs = 0;
+        for (int dir = 0; dir < 2; dir++) {
+            it = dir == 0 ? graph.find(node, Node.ANY, Node.ANY) 
+                    : graph.find(Node.ANY, Node.ANY, node);
+            try {
+                while (it.hasNext()) {
+                    Triple t = it.next();
+                    Node neighbour = dir == 0 ? t.getObject() : t.getSubject();
+                    if (inRestriction(neighbour)) {
+                        if (numPairs == pairs.length) {
+                            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                        }
+                        pairs[numPairs++] = ((long) id(t.getPredicate()) << 32) 
+                                | (id(neighbour) & 0xffffffffL);
+                    }
+                }
+            } finally {
+                it.close();
+            }
+        }
+        Arrays.sort(pairs, 0, numPairs);
+        
+        long[] out = new long[1 + numClasses + numPairs];
+        out[0] = numClasses;
+        System.arraycopy(classIds, 0, out, 1, numClasses);
+        System.arraycopy(pairs, 0, out, 1 + numClasses, numPairs);
+        return out;
+    }
+    
+    /**
+     * @return the dictionary ID of the node.
+     */
+    private int id(Node node) {
+        Integer id = ids.get(node);
+        if (id == null) {
+            Integer candidate = nextId.getAndIncrement();
+            id = ids.putIfAbsent(node, candidate);
+            if (id == null) {
+                id = candidate;
+            }
+        }
+        return id;
+    }
+    
+    private boolean inRestriction(Node node) {
+        if (node.isLiteral()) {
             return false;
         }
-        Individual i = node.as(Individual.class);
-        boolean in = false;
-        for (OntClass clazz : restriction) {
-            in |= LoreModel.hasClass(i, clazz);
+        Boolean in = inContext.get(node);
+        if (in == null) {
+            in = false;
+            for (Node clazz : restriction) {
+                if (hierarchy.hasClass(node, clazz)) {
+                    in = true;
+                    break;
+                }
+            }
+            inContext.put(node, in);
         }
         return in;
     }
@@ -126,4 +397,82 @@ public class ContextBasedMerger extends LoreOperation {
         return false;
     }
     
+    /**
+     * An encoded context.
+     */
+    private static class Context {
+        
+        private final long[] values;
+        
+        private final int hash;
+
+        Context(long[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Context && Arrays.equals(values, ((Context) obj).values);
+        }
+        
+    }
+    
+    /**
+     * A 128-bit fingerprint of an encoded context, made of two independently 
+     * seeded 64-bit hashes.
+     */
+    static class Fingerprint {
+        
+        final long hi;
+        
+        final long lo;
+
+        Fingerprint(long[] values) {
+            long h1 = 0x9E3779B97F4A7C15L, h2 = 0xC2B2AE3D27D4EB4FL;
+            for (long v : values) {
+                h1 = Long.rotateLeft(h1 ^ mix(v), 27) * 0x9E3779B97F4A7C15L + 0x52DCE729L;
+                h2 = Long.rotateLeft(h2 ^ mix(v ^ 0x5851F42D4C957F2DL), 31) * 0xC2B2AE3D27D4EB4FL + 0x38495AB5L;
+            }
+            hi = mix(h1 ^ values.length);
+            lo = mix(h2 ^ values.length);
+        }
+        
+        /**
+         * the MurmurHash3 finalizer.
+         */
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+        
+        int partition(int n) {
+            return (int) ((lo >>> 1) % n);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hi ^ (hi >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) obj;
+            return hi == other.hi && lo == other.lo;
+        }
+        
+    }
+    
 }
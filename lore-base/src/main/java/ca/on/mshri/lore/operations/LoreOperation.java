@@ -17,9 +17,14 @@
 package ca.on.mshri.lore.operations;
 
 import ca.on.mshri.lore.base.LoreModel;
+import ca.on.mshri.lore.operations.util.Footprint;
 import ca.on.mshri.lore.operations.util.Parameter;
+import ca.on.mshri.lore.operations.util.TransactionManager;
+import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.rdf.model.Model;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -131,11 +136,73 @@ public abstract class LoreOperation {
         this.model = model;
     }
 
+    /**
+     * Begins batched commits on the model, for operations that make a large
+     * number of changes. The caller reports its progress to the manager
+     * and must close it when done.
+     * @return a new transaction manager.
+     */
+    protected TransactionManager createTransactionManager() {
+        return new TransactionManager(getModel());
+    }
+
     /**
      * whether or not this operation requires an active reasoner to work.
      * @return 
      */
     public abstract boolean requiresReasoner();
     
+    /**
+     * Declares whether this operation writes to the model, so that read-only
+     * operations in a workflow can be scheduled concurrently. 
+     * By default operations are assumed to read and write anything. Operations
+     * that never modify the model should override this.
+     * @return the footprint of this operation.
+     */
+    public Footprint getFootprint() {
+        return Footprint.mutating();
+    }
+
+    /**
+     * Creates the individuals that this operation would otherwise create on
+     * the fly while running, such as the authorities of the model wrappers it
+     * uses. A workflow calls this on its own model under the write lock before
+     * the operation is given its model, so that a read-only operation does not
+     * need to write. Does nothing by default.
+     * 
+     * <p>Model wrappers like <code>InteractionModel</code> create their standard
+     * authorities when they are constructed, if these are missing. Operations
+     * that wrap their model while running should therefore create the same 
+     * wrapper here, using {@link #prepareWrapper(LoreModel, Class)}.</p>
+     * @param model the workflow model.
+     */
+    public void prepare(LoreModel model) {
+    }
+
+    /**
+     * Wraps the model once in the given wrapper class, which creates the 
+     * wrapper's standard authorities if they are missing. For use in 
+     * {@link #prepare(LoreModel)}.
+     * @param model the workflow model.
+     * @param wrapper a model wrapper class. It must have a public constructor
+     * taking an <code>OntModelSpec</code> and a <code>Model</code>.
+     * @throws IllegalArgumentException if the wrapper class has no such constructor.
+     */
+    protected static void prepareWrapper(LoreModel model, Class<? extends LoreModel> wrapper) {
+        Constructor<? extends LoreModel> constructor;
+        try {
+            constructor = wrapper.getConstructor(OntModelSpec.class, Model.class);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalArgumentException("No wrapper constructor in "+wrapper.getName(), ex);
+        }
+        try {
+            constructor.newInstance(OntModelSpec.OWL_MEM, model);
+        } catch (InvocationTargetException ex) {
+            throw new RuntimeException("Unable to wrap model in "+wrapper.getName(), ex.getCause());
+        } catch (Exception ex) {
+            throw new IllegalArgumentException("Unable to wrap model in "+wrapper.getName(), ex);
+        }
+    }
+
     
 }
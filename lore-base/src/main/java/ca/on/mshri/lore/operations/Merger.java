@@ -18,13 +18,24 @@ package ca.on.mshri.lore.operations;
 
 import ca.on.mshri.lore.operations.util.Parameter;
 import ca.on.mshri.lore.operations.util.Connection;
+import ca.on.mshri.lore.operations.util.TransactionManager;
+import com.hp.hpl.jena.graph.BulkUpdateHandler;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntResource;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.shared.Lock;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
 import de.jweile.yogiutil.CliProgressBar;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -44,6 +55,26 @@ public class Merger extends LoreOperation {
      */
     public final Parameter<Collection> mergeSetsP = Parameter.make("mergeSets", Collection.class);
     
+    /**
+     * If true, all rewrites are collected in a single pass and applied in batches.
+     * Otherwise each merge set is processed separately. All batches belong to 
+     * a single transaction of a {@link TransactionManager}, which is committed 
+     * once all deletions and additions are applied, so no deletion is ever 
+     * committed without its rewritten addition. If a batch fails, the 
+     * transaction is aborted where the model supports it.
+     */
+    public final Parameter<Boolean> bulkP = Parameter.make("bulk", Boolean.class, true);
+    
+    /**
+     * number of triples deleted or added per batch in bulk mode.
+     */
+    private static final int BATCH_SIZE = 10000;
+    
+    /**
+     * number of triples rewritten by the last bulk run.
+     */
+    private int rewritten = 0;
+    
     /**
      * Performs the merging operation.
      * @param mergeSets a collection of sets of individuals. The members of each
@@ -51,7 +82,180 @@ public class Merger extends LoreOperation {
      */
     @Override
     public void run() {
+        if (getParameterValue(bulkP)) {
+            runBulk();
+        } else {
+            runSingle();
+        }
+    }
+    
+    /**
+     * Merges by collecting all triples that mention a redundant individual,
+     * rewriting them to the respective keeper and then applying the
+     * deletions and additions in large batches. Like {@link #runSingle()}, it
+     * works on the model of the individuals if no model has been set.
+     */
+    private void runBulk() {
+        
+        Collection<Set<Individual>> mergeSets = getParameterValue(mergeSetsP);
+        
+        Logger.getLogger(Merger.class.getName())
+                            .log(Level.INFO, "Merging...");
+        
+        //map each redundant node to the node that will be kept in its place
+        Map<Node,Node> keepers = new HashMap<Node, Node>();
+        Set<Node> members = new HashSet<Node>();
+        Model model = getModel();
+        for (Set<? extends Individual> mergeSet : mergeSets) {
+            Node toKeep = null;
+            for (Individual ind : mergeSet) {
+                if (model == null) {
+                    model = ind.getModel();
+                }
+                members.add(ind.asNode());
+                Node root = findKeeper(keepers, ind.asNode());
+                if (toKeep == null) {
+                    toKeep = root;
+                } else if (!root.equals(toKeep)) {
+                    keepers.put(root, toKeep);
+                }
+            }
+        }
+        //flatten the mapping so each node points directly to its keeper
+        for (Node n : new ArrayList<Node>(keepers.keySet())) {
+            keepers.put(n, findKeeper(keepers, n));
+        }
+        
+        if (model == null) {
+            //no individuals, nothing to merge
+            return;
+        }
+        Graph graph = model.getGraph();
+        
+        //collect all triples mentioning redundant nodes and their rewritten form
+        Set<Triple> deletions = new LinkedHashSet<Triple>();
+        Set<Triple> additions = new LinkedHashSet<Triple>();
+        CliProgressBar pro = new CliProgressBar(keepers.size());
+        for (Node n : keepers.keySet()) {
+            collectRewrites(graph.find(n, Node.ANY, Node.ANY), keepers, deletions, additions);
+            collectRewrites(graph.find(Node.ANY, Node.ANY, n), keepers, deletions, additions);
+            pro.next();
+        }
+        
+        Logger.getLogger(Merger.class.getName())
+                .log(Level.INFO, "Applying "+deletions.size()+" deletions and "+
+                additions.size()+" additions...");
+        
+        //falls back to the model of the individuals, like above. No rows are
+        //reported, so the whole merge is committed once when closing.
+        TransactionManager tx = getModel() == null ? 
+                new TransactionManager(model) : createTransactionManager();
+        boolean success = false;
+        try {
+            applyBatches(model, deletions, false);
+            applyBatches(model, additions, true);
+            success = true;
+        } finally {
+            tx.close(success);
+        }
+        
+        rewritten = deletions.size();
         
+        Logger.getLogger(Merger.class.getName())
+                .log(Level.INFO, "Consolidated "+members.size()+" individuals to "+
+                (members.size()-keepers.size())+" units. Rewrote "+rewritten+" triples.");
+    }
+    
+    /**
+     * follows the keeper mapping to the final keeper of a node.
+     */
+    private Node findKeeper(Map<Node,Node> keepers, Node n) {
+        Node root = n;
+        Node next;
+        while ((next = keepers.get(root)) != null) {
+            root = next;
+        }
+        //compress path
+        while ((next = keepers.get(n)) != null && !next.equals(root)) {
+            keepers.put(n, root);
+            n = next;
+        }
+        return root;
+    }
+    
+    /**
+     * rewrites the given triples to refer to the keepers instead of the redundant nodes.
+     */
+    private void collectRewrites(ExtendedIterator<Triple> it, Map<Node,Node> keepers, 
+            Set<Triple> deletions, Set<Triple> additions) {
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                if (deletions.add(t)) {
+                    Node s = keepers.get(t.getSubject());
+                    Node o = keepers.get(t.getObject());
+                    additions.add(Triple.create(
+                            s == null ? t.getSubject() : s, 
+                            t.getPredicate(), 
+                            o == null ? t.getObject() : o));
+                }
+            }
+        } finally {
+            it.close();
+        }
+    }
+    
+    /**
+     * adds or deletes the given triples in batches, each under the model's 
+     * write lock.
+     */
+    private void applyBatches(Model model, Collection<Triple> triples, boolean add) {
+        List<Triple> batch = new ArrayList<Triple>(BATCH_SIZE);
+        for (Triple t : triples) {
+            batch.add(t);
+            if (batch.size() >= BATCH_SIZE) {
+                applyBatch(model, batch, add);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            applyBatch(model, batch, add);
+        }
+    }
+    
+    private void applyBatch(Model model, List<Triple> batch, boolean add) {
+        model.enterCriticalSection(Lock.WRITE);
+        try {
+            BulkUpdateHandler handler = model.getGraph().getBulkUpdateHandler();
+            if (add) {
+                //leave out statements that are already present, so that
+                //listeners only see real changes
+                List<Triple> missing = new ArrayList<Triple>(batch.size());
+                for (Triple t : batch) {
+                    if (!model.getGraph().contains(t)) {
+                        missing.add(t);
+                    }
+                }
+                handler.add(missing);
+            } else {
+                handler.delete(batch);
+            }
+        } finally {
+            model.leaveCriticalSection();
+        }
+    }
+    
+    /**
+     * @return the number of triples rewritten by the last bulk merge.
+     */
+    public int getRewrittenCount() {
+        return rewritten;
+    }
+    
+    /**
+     * Merges each merge set separately, using SPARQL to find incoming connections.
+     */
+    private void runSingle() {
         Collection<Set<Individual>> mergeSets = getParameterValue(mergeSetsP);
         
         int inCount = 0;
@@ -16,64 +16,342 @@
  */
 package ca.on.mshri.lore.operations;
 
+import ca.on.mshri.lore.operations.util.Footprint;
+import ca.on.mshri.lore.operations.util.NTriples;
+import ca.on.mshri.lore.operations.util.ParallelGzipOutputStream;
 import ca.on.mshri.lore.operations.util.Parameter;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.shared.Lock;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.RDF;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPOutputStream;
 
 /**
+ * Exports the data in the model (without the schema) to a file.
+ *
+ * <p>The line-based formats <code>N-TRIPLE</code> and <code>N-QUADS</code> are
+ * streamed straight from the graph, so memory use does not depend on the size
+ * of the model. Compression runs on the configured number of threads
+ * (see {@link Configure#THREADS_KEY}). With <code>partition=class</code>, the
+ * statements are split into one file per <code>rdf:type</code> of their subjects,
+ * and the files are written concurrently.</p>
  *
  * @author Jochen Weile <jochenweile@gmail.com>
  */
 public class RDFExport extends LoreOperation {
 
     public final Parameter<String> outfileP = Parameter.make("outfile",String.class, "lore.rdf.gz");
-    
+
     public final Parameter<Boolean> compressionP = Parameter.make("compression", Boolean.class, true);
-    
+
     /**
-     * Supported values: "RDF/XML", "RDF/XML-ABBREV", "N-TRIPLE" and "N3"
+     * Supported values: "RDF/XML", "RDF/XML-ABBREV", "N-TRIPLE", "N-QUADS" and "N3"
      */
     public final Parameter<String> formatP = Parameter.make("format", String.class, "RDF/XML");
-    
+
+    /**
+     * Graph name written into each line of N-QUADS output. If not set,
+     * statements are written into the default graph.
+     */
+    public final Parameter<String> graphP = Parameter.make("graph", String.class);
+
+    /**
+     * Supported values: "none" and "class". Only applies to N-TRIPLE and N-QUADS.
+     */
+    public final Parameter<String> partitionP = Parameter.make("partition", String.class, "none");
+
+    /**
+     * name of the partition holding statements about untyped resources.
+     */
+    static final String UNTYPED = "untyped";
+
+    private static final Node TYPE = RDF.type.asNode();
+
     @Override
     public void run() {
-        
-        OutputStream out = null;
-        
-        try {
-            
-            String outfile = getParameterValue(outfileP);
-            Logger.getLogger(RDFExport.class.getName())
-                    .log(Level.INFO, "Exporting to "+outfile);
-            
-            out = new FileOutputStream(outfile);
-            if (getParameterValue(compressionP)) {
-                out = new GZIPOutputStream(out);
+
+        String outfile = getParameterValue(outfileP);
+        String format = getParameterValue(formatP);
+        boolean streaming = "N-TRIPLE".equals(format) || "N-TRIPLES".equals(format)
+                || "N-QUADS".equals(format);
+
+        Logger.getLogger(RDFExport.class.getName())
+                .log(Level.INFO, "Exporting to "+outfile);
+
+        if (!streaming) {
+            OutputStream out = null;
+            try {
+                out = open(outfile, 1);
+                getModel().write(out, format);
+            } catch (IOException ex) {
+                throw new RuntimeException("Unable to export model!",ex);
+            } finally {
+                close(out);
             }
-            getModel().write(out, getParameterValue(formatP));
-            
-        } catch (IOException ex) {
-            throw new RuntimeException("Unable to export model!",ex);
-        } finally {
-            if (out != null) {
+            return;
+        }
+
+        String graphName = getParameterValue(graphP);
+        Node graph = "N-QUADS".equals(format) && graphName != null
+                ? Node.createURI(graphName) : null;
+        Graph data = getModel().getBaseModel().getGraph();
+
+        getModel().enterCriticalSection(Lock.READ);
+        try {
+            if ("class".equals(getParameterValue(partitionP))) {
+                exportPartitioned(data, outfile, graph);
+            } else {
+                OutputStream out = null;
                 try {
-                    out.close();
+                    out = open(outfile, Configure.getThreads());
+                    Writer w = writer(out);
+                    ExtendedIterator<Triple> it = data.find(Node.ANY, Node.ANY, Node.ANY);
+                    try {
+                        while (it.hasNext()) {
+                            NTriples.write(w, it.next(), graph);
+                        }
+                    } finally {
+                        it.close();
+                    }
+                    w.flush();
                 } catch (IOException ex) {
-                    Logger.getLogger(RDFExport.class.getName())
-                            .log(Level.SEVERE, "Unable to close output stream!", ex);
+                    throw new RuntimeException("Unable to export model!",ex);
+                } finally {
+                    close(out);
                 }
             }
+        } finally {
+            getModel().leaveCriticalSection();
+        }
+
+    }
+
+    /**
+     * Writes one file per class. Each subject is assigned to the class with
+     * the smallest URI among its types; subjects without type go into the
+     * {@value #UNTYPED} partition. Only the set of classes is held in memory:
+     * each partition is streamed from the subjects of its class, and the 
+     * untyped partition from a scan over all statements.
+     */
+    private void exportPartitioned(final Graph data, String outfile, final Node graph) {
+
+        //find the classes
+        Set<String> classes = new TreeSet<String>();
+        ExtendedIterator<Triple> it = data.find(Node.ANY, TYPE, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Node type = it.next().getObject();
+                if (type.isURI()) {
+                    classes.add(type.getURI());
+                }
+            }
+        } finally {
+            it.close();
+        }
+
+        //write partitions concurrently
+        ExecutorService executor = Executors.newFixedThreadPool(Configure.getThreads());
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            Set<String> used = new HashSet<String>();
+            used.add(UNTYPED);
+            for (final String type : classes) {
+                //classes from different namespaces may share a local name
+                String name = localName(type);
+                for (int i = 2; !used.add(name); i++) {
+                    name = localName(type)+"_"+i;
+                }
+                final String file = partitionFile(outfile, name);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        writeClass(data, type, file, graph);
+                        return null;
+                    }
+                }));
+            }
+            final String untypedFile = partitionFile(outfile, UNTYPED);
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    writeUntyped(data, untypedFile, graph);
+                    return null;
+                }
+            }));
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted during export", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Unable to export model!", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * the partition of a subject: the smallest URI among its types, or null
+     * if it has none.
+     */
+    private static String partitionOf(Graph data, Node subject) {
+        String partition = null;
+        ExtendedIterator<Triple> it = data.find(subject, TYPE, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Node type = it.next().getObject();
+                if (type.isURI() && (partition == null || type.getURI().compareTo(partition) < 0)) {
+                    partition = type.getURI();
+                }
+            }
+        } finally {
+            it.close();
+        }
+        return partition;
+    }
+
+    /**
+     * writes the statements of the subjects of a class that belong to its partition.
+     */
+    private void writeClass(Graph data, String type, String file, Node graph)
+            throws IOException {
+        OutputStream out = open(file, 1);
+        try {
+            Writer w = writer(out);
+            ExtendedIterator<Triple> subjects = data.find(Node.ANY, TYPE, Node.createURI(type));
+            try {
+                while (subjects.hasNext()) {
+                    Node s = subjects.next().getSubject();
+                    if (!type.equals(partitionOf(data, s))) {
+                        continue;
+                    }
+                    ExtendedIterator<Triple> it = data.find(s, Node.ANY, Node.ANY);
+                    try {
+                        while (it.hasNext()) {
+                            NTriples.write(w, it.next(), graph);
+                        }
+                    } finally {
+                        it.close();
+                    }
+                }
+            } finally {
+                subjects.close();
+            }
+            w.flush();
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     * writes the statements of subjects without type. The statements of a 
+     * subject usually come together, so its type is only looked up when the
+     * subject changes.
+     */
+    private void writeUntyped(Graph data, String file, Node graph)
+            throws IOException {
+        OutputStream out = open(file, 1);
+        try {
+            Writer w = writer(out);
+            ExtendedIterator<Triple> it = data.find(Node.ANY, Node.ANY, Node.ANY);
+            try {
+                Node last = null;
+                boolean typed = false;
+                while (it.hasNext()) {
+                    Triple t = it.next();
+                    if (!t.getSubject().equals(last)) {
+                        last = t.getSubject();
+                        typed = partitionOf(data, last) != null;
+                    }
+                    if (!typed) {
+                        NTriples.write(w, t, graph);
+                    }
+                }
+            } finally {
+                it.close();
+            }
+            w.flush();
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     * inserts the partition name before the file extension,
+     * e.g. lore.nt.gz -&gt; lore.Protein.nt.gz
+     */
+    static String partitionFile(String outfile, String partition) {
+        File f = new File(outfile);
+        String name = f.getName();
+        int dot = name.indexOf('.');
+        name = dot < 0 ? name+"."+partition
+                : name.substring(0, dot)+"."+partition+name.substring(dot);
+        return new File(f.getParentFile(), name).getPath();
+    }
+
+    private static String localName(String uri) {
+        int i = Math.max(uri.lastIndexOf('#'), uri.lastIndexOf('/'));
+        return uri.substring(i+1).replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    /**
+     * opens a file, compressed with the given number of threads if compression is on.
+     */
+    private OutputStream open(String file, int threads) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if (getParameterValue(compressionP)) {
+            out = threads > 1
+                    ? new ParallelGzipOutputStream(out, threads)
+                    : new GZIPOutputStream(out, 1 << 16);
+        }
+        return out;
+    }
+
+    private Writer writer(OutputStream out) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(out, "US-ASCII"), 1 << 16);
+    }
+
+    private void close(OutputStream out) {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ex) {
+                Logger.getLogger(RDFExport.class.getName())
+                        .log(Level.SEVERE, "Unable to close output stream!", ex);
+            }
         }
-        
     }
 
     @Override
     public boolean requiresReasoner() {
         return false;
     }
-    
+
+    @Override
+    public Footprint getFootprint() {
+        return Footprint.readOnly();
+    }
+
 }
@@ -16,16 +16,30 @@
  */
 package ca.on.mshri.lore.operations;
 
+import ca.on.mshri.lore.operations.util.NTriplesReader;
 import ca.on.mshri.lore.operations.util.Parameter;
+import ca.on.mshri.lore.operations.util.TransactionManager;
 import ca.on.mshri.lore.operations.util.URLParameter;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.shared.Lock;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
 
 /**
+ * Imports RDF data into the model.
+ *
+ * <p><code>N-TRIPLE</code> and <code>N-QUADS</code> input is parsed in chunks on
+ * the configured number of threads (see {@link Configure#THREADS_KEY}) and
+ * added to the model in batches. After each batch, lookups of the statements
+ * the model did not hold before confirm that it holds every statement parsed. Invalid lines fail the import, unless
+ * <code>skipInvalid</code> is set. Blank node labels are scoped to the
+ * import. Changes are committed in batches (see {@link TransactionManager}).</p>
  *
  * @author Jochen Weile <jochenweile@gmail.com>
  */
@@ -35,10 +49,18 @@ public class RDFImport extends LoreOperation {
     
     public final Parameter<Boolean> compressionP = Parameter.make("compression", Boolean.class, true);
     
-//    /**
-//     * Supported values: "RDF/XML", "RDF/XML-ABBREV", "N-TRIPLE" and "N3"
-//     */
-//    public final Parameter<String> formatP = Parameter.make("format", String.class, "RDF/XML");
+    /**
+     * Supported values: "RDF/XML", "N-TRIPLE", "N-QUADS" and "N3". If not set,
+     * the format is guessed from the file extension (<code>.nt</code>,
+     * <code>.nq</code>, <code>.n3</code>), defaulting to RDF/XML.
+     */
+    public final Parameter<String> formatP = Parameter.make("format", String.class);
+    
+    /**
+     * If true, invalid lines in <code>N-TRIPLE</code> and <code>N-QUADS</code> 
+     * input are skipped and counted, rather than failing the import.
+     */
+    public final Parameter<Boolean> skipInvalidP = Parameter.make("skipInvalid", Boolean.class, false);
     
     @Override
     public void run() {
@@ -57,9 +79,31 @@ public class RDFImport extends LoreOperation {
             
             in = src.openStream();
             if (getParameterValue(compressionP)) {
-                in = new GZIPInputStream(in);
+                in = decompress(in);
+            }
+            String format = getParameterValue(formatP);
+            if (format == null) {
+                format = guessFormat(src.getPath());
+            }
+            
+            if (isLineBased(format)) {
+                //quads are loaded into the model regardless of their graph name
+                TransactionManager tx = createTransactionManager();
+                boolean success = false;
+                try {
+                    NTriplesReader reader = new NTriplesReader(Configure.getThreads(), 
+                            getParameterValue(skipInvalidP));
+                    ModelBatchHandler handler = new ModelBatchHandler(tx);
+                    long read = reader.read(in, handler);
+                    success = true;
+                    verify(read, reader.getInvalidLines(), reader.getSubmitted(), 
+                            handler.store.getAdded());
+                } finally {
+                    tx.close(success);
+                }
+            } else {
+                getModel().read(in, null, format);
             }
-            getModel().read(in, null);
             
         } catch (IOException ex) {
             throw new RuntimeException("Unable to import model!",ex);
@@ -76,6 +120,112 @@ public class RDFImport extends LoreOperation {
         
     }
 
+    /**
+     * guesses the format from the file extension, ignoring a .gz suffix.
+     * @param path the file path
+     * @return the Jena name of the format, defaulting to RDF/XML.
+     */
+    public static String guessFormat(String path) {
+        String p = path.toLowerCase();
+        if (p.endsWith(".gz")) {
+            p = p.substring(0, p.length()-3);
+        }
+        if (p.endsWith(".nt")) {
+            return "N-TRIPLE";
+        } else if (p.endsWith(".nq")) {
+            return "N-QUADS";
+        } else if (p.endsWith(".n3")) {
+            return "N3";
+        } else {
+            return "RDF/XML";
+        }
+    }
+    
+    /**
+     * @param format the Jena name of a format
+     * @return whether the format can be parsed by {@link NTriplesReader}.
+     */
+    public static boolean isLineBased(String format) {
+        return "N-TRIPLE".equals(format) || "N-TRIPLES".equals(format)
+                || "N-QUADS".equals(format);
+    }
+
+    /**
+     * Decompresses the stream if it starts with the gzip magic number,
+     * otherwise returns it as is.
+     * @param in the stream
+     * @return the uncompressed stream.
+     * @throws IOException if the stream cannot be read.
+     */
+    public static InputStream decompress(InputStream in) throws IOException {
+        BufferedInputStream b = new BufferedInputStream(in, 1 << 16);
+        b.mark(2);
+        int b1 = b.read(), b2 = b.read();
+        b.reset();
+        if (b1 == 0x1f && b2 == 0x8b) {
+            return new GZIPInputStream(b, 1 << 16);
+        }
+        Logger.getLogger(RDFImport.class.getName())
+                .log(Level.INFO, "Input is not compressed.");
+        return b;
+    }
+
+    /**
+     * Compares the number of statements read to the number the store holds,
+     * and reports the growth of the store and the skipped lines. Fewer 
+     * statements are added than read if the input contains duplicates or 
+     * statements that were already present.
+     * @param read number of statements read
+     * @param skipped number of invalid lines skipped
+     * @param stored number of statements read that the store holds
+     * (see {@link NTriplesReader.GraphStore}).
+     * @param added number of statements read that the store did not hold before
+     * @throws RuntimeException if the store does not hold every statement read.
+     */
+    public static void verify(long read, long skipped, long stored, long added) {
+        Logger log = Logger.getLogger(RDFImport.class.getName());
+        if (skipped > 0) {
+            log.log(Level.WARNING, skipped+" invalid lines were skipped.");
+        }
+        if (stored != read) {
+            throw new RuntimeException("Import verification failed: "
+                    +read+" statements read, but "+stored+" stored!");
+        } else if (added < read) {
+            log.log(Level.INFO, read+" statements read, "+added
+                    +" added. The remaining "+(read - added)+" were already present.");
+        } else {
+            log.log(Level.INFO, read+" statements read and added.");
+        }
+    }
+    
+    /**
+     * adds parsed statements to the model's graph in bulk, so that
+     * listeners on the model see them, and checks them against the base graph.
+     */
+    private class ModelBatchHandler implements NTriplesReader.BatchHandler {
+        
+        private final NTriplesReader.GraphStore store = new NTriplesReader.GraphStore(
+                getModel().getGraph(), getModel().getBaseModel().getGraph());
+        
+        private final TransactionManager tx;
+
+        ModelBatchHandler(TransactionManager tx) {
+            this.tx = tx;
+        }
+
+        @Override
+        public int handle(List<Triple> batch) {
+            getModel().enterCriticalSection(Lock.WRITE);
+            try {
+                int stored = store.handle(batch);
+                tx.rows(batch.size());
+                return stored;
+            } finally {
+                getModel().leaveCriticalSection();
+            }
+        }
+    }
+
     @Override
     public boolean requiresReasoner() {
         return false;
@@ -16,15 +16,19 @@
  */
 package ca.on.mshri.lore.operations;
 
+import ca.on.mshri.lore.operations.util.BasicPatternEvaluator;
+import ca.on.mshri.lore.operations.util.SolutionIterator;
+import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.query.Query;
-import com.hp.hpl.jena.query.QueryExecution;
-import com.hp.hpl.jena.query.QueryExecutionFactory;
 import com.hp.hpl.jena.query.QueryFactory;
 import com.hp.hpl.jena.query.QueryParseException;
 import com.hp.hpl.jena.query.QuerySolution;
-import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.query.QuerySolutionMap;
 import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.Map1;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -37,6 +41,7 @@ import java.security.CodeSource;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -47,6 +52,11 @@ import java.util.zip.ZipFile;
 /**
  * This class indexes SPARQL queries from the resources folder.
  * 
+ * <p>Queries are parsed once and then shared. Instead of formatting values 
+ * into the query text, variables are bound to URIs or literals at execution 
+ * time. Queries consisting only of plain triple patterns are evaluated directly
+ * against the graph by a {@link BasicPatternEvaluator}.</p>
+ * 
  * @author Jochen Weile <jochenweile@gmail.com>
  */
 public class Sparql {
@@ -56,6 +66,16 @@ public class Sparql {
      */
     private Map<String,String> queries = new HashMap<String,String>();
     
+    /**
+     * parsed queries by key.
+     */
+    private Map<String,Query> parsed = new HashMap<String,Query>();
+    
+    /**
+     * direct evaluators for queries simple enough to bypass the query engine.
+     */
+    private Map<String,BasicPatternEvaluator> evaluators = new HashMap<String,BasicPatternEvaluator>();
+    
     /**
      * instances.
      */
@@ -73,7 +93,7 @@ public class Sparql {
      * @return 
      * singleton
      */
-    public static Sparql getInstance(CodeSource source) {
+    public static synchronized Sparql getInstance(CodeSource source) {
         Sparql instance = instances.get(source);
         if (instance == null) {
             instance = new Sparql(source);
@@ -192,7 +212,8 @@ public class Sparql {
     }
     
     /**
-     * Get the query for the given key
+     * Get the query for the given key. Each query is parsed only once, 
+     * the returned object is shared between all callers and must not be modified.
      * 
      * @param key 
      * the query key corresponds to the SPARQL file name
@@ -200,38 +221,34 @@ public class Sparql {
      * @return 
      * the query object
      */
-    public Query get(String key) {
+    public synchronized Query get(String key) {
         
-        String qString = queries.get(key);
-        try {
-            Query q = QueryFactory.create(qString);
-            return q;
-        } catch (QueryParseException e) {
-            throw new RuntimeException("Query could not be parsed! ", e);
+        Query q = parsed.get(key);
+        if (q == null) {
+            String qString = queries.get(key);
+            if (qString == null) {
+                throw new RuntimeException("Unknown query: "+key);
+            }
+            try {
+                q = QueryFactory.create(qString);
+            } catch (QueryParseException e) {
+                throw new RuntimeException("Query could not be parsed! ", e);
+            }
+            parsed.put(key, q);
+            BasicPatternEvaluator evaluator = BasicPatternEvaluator.compile(q);
+            if (evaluator != null) {
+                evaluators.put(key, evaluator);
+            }
         }
+        return q;
     }
     
     /**
-     * Get the query for the given key with the give parameters
-     * 
-     * @param key
-     * the query key corresponds to the SPARQL file name
-     * 
-     * @param values 
-     * Strings to replace %s tags in the query string before instantiating the query.
-     * 
-     * @return 
-     * the query object.
+     * returns the direct evaluator for the given query, if it has one.
      */
-    public Query get(String key, String... values) {
-        
-        String qString = queries.get(key);
-        try {
-            Query q = QueryFactory.create(String.format(qString, (Object[])values));
-            return q;
-        } catch (QueryParseException e) {
-            throw new RuntimeException("Query could not be parsed! ", e);
-        }
+    private synchronized BasicPatternEvaluator getEvaluator(String key) {
+        get(key);
+        return evaluators.get(key);
     }
     
     /**
@@ -243,22 +260,26 @@ public class Sparql {
      * @param key 
      * The name of the key in the query, that represents the individuals.
      * 
-     * @param args
-     * additional <code>String</code> arguments that substitute 
-     * '<code>%s</code>' tags in the query.
+     * @param bindings
+     * initial values for variables in the query.
      * 
      * @return The list of individuals.
      */
-    public List<Individual> queryIndividuals(Model model, String query, String key, String... args) {
+    public List<Individual> queryIndividuals(Model model, String query, String key, QuerySolutionMap bindings) {
         List<Individual> list = new ArrayList<Individual>();
         
-        QueryExecution qexec = QueryExecutionFactory
-                .create(get(query, args), model);
+        BasicPatternEvaluator evaluator = getEvaluator(query);
+        if (evaluator != null) {
+            for (Node node : evaluator.evaluate(model.getGraph(), toNodes(bindings), key)) {
+                list.add(model.asRDFNode(node).as(Individual.class));
+            }
+            return list;
+        }
         
+        SolutionIterator it = new SolutionIterator(model, get(query), bindings);
         try {
-            ResultSet r = qexec.execSelect();
-            while (r.hasNext()) {
-                QuerySolution sol = r.next();
+            while (it.hasNext()) {
+                QuerySolution sol = it.next();
                 
                 Individual i = sol.getResource(key)
                         .as(Individual.class);
@@ -266,13 +287,12 @@ public class Sparql {
                 list.add(i);
             }
         } finally {
-            qexec.close();
+            it.close();
         }
         
         return list;
     }
     
-    
     /**
      * Performs a SPARQL query that returns a list of individuals.
      * 
@@ -282,33 +302,142 @@ public class Sparql {
      * @param key 
      * The name of the key in the query, that represents the individuals.
      * 
-     * @param args
-     * additional <code>String</code> arguments that substitute 
-     * '<code>%s</code>' tags in the query.
-     * 
      * @return The list of individuals.
      */
-    public <T> List<T> queryValues(Model model, String query, String key, String... args) {
+    public List<Individual> queryIndividuals(Model model, String query, String key) {
+        return queryIndividuals(model, query, key, new QuerySolutionMap());
+    }
+    
+    
+    /**
+     * Performs a SPARQL query that returns individuals, without collecting
+     * them in a list first. The individuals are created as the iterator is
+     * consumed. The iterator must be closed if it is not consumed entirely.
+     *
+     * @param query
+     * The name of the query. Corresponds to the name of the SPARQL file.
+     *
+     * @param key
+     * The name of the key in the query, that represents the individuals.
+     *
+     * @param bindings
+     * initial values for variables in the query.
+     *
+     * @param pageSize the number of results to fetch per query execution, or
+     * 0 to fetch all in one execution. See {@link SolutionIterator}. Without 
+     * paging, plain basic graph patterns are matched lazily against the graph 
+     * instead (see {@link BasicPatternEvaluator#iterate}).
+     *
+     * @return an iterator over the individuals.
+     */
+    public ExtendedIterator<Individual> iterateIndividuals(final Model model, String query,
+            final String key, QuerySolutionMap bindings, int pageSize) {
+
+        //paged queries go through the query engine, which honours the page size
+        BasicPatternEvaluator evaluator = pageSize > 0 ? null : getEvaluator(query);
+        if (evaluator != null) {
+            return evaluator.iterate(model.getGraph(), toNodes(bindings), key)
+                    .mapWith(new Map1<Node, Individual>() {
+                @Override
+                public Individual map1(Node node) {
+                    return model.asRDFNode(node).as(Individual.class);
+                }
+            });
+        }
+
+        return new SolutionIterator(model, get(query), bindings, pageSize)
+                .mapWith(new Map1<QuerySolution, Individual>() {
+            @Override
+            public Individual map1(QuerySolution sol) {
+                return sol.getResource(key).as(Individual.class);
+            }
+        });
+    }
+
+    /**
+     * Performs a SPARQL query that returns individuals, without collecting
+     * them in a list first. See {@link #iterateIndividuals(Model, String, String, QuerySolutionMap, int)}.
+     *
+     * @param query
+     * The name of the query. Corresponds to the name of the SPARQL file.
+     *
+     * @param key
+     * The name of the key in the query, that represents the individuals.
+     *
+     * @param bindings
+     * initial values for variables in the query.
+     *
+     * @return an iterator over the individuals.
+     */
+    public ExtendedIterator<Individual> iterateIndividuals(Model model, String query,
+            String key, QuerySolutionMap bindings) {
+        return iterateIndividuals(model, query, key, bindings, 0);
+    }
+
+    /**
+     * Performs a SPARQL query that returns a list of literal values.
+     * 
+     * @param query
+     * The name of the query. Corresponds to the name of the SPARQL file.
+     * 
+     * @param key 
+     * The name of the key in the query, that represents the values.
+     * 
+     * @param bindings
+     * initial values for variables in the query.
+     * 
+     * @return The list of values.
+     */
+    public <T> List<T> queryValues(Model model, String query, String key, QuerySolutionMap bindings) {
         List<T> list = new ArrayList<T>();
         
-        QueryExecution qexec = QueryExecutionFactory
-                .create(get(query, args), model);
+        BasicPatternEvaluator evaluator = getEvaluator(query);
+        if (evaluator != null) {
+            for (Node node : evaluator.evaluate(model.getGraph(), toNodes(bindings), key)) {
+                list.add((T) node.getLiteralValue());
+            }
+            return list;
+        }
         
+        SolutionIterator it = new SolutionIterator(model, get(query), bindings);
         try {
-            ResultSet r = qexec.execSelect();
-            while (r.hasNext()) {
-                QuerySolution sol = r.next();
+            while (it.hasNext()) {
+                QuerySolution sol = it.next();
                 
                 T val = (T) sol.getLiteral(key).getValue();
                 
                 list.add(val);
             }
         } finally {
-            qexec.close();
+            it.close();
         }
         
         return list;
     }
     
+    /**
+     * Creates a binding map with a single entry.
+     * @param var the variable name, without the question mark
+     * @param value the URI resource or literal to bind to it.
+     * @return the binding map. More bindings can be added to it.
+     */
+    public static QuerySolutionMap bind(String var, RDFNode value) {
+        QuerySolutionMap map = new QuerySolutionMap();
+        map.add(var, value);
+        return map;
+    }
+    
+    /**
+     * converts bindings to graph nodes for the direct evaluator.
+     */
+    private static Map<String,Node> toNodes(QuerySolutionMap bindings) {
+        Map<String,Node> nodes = new HashMap<String, Node>();
+        Iterator<String> it = bindings.varNames();
+        while (it.hasNext()) {
+            String var = it.next();
+            nodes.put(var, bindings.get(var).asNode());
+        }
+        return nodes;
+    }
     
 }
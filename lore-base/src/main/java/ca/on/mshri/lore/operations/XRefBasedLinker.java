@@ -20,19 +20,28 @@ import ca.on.mshri.lore.operations.util.Parameter;
 import ca.on.mshri.lore.base.Authority;
 import ca.on.mshri.lore.base.InconsistencyException;
 import ca.on.mshri.lore.base.RecordObject;
-import ca.on.mshri.lore.base.XRef;
+import ca.on.mshri.lore.operations.util.ExternalSorter;
+import ca.on.mshri.lore.operations.util.KeyGroups;
 import ca.on.mshri.lore.operations.util.RefListParameter;
 import ca.on.mshri.lore.operations.util.ResourceReferences;
-import com.hp.hpl.jena.ontology.Individual;
+import ca.on.mshri.lore.operations.util.SortedXRefs;
+import ca.on.mshri.lore.operations.util.StringTable;
+import ca.on.mshri.lore.operations.util.TransactionManager;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.rdf.model.Property;
-import de.jweile.yogiutil.CliProgressBar;
+import com.hp.hpl.jena.shared.Lock;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,10 +51,44 @@ import java.util.logging.Logger;
  * Can also be run in <code>allMustMatch</code> mode, where record objects are linked only if 
  * they share <i>all</i> XRefs from that Authority.
  * 
+ * <p>Memory use is bounded by the limit set by {@link Configure#MEMORY_KEYS_KEY}.
+ * The keys of the selected objects are read from the graph and matched to 
+ * the selections by sorting both (see {@link SortedXRefs}). The objects of
+ * each side are numbered in the order of their names and kept in a
+ * {@link StringTable} on disk. Up to the limit, keys are kept in memory.
+ * Beyond that, the objects are grouped by sorting (key, object) pairs on disk
+ * (see {@link KeyGroups}).</p>
+ * 
+ * <p>The pairs that share a key are packed into longs and sorted with 
+ * {@link ExternalSorter}s, so they spill to disk under the same limit. With 
+ * more than one thread (see {@link Configure#THREADS_KEY}), the range of 
+ * "from" objects is split into contiguous partitions, one per worker. Each 
+ * worker generates and sorts the pairs of its partition, so the sorted 
+ * partitions follow each other in pair order. Links that already exist are 
+ * found in one scan over the statements of the link property, numbered by
+ * sorting them against the members of each side, sorted the same way as the
+ * pairs and skipped. The new links are added in bulk batches from a single 
+ * thread, since each batch holds the model's write lock anyway.</p>
+ * 
  * @author Jochen Weile <jochenweile@gmail.com>
  */
 public class XRefBasedLinker extends LoreOperation {
     
+    /**
+     * side markers in the lowest bit of the grouped values.
+     */
+    private static final long FROM = 0, TO = 1;
+    
+    /**
+     * number of links written to the graph at once.
+     */
+    private static final int BATCH_SIZE = 10000;
+    
+    /**
+     * number of groups handed to the pair workers at once.
+     */
+    private static final int GROUP_CHUNK = 4096;
+    
     /**
      *  The a selection of objects on which the algorithm will run.
      */
@@ -87,157 +130,369 @@ public class XRefBasedLinker extends LoreOperation {
         Logger.getLogger(XRefBasedLinker.class.getName())
                 .log(Level.INFO, "XRef-based linker: Indexing...");
         
-        List<RecordObject> fromSet = getParameterValue(fromSetP).resolve(getModel());
-        List<RecordObject> toSet = getParameterValue(toSetP).resolve(getModel());
         Authority authority = ((ResourceReferences<Authority>)getParameterValue(authorityP)).resolve(getModel()).get(0);
         Property property = ((ResourceReferences<Property>)getParameterValue(propertyP)).resolve(getModel()).get(0);
         boolean allMustMatch = getParameterValue(allMustMatchP);
         boolean uniqueKeys = getParameterValue(uniqueKeysP);
         
-        Map<String,Set<Individual>> fromIndex = new HashMap<String, Set<Individual>>();
-        Map<String,Set<Individual>> toIndex = new HashMap<String, Set<Individual>>();
-        
-        CliProgressBar pro = new CliProgressBar(fromSet.size()+toSet.size());
+        StringTable from = table();
+        StringTable to = table();
+        List<Partition> partitions = new ArrayList<Partition>();
+        ExternalSorter existing = new ExternalSorter(Configure.getMemoryKeys());
+        KeyGroups groups = new KeyGroups(Configure.getMemoryKeys());
+        SortedXRefs xrefs = new SortedXRefs(getModel().getGraph(), authority.asNode(), 
+                Configure.getMemoryKeys());
+        ExecutorService workers = null;
         
-        //index the from set
-        //for all objects in the "from" selection
-        for (RecordObject o : fromSet) {
-            
-            //get applicable keys
-            List<String> keys = new ArrayList<String>();
-            for (XRef xref : o.listXRefs()) {
-                if (xref.getAuthority().equals(authority)) {
-                    keys.add(xref.getValue());
+        long[] counts;
+        try {
+            try {
+                //index the "from" set and the "to" set
+                int fromSet = xrefs.select(getParameterValue(fromSetP).iterate(getModel()));
+                int toSet = xrefs.select(getParameterValue(toSetP).iterate(getModel()));
+                index(xrefs, fromSet, toSet, from, to, groups, authority, allMustMatch, uniqueKeys);
+
+                //split the "from" ids into contiguous ranges, one per worker
+                int parts = Math.max(1, Math.min(Configure.getThreads(), from.size()));
+                for (int r = 0; r < parts; r++) {
+                    partitions.add(new Partition(
+                            (int) ((long) from.size() * r / parts),
+                            (int) ((long) from.size() * (r + 1) / parts),
+                            Math.max(1, Configure.getMemoryKeys() / parts)));
                 }
+                workers = parts > 1 ? Executors.newFixedThreadPool(parts) : null;
+                
+                Logger.getLogger(XRefBasedLinker.class.getName())
+                        .log(Level.INFO, "XRef-based linker: Joining on "+parts+" partitions...");
+
+                //collect the pairs that share a key
+                final List<long[]> chunk = new ArrayList<long[]>(GROUP_CHUNK);
+                final ExecutorService w = workers;
+                final List<Partition> ps = partitions;
+                groups.forEach(new KeyGroups.Handler() {
+                    @Override
+                    public void group(String key, long[] values, int n) throws IOException {
+                        chunk.add(Arrays.copyOf(values, n));
+                        if (chunk.size() >= GROUP_CHUNK) {
+                            pairs(w, ps, chunk);
+                            chunk.clear();
+                        }
+                    }
+                });
+                pairs(workers, partitions, chunk);
+            } finally {
+                groups.close();
             }
             
-            if (keys.isEmpty()) {
-                pro.next();
-                continue;
-            }
-            
-            if (uniqueKeys && keys.size() > 1) {
-                throw new InconsistencyException("Keys of type "+authority+
-                        " are not unique! Object "+
-                        o+"is has multiple keys: "+keys);
+            long candidates = 0;
+            for (Partition p : partitions) {
+                candidates += p.sorter.size();
             }
+            Logger.getLogger(XRefBasedLinker.class.getName())
+                    .log(Level.INFO, "XRef-based linker: Linking "+candidates+" candidate pairs...");
             
-            //if all keys must match, combine them to one super-key
-            if (allMustMatch) {
-                String key = cons(";",keys);
-                keys.clear();
-                keys.add(key);
-            }
+            existing(property.asNode(), from, to, existing);
+            counts = link(sort(workers, partitions), existing.sort(), from, to, property.asNode());
             
-            //collect all previously registered sets and combine them
-            Set<Individual> unionSet = new HashSet<Individual>();
-            for (String key : keys) {
-                Set<Individual> set = fromIndex.get(key);
-                if (set != null) {
-                    unionSet.addAll(set);
-                }
+        } catch (IOException ex) {
+            throw new RuntimeException("XRef-based linker: Unable to use temporary files.", ex);
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
             }
-            //add new member
-            unionSet.add(o);
-            
-            //register with all keys
-            for (String key : keys) {
-                fromIndex.put(key,unionSet);
+            for (Partition p : partitions) {
+                p.sorter.close();
             }
-            
-            pro.next();
+            existing.close();
+            xrefs.close();
+            from.close();
+            to.close();
         }
         
-        //index the "to" set
-        for (RecordObject o : toSet) {
-            
-            //get applicable keys
-            List<String> keys = new ArrayList<String>();
-            for (XRef xref : o.listXRefs()) {
-                if (xref.getAuthority().equals(authority)) {
-                    keys.add(xref.getValue());
+        Logger.getLogger(XRefBasedLinker.class.getName())
+                .log(Level.INFO, "Successfully linked "+counts[1]+" entity pairs! "
+                +(counts[0] - counts[1])+" were already linked.");
+        
+        //merge
+//        Merger merger = new Merger();
+//        merger.setParameter(merger.mergeSetsP, index.values());
+//        merger.run();
+    }
+
+    /**
+     * Adds the keys of the selected objects to the key groups. Each object is
+     * recorded in the groups by its member id and its side, once for each side
+     * it is selected on.
+     * @param fromSet the number of the "from" selection in <code>xrefs</code>
+     * @param toSet the number of the "to" selection in <code>xrefs</code>
+     * @param from the members of the "from" side.
+     * @param to the members of the "to" side.
+     */
+    private void index(SortedXRefs xrefs, final int fromSet, final int toSet, 
+            final StringTable from, final StringTable to, final KeyGroups groups,
+            final Authority authority, final boolean allMustMatch, final boolean uniqueKeys) 
+            throws IOException {
+        
+        xrefs.forEach(new SortedXRefs.Handler() {
+            @Override
+            public void object(String object, int selections, List<String> keys) 
+                    throws IOException {
+                
+                if (uniqueKeys && keys.size() > 1) {
+                    throw new InconsistencyException("Keys of type "+authority+
+                            " are not unique! Object "+
+                            object+"is has multiple keys: "+keys);
+                }
+
+                //if all keys must match, combine them to one super-key
+                if (allMustMatch) {
+                    String key = cons(";",keys);
+                    keys.clear();
+                    keys.add(key);
+                }
+                
+                if ((selections & (1 << fromSet)) != 0) {
+                    long value = ((long) from.add(object) << 1) | FROM;
+                    for (String key : keys) {
+                        groups.add(key, value);
+                    }
+                }
+                if ((selections & (1 << toSet)) != 0) {
+                    long value = ((long) to.add(object) << 1) | TO;
+                    for (String key : keys) {
+                        groups.add(key, value);
+                    }
                 }
             }
-            
-            if (keys.isEmpty()) {
-                pro.next();
-                continue;
+        });
+    }
+    
+    /**
+     * Generates the pairs of a chunk of groups, on each partition at once. 
+     * Waits until all partitions are done, so that each sorter is only used
+     * by one thread at a time.
+     * @param workers the thread pool, or null to work on the calling thread.
+     */
+    private void pairs(ExecutorService workers, List<Partition> partitions, 
+            final List<long[]> chunk) throws IOException {
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (final Partition p : partitions) {
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() throws IOException {
+                    for (long[] values : chunk) {
+                        p.pairs(values);
+                    }
+                    return null;
+                }
+            });
+        }
+        invoke(workers, tasks);
+    }
+    
+    /**
+     * sorts each partition.
+     * @return the sorted partitions, in pair order.
+     */
+    private List<ExternalSorter.Cursor> sort(ExecutorService workers, List<Partition> partitions) 
+            throws IOException {
+        List<Callable<ExternalSorter.Cursor>> tasks = new ArrayList<Callable<ExternalSorter.Cursor>>();
+        for (final Partition p : partitions) {
+            tasks.add(new Callable<ExternalSorter.Cursor>() {
+                @Override
+                public ExternalSorter.Cursor call() throws IOException {
+                    return p.sorter.sort();
+                }
+            });
+        }
+        return invoke(workers, tasks);
+    }
+    
+    /**
+     * runs the tasks on the workers, or one after the other if there are none.
+     * @return the results, in task order.
+     */
+    private <T> List<T> invoke(ExecutorService workers, List<Callable<T>> tasks) 
+            throws IOException {
+        List<T> results = new ArrayList<T>(tasks.size());
+        try {
+            if (workers == null) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+            } else {
+                for (Future<T> f : workers.invokeAll(tasks)) {
+                    results.add(f.get());
+                }
             }
-            
-            if (uniqueKeys && keys.size() > 1) {
-                throw new InconsistencyException("Keys of type "+authority+
-                        " are not unique! Object "+
-                        o+"is has multiple keys: "+keys);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while joining", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
             }
-            
-            //if all keys must match, combine them to one super-key
-            if (allMustMatch) {
-                String key = cons(";",keys);
-                keys.clear();
-                keys.add(key);
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause()
+                    : new RuntimeException("Error while joining", ex.getCause());
+        } catch (IOException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new RuntimeException("Error while joining", ex);
+        }
+        return results;
+    }
+    
+    /**
+     * Finds the links that already exist between the two sides, in a single 
+     * scan over the statements of the property, and adds them to the sorter.
+     * The member ids of subject and object are found by sorting the links on 
+     * the subject, then on the object, and walking each side's members alongside. 
+     * This works since members are numbered in the order of their names.
+     */
+    private void existing(Node property, StringTable from, StringTable to, ExternalSorter existing) 
+            throws IOException {
+        
+        ExternalSorter links = new ExternalSorter(Configure.getMemoryKeys());
+        ExternalSorter targets = new ExternalSorter(Configure.getMemoryKeys());
+        try {
+            ExtendedIterator<Triple> it = getModel().getGraph().find(Node.ANY, property, Node.ANY);
+            try {
+                while (it.hasNext()) {
+                    Triple t = it.next();
+                    if (t.getObject().isURI() || t.getObject().isBlank()) {
+                        links.add(SortedXRefs.encode(t.getSubject())+"\t"
+                                +SortedXRefs.encode(t.getObject()), 0);
+                    }
+                }
+            } finally {
+                it.close();
             }
             
-            //collect all previously registered sets and combine them
-            Set<Individual> unionSet = new HashSet<Individual>();
-            for (String key : keys) {
-                Set<Individual> set = toIndex.get(key);
-                if (set != null) {
-                    unionSet.addAll(set);
+            //subject to "from" id
+            ExternalSorter.Cursor cursor = links.sort();
+            Walker walker = new Walker(from);
+            try {
+                while (cursor.next()) {
+                    String link = cursor.getKey();
+                    int tab = link.indexOf('\t');
+                    int f = walker.find(link.substring(0, tab));
+                    if (f >= 0) {
+                        targets.add(link.substring(tab + 1), f);
+                    }
                 }
+            } finally {
+                walker.close();
             }
-            //add new member
-            unionSet.add(o);
             
-            //register with all keys
-            for (String key : keys) {
-                toIndex.put(key,unionSet);
+            //object to "to" id
+            cursor = targets.sort();
+            walker = new Walker(to);
+            try {
+                while (cursor.next()) {
+                    int o = walker.find(cursor.getKey());
+                    if (o >= 0) {
+                        existing.add("", pair((int) cursor.getValue(), o));
+                    }
+                }
+            } finally {
+                walker.close();
             }
-            
-            pro.next();
-            
+        } finally {
+            links.close();
+            targets.close();
         }
+    }
+    
+    /**
+     * Writes the pairs that do not exist yet, in batches. The partitions follow
+     * each other in pair order, as do the existing pairs, so duplicates are 
+     * dropped and existing pairs are skipped by walking them alongside. The 
+     * batches are written one after the other: each one holds the model's 
+     * write lock, so concurrent writers would only queue up behind it.
+     * @return the number of distinct pairs and the number of links written.
+     */
+    private long[] link(List<ExternalSorter.Cursor> partitions, ExternalSorter.Cursor existing, 
+            StringTable from, StringTable to, Node property) throws IOException {
         
-        
-        Logger.getLogger(XRefBasedLinker.class.getName())
-                .log(Level.INFO, "XRef-based merger: Linking...");
-        pro = new CliProgressBar(fromIndex.keySet().size());
-        
-        int links = 0;
-        
-        //do the linking
-        for (String key : fromIndex.keySet()) {
-            
-            Set<Individual> fromObjects = fromIndex.get(key);
-            Set<Individual> toObjects = toIndex.get(key);
-            
-            if (fromObjects == null || fromObjects.isEmpty() || 
-                    toObjects == null || toObjects.isEmpty()) {
-                pro.next();
-                continue;
-            }
-            
-            for (Individual fromO : fromObjects) {
-                for (Individual toO : toObjects) {
-                    
-                    if (!fromO.hasProperty(property, toO)) {
-                        fromO.addProperty(property, toO);
-                        links++;
+        long total = 0, links = 0;
+        TransactionManager tx = createTransactionManager();
+        boolean success = false;
+        try {
+            List<Triple> batch = new ArrayList<Triple>(BATCH_SIZE);
+            boolean more = existing.next();
+            long last = -1;
+            int lastFrom = -1;
+            Node subject = null;
+            for (ExternalSorter.Cursor pairs : partitions) {
+                while (pairs.next()) {
+                    long p = pairs.getValue();
+                    if (p == last) {
+                        continue;
+                    }
+                    last = p;
+                    total++;
+                    while (more && existing.getValue() < p) {
+                        more = existing.next();
+                    }
+                    if (more && existing.getValue() == p) {
+                        continue;
+                    }
+                    if ((int) (p >>> 32) != lastFrom) {
+                        lastFrom = (int) (p >>> 32);
+                        subject = SortedXRefs.decode(from.get(lastFrom));
+                    }
+                    batch.add(Triple.create(subject, property, 
+                            SortedXRefs.decode(to.get((int) p))));
+                    if (batch.size() >= BATCH_SIZE) {
+                        write(batch, tx);
+                        links += batch.size();
+                        batch.clear();
                     }
-                    
                 }
             }
-            
-            pro.next();
+            if (!batch.isEmpty()) {
+                write(batch, tx);
+                links += batch.size();
+            }
+            success = true;
+        } finally {
+            tx.close(success);
+        }
+        return new long[]{total, links};
+    }
+    
+    /**
+     * adds a batch of links to the model's graph in bulk, so that listeners on
+     * the model see them.
+     */
+    private void write(List<Triple> batch, TransactionManager tx) {
+        getModel().enterCriticalSection(Lock.WRITE);
+        try {
+            getModel().getGraph().getBulkUpdateHandler().add(batch);
+            tx.rows(batch.size());
+        } finally {
+            getModel().leaveCriticalSection();
+        }
+    }
+    
+    /**
+     * packs a from-id and a to-id, so that pairs sort by from-id, then to-id.
+     */
+    private static long pair(int from, int to) {
+        return ((long) from << 32) | (to & 0xffffffffL);
+    }
+
+    /**
+     * creates a table for the members of one side.
+     */
+    private static StringTable table() {
+        try {
+            return new StringTable();
+        } catch (IOException ex) {
+            throw new RuntimeException("XRef-based linker: Unable to use temporary files.", ex);
         }
-        
-        
-        Logger.getLogger(XRefBasedLinker.class.getName())
-                .log(Level.INFO, "Successfully linked "+links+" entity pairs!");
-        
-        //merge
-//        Merger merger = new Merger();
-//        merger.setParameter(merger.mergeSetsP, index.values());
-//        merger.run();
     }
 
     private String cons(String delim, List<String> ss) {
@@ -254,5 +509,77 @@ public class XRefBasedLinker extends LoreOperation {
     public boolean requiresReasoner() {
         return false;
     }
+    
+    /**
+     * the pairs of a contiguous range of "from" ids.
+     */
+    private static class Partition {
+        
+        /**
+         * the range of "from" ids, from inclusive, to exclusive.
+         */
+        private final int lo, hi;
+        
+        private final ExternalSorter sorter;
+        
+        Partition(int lo, int hi, long maxRecords) {
+            this.lo = lo;
+            this.hi = hi;
+            this.sorter = new ExternalSorter(maxRecords);
+        }
+        
+        /**
+         * adds the pairs of a group whose "from" ids fall into this partition.
+         */
+        void pairs(long[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                int f = (int) (values[i] >>> 1);
+                if ((values[i] & 1) != FROM || f < lo || f >= hi) {
+                    continue;
+                }
+                for (int j = 0; j < values.length; j++) {
+                    if ((values[j] & 1) == TO) {
+                        sorter.add("", pair(f, (int) (values[j] >>> 1)));
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * looks up the member ids of names given in increasing order.
+     */
+    private static class Walker {
+        
+        private final StringTable.Reader reader;
+        
+        private String current;
+        
+        private int id = 0;
+        
+        Walker(StringTable members) throws IOException {
+            reader = members.read();
+            current = reader.next();
+        }
+        
+        /**
+         * @return the id of the name, or -1 if it is not a member.
+         */
+        int find(String name) throws IOException {
+            int c;
+            while (current != null && (c = current.compareTo(name)) <= 0) {
+                if (c == 0) {
+                    return id;
+                }
+                current = reader.next();
+                id++;
+            }
+            return -1;
+        }
+        
+        void close() {
+            reader.close();
+        }
+    }
         
 }
@@ -20,11 +20,14 @@ import ca.on.mshri.lore.operations.util.Parameter;
 import ca.on.mshri.lore.base.Authority;
 import ca.on.mshri.lore.base.InconsistencyException;
 import ca.on.mshri.lore.base.RecordObject;
-import ca.on.mshri.lore.base.XRef;
+import ca.on.mshri.lore.operations.util.DisjointSets;
+import ca.on.mshri.lore.operations.util.ExternalSorter;
 import ca.on.mshri.lore.operations.util.RefListParameter;
 import ca.on.mshri.lore.operations.util.ResourceReferences;
+import ca.on.mshri.lore.operations.util.SortedXRefs;
+import ca.on.mshri.lore.operations.util.StringTable;
 import com.hp.hpl.jena.ontology.Individual;
-import de.jweile.yogiutil.CliProgressBar;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -41,6 +44,18 @@ import java.util.logging.Logger;
  * Can also be run in <code>allMustMatch</code> mode, where record objects are merged only if 
  * they share <i>all</i> XRefs from that Authority.
  * 
+ * <p>Merging is transitive: objects are grouped with a disjoint-set forest, so
+ * if A shares a key with B and B shares another key with C, all three end up in 
+ * the same merge set.</p>
+ * 
+ * <p>Memory use is bounded by the limit set by {@link Configure#MEMORY_KEYS_KEY},
+ * apart from the disjoint-set forest and the merge groups. The keys of the 
+ * selected objects are read from the graph and matched to the selection by 
+ * sorting both (see {@link SortedXRefs}). The names of the objects are kept in
+ * a {@link StringTable} on disk. Then (key, object) pairs are sorted with an 
+ * {@link ExternalSorter}, and objects sharing a key are joined in a single pass 
+ * over the sorted pairs.</p>
+ * 
  * @author Jochen Weile <jochenweile@gmail.com>
  */
 public class XRefBasedMerger extends LoreOperation {
@@ -76,65 +91,104 @@ public class XRefBasedMerger extends LoreOperation {
         Logger.getLogger(XRefBasedMerger.class.getName())
                 .log(Level.INFO, "XRef-based merger: Indexing...");
         
-        List<RecordObject> selection = getParameterValue(selectionP).resolve(getModel());
-        Authority authority = ((ResourceReferences<Authority>)getParameterValue(authorityP)).resolve(getModel()).get(0);
-        boolean allMustMatch = getParameterValue(allMustMatchP);
-        boolean uniqueKeys = getParameterValue(uniqueKeysP);
+        final Authority authority = ((ResourceReferences<Authority>)getParameterValue(authorityP)).resolve(getModel()).get(0);
+        final boolean allMustMatch = getParameterValue(allMustMatchP);
+        final boolean uniqueKeys = getParameterValue(uniqueKeysP);
+        long maxKeys = Configure.getMemoryKeys();
         
-        Map<String,Set<Individual>> index = new HashMap<String, Set<Individual>>();
-        
-        CliProgressBar pro = new CliProgressBar(selection.size());
+        SortedXRefs xrefs = new SortedXRefs(getModel().getGraph(), authority.asNode(), maxKeys);
+        //objects are numbered in the order of their names
+        final DisjointSets sets = new DisjointSets();
+        final StringTable members;
+        try {
+            members = new StringTable();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create temporary files", e);
+        }
+        //(key, object) pairs
+        final ExternalSorter keyed = new ExternalSorter(maxKeys);
         
-        //for all objects in the selection
-        for (RecordObject o : selection) {
-            
-            //get applicable keys
-            List<String> keys = new ArrayList<String>();
-            for (XRef xref : o.listXRefs()) {
-                if (xref.getAuthority().equals(authority)) {
-                    keys.add(xref.getValue());
+        Map<Integer,Set<Individual>> groups = new HashMap<Integer, Set<Individual>>();
+        try {
+            xrefs.select(getParameterValue(selectionP).iterate(getModel()));
+            xrefs.forEach(new SortedXRefs.Handler() {
+                @Override
+                public void object(String object, int selections, List<String> keys) 
+                        throws IOException {
+                    
+                    if (uniqueKeys && keys.size() > 1) {
+                        throw new InconsistencyException("Keys of type "+authority+
+                                " are not unique! Object "+
+                                object+"is has multiple keys: "+keys);
+                    }
+
+                    //if all keys must match, combine them to one super-key
+                    if (allMustMatch) {
+                        String key = cons(";",keys);
+                        keys.clear();
+                        keys.add(key);
+                    }
+                    
+                    int id = sets.add();
+                    members.add(object);
+                    for (String key : keys) {
+                        keyed.add(key, id);
+                    }
                 }
-            }
-            
-            if (keys.isEmpty()) {
-                continue;
-            }
+            });
             
-            if (uniqueKeys && keys.size() > 1) {
-                throw new InconsistencyException("Keys of type "+authority+
-                        " are not unique! Object "+
-                        o+"is has multiple keys: "+keys);
+            //join objects sharing a key by sorting on the key
+            ExternalSorter.Cursor cursor = keyed.sort();
+            String key = null;
+            int owner = -1;
+            while (cursor.next()) {
+                if (!cursor.getKey().equals(key)) {
+                    key = cursor.getKey();
+                    owner = (int) cursor.getValue();
+                } else {
+                    sets.union(owner, (int) cursor.getValue());
+                }
             }
             
-            //if all keys must match, combine them to one super-key
-            if (allMustMatch) {
-                String key = cons(";",keys);
-                keys.clear();
-                keys.add(key);
+            //collect the groups of more than one member
+            int[] sizes = new int[sets.size()];
+            for (int i = 0; i < sets.size(); i++) {
+                sizes[sets.find(i)]++;
             }
-            
-            //collect all previously registered sets and combine them
-            Set<Individual> unionSet = new HashSet<Individual>();
-            for (String key : keys) {
-                Set<Individual> set = index.get(key);
-                if (set != null) {
-                    unionSet.addAll(set);
+            StringTable.Reader names = members.read();
+            try {
+                for (int i = 0; i < sets.size(); i++) {
+                    String name = names.next();
+                    int root = sets.find(i);
+                    if (sizes[root] < 2) {
+                        continue;
+                    }
+                    Set<Individual> group = groups.get(root);
+                    if (group == null) {
+                        group = new HashSet<Individual>();
+                        groups.put(root, group);
+                    }
+                    group.add(getModel().asRDFNode(SortedXRefs.decode(name)).as(Individual.class));
                 }
+            } finally {
+                names.close();
             }
-            //add new member
-            unionSet.add(o);
-            
-            //register with all keys
-            for (String key : keys) {
-                index.put(key,unionSet);
-            }
-            
-            pro.next();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to sort keys on disk", e);
+        } finally {
+            xrefs.close();
+            keyed.close();
+            members.close();
         }
+        List<Set<Individual>> mergeSets = new ArrayList<Set<Individual>>(groups.values());
+        
+        Logger.getLogger(XRefBasedMerger.class.getName())
+                .log(Level.INFO, "XRef-based merger: Found "+mergeSets.size()+" merge groups.");
         
         //merge
         Merger merger = new Merger();
-        merger.setParameter(merger.mergeSetsP, index.values());
+        merger.setModel(getModel());
+        merger.setParameter(merger.mergeSetsP, mergeSets);
         merger.run();
     }
 
@@ -0,0 +1,407 @@
+/*
+ * Copyright (C) 2013 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.shared.PrefixMapping;
+import com.hp.hpl.jena.sparql.path.P_Inverse;
+import com.hp.hpl.jena.sparql.path.P_Link;
+import com.hp.hpl.jena.sparql.path.P_Seq;
+import com.hp.hpl.jena.sparql.path.Path;
+import com.hp.hpl.jena.sparql.path.PathParser;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compiled, read-only adjacency structure for a graph. The edges of the
+ * adjacency graph are defined by a SPARQL property path pattern,
+ * e.g. <code>^ia:hasParticipant/ia:hasParticipant</code> for interaction partners.
+ * The pattern is evaluated once against the entire RDF graph and the result
+ * is stored in compressed sparse row (CSR) format, i.e. as two int arrays.
+ * Node IDs are assigned in the order in which the nodes are first encountered.
+ *
+ * <p>The snapshot does not track changes to the underlying graph. It is meant to
+ * be compiled once per operation and then queried many times.</p>
+ *
+ * <p>Only sequences of simple or inverted links are supported. Use
+ * {@link #isCompilable(String, PrefixMapping)} to check a pattern first.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class AdjacencySnapshot {
+
+    /**
+     * the graph from which this snapshot was compiled. Weakly referenced, so
+     * that caches of snapshots by graph do not keep the graph alive.
+     */
+    private WeakReference<Graph> graph;
+
+    /**
+     * the pattern from which this snapshot was compiled.
+     */
+    private String pattern;
+
+    /**
+     * maps graph nodes to their int IDs.
+     */
+    private Map<Node,Integer> index = new HashMap<Node, Integer>();
+
+    /**
+     * maps int IDs back to graph nodes.
+     */
+    private Node[] nodes;
+
+    /**
+     * CSR row offsets: The neighbours of node <code>i</code> are stored in
+     * <code>targets[offsets[i]]</code> to <code>targets[offsets[i+1]-1]</code>.
+     */
+    private int[] offsets;
+
+    /**
+     * CSR column array.
+     */
+    private int[] targets;
+
+    private AdjacencySnapshot(Graph graph, String pattern) {
+        this.graph = new WeakReference<Graph>(graph);
+        this.pattern = pattern;
+    }
+
+    /**
+     * Checks whether the given path pattern can be compiled into a snapshot.
+     * @param pattern a SPARQL property path.
+     * @param prefixes prefix mappings to resolve qnames in the pattern.
+     * @return true if the pattern consists only of sequences of simple or inverted links.
+     */
+    public static boolean isCompilable(String pattern, PrefixMapping prefixes) {
+        try {
+            flatten(PathParser.parse(pattern, prefixes), false, new ArrayList<Step>());
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Compiles the given path pattern into an adjacency snapshot.
+     *
+     * @param graph the graph to evaluate the pattern against.
+     * @param pattern a SPARQL property path, e.g.
+     * "^&lt;http://llama.mshri.on.ca/lore-interaction.owl#hasParticipant&gt;/&lt;http://llama.mshri.on.ca/lore-interaction.owl#hasParticipant&gt;"
+     * @param prefixes prefix mappings to resolve qnames in the pattern.
+     * @return the compiled snapshot.
+     * @throws IllegalArgumentException if the pattern contains unsupported path elements.
+     */
+    public static AdjacencySnapshot compile(Graph graph, String pattern, PrefixMapping prefixes) {
+
+        List<Step> steps = new ArrayList<Step>();
+        try {
+            flatten(PathParser.parse(pattern, prefixes), false, steps);
+        } catch (UnsupportedOperationException e) {
+            throw new IllegalArgumentException("Unsupported path pattern: "+pattern, e);
+        }
+
+        AdjacencySnapshot snapshot = new AdjacencySnapshot(graph, pattern);
+        snapshot.build(graph, steps);
+        return snapshot;
+    }
+
+    /**
+     * breaks a path down into a list of single directed steps.
+     */
+    private static void flatten(Path path, boolean inverse, List<Step> steps) {
+        if (path instanceof P_Link) {
+            steps.add(new Step(((P_Link)path).getNode(), inverse));
+        } else if (path instanceof P_Inverse) {
+            flatten(((P_Inverse)path).getSubPath(), !inverse, steps);
+        } else if (path instanceof P_Seq) {
+            P_Seq seq = (P_Seq) path;
+            //an inverted sequence is traversed backwards
+            if (inverse) {
+                flatten(seq.getRight(), true, steps);
+                flatten(seq.getLeft(), true, steps);
+            } else {
+                flatten(seq.getLeft(), false, steps);
+                flatten(seq.getRight(), false, steps);
+            }
+        } else {
+            throw new UnsupportedOperationException("Unsupported path element: "+path);
+        }
+    }
+
+    /**
+     * evaluates the given steps against the graph and fills the CSR arrays.
+     */
+    private void build(Graph graph, List<Step> steps) {
+
+        //index each step as a map from input node to output nodes.
+        List<Map<Node,List<Node>>> stepMaps = new ArrayList<Map<Node,List<Node>>>();
+        for (Step step : steps) {
+            stepMaps.add(step.index(graph));
+        }
+
+        List<Node> nodeList = new ArrayList<Node>();
+        List<int[]> rows = new ArrayList<int[]>();
+
+        //every input node of the first step is a potential source node
+        for (Node source : stepMaps.get(0).keySet()) {
+
+            //walk the steps to find all end points for this source.
+            Set<Node> frontier = new LinkedHashSet<Node>();
+            frontier.add(source);
+            for (Map<Node,List<Node>> stepMap : stepMaps) {
+                Set<Node> next = new LinkedHashSet<Node>();
+                for (Node n : frontier) {
+                    List<Node> out = stepMap.get(n);
+                    if (out != null) {
+                        next.addAll(out);
+                    }
+                }
+                frontier = next;
+            }
+            //a node is never its own neighbour
+            frontier.remove(source);
+
+            int sourceId = register(source, nodeList, rows);
+            int[] row = new int[frontier.size()];
+            int i = 0;
+            for (Node n : frontier) {
+                row[i++] = register(n, nodeList, rows);
+            }
+            rows.set(sourceId, row);
+        }
+
+        //flatten rows into CSR format
+        nodes = nodeList.toArray(new Node[nodeList.size()]);
+        offsets = new int[nodes.length+1];
+        for (int i = 0; i < nodes.length; i++) {
+            offsets[i+1] = offsets[i] + rows.get(i).length;
+        }
+        targets = new int[offsets[nodes.length]];
+        for (int i = 0; i < nodes.length; i++) {
+            int[] row = rows.get(i);
+            System.arraycopy(row, 0, targets, offsets[i], row.length);
+            //sorted rows make for better memory locality during traversal
+            Arrays.sort(targets, offsets[i], offsets[i+1]);
+        }
+
+    }
+
+    /**
+     * assigns an id to the node if it doesn't have one yet.
+     */
+    private int register(Node n, List<Node> nodeList, List<int[]> rows) {
+        Integer id = index.get(n);
+        if (id == null) {
+            id = nodeList.size();
+            index.put(n, id);
+            nodeList.add(n);
+            rows.add(new int[0]);
+        }
+        return id;
+    }
+
+    /**
+     * @return the graph from which this snapshot was compiled, or null if it
+     * has been garbage collected.
+     */
+    public Graph getGraph() {
+        return graph.get();
+    }
+
+    /**
+     * @return the pattern from which this snapshot was compiled.
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return the number of nodes in the snapshot.
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * @return the number of (directed) edges in the snapshot.
+     */
+    public int numEdges() {
+        return targets.length;
+    }
+
+    /**
+     * @param n a graph node
+     * @return the id of the node in this snapshot or -1 if it has no edges.
+     */
+    public int indexOf(Node n) {
+        Integer id = index.get(n);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id a node id.
+     * @return the graph node with that id.
+     */
+    public Node nodeAt(int id) {
+        return nodes[id];
+    }
+
+    /**
+     * @param id a node id
+     * @return the number of neighbours of the node.
+     */
+    public int degree(int id) {
+        return offsets[id+1] - offsets[id];
+    }
+
+    /**
+     * @return the CSR row offsets, for use by search structures in this package.
+     */
+    int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * @return the CSR column array, for use by search structures in this package.
+     */
+    int[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * @param id a node id
+     * @return a copy of the neighbour ids of the node.
+     */
+    public int[] neighbours(int id) {
+        int[] out = new int[degree(id)];
+        System.arraycopy(targets, offsets[id], out, 0, out.length);
+        return out;
+    }
+
+    /**
+     * Performs a breadth-first search from the given node to the closest
+     * member of the target set. Forbidden nodes are never traversed, but may
+     * still be reported as a target if they are adjacent to a traversed node.
+     *
+     * @param from the id of the start node.
+     * @param targetSet ids of the target nodes.
+     * @param forbidden ids of the nodes that must not be traversed. May be null.
+     * @return the ids of the nodes on the path, starting with <code>from</code> and
+     * ending with the target; or null if no target is reachable.
+     */
+    public int[] shortestPath(int from, BitSet targetSet, BitSet forbidden) {
+
+        if (targetSet.get(from)) {
+            return new int[]{from};
+        }
+
+        BitSet visited = new BitSet(nodes.length);
+        if (forbidden != null) {
+            visited.or(forbidden);
+        }
+        visited.set(from);
+
+        int[] pre = new int[nodes.length];
+        int[] queue = new int[nodes.length];
+        int head = 0, tail = 0;
+        queue[tail++] = from;
+        pre[from] = -1;
+
+        while (head < tail) {
+            int curr = queue[head++];
+            for (int j = offsets[curr]; j < offsets[curr+1]; j++) {
+                int next = targets[j];
+                if (targetSet.get(next)) {
+                    pre[next] = curr;
+                    return trace(pre, next);
+                } else if (!visited.get(next)) {
+                    visited.set(next);
+                    pre[next] = curr;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * traces back a path through the predecessor array.
+     */
+    private int[] trace(int[] pre, int end) {
+        int length = 1;
+        for (int i = end; pre[i] != -1; i = pre[i]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int i = end, j = length-1; j >= 0; i = pre[i], j--) {
+            path[j] = i;
+        }
+        return path;
+    }
+
+    /**
+     * A single directed step in a path pattern.
+     */
+    private static class Step {
+
+        private Node predicate;
+
+        private boolean inverse;
+
+        Step(Node predicate, boolean inverse) {
+            this.predicate = predicate;
+            this.inverse = inverse;
+        }
+
+        /**
+         * @return a map from the input node to the output nodes of this step.
+         */
+        Map<Node,List<Node>> index(Graph graph) {
+            Map<Node,List<Node>> map = new HashMap<Node, List<Node>>();
+            ExtendedIterator<Triple> it = graph.find(Node.ANY, predicate, Node.ANY);
+            try {
+                while (it.hasNext()) {
+                    Triple t = it.next();
+                    Node in = inverse ? t.getObject() : t.getSubject();
+                    Node out = inverse ? t.getSubject() : t.getObject();
+                    List<Node> list = map.get(in);
+                    if (list == null) {
+                        list = new ArrayList<Node>(2);
+                        map.put(in, list);
+                    }
+                    list.add(out);
+                }
+            } finally {
+                it.close();
+            }
+            return map;
+        }
+    }
+
+}
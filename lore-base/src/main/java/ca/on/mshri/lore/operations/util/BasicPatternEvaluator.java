@@ -0,0 +1,385 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.path.P_Inverse;
+import com.hp.hpl.jena.sparql.path.P_Link;
+import com.hp.hpl.jena.sparql.path.Path;
+import com.hp.hpl.jena.sparql.syntax.Element;
+import com.hp.hpl.jena.sparql.syntax.ElementGroup;
+import com.hp.hpl.jena.sparql.syntax.ElementPathBlock;
+import com.hp.hpl.jena.sparql.syntax.ElementTriplesBlock;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.NiceIterator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <p>Evaluates simple SELECT queries directly against a graph, bypassing the
+ * SPARQL engine. Only queries whose pattern is a plain conjunction of triple
+ * patterns qualify; the only path expressions allowed are single links and their
+ * inverse (<code>^p</code>). No filters, optionals, unions, ordering or slicing.</p>
+ *
+ * <p>The pattern is matched by backtracking over <code>Graph.find()</code>,
+ * always continuing with the triple pattern that has the most bound positions.
+ * Solutions can be collected in a list or streamed.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class BasicPatternEvaluator {
+
+    /**
+     * the triple patterns.
+     */
+    private List<Triple> patterns;
+
+    private boolean distinct;
+
+    private BasicPatternEvaluator(List<Triple> patterns, boolean distinct) {
+        this.patterns = patterns;
+        this.distinct = distinct;
+    }
+
+    /**
+     * Compiles the query into an evaluator.
+     * @param query a parsed query
+     * @return the evaluator, or <code>null</code> if the query is too complex
+     * to be evaluated directly.
+     */
+    public static BasicPatternEvaluator compile(Query query) {
+
+        if (!query.isSelectType() || query.hasOrderBy() || query.hasGroupBy()
+                || query.hasHaving() || query.hasAggregators()
+                || query.hasLimit() || query.hasOffset()
+                || !query.getProject().getExprs().isEmpty()) {
+            return null;
+        }
+
+        Element element = query.getQueryPattern();
+        if (!(element instanceof ElementGroup)) {
+            return null;
+        }
+
+        List<Triple> patterns = new ArrayList<Triple>();
+        for (Element sub : ((ElementGroup)element).getElements()) {
+            if (sub instanceof ElementTriplesBlock) {
+                Iterator<Triple> it = ((ElementTriplesBlock)sub).patternElts();
+                while (it.hasNext()) {
+                    Triple t = it.next();
+                    if (!isSimple(t.getSubject()) || !isSimple(t.getPredicate())
+                            || !isSimple(t.getObject())) {
+                        return null;
+                    }
+                    patterns.add(t);
+                }
+            } else if (sub instanceof ElementPathBlock) {
+                Iterator<TriplePath> it = ((ElementPathBlock)sub).patternElts();
+                while (it.hasNext()) {
+                    Triple t = toTriple(it.next());
+                    if (t == null) {
+                        return null;
+                    }
+                    patterns.add(t);
+                }
+            } else {
+                return null;
+            }
+        }
+
+        if (patterns.isEmpty()) {
+            return null;
+        }
+
+        return new BasicPatternEvaluator(patterns, query.isDistinct() || query.isReduced());
+    }
+
+    /**
+     * converts a triple path into a plain triple pattern if possible.
+     */
+    private static Triple toTriple(TriplePath tp) {
+
+        Node s = tp.getSubject(), o = tp.getObject();
+        if (!isSimple(s) || !isSimple(o)) {
+            return null;
+        }
+        if (tp.isTriple()) {
+            Triple t = tp.asTriple();
+            return isSimple(t.getPredicate()) ? t : null;
+        }
+
+        Path path = tp.getPath();
+        if (path instanceof P_Link) {
+            return Triple.create(s, ((P_Link)path).getNode(), o);
+        }
+        if (path instanceof P_Inverse && ((P_Inverse)path).getSubPath() instanceof P_Link) {
+            return Triple.create(o, ((P_Link)((P_Inverse)path).getSubPath()).getNode(), s);
+        }
+        return null;
+    }
+
+    /**
+     * only URIs, literals and named variables are supported.
+     */
+    private static boolean isSimple(Node n) {
+        return n != null && (n.isURI() || n.isLiteral()
+                || (Var.isVar(n) && !Var.isBlankNodeVar(n)));
+    }
+
+    /**
+     * Evaluates the pattern.
+     * @param graph the graph to match against.
+     * @param bindings initial variable bindings by variable name.
+     * @param key the name of the variable whose values should be returned.
+     * @return the values of the key variable for each solution, in the order found.
+     * Its time is counted towards the {@link OperationMetrics} of the running 
+     * operations.
+     */
+    public List<Node> evaluate(Graph graph, Map<String,Node> bindings, String key) {
+        List<Node> out = new ArrayList<Node>();
+        Matcher it = new Matcher(graph, bindings, key);
+        try {
+            while (it.hasNext()) {
+                out.add(it.next());
+            }
+        } finally {
+            it.close();
+        }
+        return out;
+    }
+
+    /**
+     * Evaluates the pattern lazily. Solutions are matched as the iterator is
+     * consumed, so only the open <code>Graph.find()</code> iterators along the
+     * current match are held, plus the values seen so far if the query is
+     * <code>DISTINCT</code>. The iterator must be closed if it is not consumed 
+     * entirely. Its time is counted towards the {@link OperationMetrics} of the
+     * running operations once it is closed.
+     * @param graph the graph to match against.
+     * @param bindings initial variable bindings by variable name.
+     * @param key the name of the variable whose values should be returned.
+     * @return an iterator over the values of the key variable for each solution, 
+     * in the order found.
+     */
+    public ExtendedIterator<Node> iterate(Graph graph, Map<String,Node> bindings, String key) {
+        return new Matcher(graph, bindings, key);
+    }
+
+    /**
+     * matches the patterns by backtracking, keeping one open iterator per 
+     * matched pattern.
+     */
+    private class Matcher extends NiceIterator<Node> {
+
+        private final Graph graph;
+
+        private final Map<Node,Node> binding = new HashMap<Node, Node>();
+
+        private final Node key;
+
+        /**
+         * the values returned so far, if the query is distinct.
+         */
+        private final Set<Node> seen;
+
+        /**
+         * whether the patterns are already matched at some depth.
+         */
+        private final boolean[] done;
+
+        /**
+         * the pattern matched at each depth, its open iterator and the 
+         * variables it bound.
+         */
+        private final int[] chosen;
+        private final List<ExtendedIterator<Triple>> open = new ArrayList<ExtendedIterator<Triple>>();
+        private final List<List<Node>> added = new ArrayList<List<Node>>();
+
+        private Node next;
+
+        private boolean finished = false;
+
+        private long nanos = 0;
+
+        Matcher(Graph graph, Map<String,Node> bindings, String key) {
+            this.graph = graph;
+            for (Map.Entry<String,Node> entry : bindings.entrySet()) {
+                binding.put(Var.alloc(entry.getKey()), entry.getValue());
+            }
+            this.key = Var.alloc(key);
+            this.seen = distinct ? new HashSet<Node>() : null;
+            this.done = new boolean[patterns.size()];
+            this.chosen = new int[patterns.size()];
+            descend();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !finished) {
+                long t0 = System.nanoTime();
+                next = advance();
+                nanos += System.nanoTime() - t0;
+                if (next == null) {
+                    close();
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Node next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node out = next;
+            next = null;
+            return out;
+        }
+
+        /**
+         * opens an iterator for the most selective of the remaining patterns.
+         */
+        private void descend() {
+            int best = -1, bestBound = -1;
+            for (int i = 0; i < patterns.size(); i++) {
+                if (!done[i]) {
+                    int bound = numBound(patterns.get(i), binding);
+                    if (bound > bestBound) {
+                        best = i;
+                        bestBound = bound;
+                    }
+                }
+            }
+
+            Triple pattern = patterns.get(best);
+            done[best] = true;
+            chosen[open.size()] = best;
+            open.add(graph.find(resolve(pattern.getSubject(), binding),
+                    resolve(pattern.getPredicate(), binding),
+                    resolve(pattern.getObject(), binding)));
+            added.add(new ArrayList<Node>(3));
+        }
+
+        /**
+         * removes the bindings made at the deepest level.
+         */
+        private void unbind() {
+            List<Node> vars = added.get(added.size()-1);
+            for (Node var : vars) {
+                binding.remove(var);
+            }
+            vars.clear();
+        }
+
+        /**
+         * backtracks to the next complete match.
+         * @return the value of the key variable, or null if there are no more matches.
+         */
+        private Node advance() {
+            while (!open.isEmpty()) {
+                int depth = open.size()-1;
+                unbind();
+                ExtendedIterator<Triple> it = open.get(depth);
+                if (!it.hasNext()) {
+                    it.close();
+                    open.remove(depth);
+                    added.remove(depth);
+                    done[chosen[depth]] = false;
+                    continue;
+                }
+                Triple t = it.next();
+                Triple pattern = patterns.get(chosen[depth]);
+                List<Node> vars = added.get(depth);
+                if (bind(pattern.getSubject(), t.getSubject(), binding, vars)
+                        && bind(pattern.getPredicate(), t.getPredicate(), binding, vars)
+                        && bind(pattern.getObject(), t.getObject(), binding, vars)) {
+                    if (depth+1 < patterns.size()) {
+                        descend();
+                    } else {
+                        Node value = binding.get(key);
+                        if (value != null && (seen == null || seen.add(value))) {
+                            return value;
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            for (ExtendedIterator<Triple> it : open) {
+                it.close();
+            }
+            open.clear();
+            OperationMetrics.recordQuery(nanos);
+        }
+    }
+
+    private static int numBound(Triple t, Map<Node,Node> binding) {
+        int n = 0;
+        if (resolve(t.getSubject(), binding) != Node.ANY) n++;
+        if (resolve(t.getPredicate(), binding) != Node.ANY) n++;
+        if (resolve(t.getObject(), binding) != Node.ANY) n++;
+        return n;
+    }
+
+    /**
+     * replaces bound variables by their values and unbound ones by ANY.
+     */
+    private static Node resolve(Node n, Map<Node,Node> binding) {
+        if (Var.isVar(n)) {
+            Node value = binding.get(n);
+            return value == null ? Node.ANY : value;
+        }
+        return n;
+    }
+
+    /**
+     * binds the variable to the value if necessary.
+     * @return false if the variable is already bound to a different value,
+     * which can happen if it occurs twice in the same pattern.
+     */
+    private static boolean bind(Node n, Node value, Map<Node,Node> binding, List<Node> added) {
+        if (!Var.isVar(n)) {
+            return true;
+        }
+        Node current = binding.get(n);
+        if (current == null) {
+            binding.put(n, value);
+            added.add(n);
+            return true;
+        }
+        return current.equals(value);
+    }
+
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.TripleMatch;
+import com.hp.hpl.jena.graph.impl.GraphBase;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.NiceIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>A read-only, in-memory copy of a graph, for operations that only read.
+ * Each node is stored once in a dictionary and replaced by an int ID. The
+ * triples are kept as three int arrays sorted in SPO order, plus two index
+ * arrays that list them in POS and OSP order. Every find is answered by a
+ * binary search for the range of triples that match the concrete nodes of the
+ * pattern, so no triples are filtered one by one. A triple takes 20 bytes
+ * plus its share of the dictionary.</p>
+ *
+ * <p>The copy does not track changes to the source graph. Adding or deleting
+ * triples throws an exception. Like the in-memory store graphs, literals are
+ * matched by value: the literals are also indexed by their indexing value,
+ * and a literal in a pattern stands for every literal of the same value (e.g.
+ * <code>"07"^^xsd:int</code> for a stored <code>7</code>).</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class CompactGraph extends GraphBase {
+
+    private static final int[] WILDCARD = {-1}, NONE = {};
+
+    /**
+     * maps nodes to their IDs.
+     */
+    private final Map<Node,Integer> ids = new HashMap<Node, Integer>();
+
+    /**
+     * maps the indexing values of literals to the IDs of the literals.
+     */
+    private final Map<Object,int[]> values = new HashMap<Object, int[]>();
+
+    /**
+     * maps IDs back to nodes.
+     */
+    private final Node[] nodes;
+
+    /**
+     * the triples in SPO order.
+     */
+    private final int[] s, p, o;
+
+    private final Order spo, pos, osp;
+
+    /**
+     * Copies a graph.
+     * @param source the graph to copy.
+     */
+    public CompactGraph(Graph source) {
+
+        List<Node> nodeList = new ArrayList<Node>();
+        IntList ss = new IntList(), ps = new IntList(), os = new IntList();
+        ExtendedIterator<Triple> it = source.find(Node.ANY, Node.ANY, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                ss.add(register(t.getSubject(), nodeList));
+                ps.add(register(t.getPredicate(), nodeList));
+                os.add(register(t.getObject(), nodeList));
+            }
+        } finally {
+            it.close();
+        }
+        nodes = nodeList.toArray(new Node[nodeList.size()]);
+
+        //sort in SPO order and drop duplicates
+        int[] perm = sort(identity(ss.n), ss.a, ps.a, os.a);
+        IntList s1 = new IntList(), p1 = new IntList(), o1 = new IntList();
+        for (int i = 0; i < perm.length; i++) {
+            int j = perm[i];
+            int last = s1.n - 1;
+            if (last >= 0 && s1.a[last] == ss.a[j] && p1.a[last] == ps.a[j] && o1.a[last] == os.a[j]) {
+                continue;
+            }
+            s1.add(ss.a[j]);
+            p1.add(ps.a[j]);
+            o1.add(os.a[j]);
+        }
+        s = Arrays.copyOf(s1.a, s1.n);
+        p = Arrays.copyOf(p1.a, p1.n);
+        o = Arrays.copyOf(o1.a, o1.n);
+
+        spo = new Order(null, s, p, o);
+        pos = new Order(sort(identity(s.length), p, o, s), p, o, s);
+        osp = new Order(sort(identity(s.length), o, s, p), o, s, p);
+
+        Logger.getLogger(CompactGraph.class.getName()).log(Level.INFO,
+                "Compact graph holds "+s.length+" triples over "+nodes.length+" nodes.");
+    }
+
+    private int register(Node n, List<Node> nodeList) {
+        Integer id = ids.get(n);
+        if (id == null) {
+            id = nodeList.size();
+            nodeList.add(n);
+            ids.put(n, id);
+            if (n.isLiteral()) {
+                int[] same = values.get(n.getIndexingValue());
+                same = same == null ? new int[1] : Arrays.copyOf(same, same.length + 1);
+                same[same.length - 1] = id;
+                values.put(n.getIndexingValue(), same);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * @return the number of distinct nodes.
+     */
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    @Override
+    protected ExtendedIterator<Triple> graphBaseFind(TripleMatch m) {
+
+        int[] is = ids(m.getMatchSubject()), ip = ids(m.getMatchPredicate()), io = ids(m.getMatchObject());
+        if (is.length == 1 && ip.length == 1 && io.length == 1) {
+            return find(is[0], ip[0], io[0]);
+        }
+        ExtendedIterator<Triple> out = NiceIterator.emptyIterator();
+        for (int s1 : is) {
+            for (int p1 : ip) {
+                for (int o1 : io) {
+                    out = out.andThen(find(s1, p1, o1));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * finds the triples matching the given IDs, where -1 is a wildcard.
+     */
+    private ExtendedIterator<Triple> find(int is, int ip, int io) {
+
+        //pick the order in which the concrete nodes form a prefix
+        if (is >= 0) {
+            if (ip >= 0) {
+                return spo.find(io >= 0 ? 3 : 2, is, ip, io);
+            } else if (io >= 0) {
+                return osp.find(2, io, is, -1);
+            } else {
+                return spo.find(1, is, -1, -1);
+            }
+        } else if (ip >= 0) {
+            return pos.find(io >= 0 ? 2 : 1, ip, io, -1);
+        } else if (io >= 0) {
+            return osp.find(1, io, -1, -1);
+        } else {
+            return spo.find(0, -1, -1, -1);
+        }
+    }
+
+    @Override
+    protected boolean graphBaseContains(Triple t) {
+        if (!t.isConcrete()) {
+            return super.graphBaseContains(t);
+        }
+        for (int is : ids(t.getSubject())) {
+            for (int ip : ids(t.getPredicate())) {
+                for (int io : ids(t.getObject())) {
+                    int[] range = spo.range(3, is, ip, io);
+                    if (range[0] < range[1]) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected int graphBaseSize() {
+        return s.length;
+    }
+
+    /**
+     * @return the IDs of the nodes matching a pattern node: {-1} for a
+     * wildcard, the literals of the same value for a literal, otherwise the
+     * node's own ID. Empty if nothing matches.
+     */
+    private int[] ids(Node n) {
+        if (n == null || !n.isConcrete()) {
+            return WILDCARD;
+        }
+        if (n.isLiteral()) {
+            int[] same = values.get(n.getIndexingValue());
+            if (same == null) {
+                return NONE;
+            }
+            int k = 0;
+            int[] out = new int[same.length];
+            for (int id : same) {
+                if (nodes[id].sameValueAs(n)) {
+                    out[k++] = id;
+                }
+            }
+            return k == out.length ? out : Arrays.copyOf(out, k);
+        }
+        Integer id = ids.get(n);
+        return id == null ? NONE : new int[]{id};
+    }
+
+    private static int[] identity(int n) {
+        int[] perm = new int[n];
+        for (int i = 0; i < n; i++) {
+            perm[i] = i;
+        }
+        return perm;
+    }
+
+    /**
+     * sorts a permutation of triple positions by the given key arrays, in order.
+     */
+    private static int[] sort(int[] perm, int[] a, int[] b, int[] c) {
+        int[] tmp = new int[perm.length];
+        mergeSort(perm, tmp, 0, perm.length, a, b, c);
+        return perm;
+    }
+
+    private static void mergeSort(int[] perm, int[] tmp, int from, int to, int[] a, int[] b, int[] c) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(perm, tmp, from, mid, a, b, c);
+        mergeSort(perm, tmp, mid, to, a, b, c);
+        if (compare(perm[mid - 1], perm[mid], a, b, c) <= 0) {
+            return;
+        }
+        System.arraycopy(perm, from, tmp, from, to - from);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            perm[k++] = compare(tmp[i], tmp[j], a, b, c) <= 0 ? tmp[i++] : tmp[j++];
+        }
+        while (i < mid) {
+            perm[k++] = tmp[i++];
+        }
+        while (j < to) {
+            perm[k++] = tmp[j++];
+        }
+    }
+
+    private static int compare(int x, int y, int[] a, int[] b, int[] c) {
+        if (a[x] != a[y]) {
+            return a[x] < a[y] ? -1 : 1;
+        }
+        if (b[x] != b[y]) {
+            return b[x] < b[y] ? -1 : 1;
+        }
+        return c[x] < c[y] ? -1 : (c[x] == c[y] ? 0 : 1);
+    }
+
+    /**
+     * the triples sorted by three of their components.
+     */
+    private class Order {
+
+        /**
+         * triple positions in this order, or null for SPO order.
+         */
+        private final int[] perm;
+
+        /**
+         * the components, most significant first.
+         */
+        private final int[] a, b, c;
+
+        Order(int[] perm, int[] a, int[] b, int[] c) {
+            this.perm = perm;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+        }
+
+        int at(int i) {
+            return perm == null ? i : perm[i];
+        }
+
+        /**
+         * compares the triple at position i with a key prefix of length k.
+         */
+        int compare(int i, int k, int ka, int kb, int kc) {
+            int t = at(i);
+            if (k > 0 && a[t] != ka) {
+                return a[t] < ka ? -1 : 1;
+            }
+            if (k > 1 && b[t] != kb) {
+                return b[t] < kb ? -1 : 1;
+            }
+            if (k > 2 && c[t] != kc) {
+                return c[t] < kc ? -1 : 1;
+            }
+            return 0;
+        }
+
+        /**
+         * @return the first and last+1 positions matching the key prefix.
+         */
+        int[] range(int k, int ka, int kb, int kc) {
+            int lo = 0, hi = s.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(mid, k, ka, kb, kc) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            int start = lo;
+            hi = s.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(mid, k, ka, kb, kc) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return new int[]{start, lo};
+        }
+
+        ExtendedIterator<Triple> find(int k, int ka, int kb, int kc) {
+            final int[] range = range(k, ka, kb, kc);
+            return new NiceIterator<Triple>() {
+
+                private int i = range[0];
+
+                @Override
+                public boolean hasNext() {
+                    return i < range[1];
+                }
+
+                @Override
+                public Triple next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int t = at(i++);
+                    return Triple.create(nodes[s[t]], nodes[p[t]], nodes[o[t]]);
+                }
+            };
+        }
+    }
+
+    /**
+     * a growable int array.
+     */
+    private static class IntList {
+
+        private int[] a = new int[1024];
+
+        private int n = 0;
+
+        void add(int v) {
+            if (n == a.length) {
+                a = Arrays.copyOf(a, n * 2);
+            }
+            a[n++] = v;
+        }
+    }
+
+}
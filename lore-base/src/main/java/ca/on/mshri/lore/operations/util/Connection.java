@@ -16,10 +16,8 @@
  */
 package ca.on.mshri.lore.operations.util;
 
-import com.hp.hpl.jena.query.QueryExecution;
-import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.QueryFactory;
 import com.hp.hpl.jena.query.QuerySolution;
-import com.hp.hpl.jena.query.ResultSet;
 import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.hp.hpl.jena.rdf.model.Resource;
@@ -130,10 +128,9 @@ public class Connection {
         
         //find incoming neighbours via SPARQL call. (unfortunately, there is no
         //API function available for this)
-        QueryExecution qexec = QueryExecutionFactory
-                .create("SELECT ?s ?p WHERE {?s ?p <"+r.getURI()+">}",r.getModel());
+        SolutionIterator result = new SolutionIterator(r.getModel(), 
+                QueryFactory.create("SELECT ?s ?p WHERE {?s ?p <"+r.getURI()+">}"), null);
         try {
-            ResultSet result = qexec.execSelect();
             while (result.hasNext()) {
                 QuerySolution sol = result.next();
                 RDFNode subject = sol.get("s");
@@ -141,7 +138,7 @@ public class Connection {
                 neighbours.add(new Connection(pred, subject, false));
             }
         } finally {
-            qexec.close();
+            result.close();
         }
         
         return neighbours;
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import java.util.Arrays;
+
+/**
+ * A disjoint-set forest over the integers 0..n-1, with union by rank and path
+ * halving. Elements are added with {@link #add()}, so the number of elements
+ * need not be known in advance. A sequence of m operations on n elements takes
+ * near-linear time.
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class DisjointSets {
+
+    private int[] parent;
+
+    private byte[] rank;
+
+    private int size = 0;
+
+    public DisjointSets() {
+        this(1024);
+    }
+
+    /**
+     * @param capacity the expected number of elements.
+     */
+    public DisjointSets(int capacity) {
+        parent = new int[Math.max(16, capacity)];
+        rank = new byte[parent.length];
+    }
+
+    /**
+     * Adds a new element in a set of its own.
+     * @return the new element.
+     */
+    public int add() {
+        if (size == parent.length) {
+            parent = Arrays.copyOf(parent, parent.length * 2);
+            rank = Arrays.copyOf(rank, rank.length * 2);
+        }
+        parent[size] = size;
+        return size++;
+    }
+
+    /**
+     * @return the number of elements.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the representative of an element's set.
+     * @param x an element
+     * @return the representative.
+     */
+    public int find(int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * Joins the sets of two elements.
+     * @param a an element
+     * @param b another element
+     * @return the representative of the joined set.
+     */
+    public int union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) {
+            return ra;
+        }
+        if (rank[ra] < rank[rb]) {
+            int tmp = ra;
+            ra = rb;
+            rb = tmp;
+        }
+        parent[rb] = ra;
+        if (rank[ra] == rank[rb]) {
+            rank[ra]++;
+        }
+        return ra;
+    }
+
+}
@@ -0,0 +1,471 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * <p>Answers repeated distance queries on a static, undirected
+ * {@link AdjacencySnapshot}, such as an interactome. On construction a number
+ * of landmark nodes (those with the highest degree) are chosen and the BFS
+ * distances from each landmark to every node are stored as one byte per node.</p>
+ *
+ * <p>By the triangle inequality, the landmark distances give a lower bound
+ * <code>|d(L,a) - d(L,t)|</code> and an upper bound <code>d(L,a) + d(L,t)</code>
+ * for the distance between any two nodes. {@link #lowerBound(int, BitSet)} and
+ * {@link #upperBound(int, BitSet)} return these bounds without any search.
+ * {@link #distance(int, BitSet, BitSet)} returns exact distances. When both
+ * bounds agree it answers straight away. Otherwise it runs a bidirectional
+ * breadth-first search that expands the smaller frontier, one level at a time.
+ * Nodes whose landmark lower bound shows that they cannot lie on a path shorter
+ * than the upper bound are not expanded, and the search stops once the
+ * frontiers are too far apart to improve on the upper bound.</p>
+ *
+ * <p>Forbidden nodes do not invalidate the lower bound, since they can only make
+ * paths longer. The upper bound through a landmark is only used if no forbidden
+ * node can lie on a shortest path from the landmark to either end, as judged by
+ * the lower bound between the forbidden node and that end.</p>
+ *
+ * <p>Like the snapshot, the oracle does not track changes to the graph.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class DistanceOracle {
+
+    /**
+     * returned by the bound methods if the nodes are not connected.
+     */
+    public static final int INFINITY = Integer.MAX_VALUE;
+
+    /**
+     * stored landmark distance for unreachable nodes.
+     */
+    private static final int UNREACHABLE = 0xFF;
+
+    /**
+     * stored landmark distance for nodes too far away to be stored in a byte.
+     */
+    private static final int TOO_FAR = 0xFE;
+
+    private final AdjacencySnapshot snapshot;
+
+    private final int[] offsets, targets;
+
+    /**
+     * the landmark node ids.
+     */
+    private final int[] landmarks;
+
+    /**
+     * distances from each landmark to each node, as unsigned bytes.
+     */
+    private final byte[][] distances;
+
+    /**
+     * Builds an oracle over the given snapshot.
+     * @param snapshot an adjacency snapshot with symmetric edges, e.g. that of
+     * <code>^ia:hasParticipant/ia:hasParticipant</code>.
+     * @param numLandmarks the number of landmarks to use.
+     * @throws IllegalArgumentException if the snapshot is not symmetric.
+     */
+    public DistanceOracle(AdjacencySnapshot snapshot, int numLandmarks) {
+        this.snapshot = snapshot;
+        this.offsets = snapshot.getOffsets();
+        this.targets = snapshot.getTargets();
+
+        if (!isSymmetric()) {
+            throw new IllegalArgumentException("Distance oracles require symmetric edges. "
+                    + "The pattern "+snapshot.getPattern()+" is directed.");
+        }
+
+        landmarks = selectLandmarks(Math.min(numLandmarks, snapshot.size()));
+        distances = new byte[landmarks.length][];
+        for (int l = 0; l < landmarks.length; l++) {
+            distances[l] = bfs(landmarks[l]);
+        }
+    }
+
+    /**
+     * @return the snapshot on which this oracle operates.
+     */
+    public AdjacencySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * checks that every edge has its reverse edge. Rows are sorted.
+     */
+    private boolean isSymmetric() {
+        for (int u = 0; u < snapshot.size(); u++) {
+            for (int j = offsets[u]; j < offsets[u+1]; j++) {
+                int v = targets[j];
+                if (Arrays.binarySearch(targets, offsets[v], offsets[v+1], u) < 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * picks the nodes with the highest degree.
+     */
+    private int[] selectLandmarks(int k) {
+        Integer[] ids = new Integer[snapshot.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        Arrays.sort(ids, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int da = snapshot.degree(a), db = snapshot.degree(b);
+                return da != db ? db - da : a - b;
+            }
+        });
+        int[] out = new int[k];
+        for (int i = 0; i < k; i++) {
+            out[i] = ids[i];
+        }
+        return out;
+    }
+
+    /**
+     * single source breadth first search.
+     */
+    private byte[] bfs(int source) {
+        byte[] dist = new byte[snapshot.size()];
+        Arrays.fill(dist, (byte) UNREACHABLE);
+        int[] queue = new int[snapshot.size()];
+        int[] level = new int[snapshot.size()];
+        int head = 0, tail = 0;
+        queue[tail++] = source;
+        dist[source] = 0;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int j = offsets[u]; j < offsets[u+1]; j++) {
+                int v = targets[j];
+                if ((dist[v] & 0xFF) == UNREACHABLE) {
+                    level[v] = level[u] + 1;
+                    dist[v] = (byte) Math.min(level[v], TOO_FAR);
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * @param l landmark index
+     * @param v node id
+     * @return the stored distance.
+     */
+    private int landmarkDistance(int l, int v) {
+        return distances[l][v] & 0xFF;
+    }
+
+    /**
+     * A lower bound for the distance from the given node to the closest member
+     * of the target set. Computed from the landmark distances only.
+     * @param from a node id
+     * @param targetSet target node ids
+     * @return the lower bound, or {@link #INFINITY} if no target is connected to the node.
+     */
+    public int lowerBound(int from, BitSet targetSet) {
+        if (targetSet.get(from)) {
+            return 0;
+        }
+        int bound = 0;
+        for (int l = 0; l < landmarks.length; l++) {
+            int da = landmarkDistance(l, from);
+            int best = INFINITY;
+            for (int t = targetSet.nextSetBit(0); t >= 0; t = targetSet.nextSetBit(t+1)) {
+                int diff = difference(da, landmarkDistance(l, t));
+                if (diff < best) {
+                    best = diff;
+                    if (best == 0) {
+                        break;
+                    }
+                }
+            }
+            bound = Math.max(bound, best);
+        }
+        return targetSet.isEmpty() ? INFINITY : Math.max(bound, 1);
+    }
+
+    /**
+     * the landmark lower bound between two nodes, from their stored distances
+     * to one landmark.
+     */
+    private static int difference(int da, int db) {
+        if (da == UNREACHABLE || db == UNREACHABLE) {
+            //unknown if both are unreachable, disconnected if only one is
+            return da == db ? 0 : INFINITY;
+        } else if (da == TOO_FAR || db == TOO_FAR) {
+            return 0;
+        } else {
+            return Math.abs(da - db);
+        }
+    }
+
+    /**
+     * the lower bound for the distance between two nodes.
+     */
+    private int lowerBound(int a, int b) {
+        int bound = 0;
+        for (int l = 0; l < landmarks.length; l++) {
+            bound = Math.max(bound, difference(landmarkDistance(l, a), landmarkDistance(l, b)));
+        }
+        return bound;
+    }
+
+    /**
+     * An upper bound for the distance from the given node to the closest member
+     * of the target set, going through one of the landmarks. Computed from the
+     * landmark distances only, so it does not respect forbidden nodes.
+     * @param from a node id
+     * @param targetSet target node ids
+     * @return the upper bound, or {@link #INFINITY} if no landmark connects the node to a target.
+     */
+    public int upperBound(int from, BitSet targetSet) {
+        return upperBound(from, targetSet, null);
+    }
+
+    /**
+     * An upper bound for the distance from the given node to the closest member
+     * of the target set, going through one of the landmarks, that holds when the
+     * forbidden nodes are not traversed. A landmark is skipped if a forbidden node
+     * may lie on a shortest path between the landmark and the start or target.
+     * @param from a node id
+     * @param targetSet target node ids
+     * @param forbidden ids of the nodes that must not be traversed. May be null.
+     * @return the upper bound, or {@link #INFINITY} if no landmark connects the
+     * node to a target around the forbidden nodes.
+     */
+    public int upperBound(int from, BitSet targetSet, BitSet forbidden) {
+        if (targetSet.get(from)) {
+            return 0;
+        }
+        if (forbidden != null && forbidden.isEmpty()) {
+            forbidden = null;
+        }
+        int bound = INFINITY;
+        for (int l = 0; l < landmarks.length; l++) {
+            int da = landmarkDistance(l, from);
+            if (da >= TOO_FAR) {
+                continue;
+            }
+            if (forbidden != null && landmarks[l] != from && 
+                    (forbidden.get(landmarks[l]) || mayCross(l, from, forbidden))) {
+                continue;
+            }
+            for (int t = targetSet.nextSetBit(0); t >= 0; t = targetSet.nextSetBit(t+1)) {
+                int dt = landmarkDistance(l, t);
+                if (dt < TOO_FAR && da + dt < bound
+                        && (forbidden == null || !mayCross(l, t, forbidden))) {
+                    bound = da + dt;
+                }
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * checks whether any forbidden node other than the end node itself may lie
+     * on a shortest path between a landmark and the end node. A node f can only
+     * lie on such a path if d(L,f) + d(f,end) = d(L,end), so it is ruled out if
+     * that sum, with d(f,end) replaced by its lower bound, is larger.
+     */
+    private boolean mayCross(int l, int end, BitSet forbidden) {
+        int dEnd = landmarkDistance(l, end);
+        for (int f = forbidden.nextSetBit(0); f >= 0; f = forbidden.nextSetBit(f+1)) {
+            if (f == end) {
+                continue;
+            }
+            int df = landmarkDistance(l, f);
+            if (df >= dEnd) {
+                //not closer to the landmark, or in a different component
+                continue;
+            }
+            int between = lowerBound(f, end);
+            if (between != INFINITY && df + between <= dEnd) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * For each landmark and each stored distance d, the smallest landmark lower
+     * bound between a node at distance d and any member of the target set.
+     */
+    private int[][] targetBounds(BitSet targetSet) {
+        int[][] out = new int[landmarks.length][UNREACHABLE + 1];
+        boolean[] present = new boolean[UNREACHABLE + 1];
+        for (int l = 0; l < landmarks.length; l++) {
+            Arrays.fill(present, false);
+            for (int t = targetSet.nextSetBit(0); t >= 0; t = targetSet.nextSetBit(t+1)) {
+                present[landmarkDistance(l, t)] = true;
+            }
+            //distance to the nearest present value, sweeping left then right
+            int[] near = out[l];
+            int last = -1;
+            for (int d = 0; d < TOO_FAR; d++) {
+                if (present[d]) {
+                    last = d;
+                }
+                near[d] = last < 0 ? INFINITY : d - last;
+            }
+            last = -1;
+            for (int d = TOO_FAR - 1; d >= 0; d--) {
+                if (present[d]) {
+                    last = d;
+                }
+                if (last >= 0) {
+                    near[d] = Math.min(near[d], last - d);
+                }
+            }
+            boolean reachable = present[TOO_FAR];
+            for (int d = 0; d < TOO_FAR; d++) {
+                reachable |= present[d];
+                if (present[TOO_FAR]) {
+                    near[d] = 0;
+                }
+            }
+            near[TOO_FAR] = reachable ? 0 : INFINITY;
+            near[UNREACHABLE] = present[UNREACHABLE] ? 0 : INFINITY;
+        }
+        return out;
+    }
+
+    /**
+     * the lower bound from a node to the target set, from the table made by
+     * {@link #targetBounds(BitSet)}.
+     */
+    private int targetBound(int[][] bounds, int v) {
+        int bound = 0;
+        for (int l = 0; l < landmarks.length; l++) {
+            bound = Math.max(bound, bounds[l][landmarkDistance(l, v)]);
+        }
+        return bound;
+    }
+
+    /**
+     * The exact length of the shortest path from the given node to the closest
+     * member of the target set. Forbidden nodes are never traversed, but may
+     * still be reached as a target, as in
+     * {@link AdjacencySnapshot#shortestPath(int, BitSet, BitSet)}.
+     * This method is thread-safe.
+     *
+     * @param from the id of the start node.
+     * @param targetSet ids of the target nodes.
+     * @param forbidden ids of the nodes that must not be traversed. May be null.
+     * @return the number of edges on the shortest path, or -1 if no target is reachable.
+     */
+    public int distance(int from, BitSet targetSet, BitSet forbidden) {
+
+        if (targetSet.get(from)) {
+            return 0;
+        }
+        int lower = lowerBound(from, targetSet);
+        if (lower == INFINITY) {
+            return -1;
+        }
+        int upper = upperBound(from, targetSet, forbidden);
+        if (lower == upper) {
+            return lower;
+        }
+        //lower bounds to the targets for pruning the forward search
+        int[][] bounds = upper < INFINITY ? targetBounds(targetSet) : null;
+
+        int n = snapshot.size();
+        //distances from the start and from the target set; -1 means unvisited.
+        int[] distF = new int[n];
+        int[] distB = new int[n];
+        Arrays.fill(distF, -1);
+        Arrays.fill(distB, -1);
+
+        int[] frontF = new int[]{from};
+        int sizeF = 1;
+        distF[from] = 0;
+
+        int[] frontB = new int[targetSet.cardinality()];
+        int sizeB = 0;
+        for (int t = targetSet.nextSetBit(0); t >= 0; t = targetSet.nextSetBit(t+1)) {
+            distB[t] = 0;
+            frontB[sizeB++] = t;
+        }
+
+        int best = INFINITY;
+        int levelF = 0, levelB = 0;
+        while (sizeF > 0 && sizeB > 0) {
+
+            //any path found from here on is longer than the upper bound
+            if (levelF + levelB + 1 > upper) {
+                return upper;
+            }
+
+            //expand the smaller frontier by one full level
+            boolean forward = sizeF <= sizeB;
+            int[] front = forward ? frontF : frontB;
+            int size = forward ? sizeF : sizeB;
+            int[] own = forward ? distF : distB;
+            int[] other = forward ? distB : distF;
+
+            int[] next = new int[Math.max(16, size * 2)];
+            int sizeNext = 0;
+            for (int i = 0; i < size; i++) {
+                int u = front[i];
+                for (int j = offsets[u]; j < offsets[u+1]; j++) {
+                    int v = targets[j];
+                    if (other[v] >= 0) {
+                        best = Math.min(best, own[u] + 1 + other[v]);
+                    } else if (own[v] < 0 && (forbidden == null || !forbidden.get(v))) {
+                        if (bounds != null) {
+                            //prune nodes that cannot be on a path within the upper bound
+                            int rest = forward ? targetBound(bounds, v) : lowerBound(v, from);
+                            if (rest == INFINITY || own[u] + 1 + rest > upper) {
+                                continue;
+                            }
+                        }
+                        own[v] = own[u] + 1;
+                        if (sizeNext == next.length) {
+                            next = Arrays.copyOf(next, sizeNext * 2);
+                        }
+                        next[sizeNext++] = v;
+                    }
+                }
+            }
+
+            if (best < INFINITY) {
+                return best;
+            }
+            if (forward) {
+                frontF = next;
+                sizeF = sizeNext;
+                levelF++;
+            } else {
+                frontB = next;
+                sizeB = sizeNext;
+                levelB++;
+            }
+        }
+        //only reached by pruning if the upper bound is the distance itself
+        return upper < INFINITY ? upper : -1;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Sorts (key, value) records by key, then by value, using a bounded amount of
+ * memory. Records are buffered until the buffer is full, then sorted and
+ * written to a temporary file as a sorted run. {@link #sort()} merges the runs
+ * and streams the records in order. If the buffer never fills up, no files are
+ * written.</p>
+ *
+ * <p>The temporary files are deleted by {@link #close()}.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class ExternalSorter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int maxRecords;
+
+    private List<Record> buffer = new ArrayList<Record>();
+
+    private final List<File> runs = new ArrayList<File>();
+
+    private final List<DataInputStream> open = new ArrayList<DataInputStream>();
+
+    private long size = 0;
+
+    /**
+     * @param maxRecords the number of records to hold in memory.
+     */
+    public ExternalSorter(long maxRecords) {
+        this.maxRecords = (int) Math.max(1, Math.min(maxRecords, Integer.MAX_VALUE - 8));
+    }
+
+    /**
+     * Adds a record.
+     * @param key the key
+     * @param value the value
+     * @throws IOException if a run cannot be written.
+     */
+    public void add(String key, long value) throws IOException {
+        buffer.add(new Record(key, value));
+        size++;
+        if (buffer.size() >= maxRecords) {
+            spill();
+        }
+    }
+
+    /**
+     * @return the number of records added.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the number of runs written to disk.
+     */
+    public int getRuns() {
+        return runs.size();
+    }
+
+    /**
+     * writes the buffer to disk as a sorted run.
+     */
+    private void spill() throws IOException {
+        Collections.sort(buffer);
+        File file = File.createTempFile("lore-sort", ".run");
+        file.deleteOnExit();
+        runs.add(file);
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        try {
+            for (Record r : buffer) {
+                out.writeUTF(r.key);
+                out.writeLong(r.value);
+            }
+        } finally {
+            out.close();
+        }
+        Logger.getLogger(ExternalSorter.class.getName()).log(Level.FINE,
+                "Wrote sorted run of "+buffer.size()+" records to "+file);
+        buffer = new ArrayList<Record>();
+    }
+
+    /**
+     * Returns the records in order. No more records may be added afterwards.
+     * @return a cursor over the sorted records.
+     * @throws IOException if a run cannot be read.
+     */
+    public Cursor sort() throws IOException {
+
+        if (runs.isEmpty()) {
+            Collections.sort(buffer);
+            final Iterator<Record> it = buffer.iterator();
+            return new Cursor() {
+                @Override
+                Record read() {
+                    return it.hasNext() ? it.next() : null;
+                }
+            };
+        }
+
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+        buffer = null;
+        Logger.getLogger(ExternalSorter.class.getName()).log(Level.INFO,
+                "Merging "+runs.size()+" sorted runs of "+size+" records.");
+
+        final PriorityQueue<RunHead> heads = new PriorityQueue<RunHead>();
+        for (File file : runs) {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+            open.add(in);
+            RunHead head = new RunHead(in);
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        return new Cursor() {
+            @Override
+            Record read() throws IOException {
+                RunHead head = heads.poll();
+                if (head == null) {
+                    return null;
+                }
+                Record r = head.current;
+                if (head.advance()) {
+                    heads.add(head);
+                }
+                return r;
+            }
+        };
+    }
+
+    /**
+     * Deletes the temporary files.
+     */
+    public void close() {
+        for (DataInputStream in : open) {
+            try {
+                in.close();
+            } catch (IOException ex) {
+                Logger.getLogger(ExternalSorter.class.getName())
+                        .log(Level.WARNING, "Unable to close stream!", ex);
+            }
+        }
+        open.clear();
+        for (File file : runs) {
+            if (!file.delete()) {
+                Logger.getLogger(ExternalSorter.class.getName())
+                        .log(Level.WARNING, "Unable to delete "+file);
+            }
+        }
+        runs.clear();
+        buffer = null;
+    }
+
+    /**
+     * Steps through the sorted records.
+     */
+    public abstract static class Cursor {
+
+        private Record current;
+
+        /**
+         * @return the next record, or null at the end.
+         */
+        abstract Record read() throws IOException;
+
+        /**
+         * Moves to the next record.
+         * @return false if there are no more records.
+         * @throws IOException if a run cannot be read.
+         */
+        public boolean next() throws IOException {
+            current = read();
+            return current != null;
+        }
+
+        public String getKey() {
+            return current.key;
+        }
+
+        public long getValue() {
+            return current.value;
+        }
+    }
+
+    private static class Record implements Comparable<Record> {
+
+        private final String key;
+
+        private final long value;
+
+        Record(String key, long value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(Record o) {
+            int c = key.compareTo(o.key);
+            if (c != 0) {
+                return c;
+            }
+            return value < o.value ? -1 : (value == o.value ? 0 : 1);
+        }
+    }
+
+    /**
+     * the current record of a run.
+     */
+    private static class RunHead implements Comparable<RunHead> {
+
+        private final DataInputStream in;
+
+        private Record current;
+
+        RunHead(DataInputStream in) {
+            this.in = in;
+        }
+
+        boolean advance() throws IOException {
+            String key;
+            try {
+                key = in.readUTF();
+            } catch (EOFException e) {
+                current = null;
+                return false;
+            }
+            current = new Record(key, in.readLong());
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunHead o) {
+            return current.compareTo(o.current);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+/**
+ * Describes whether an operation writes to the model. Operations that only
+ * read never conflict with each other, so they may run concurrently; every
+ * other pair of operations in a workflow is always executed in the order in 
+ * which they were declared.
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class Footprint {
+
+    /**
+     * whether the operation may write to the model.
+     */
+    private final boolean writes;
+
+    private Footprint(boolean writes) {
+        this.writes = writes;
+    }
+
+    /**
+     * @return a footprint for an operation that may read and write anything.
+     * This is the default for all operations.
+     */
+    public static Footprint mutating() {
+        return new Footprint(true);
+    }
+
+    /**
+     * @return a footprint for an operation that may read anything but never
+     * writes to the model.
+     */
+    public static Footprint readOnly() {
+        return new Footprint(false);
+    }
+
+    /**
+     * @return whether the operation never writes to the model.
+     */
+    public boolean isReadOnly() {
+        return !writes;
+    }
+
+    /**
+     * @param other another footprint
+     * @return whether the two operations must not be reordered or run concurrently.
+     */
+    public boolean conflictsWith(Footprint other) {
+        return writes || other.writes;
+    }
+
+}
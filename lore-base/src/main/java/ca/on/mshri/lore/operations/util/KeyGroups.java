@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Groups numeric values by string key. Up to a given number of keys, the
+ * groups are kept in a hash map. Beyond that, all (key, value) pairs are moved
+ * to an {@link ExternalSorter}, and the groups are formed from runs of equal
+ * keys in the sorted output. So memory use is bounded for any number of keys.
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class KeyGroups {
+
+    /**
+     * Receives the groups.
+     */
+    public interface Handler {
+
+        /**
+         * @param key the key
+         * @param values the values added under the key. Only the first
+         * <code>n</code> entries are valid; the array may be reused after the call.
+         * @param n the number of values.
+         * @throws IOException if the handler spills to disk and that fails.
+         */
+        void group(String key, long[] values, int n) throws IOException;
+    }
+
+    private final long maxKeys;
+
+    private Map<String,Values> groups = new HashMap<String, Values>();
+
+    private ExternalSorter sorter;
+
+    /**
+     * @param maxKeys the number of keys to hold in memory.
+     */
+    public KeyGroups(long maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Adds a value to the group of a key.
+     * @param key the key
+     * @param value the value
+     * @throws IOException if spilling to disk fails.
+     */
+    public void add(String key, long value) throws IOException {
+        if (sorter != null) {
+            sorter.add(key, value);
+            return;
+        }
+        Values v = groups.get(key);
+        if (v == null) {
+            v = new Values();
+            groups.put(key, v);
+        }
+        v.add(value);
+        if (groups.size() > maxKeys) {
+            spill();
+        }
+    }
+
+    /**
+     * @return whether the groups have moved to disk.
+     */
+    public boolean isSpilled() {
+        return sorter != null;
+    }
+
+    private void spill() throws IOException {
+        Logger.getLogger(KeyGroups.class.getName()).log(Level.INFO,
+                "More than "+maxKeys+" keys. Continuing on disk...");
+        sorter = new ExternalSorter(maxKeys);
+        for (Map.Entry<String,Values> entry : groups.entrySet()) {
+            Values v = entry.getValue();
+            for (int i = 0; i < v.n; i++) {
+                sorter.add(entry.getKey(), v.values[i]);
+            }
+        }
+        groups = null;
+    }
+
+    /**
+     * Hands each group to the handler. In memory, the groups come in no
+     * particular order; on disk, they come in key order.
+     * @param handler the handler
+     * @throws IOException if reading from disk or the handler fails.
+     */
+    public void forEach(Handler handler) throws IOException {
+        if (sorter == null) {
+            for (Map.Entry<String,Values> entry : groups.entrySet()) {
+                handler.group(entry.getKey(), entry.getValue().values, entry.getValue().n);
+            }
+            return;
+        }
+        ExternalSorter.Cursor cursor = sorter.sort();
+        Values v = new Values();
+        String key = null;
+        while (cursor.next()) {
+            if (!cursor.getKey().equals(key)) {
+                if (key != null) {
+                    handler.group(key, v.values, v.n);
+                }
+                key = cursor.getKey();
+                v.n = 0;
+            }
+            v.add(cursor.getValue());
+        }
+        if (key != null) {
+            handler.group(key, v.values, v.n);
+        }
+    }
+
+    /**
+     * Releases memory and deletes temporary files.
+     */
+    public void close() {
+        if (sorter != null) {
+            sorter.close();
+        }
+        groups = null;
+    }
+
+    /**
+     * a growable array of values.
+     */
+    private static class Values {
+
+        private long[] values = new long[2];
+
+        private int n = 0;
+
+        void add(long value) {
+            if (n == values.length) {
+                values = Arrays.copyOf(values, n * 2);
+            }
+            values[n++] = value;
+        }
+    }
+}
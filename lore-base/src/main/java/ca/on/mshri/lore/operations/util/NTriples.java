@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes triples as N-Triples or N-Quads lines, one statement at a time.
+ * Output is plain ASCII: all other characters are written as
+ * <code>\\uXXXX</code> escapes, so the output can be read by any N-Triples parser.
+ *
+ * <p>{@link #parse(String, String)} reads such lines back. Blank node labels
+ * are prefixed with a scope to form the nodes' ids, so lines parsed with the
+ * same scope refer to the same blank nodes even if they are parsed
+ * independently (e.g. in parallel), while equal labels from inputs parsed
+ * with different scopes stay apart.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public final class NTriples {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private NTriples() {
+    }
+
+    /**
+     * Writes one statement.
+     * @param w the writer
+     * @param t the triple
+     * @param graph the graph name for N-Quads, or null for N-Triples.
+     * @throws IOException if writing fails.
+     */
+    public static void write(Writer w, Triple t, Node graph) throws IOException {
+        write(w, t.getSubject());
+        w.write(' ');
+        write(w, t.getPredicate());
+        w.write(' ');
+        write(w, t.getObject());
+        if (graph != null) {
+            w.write(' ');
+            write(w, graph);
+        }
+        w.write(" .\n");
+    }
+
+    /**
+     * Writes a single node.
+     * @param w the writer
+     * @param n a URI, blank node or literal.
+     * @throws IOException if writing fails.
+     */
+    public static void write(Writer w, Node n) throws IOException {
+        if (n.isURI()) {
+            w.write('<');
+            escape(w, n.getURI(), false);
+            w.write('>');
+        } else if (n.isBlank()) {
+            w.write("_:");
+            blankLabel(w, n.getBlankNodeLabel());
+        } else if (n.isLiteral()) {
+            w.write('"');
+            escape(w, n.getLiteralLexicalForm(), true);
+            w.write('"');
+            String lang = n.getLiteralLanguage();
+            String dt = n.getLiteralDatatypeURI();
+            if (lang != null && lang.length() > 0) {
+                w.write('@');
+                w.write(lang);
+            } else if (dt != null) {
+                w.write("^^<");
+                escape(w, dt, false);
+                w.write('>');
+            }
+        } else {
+            throw new IllegalArgumentException("Cannot write variable node "+n);
+        }
+    }
+
+    /**
+     * Jena's blank node labels contain characters that are not allowed in
+     * N-Triples labels; these are hex-encoded.
+     */
+    private static void blankLabel(Writer w, String label) throws IOException {
+        w.write('b');
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                w.write(c);
+            } else {
+                w.write('X');
+                hex(w, c);
+            }
+        }
+    }
+
+    private static void escape(Writer w, String s, boolean literal) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (literal && c == '"') {
+                w.write("\\\"");
+            } else if (c == '\\') {
+                w.write("\\\\");
+            } else if (literal && c == '\n') {
+                w.write("\\n");
+            } else if (literal && c == '\r') {
+                w.write("\\r");
+            } else if (literal && c == '\t') {
+                w.write("\\t");
+            } else if (c < 0x20 || c > 0x7E || (!literal && c == '>')) {
+                w.write("\\u");
+                hex(w, c);
+            } else {
+                w.write(c);
+            }
+        }
+    }
+
+    private static void hex(Writer w, char c) throws IOException {
+        w.write(HEX[(c >> 12) & 0xF]);
+        w.write(HEX[(c >> 8) & 0xF]);
+        w.write(HEX[(c >> 4) & 0xF]);
+        w.write(HEX[c & 0xF]);
+    }
+
+    /**
+     * Parses an N-Triples or N-Quads line. The graph name of a quad is ignored.
+     * @param line the line
+     * @param scope prefix for the blank node labels of the line's input.
+     * @return the triple, or null if the line is empty or a comment.
+     * @throws IllegalArgumentException if the line is malformed.
+     */
+    public static Triple parse(String line, String scope) {
+        Cursor c = new Cursor(line, scope);
+        c.skipSpace();
+        if (c.atEnd() || c.peek() == '#') {
+            return null;
+        }
+        Node s = c.node();
+        Node p = c.node();
+        Node o = c.node();
+        c.skipSpace();
+        if (!c.atEnd() && c.peek() != '.') {
+            //graph name
+            c.node();
+            c.skipSpace();
+        }
+        if (c.atEnd() || c.next() != '.') {
+            throw new IllegalArgumentException("Missing '.' in line: "+line);
+        }
+        return Triple.create(s, p, o);
+    }
+
+    /**
+     * position in a line being parsed.
+     */
+    private static class Cursor {
+
+        private final String line;
+        private final String scope;
+        private int pos = 0;
+
+        Cursor(String line, String scope) {
+            this.line = line;
+            this.scope = scope;
+        }
+
+        boolean atEnd() {
+            return pos >= line.length();
+        }
+
+        char peek() {
+            return line.charAt(pos);
+        }
+
+        char next() {
+            if (atEnd()) {
+                throw new IllegalArgumentException("Unexpected end of line: "+line);
+            }
+            return line.charAt(pos++);
+        }
+
+        void skipSpace() {
+            while (!atEnd() && (peek() == ' ' || peek() == '\t')) {
+                pos++;
+            }
+        }
+
+        Node node() {
+            skipSpace();
+            char c = next();
+            if (c == '<') {
+                return Node.createURI(until('>'));
+            } else if (c == '_' && next() == ':') {
+                int start = pos;
+                while (!atEnd() && peek() != ' ' && peek() != '\t') {
+                    pos++;
+                }
+                return Node.createAnon(new AnonId(scope + line.substring(start, pos)));
+            } else if (c == '"') {
+                String lex = until('"');
+                if (!atEnd() && peek() == '@') {
+                    pos++;
+                    int start = pos;
+                    while (!atEnd() && (Character.isLetterOrDigit(peek()) || peek() == '-')) {
+                        pos++;
+                    }
+                    return Node.createLiteral(lex, line.substring(start, pos), false);
+                } else if (!atEnd() && peek() == '^') {
+                    if (next() != '^' || next() != '^' || next() != '<') {
+                        throw new IllegalArgumentException("Malformed datatype in line: "+line);
+                    }
+                    String dt = until('>');
+                    return Node.createLiteral(lex, null, TypeMapper.getInstance().getSafeTypeByName(dt));
+                } else {
+                    return Node.createLiteral(lex);
+                }
+            }
+            throw new IllegalArgumentException("Unexpected '"+c+"' in line: "+line);
+        }
+
+        /**
+         * reads and unescapes up to the given unescaped delimiter.
+         */
+        String until(char delim) {
+            StringBuilder b = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == delim) {
+                    return b.toString();
+                } else if (c == '\\') {
+                    char e = next();
+                    switch (e) {
+                        case 't': b.append('\t'); break;
+                        case 'n': b.append('\n'); break;
+                        case 'r': b.append('\r'); break;
+                        case 'b': b.append('\b'); break;
+                        case 'f': b.append('\f'); break;
+                        case 'u': b.append((char) hex(4)); break;
+                        case 'U': b.appendCodePoint(hex(8)); break;
+                        default: b.append(e);
+                    }
+                } else {
+                    b.append(c);
+                }
+            }
+        }
+
+        private int hex(int digits) {
+            if (pos + digits > line.length()) {
+                throw new IllegalArgumentException("Malformed escape in line: "+line);
+            }
+            int value = Integer.parseInt(line.substring(pos, pos + digits), 16);
+            pos += digits;
+            return value;
+        }
+    }
+}
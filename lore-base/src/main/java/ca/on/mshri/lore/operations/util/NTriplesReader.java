@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Triple;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads N-Triples or N-Quads and hands the statements to a {@link BatchHandler}
+ * in batches.
+ *
+ * <p>With more than one thread, the calling thread cuts the input into chunks
+ * of lines, a pool of workers parses the chunks with {@link NTriples#parse(String, String)},
+ * and the calling thread hands the parsed batches to the handler in file order.
+ * Blank node labels are scoped to the reader, so chunks can be parsed
+ * independently, while inputs read by different readers never share blank
+ * nodes. To keep the blank nodes of several files together (e.g. the
+ * partitions of one export), read them with the same reader.
+ * Invalid lines fail the read, unless the reader is told to skip them, in which
+ * case they are reported and counted.</p>
+ *
+ * <p>The handler reports how many statements of each chunk the store holds 
+ * after adding them (see {@link GraphStore}). That is checked
+ * against the number parsed from the chunk, and the read fails on a mismatch.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class NTriplesReader {
+
+    /**
+     * number of lines per chunk.
+     */
+    static final int CHUNK_SIZE = 8192;
+
+    /**
+     * maximum number of chunks in flight per worker thread.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * statements between progress messages.
+     */
+    private static final long PROGRESS_INTERVAL = 1000000;
+
+    /**
+     * Receives parsed statements. Only ever called from the thread that calls
+     * {@link NTriplesReader#read(InputStream, BatchHandler)}.
+     */
+    public interface BatchHandler {
+
+        /**
+         * @param batch the statements parsed from one chunk of the input.
+         * @return the number of statements of the batch that the store holds
+         * afterwards.
+         */
+        int handle(List<Triple> batch);
+    }
+
+    private final int threads;
+
+    /**
+     * whether invalid lines are skipped rather than failing the read.
+     */
+    private final boolean skipInvalid;
+
+    /**
+     * prefix for the blank node labels read by this reader.
+     */
+    private final String scope = UUID.randomUUID()+":";
+
+    private long statements = 0;
+
+    private long submitted = 0;
+
+    private long invalid = 0;
+
+    /**
+     * Creates a reader that fails on invalid lines.
+     * @param threads number of parser threads.
+     */
+    public NTriplesReader(int threads) {
+        this(threads, false);
+    }
+
+    /**
+     * @param threads number of parser threads.
+     * @param skipInvalid whether to skip invalid lines rather than fail.
+     */
+    public NTriplesReader(int threads, boolean skipInvalid) {
+        this.threads = threads;
+        this.skipInvalid = skipInvalid;
+    }
+
+    /**
+     * Reads the stream to its end. The stream is not closed.
+     * @param in an uncompressed N-Triples or N-Quads stream.
+     * @param handler receives the parsed statements.
+     * @return the number of statements read.
+     * @throws IOException if the stream cannot be read.
+     * @throws RuntimeException if an invalid line is found and invalid lines 
+     * are not skipped, or if the store does not hold all the statements parsed
+     * from a chunk.
+     */
+    public long read(InputStream in, BatchHandler handler) throws IOException {
+
+        statements = 0;
+        submitted = 0;
+        invalid = 0;
+        long start = System.currentTimeMillis();
+
+        BufferedReader r = new BufferedReader(new InputStreamReader(in, "UTF-8"), 1 << 16);
+        ExecutorService workers = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        LinkedList<Future<Chunk>> pending = new LinkedList<Future<Chunk>>();
+        int maxPending = threads * CHUNKS_PER_THREAD;
+        try {
+            String line; long lnum = 0;
+            List<String> lines = new ArrayList<String>(CHUNK_SIZE);
+            long first = 1;
+            while ((line = r.readLine()) != null) {
+                lnum++;
+                lines.add(line);
+                if (lines.size() == CHUNK_SIZE) {
+                    final Chunk chunk = new Chunk(first, lines, scope);
+                    if (workers == null) {
+                        deliver(chunk.parse(), handler, start);
+                    } else {
+                        pending.add(workers.submit(new Callable<Chunk>() {
+                            @Override
+                            public Chunk call() {
+                                return chunk.parse();
+                            }
+                        }));
+                        //hand over what's done; block if too much is pending.
+                        while (!pending.isEmpty() && (pending.size() > maxPending
+                                || pending.getFirst().isDone())) {
+                            deliver(get(pending.removeFirst()), handler, start);
+                        }
+                    }
+                    first = lnum + 1;
+                    lines = new ArrayList<String>(CHUNK_SIZE);
+                }
+            }
+            while (!pending.isEmpty()) {
+                deliver(get(pending.removeFirst()), handler, start);
+            }
+            if (!lines.isEmpty()) {
+                deliver(new Chunk(first, lines, scope).parse(), handler, start);
+            }
+        } finally {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+        }
+
+        Logger.getLogger(NTriplesReader.class.getName()).log(Level.INFO,
+                "Read "+statements+" statements in "
+                +(System.currentTimeMillis() - start)/1000+"s"
+                +(invalid > 0 ? "; skipped "+invalid+" invalid lines." : "."));
+
+        return statements;
+    }
+
+    private Chunk get(Future<Chunk> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while parsing", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Error parsing statements", ex.getCause());
+        }
+    }
+
+    private void deliver(Chunk chunk, BatchHandler handler, long start) {
+        if (!chunk.invalid.isEmpty()) {
+            if (!skipInvalid) {
+                throw new RuntimeException("Invalid statements at lines "+chunk.invalid+"!");
+            }
+            Logger.getLogger(NTriplesReader.class.getName()).log(Level.WARNING,
+                    "Skipping invalid lines in chunk starting at line "+chunk.firstLine
+                    +": "+chunk.invalid);
+            invalid += chunk.invalid.size();
+        }
+        int parsed = chunk.triples.size();
+        int handled = parsed > 0 ? handler.handle(chunk.triples) : 0;
+        if (handled != parsed) {
+            throw new RuntimeException("Import verification failed: "+parsed
+                    +" statements parsed from chunk starting at line "+chunk.firstLine
+                    +", but "+handled+" stored!");
+        }
+        OperationMetrics.recordRows(chunk.lines.size());
+        long before = statements;
+        statements += parsed;
+        submitted += handled;
+        if (statements / PROGRESS_INTERVAL > before / PROGRESS_INTERVAL) {
+            long seconds = Math.max(1, (System.currentTimeMillis() - start) / 1000);
+            Logger.getLogger(NTriplesReader.class.getName()).log(Level.INFO,
+                    "Read "+statements+" statements ("+statements/seconds+"/s)");
+        }
+    }
+
+    /**
+     * @return the number of statements read by the last call to
+     * {@link #read(InputStream, BatchHandler)}.
+     */
+    public long getStatements() {
+        return statements;
+    }
+
+    /**
+     * @return the number of statements the handler reported as stored during 
+     * the last call to {@link #read(InputStream, BatchHandler)}.
+     */
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * @return the number of invalid lines skipped by the last call to
+     * {@link #read(InputStream, BatchHandler)}.
+     */
+    public long getInvalidLines() {
+        return invalid;
+    }
+
+    /**
+     * Adds batches of statements to a graph and counts how many of them the 
+     * store holds afterwards. Before a batch is added, its statements are 
+     * looked up in the store, and only those that are missing are added and
+     * looked up again afterwards. The cost of a batch thus depends on the batch alone, 
+     * not on the size of the store.
+     */
+    public static class GraphStore implements BatchHandler {
+
+        private final Graph graph;
+
+        private final Graph data;
+
+        private long added = 0;
+
+        /**
+         * @param graph the graph to add the statements to.
+         * @param data the graph that stores them: either the same graph or, for
+         * an ontology model, its base graph.
+         */
+        public GraphStore(Graph graph, Graph data) {
+            this.graph = graph;
+            this.data = data;
+        }
+
+        /**
+         * @param batch the statements.
+         * @return the number of statements of the batch held by the store.
+         */
+        @Override
+        public int handle(List<Triple> batch) {
+            Set<Triple> absent = new LinkedHashSet<Triple>();
+            for (Triple t : batch) {
+                if (!data.contains(t)) {
+                    absent.add(t);
+                }
+            }
+            //only add what is missing, so that listeners only see real changes
+            graph.getBulkUpdateHandler().add(new ArrayList<Triple>(absent));
+            Set<Triple> missing = new HashSet<Triple>();
+            for (Triple t : absent) {
+                if (!data.contains(t)) {
+                    missing.add(t);
+                }
+            }
+            added += absent.size() - missing.size();
+            if (missing.isEmpty()) {
+                return batch.size();
+            }
+            int stored = 0;
+            for (Triple t : batch) {
+                if (!missing.contains(t)) {
+                    stored++;
+                }
+            }
+            return stored;
+        }
+
+        /**
+         * @return the number of distinct statements the store did not hold
+         * before they were added by this handler.
+         */
+        public long getAdded() {
+            return added;
+        }
+    }
+
+    /**
+     * A chunk of consecutive lines and the statements parsed from them.
+     */
+    private static class Chunk {
+
+        /**
+         * line number of the first line in the chunk.
+         */
+        private final long firstLine;
+
+        private final List<String> lines;
+
+        /**
+         * prefix for blank node labels.
+         */
+        private final String scope;
+
+        private final List<Triple> triples;
+
+        /**
+         * line numbers of invalid lines.
+         */
+        private final List<Long> invalid = new ArrayList<Long>();
+
+        Chunk(long firstLine, List<String> lines, String scope) {
+            this.firstLine = firstLine;
+            this.lines = lines;
+            this.scope = scope;
+            this.triples = new ArrayList<Triple>(lines.size());
+        }
+
+        Chunk parse() {
+            long lnum = firstLine;
+            for (String line : lines) {
+                try {
+                    Triple t = NTriples.parse(line, scope);
+                    if (t != null) {
+                        triples.add(t);
+                    }
+                } catch (IllegalArgumentException ex) {
+                    invalid.add(lnum);
+                }
+                lnum++;
+            }
+            return this;
+        }
+    }
+}
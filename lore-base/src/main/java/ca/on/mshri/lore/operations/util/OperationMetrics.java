@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import ca.on.mshri.lore.operations.LoreOperation;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Statement;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * <p>Performance metrics of one run of a workflow operation: wall and CPU time,
+ * garbage collection time, peak heap use, statements added to and removed from
+ * the model, SPARQL queries issued and rows parsed. The metrics are registered
+ * as an MBean under <code>ca.on.mshri.lore:type=Operation</code> while the
+ * workflow runs, and written to the run report at the end (see
+ * {@link ca.on.mshri.lore.operations.Configure#REPORT_KEY}).</p>
+ *
+ * <p>Everything except the wall time and statement counts is measured
+ * process-wide, so it includes work done on worker threads. When operations
+ * run concurrently, these values also include the work of the other operations.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    private static final AtomicLong queries = new AtomicLong();
+    private static final AtomicLong queryNanos = new AtomicLong();
+    private static final AtomicLong rows = new AtomicLong();
+
+    /**
+     * number of operations currently being measured.
+     */
+    private static final AtomicInteger active = new AtomicInteger();
+
+    private static final int WALL = 0, CPU = 1, GC = 2, QUERIES = 3, QUERY_TIME = 4, ROWS = 5;
+
+    /**
+     * Counts a query towards the running operations.
+     * @param nanos the time it took.
+     */
+    public static void recordQuery(long nanos) {
+        queries.incrementAndGet();
+        queryNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Counts parsed rows towards the running operations.
+     * @param n the number of rows.
+     */
+    public static void recordRows(long n) {
+        rows.addAndGet(n);
+    }
+
+    private final String operation;
+
+    private final int index;
+
+    private final Model model;
+
+    private final long[] start;
+
+    /**
+     * the differences at the end of the run, or null while running.
+     */
+    private volatile long[] result;
+
+    private volatile long peakHeap = 0;
+
+    private volatile boolean failed = false;
+
+    private final AtomicLong added = new AtomicLong();
+
+    private final AtomicLong removed = new AtomicLong();
+
+    private final StatementListener counter = new StatementListener() {
+        @Override
+        public void addedStatement(Statement s) {
+            added.incrementAndGet();
+        }
+        @Override
+        public void removedStatement(Statement s) {
+            removed.incrementAndGet();
+        }
+    };
+
+    private ObjectName name;
+
+    /**
+     * Starts measuring an operation.
+     * @param op the operation
+     * @param index the position of the operation in the workflow.
+     * @param model the model whose changes are counted.
+     */
+    public OperationMetrics(LoreOperation op, int index, Model model) {
+        this.operation = op.getClass().getSimpleName();
+        this.index = index;
+        this.model = model;
+        if (active.getAndIncrement() == 0) {
+            //peaks are only reset if no other operation is being measured.
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+        }
+        model.register(counter);
+        register();
+        this.start = sample();
+    }
+
+    /**
+     * Stops measuring.
+     * @param success whether the operation finished normally.
+     */
+    public void stop(boolean success) {
+        long[] end = sample();
+        for (int i = 0; i < end.length; i++) {
+            end[i] -= start[i];
+        }
+        peakHeap = heapPeak();
+        failed = !success;
+        result = end;
+        model.unregister(counter);
+        active.decrementAndGet();
+    }
+
+    /**
+     * Removes the MBean.
+     */
+    public void unregister() {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException ex) {
+            Logger.getLogger(OperationMetrics.class.getName())
+                    .log(Level.FINE, "Unable to unregister MBean "+name, ex);
+        }
+        name = null;
+    }
+
+    private void register() {
+        try {
+            ObjectName n = new ObjectName("ca.on.mshri.lore:type=Operation,name="
+                    +index+"-"+operation);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(n)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, n);
+                name = n;
+            }
+        } catch (JMException ex) {
+            Logger.getLogger(OperationMetrics.class.getName())
+                    .log(Level.WARNING, "Unable to register metrics MBean", ex);
+        }
+    }
+
+    private static long[] sample() {
+        long gc = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gc += Math.max(0, bean.getCollectionTime());
+        }
+        return new long[]{System.nanoTime(), cpuNanos(), gc,
+            queries.get(), queryNanos.get(), rows.get()};
+    }
+
+    /**
+     * CPU time of the whole process if the JVM reports it, otherwise of the current thread.
+     */
+    private static long cpuNanos() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return ManagementFactory.getThreadMXBean().isCurrentThreadCpuTimeSupported()
+                ? ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long heapPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * the final value, or the value so far while running.
+     */
+    private long value(int i) {
+        long[] r = result;
+        if (r != null) {
+            return r[i];
+        }
+        return sample()[i] - start[i];
+    }
+
+    @Override
+    public String getOperation() {
+        return operation;
+    }
+
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return result == null;
+    }
+
+    @Override
+    public boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public long getWallTimeMillis() {
+        return value(WALL) / 1000000;
+    }
+
+    @Override
+    public long getCpuTimeMillis() {
+        return value(CPU) / 1000000;
+    }
+
+    @Override
+    public long getGcTimeMillis() {
+        return value(GC);
+    }
+
+    @Override
+    public long getPeakHeapBytes() {
+        return result == null ? heapPeak() : peakHeap;
+    }
+
+    @Override
+    public long getTriplesAdded() {
+        return added.get();
+    }
+
+    @Override
+    public long getTriplesRemoved() {
+        return removed.get();
+    }
+
+    @Override
+    public long getQueries() {
+        return value(QUERIES);
+    }
+
+    @Override
+    public long getQueryTimeMillis() {
+        return value(QUERY_TIME) / 1000000;
+    }
+
+    @Override
+    public long getRowsParsed() {
+        return value(ROWS);
+    }
+
+    /**
+     * Writes a run report as JSON.
+     * @param w the writer
+     * @param metrics the metrics of each operation, in workflow order.
+     * @throws IOException if writing fails.
+     */
+    public static void writeReport(Writer w, List<OperationMetrics> metrics) throws IOException {
+        w.write("{\n  \"operations\": [");
+        for (int i = 0; i < metrics.size(); i++) {
+            OperationMetrics m = metrics.get(i);
+            w.write(i == 0 ? "\n" : ",\n");
+            w.write("    {\"index\": "+m.getIndex()
+                    +", \"operation\": \""+m.getOperation()+"\""
+                    +", \"failed\": "+m.isFailed()
+                    +", \"wallTimeMillis\": "+m.getWallTimeMillis()
+                    +", \"cpuTimeMillis\": "+m.getCpuTimeMillis()
+                    +", \"gcTimeMillis\": "+m.getGcTimeMillis()
+                    +", \"peakHeapBytes\": "+m.getPeakHeapBytes()
+                    +", \"triplesAdded\": "+m.getTriplesAdded()
+                    +", \"triplesRemoved\": "+m.getTriplesRemoved()
+                    +", \"queries\": "+m.getQueries()
+                    +", \"queryTimeMillis\": "+m.getQueryTimeMillis()
+                    +", \"rowsParsed\": "+m.getRowsParsed()+"}");
+        }
+        w.write("\n  ]\n}\n");
+    }
+}
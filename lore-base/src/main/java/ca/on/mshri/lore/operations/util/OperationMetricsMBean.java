@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+/**
+ * JMX view of the metrics of a workflow operation. While the operation is
+ * running, the values cover the time since it started.
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public interface OperationMetricsMBean {
+
+    /**
+     * @return the simple class name of the operation.
+     */
+    String getOperation();
+
+    /**
+     * @return the position of the operation in the workflow.
+     */
+    int getIndex();
+
+    /**
+     * @return whether the operation is still running.
+     */
+    boolean isRunning();
+
+    /**
+     * @return whether the operation failed.
+     */
+    boolean isFailed();
+
+    long getWallTimeMillis();
+
+    long getCpuTimeMillis();
+
+    long getGcTimeMillis();
+
+    long getPeakHeapBytes();
+
+    long getTriplesAdded();
+
+    long getTriplesRemoved();
+
+    long getQueries();
+
+    long getQueryTimeMillis();
+
+    long getRowsParsed();
+}
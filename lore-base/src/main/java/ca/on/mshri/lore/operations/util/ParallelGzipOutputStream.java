@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A gzip output stream that compresses blocks of data concurrently. The data
+ * is cut into fixed-size blocks. Each block is compressed into a separate gzip
+ * member on a thread pool. The members are written to the underlying stream
+ * in order. Concatenated gzip members form a valid gzip file that
+ * <code>gunzip</code> and {@link java.util.zip.GZIPInputStream} read as one
+ * stream.
+ *
+ * <p>At most two blocks per thread are held in memory at any time.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    /**
+     * default block size: 1MB
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    private final OutputStream out;
+
+    private final ExecutorService executor;
+
+    private final int maxPending;
+
+    /**
+     * compressed blocks in output order.
+     */
+    private final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+
+    private byte[] block;
+
+    private int fill = 0;
+
+    private boolean closed = false;
+
+    /**
+     * whether any gzip member has been started.
+     */
+    private boolean started = false;
+
+    /**
+     * @param out the underlying stream
+     * @param threads number of compression threads
+     * @param blockSize uncompressed block size in bytes.
+     */
+    public ParallelGzipOutputStream(OutputStream out, int threads, int blockSize) {
+        this.out = out;
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.maxPending = threads * 2;
+        this.block = new byte[blockSize];
+    }
+
+    /**
+     * @param out the underlying stream
+     * @param threads number of compression threads
+     */
+    public ParallelGzipOutputStream(OutputStream out, int threads) {
+        this(out, threads, DEFAULT_BLOCK_SIZE);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (fill == block.length) {
+            submitBlock();
+        }
+        block[fill++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (fill == block.length) {
+                submitBlock();
+            }
+            int n = Math.min(len, block.length - fill);
+            System.arraycopy(b, off, block, fill, n);
+            fill += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * hands the current block to the compression pool and writes out
+     * finished blocks.
+     */
+    private void submitBlock() throws IOException {
+        if (fill == 0) {
+            return;
+        }
+        final byte[] data = block;
+        final int length = fill;
+        started = true;
+        pending.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                ByteArrayOutputStream member = new ByteArrayOutputStream(length / 4 + 64);
+                GZIPOutputStream gz = new GZIPOutputStream(member);
+                gz.write(data, 0, length);
+                gz.close();
+                return member.toByteArray();
+            }
+        }));
+        block = new byte[data.length];
+        fill = 0;
+
+        //write everything that's done; block if too much is pending.
+        while (!pending.isEmpty() && (pending.size() > maxPending || pending.getFirst().isDone())) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        try {
+            out.write(pending.removeFirst().get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException ex) {
+            throw new IOException("Compression failed", ex.getCause());
+        }
+    }
+
+    /**
+     * Compresses and writes all data written so far, ending the current gzip
+     * member early.
+     */
+    @Override
+    public void flush() throws IOException {
+        submitBlock();
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (!started && fill == 0) {
+                //an empty gzip file still needs one member
+                GZIPOutputStream gz = new GZIPOutputStream(out);
+                gz.finish();
+            }
+            flush();
+        } finally {
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+}
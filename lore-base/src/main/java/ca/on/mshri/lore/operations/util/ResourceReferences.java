@@ -16,17 +16,17 @@
  */
 package ca.on.mshri.lore.operations.util;
 
+import ca.on.mshri.lore.base.WrapperFactory;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryException;
-import com.hp.hpl.jena.query.QueryExecution;
-import com.hp.hpl.jena.query.QueryExecutionFactory;
 import com.hp.hpl.jena.query.QueryFactory;
 import com.hp.hpl.jena.query.QuerySolution;
-import com.hp.hpl.jena.query.ResultSet;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.Resource;
-import java.lang.reflect.Method;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.Map1;
+import com.hp.hpl.jena.util.iterator.WrappedIterator;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -58,28 +58,54 @@ public class ResourceReferences<T extends Resource> {
         this.type = type;
     }
     
+    /**
+     * Resolves the references into a list.
+     * @param model the model in which to resolve the references.
+     * @return the referenced resources.
+     */
     public List<T> resolve(Model model) {
-        
-        List<T> out = new ArrayList<T>();
+        return iterate(model).toList();
+    }
+    
+    /**
+     * Resolves the references one by one as the iterator is consumed, so that
+     * large selections need not be held in memory. If the selection is a query,
+     * the iterator must be closed if it is not consumed entirely.
+     * @param model the model in which to resolve the references.
+     * @return an iterator over the referenced resources.
+     */
+    public ExtendedIterator<T> iterate(Model model) {
+        return iterate(model, 0);
+    }
+    
+    /**
+     * Resolves the references one by one as the iterator is consumed. 
+     * @param model the model in which to resolve the references.
+     * @param pageSize if the selection is a query, the number of results 
+     * to fetch per query execution, or 0 to fetch all in one execution. 
+     * See {@link SolutionIterator}.
+     * @return an iterator over the referenced resources.
+     */
+    public ExtendedIterator<T> iterate(final Model model, int pageSize) {
         
         if (uriList != null) {
-            for (URI uri : uriList) {
-                Resource resource = model.getResource(uri.toString());
-                out.add(attemptCast(resource));
-            }
+            return WrappedIterator.create(uriList.iterator()).mapWith(new Map1<URI, T>() {
+                @Override
+                public T map1(URI uri) {
+                    return attemptCast(model.getResource(uri.toString()));
+                }
+            });
         } else { //if (query != null) always true, because of preProcess()
-            QueryExecution qExec = QueryExecutionFactory.create(query, model);
-            ResultSet result = qExec.execSelect();
-            while (result.hasNext()) {
-                QuerySolution sol = result.next();
-                Resource resource = sol.getResource(sol.varNames().next());
-                out.add(attemptCast(resource));
-            }
+            return new SolutionIterator(model, query, null, pageSize)
+                    .mapWith(new Map1<QuerySolution, T>() {
+                @Override
+                public T map1(QuerySolution sol) {
+                    return attemptCast(sol.getResource(sol.varNames().next()));
+                }
+            });
         }
-        
-        return out;
     }
-
+    
     private void preProcess(String descriptor) {
         
         //try reading the 
@@ -112,13 +138,16 @@ public class ResourceReferences<T extends Resource> {
 
     private T attemptCast(Resource resource) {
         
-        if (resource.canAs(Individual.class)) {
+        if (Individual.class.isAssignableFrom(type) && resource.canAs(Individual.class)) {
             Individual ind = resource.as(Individual.class);
             try {
-                Method method = type.getMethod("fromIndividual", Individual.class);
-                return (T) method.invoke(null, ind);
-            } catch (Exception e) {
-                //ignore
+                WrapperFactory<? extends Individual> factory = 
+                        WrapperFactory.forClass((Class<? extends Individual>) type);
+                if (factory.canCast(ind)) {
+                    return (T) factory.cast(ind);
+                }
+            } catch (RuntimeException e) {
+                //not a class wrapper
             }
         }
         
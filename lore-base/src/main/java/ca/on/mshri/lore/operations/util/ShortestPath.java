@@ -17,25 +17,57 @@
 package ca.on.mshri.lore.operations.util;
 
 import ca.on.mshri.lore.base.LoreModel;
+import com.hp.hpl.jena.graph.Graph;
 import com.hp.hpl.jena.ontology.Individual;
-import com.hp.hpl.jena.ontology.OntModelSpec;
-import com.hp.hpl.jena.query.QueryExecution;
-import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.QueryFactory;
 import com.hp.hpl.jena.query.QuerySolution;
-import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Model;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
+ * Finds shortest paths between individuals. Edges are defined by a SPARQL property
+ * path pattern. Patterns consisting of simple links are compiled into an
+ * {@link AdjacencySnapshot} on first use, so that the actual search runs on 
+ * int arrays rather than issuing a SPARQL query for every expanded node.
  *
  * @author Jochen Weile <jochenweile@gmail.com>
  */
 public class ShortestPath {
     
+    /**
+     * compiled adjacency snapshots indexed by data graph and path pattern.
+     * The graphs are weakly referenced, so the cache does not keep them alive.
+     */
+    private Map<Graph,Map<String,AdjacencySnapshot>> snapshots = 
+            new WeakHashMap<Graph, Map<String, AdjacencySnapshot>>();
+    
+    /**
+     * distance oracles indexed by data graph and path pattern.
+     */
+    private Map<Graph,Map<String,DistanceOracle>> oracles = 
+            new WeakHashMap<Graph, Map<String, DistanceOracle>>();
+    
+    /**
+     * number of landmarks used for distance oracles.
+     */
+    private static final int LANDMARKS = 16;
+    
+    /**
+     * patterns that could not be compiled.
+     */
+    private Set<String> uncompilable = new HashSet<String>();
+    
     /**
      * Find the shortest path between the from node to the target node. Edges are
      * defined by the given path pattern
@@ -76,6 +108,142 @@ public class ShortestPath {
      */
     public PathNode find(Individual from, Collection<? extends Individual> targets, String pathPattern, Collection<? extends Individual> forbidden) {
         
+        //if the start node is already a target, we're done and can just return the node itself.
+        if (targets.contains(from)) {
+            return new PathNode(null,from);
+        }
+        
+        AdjacencySnapshot snapshot = getSnapshot(from.getModel(), pathPattern);
+        if (snapshot == null) {
+            return findByQuery(from, targets, pathPattern, forbidden);
+        }
+        
+        int fromId = snapshot.indexOf(from.asNode());
+        if (fromId < 0) {
+            //the start node has no neighbours
+            return null;
+        }
+        
+        //translate targets and forbidden nodes into bitsets
+        BitSet targetSet = new BitSet(snapshot.size());
+        for (Individual t : targets) {
+            int id = snapshot.indexOf(t.asNode());
+            if (id >= 0) {
+                targetSet.set(id);
+            }
+        }
+        if (targetSet.isEmpty()) {
+            return null;
+        }
+        BitSet forbiddenSet = new BitSet(snapshot.size());
+        for (Individual f : forbidden) {
+            int id = snapshot.indexOf(f.asNode());
+            if (id >= 0) {
+                forbiddenSet.set(id);
+            }
+        }
+        
+        int[] path = snapshot.shortestPath(fromId, targetSet, forbiddenSet);
+        if (path == null) {
+            return null;
+        }
+        
+        //package the path into pathnode objects
+        PathNode node = new PathNode(null, from);
+        for (int i = 1; i < path.length; i++) {
+            Individual ind = from.getModel().asRDFNode(snapshot.nodeAt(path[i]))
+                    .as(Individual.class);
+            node = new PathNode(node, ind);
+        }
+        return node;
+        
+    }
+    
+    /**
+     * Returns the compiled adjacency snapshot for the given model and pattern.
+     * Snapshots are compiled from the data underlying the model on first use and
+     * re-used for all subsequent searches with this object, including those on
+     * other model wrappers around the same data. So the model should not change 
+     * while this object is in use.
+     * @param model the model
+     * @param pathPattern the edge pattern
+     * @return the snapshot or null if the pattern cannot be compiled.
+     */
+    public AdjacencySnapshot getSnapshot(Model model, String pathPattern) {
+        
+        if (uncompilable.contains(pathPattern)) {
+            return null;
+        }
+        
+        Graph graph = LoreModel.dataModel(model).getGraph();
+        Map<String,AdjacencySnapshot> byPattern = snapshots.get(graph);
+        if (byPattern == null) {
+            byPattern = new HashMap<String, AdjacencySnapshot>();
+            snapshots.put(graph, byPattern);
+        }
+        AdjacencySnapshot snapshot = byPattern.get(pathPattern);
+        if (snapshot == null) {
+            
+            if (!AdjacencySnapshot.isCompilable(pathPattern, model)) {
+                Logger.getLogger(ShortestPath.class.getName())
+                        .log(Level.WARNING, "Cannot compile path pattern "+pathPattern+
+                        ". Falling back to SPARQL queries.");
+                uncompilable.add(pathPattern);
+                return null;
+            }
+            
+            Logger.getLogger(ShortestPath.class.getName())
+                    .log(Level.INFO, "Compiling adjacency snapshot for "+pathPattern);
+            snapshot = AdjacencySnapshot.compile(graph, pathPattern, model);
+            byPattern.put(pathPattern, snapshot);
+        }
+        return snapshot;
+    }
+    
+    /**
+     * Returns a distance oracle for the given model and pattern, for answering
+     * many distance queries where the actual paths are not needed. Like the 
+     * snapshots, oracles are built on first use and re-used for all subsequent
+     * requests with this object.
+     * @param model the model
+     * @param pathPattern the edge pattern. Must describe symmetric edges.
+     * @return the oracle or null if the pattern cannot be compiled.
+     */
+    public DistanceOracle getOracle(Model model, String pathPattern) {
+        AdjacencySnapshot snapshot = getSnapshot(model, pathPattern);
+        if (snapshot == null) {
+            return null;
+        }
+        Graph graph = LoreModel.dataModel(model).getGraph();
+        Map<String,DistanceOracle> byPattern = oracles.get(graph);
+        if (byPattern == null) {
+            byPattern = new HashMap<String, DistanceOracle>();
+            oracles.put(graph, byPattern);
+        }
+        DistanceOracle oracle = byPattern.get(pathPattern);
+        if (oracle == null) {
+            Logger.getLogger(ShortestPath.class.getName())
+                    .log(Level.INFO, "Computing landmark distances for "+pathPattern);
+            oracle = new DistanceOracle(snapshot, LANDMARKS);
+            byPattern.put(pathPattern, oracle);
+        }
+        return oracle;
+    }
+    
+    /**
+     * Discards all compiled snapshots, so that changes to the model become visible.
+     */
+    public void invalidate() {
+        snapshots.clear();
+        oracles.clear();
+    }
+    
+    /**
+     * Find the shortest path by querying the neighbours of each node via SPARQL.
+     * Used for patterns that cannot be compiled into a snapshot.
+     */
+    private PathNode findByQuery(Individual from, Collection<? extends Individual> targets, String pathPattern, Collection<? extends Individual> forbidden) {
+        
         //discovered nodes yet to examine
         PrioritySet open = new PrioritySet();
         //already examined nodes
@@ -84,18 +252,10 @@ public class ShortestPath {
             closed.add(new PathNode(null, f));
         }
         
-        //get a shortcut to the model
-        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, from.getModel());
-        
         //package start node into pathnode object
         PathNode fromNode = new PathNode(null,from);
         
-        //if the start node is already a target, we're done and can just return the node itself.
-        if (targets.contains(from)) {
-            return fromNode;
-        }
-        
-        //otherwise, mark the first node for exploration.
+        //mark the first node for exploration.
         open.offer(fromNode);
         
         //as long as there are still nodes to examine, we keep going
@@ -105,7 +265,7 @@ public class ShortestPath {
             PathNode curr = open.poll();
             
             //iterate over neighbours of that node
-            for (Individual neighbour : findNeighbours(model, curr.getValue(), pathPattern) ) {
+            for (Individual neighbour : findNeighbours(from.getModel(), curr.getValue(), pathPattern) ) {
                 //wrap neighbour into pathnode object
                 PathNode next = new PathNode(curr,neighbour);
                 //check if neighbour is target node, if so, we're done
@@ -129,7 +289,7 @@ public class ShortestPath {
     /**
      * Convenience method for retrieving neighbouring nodes according to the edge pattern.
      */
-    private Set<Individual> findNeighbours(LoreModel model, Individual in, String pattern) {
+    private Set<Individual> findNeighbours(Model model, Individual in, String pattern) {
         
         Set<Individual> set = new HashSet<Individual>();
         String uri = "<"+in.getURI()+">";
@@ -138,12 +298,8 @@ public class ShortestPath {
                 .append(uri).append(' ').append(pattern).append(" ?neighbour. ")
                 .append(" FILTER(?neighbour != ").append(uri).append(")}").toString();
         
-//        System.out.println(qString);
-        
-        QueryExecution qexec = QueryExecutionFactory
-                .create(qString, model);
+        SolutionIterator r = new SolutionIterator(model, QueryFactory.create(qString), null);
         try {
-            ResultSet r = qexec.execSelect();
             while (r.hasNext()) {
                 QuerySolution sol = r.next();
                 
@@ -153,7 +309,7 @@ public class ShortestPath {
                 set.add(i);
             }
         } finally {
-            qexec.close();
+            r.close();
         }
         
         
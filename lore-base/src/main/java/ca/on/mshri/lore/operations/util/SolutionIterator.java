@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.QuerySolution;
+import com.hp.hpl.jena.query.QuerySolutionMap;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.util.iterator.NiceIterator;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Streams the solutions of a SELECT query. Solutions are handed out as the
+ * query engine produces them, so the full result never has to be held in memory.
+ * The query execution is closed when the iterator is exhausted or closed;
+ * callers that stop early must call {@link #close()}.</p>
+ *
+ * <p>With a page size, the query is run repeatedly with <code>LIMIT</code> and
+ * <code>OFFSET</code>, and one page of solutions is buffered at a time. No query
+ * execution stays open between pages. For the pages to fit together, the model
+ * must not change while iterating, or the query must have an
+ * <code>ORDER BY</code> over data that does not change.</p>
+ *
+ * <p>This is the one place where query executions are created, so that each
+ * of them is counted towards the {@link OperationMetrics} of the running 
+ * operations, along with the time spent in the query engine: a single 
+ * execution once the iterator is closed, a paged one as each page is fetched.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class SolutionIterator extends NiceIterator<QuerySolution> {
+
+    private final Model model;
+
+    private final Query query;
+
+    private final QuerySolutionMap bindings;
+
+    private final int pageSize;
+
+    /**
+     * the limit of the original query, or a negative value if it has none.
+     */
+    private final long limit;
+
+    /**
+     * the offset of the original query.
+     */
+    private final long offset;
+
+    /**
+     * the open execution when not paging.
+     */
+    private QueryExecution qexec;
+
+    private ResultSet results;
+
+    /**
+     * the current page when paging.
+     */
+    private Iterator<QuerySolution> page;
+
+    /**
+     * number of solutions fetched so far.
+     */
+    private long fetched = 0;
+
+    /**
+     * whether the last page was incomplete, i.e. there are no more pages.
+     */
+    private boolean lastPage = false;
+
+    private boolean closed = false;
+
+    /**
+     * time spent in the single execution so far.
+     */
+    private long nanos = 0;
+
+    /**
+     * Streams the solutions of a query in a single execution.
+     * @param model the model to query
+     * @param query the query. It is not modified.
+     * @param bindings initial values for variables in the query.
+     */
+    public SolutionIterator(Model model, Query query, QuerySolutionMap bindings) {
+        this(model, query, bindings, 0);
+    }
+
+    /**
+     * Streams the solutions of a query.
+     * @param model the model to query
+     * @param query the query. It is not modified.
+     * @param bindings initial values for variables in the query.
+     * @param pageSize the number of solutions to fetch per execution, or 0 to
+     * fetch all solutions in a single execution.
+     */
+    public SolutionIterator(Model model, Query query, QuerySolutionMap bindings, int pageSize) {
+        this.model = model;
+        this.query = query;
+        this.bindings = bindings == null ? new QuerySolutionMap() : bindings;
+        this.pageSize = pageSize;
+        this.limit = query.hasLimit() ? query.getLimit() : -1;
+        this.offset = query.hasOffset() ? query.getOffset() : 0;
+        if (pageSize <= 0) {
+            long t0 = System.nanoTime();
+            qexec = QueryExecutionFactory.create(query, model, this.bindings);
+            results = qexec.execSelect();
+            nanos += System.nanoTime() - t0;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        boolean hasNext;
+        if (pageSize <= 0) {
+            long t0 = System.nanoTime();
+            hasNext = results.hasNext();
+            nanos += System.nanoTime() - t0;
+        } else {
+            if ((page == null || !page.hasNext()) && !lastPage) {
+                page = fetchPage();
+            }
+            hasNext = page.hasNext();
+        }
+        if (!hasNext) {
+            close();
+        }
+        return hasNext;
+    }
+
+    @Override
+    public QuerySolution next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        fetched++;
+        if (pageSize > 0) {
+            return page.next();
+        }
+        long t0 = System.nanoTime();
+        try {
+            return results.next();
+        } finally {
+            nanos += System.nanoTime() - t0;
+        }
+    }
+
+    /**
+     * runs the query for the next page and copies the solutions. Each page
+     * counts as a query of its own.
+     */
+    private Iterator<QuerySolution> fetchPage() {
+
+        long size = pageSize;
+        if (limit >= 0) {
+            size = Math.min(size, limit - fetched);
+        }
+        List<QuerySolution> solutions = new ArrayList<QuerySolution>();
+        if (size <= 0) {
+            lastPage = true;
+            return solutions.iterator();
+        }
+
+        Query q = query.cloneQuery();
+        q.setOffset(offset + fetched);
+        q.setLimit(size);
+        long t0 = System.nanoTime();
+        QueryExecution exec = QueryExecutionFactory.create(q, model, bindings);
+        try {
+            ResultSet r = exec.execSelect();
+            while (r.hasNext()) {
+                QuerySolutionMap copy = new QuerySolutionMap();
+                copy.addAll(r.next());
+                solutions.add(copy);
+            }
+        } finally {
+            exec.close();
+            OperationMetrics.recordQuery(System.nanoTime() - t0);
+        }
+        if (solutions.size() < size) {
+            lastPage = true;
+        }
+        return solutions.iterator();
+    }
+
+    /**
+     * Closes the query execution. Called automatically when the iterator is exhausted.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        page = null;
+        if (qexec != null) {
+            qexec.close();
+            qexec = null;
+            results = null;
+            OperationMetrics.recordQuery(nanos);
+        }
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import ca.on.mshri.lore.base.BaseVocab;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Finds the XRef values of one authority for the objects of one or more
+ * selections, with a bounded amount of memory. The selected objects are
+ * sorted on disk, and so are the (object, value) pairs of the authority,
+ * which are read from the graph rather than from the {@link ca.on.mshri.lore.base.XRefIndex}.
+ * A single pass over both then hands each selected object with at least one
+ * value to a {@link Handler}, in the order of their names.</p>
+ *
+ * <p>Objects are named by their URI, or by <code>_:</code> and their label
+ * if they are blank (see {@link #encode(Node)}). Names in this form sort the
+ * same way alone as at the start of a tab-separated record, since they contain
+ * no tabs or control characters.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class SortedXRefs {
+
+    /**
+     * Receives the selected objects with their values.
+     */
+    public interface Handler {
+
+        /**
+         * @param object the name of the object
+         * @param selections the selections that contain the object, as a
+         * bit mask of the numbers returned by {@link SortedXRefs#select(ExtendedIterator)}.
+         * @param values the object's XRef values of the authority.
+         * @throws IOException if the handler spills to disk and that fails.
+         */
+        void object(String object, int selections, List<String> values) throws IOException;
+    }
+
+    private final Node hasXRef = BaseVocab.hasXRef.asNode();
+    private final Node hasAuthority = BaseVocab.hasAuthority.asNode();
+    private final Node hasValue = BaseVocab.hasValue.asNode();
+
+    private final Graph graph;
+
+    private final Node authority;
+
+    /**
+     * (object, selection) records.
+     */
+    private final ExternalSorter selected;
+
+    /**
+     * (object\tvalue) records.
+     */
+    private final ExternalSorter values;
+
+    private int selections = 0;
+
+    /**
+     * @param graph the graph holding the XRefs.
+     * @param authority the authority of the XRefs.
+     * @param maxRecords the number of records to hold in memory.
+     */
+    public SortedXRefs(Graph graph, Node authority, long maxRecords) {
+        this.graph = graph;
+        this.authority = authority;
+        this.selected = new ExternalSorter(maxRecords);
+        this.values = new ExternalSorter(maxRecords);
+    }
+
+    /**
+     * Adds a selection of objects.
+     * @param selection the objects. The iterator is closed when done.
+     * @return the number of the selection.
+     * @throws IOException if the objects cannot be sorted.
+     */
+    public int select(ExtendedIterator<? extends Resource> selection) throws IOException {
+        if (selections == 31) {
+            throw new IllegalStateException("Too many selections!");
+        }
+        int number = selections++;
+        long count = 0;
+        try {
+            while (selection.hasNext()) {
+                selected.add(encode(selection.next().asNode()), number);
+                if (++count % 100000 == 0) {
+                    Logger.getLogger(SortedXRefs.class.getName())
+                            .log(Level.INFO, "Selected "+count+" objects.");
+                }
+            }
+        } finally {
+            selection.close();
+        }
+        return number;
+    }
+
+    /**
+     * Reads the values from the graph and hands each selected object that has
+     * any to the handler.
+     * @param handler the handler
+     * @throws IOException if sorting or the handler fails.
+     */
+    public void forEach(Handler handler) throws IOException {
+
+        scan();
+
+        ExternalSorter.Cursor objects = selected.sort();
+        ExternalSorter.Cursor pairs = values.sort();
+        boolean moreObjects = objects.next();
+        boolean morePairs = pairs.next();
+        while (morePairs) {
+            String record = pairs.getKey();
+            int tab = record.indexOf('\t');
+            String object = record.substring(0, tab);
+            List<String> objectValues = new ArrayList<String>();
+            objectValues.add(record.substring(tab + 1));
+            while ((morePairs = pairs.next()) && isOf(pairs.getKey(), object)) {
+                objectValues.add(pairs.getKey().substring(tab + 1));
+            }
+            int in = 0;
+            while (moreObjects && objects.getKey().compareTo(object) < 0) {
+                moreObjects = objects.next();
+            }
+            while (moreObjects && objects.getKey().equals(object)) {
+                in |= 1 << objects.getValue();
+                moreObjects = objects.next();
+            }
+            if (in != 0) {
+                handler.object(object, in, objectValues);
+            }
+        }
+    }
+
+    /**
+     * whether a record belongs to an object.
+     */
+    private static boolean isOf(String record, String object) {
+        return record.length() > object.length()
+                && record.charAt(object.length()) == '\t'
+                && record.startsWith(object);
+    }
+
+    /**
+     * sorts the (object, value) pairs of all XRefs of the authority.
+     */
+    private void scan() throws IOException {
+        ExtendedIterator<Triple> xrefs = graph.find(Node.ANY, hasAuthority, authority);
+        try {
+            while (xrefs.hasNext()) {
+                Node xref = xrefs.next().getSubject();
+                String value = value(xref);
+                if (value == null) {
+                    continue;
+                }
+                ExtendedIterator<Triple> holders = graph.find(Node.ANY, hasXRef, xref);
+                try {
+                    while (holders.hasNext()) {
+                        values.add(encode(holders.next().getSubject())+"\t"+value, 0);
+                    }
+                } finally {
+                    holders.close();
+                }
+            }
+        } finally {
+            xrefs.close();
+        }
+    }
+
+    /**
+     * the value of an XRef, or null if it has none.
+     */
+    private String value(Node xref) {
+        ExtendedIterator<Triple> it = graph.find(xref, hasValue, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Node lit = it.next().getObject();
+                if (lit.isLiteral()) {
+                    return lit.getLiteralLexicalForm();
+                }
+            }
+            return null;
+        } finally {
+            it.close();
+        }
+    }
+
+    /**
+     * Deletes the temporary files.
+     */
+    public void close() {
+        selected.close();
+        values.close();
+    }
+
+    /**
+     * @param node a URI or blank node
+     * @return its name
+     */
+    public static String encode(Node node) {
+        if (node.isBlank()) {
+            return "_:"+node.getBlankNodeLabel();
+        }
+        return node.getURI();
+    }
+
+    /**
+     * @param name the name of a node, as given by {@link #encode(Node)}
+     * @return the node
+     */
+    public static Node decode(String name) {
+        if (name.startsWith("_:")) {
+            return Node.createAnon(new AnonId(name.substring(2)));
+        }
+        return Node.createURI(name);
+    }
+
+}
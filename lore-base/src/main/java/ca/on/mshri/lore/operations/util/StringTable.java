@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>A list of strings numbered in the order they are added, kept in
+ * temporary files rather than on the heap. Strings can be read back
+ * one after the other with a {@link Reader}, or looked up by number with
+ * {@link #get(int)}. Either way, no more strings may be added afterwards.</p>
+ *
+ * <p>The temporary files are deleted by {@link #close()}.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class StringTable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * the strings, one after the other.
+     */
+    private final File data;
+
+    /**
+     * the offset of each string in the data file.
+     */
+    private final File offsets;
+
+    private DataOutputStream dataOut;
+
+    private DataOutputStream offsetsOut;
+
+    /**
+     * the number of bytes written to the data file.
+     */
+    private long length = 0;
+
+    private int size = 0;
+
+    private RandomAccessFile dataIn;
+
+    private RandomAccessFile offsetsIn;
+
+    /**
+     * @throws IOException if the temporary files cannot be created.
+     */
+    public StringTable() throws IOException {
+        data = File.createTempFile("lore-table", ".dat");
+        data.deleteOnExit();
+        offsets = File.createTempFile("lore-table", ".idx");
+        offsets.deleteOnExit();
+        dataOut = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(data), BUFFER_SIZE));
+        offsetsOut = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(offsets), BUFFER_SIZE));
+    }
+
+    /**
+     * Appends a string.
+     * @param s the string
+     * @return its number.
+     * @throws IOException if the string cannot be written.
+     */
+    public int add(String s) throws IOException {
+        if (dataOut == null) {
+            throw new IllegalStateException("Strings have already been read!");
+        }
+        offsetsOut.writeLong(length);
+        dataOut.writeUTF(s);
+        length += utfLength(s);
+        return size++;
+    }
+
+    /**
+     * the number of bytes written by <code>writeUTF</code>, including the 
+     * two length bytes.
+     */
+    private static long utfLength(String s) {
+        long n = 2;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            n += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        return n;
+    }
+
+    /**
+     * @return the number of strings.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * closes the output files before the first read.
+     */
+    private void finish() throws IOException {
+        if (dataOut != null) {
+            dataOut.close();
+            offsetsOut.close();
+            dataOut = null;
+            offsetsOut = null;
+        }
+    }
+
+    /**
+     * Looks up a string by its number. Lookups in increasing order are the
+     * cheapest, but any order works.
+     * @param i the number
+     * @return the string
+     * @throws IOException if the files cannot be read.
+     */
+    public String get(int i) throws IOException {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(i+"");
+        }
+        finish();
+        if (dataIn == null) {
+            dataIn = new RandomAccessFile(data, "r");
+            offsetsIn = new RandomAccessFile(offsets, "r");
+        }
+        offsetsIn.seek(i * 8L);
+        dataIn.seek(offsetsIn.readLong());
+        return dataIn.readUTF();
+    }
+
+    /**
+     * @return a reader over all strings in order.
+     * @throws IOException if the files cannot be read.
+     */
+    public Reader read() throws IOException {
+        finish();
+        return new Reader(new DataInputStream(
+                new BufferedInputStream(new FileInputStream(data), BUFFER_SIZE)));
+    }
+
+    /**
+     * Deletes the temporary files.
+     */
+    public void close() {
+        try {
+            finish();
+            if (dataIn != null) {
+                dataIn.close();
+                offsetsIn.close();
+                dataIn = null;
+                offsetsIn = null;
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(StringTable.class.getName())
+                    .log(Level.WARNING, "Unable to close stream!", ex);
+        }
+        for (File file : new File[]{data, offsets}) {
+            if (file.exists() && !file.delete()) {
+                Logger.getLogger(StringTable.class.getName())
+                        .log(Level.WARNING, "Unable to delete "+file);
+            }
+        }
+    }
+
+    /**
+     * Reads the strings one after the other.
+     */
+    public static class Reader {
+
+        private final DataInputStream in;
+
+        Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * @return the next string, or null at the end.
+         * @throws IOException if the file cannot be read.
+         */
+        public String next() throws IOException {
+            try {
+                return in.readUTF();
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException ex) {
+                Logger.getLogger(StringTable.class.getName())
+                        .log(Level.WARNING, "Unable to close stream!", ex);
+            }
+        }
+    }
+
+}
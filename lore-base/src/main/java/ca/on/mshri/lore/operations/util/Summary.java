@@ -17,12 +17,17 @@
 package ca.on.mshri.lore.operations.util;
 
 import ca.on.mshri.lore.base.LoreModel;
-import com.hp.hpl.jena.ontology.Individual;
-import com.hp.hpl.jena.ontology.OntClass;
-import com.hp.hpl.jena.util.iterator.ExtendedIterator;
-import de.jweile.yogiutil.Counts;
+import ca.on.mshri.lore.base.ModelStatistics;
+import com.hp.hpl.jena.graph.Node;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
+ * Prints the number of members of each class in the model, along with the
+ * number of members added and removed since the previous summary, and the 
+ * number of statements for each property. The counts
+ * come from the model's {@link ModelStatistics}, so printing a summary does
+ * not scan the model.
  *
  * @author Jochen Weile <jochenweile@gmail.com>
  */
@@ -30,16 +35,33 @@ public class Summary {
     
     public void printSummary(LoreModel model) {
         
-        Counts<OntClass> counts = new Counts<OntClass>();
-        ExtendedIterator<Individual> it = model.listIndividuals();
-        while (it.hasNext()) {
-            Individual i = it.next();
-            counts.count(i.getOntClass());
+        ModelStatistics stats = ModelStatistics.getInstance(model);
+        Map<Node,long[]> delta = stats.takeDelta();
+        Map<Node,Long> counts = stats.getClassCounts();
+        //sort by name, including classes that have lost all their members
+        Map<String,Node> classes = new TreeMap<String, Node>();
+        for (Node clazz : counts.keySet()) {
+            classes.put(clazz.toString(), clazz);
+        }
+        for (Node clazz : delta.keySet()) {
+            classes.put(clazz.toString(), clazz);
         }
         
         System.out.println("\nSummary:");
-        for (OntClass clazz : counts.getKeys()) {
-            System.out.println(clazz+"\t"+counts.getCount(clazz));
+        for (Map.Entry<String,Node> entry : classes.entrySet()) {
+            Long count = counts.get(entry.getValue());
+            long[] d = delta.get(entry.getValue());
+            System.out.println(entry.getKey()+"\t"+(count == null ? 0 : count)
+                    +(d == null ? "" : "\t+"+d[0]+"/-"+d[1]));
+        }
+        
+        System.out.println("\nProperties:");
+        Map<String,Long> properties = new TreeMap<String, Long>();
+        for (Map.Entry<Node,Long> entry : stats.getPropertyCounts().entrySet()) {
+            properties.put(entry.getKey().toString(), entry.getValue());
+        }
+        for (Map.Entry<String,Long> entry : properties.entrySet()) {
+            System.out.println(entry.getKey()+"\t"+entry.getValue());
         }
         System.out.println("\n");
         
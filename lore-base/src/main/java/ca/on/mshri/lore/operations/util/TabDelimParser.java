@@ -16,63 +16,123 @@
  */
 package ca.on.mshri.lore.operations.util;
 
+import ca.on.mshri.lore.operations.Configure;
 import ca.on.mshri.lore.operations.LoreOperation;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.shared.Lock;
 import de.jweile.yogiutil.CliIndeterminateProgress;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Base class for operations that import tab-delimited files.
+ *
+ * <p>If more than one thread is configured (see {@link Configure#THREADS_KEY}),
+ * parsing is pipelined: A reader thread cuts the input into chunks of lines,
+ * a pool of workers tokenizes and transforms the rows of each chunk, and the
+ * calling thread writes the results to the model, one chunk per write lock.
+ * Otherwise everything happens on the calling thread, one row at a time.</p>
+ *
+ * <p>Changes are committed in batches while parsing (see {@link TransactionManager}).</p>
  *
  * @author Jochen Weile <jochenweile@gmail.com>
  */
 public abstract class TabDelimParser extends LoreOperation {
-    
+
+    /**
+     * number of lines per chunk in pipelined mode.
+     */
+    static final int CHUNK_SIZE = 4096;
+
+    /**
+     * maximum number of chunks in flight per worker thread.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Transforms and writes rows. In pipelined mode, {@link #transform(String[])}
+     * is called concurrently on worker threads and must not modify the model,
+     * while {@link #write(Object)} is only ever called from the thread that
+     * started the parse.
+     * @param <R> the type of the transformed rows.
+     */
+    protected interface RowHandler<R> {
+
+        /**
+         * @param cols the columns of a valid row.
+         * @return the transformed row, or null to skip the row.
+         */
+        R transform(String[] cols);
+
+        /**
+         * @param row a transformed row.
+         */
+        void write(R row);
+    }
+
     /**
-     * parse a tab-delimited input stream
+     * parse a tab-delimited input stream, passing each row to {@link #processRow(String[])}
+     * in file order.
      * @param in the input stream to parse.
      * @param skip how many lines to skip at the beginning of the file
-     * @param minCols 
+     * @param minCols
      */
     protected void parseTabDelim(InputStream in, int skip, int minCols) {
-        
+        parseTabDelim(in, skip, minCols, true, new RowHandler<String[]>() {
+            @Override
+            public String[] transform(String[] cols) {
+                return cols;
+            }
+            @Override
+            public void write(String[] cols) {
+                processRow(cols);
+            }
+        });
+    }
+
+    /**
+     * parse a tab-delimited input stream with a custom row handler.
+     * @param in the input stream to parse.
+     * @param skip how many lines to skip at the beginning of the file
+     * @param minCols rows with fewer columns are reported and skipped.
+     * @param ordered whether rows must be written in file order. If false,
+     * chunks are written in the order in which they are finished.
+     * @param handler the row handler.
+     */
+    protected <R> void parseTabDelim(InputStream in, int skip, int minCols,
+            boolean ordered, RowHandler<R> handler) {
+
+        TransactionManager tx = createTransactionManager();
+        boolean success = false;
         try {
             BufferedReader r = new BufferedReader(new InputStreamReader(in));
-            
-            CliIndeterminateProgress progress = new CliIndeterminateProgress();
-            
-            String line; int lnum = 0;
-            while ((line = r.readLine()) != null) {
-                lnum++;
-                
-                //skip header
-                if (lnum <= skip) {
-                    progress.next("Parsing");
-                    continue;
-                }
-                
-                String[] cols = line.split("\t");
-                
-                //check line consistency
-                if (cols.length < minCols) {
-                    Logger.getLogger(TabDelimParser.class.getName()).log(Level.WARNING, "Invalid line: "+lnum);
-                    progress.next("Parsing");
-                    continue;
-                }
-                
-                processRow(cols);
-                
-                progress.next("Parsing");
+            int threads = Configure.getThreads();
+            if (threads > 1) {
+                new Pipeline<R>(r, skip, minCols, ordered, handler, tx, threads).run();
+            } else {
+                parseSequential(r, skip, minCols, handler, tx);
             }
-            
-            progress.done();
-            
+            success = true;
         } catch (IOException ex) {
             throw new RuntimeException("Error reading stream", ex);
         } finally {
+            tx.close(success);
             try {
                 in.close();
             } catch (IOException ex) {
@@ -80,7 +140,325 @@ public abstract class TabDelimParser extends LoreOperation {
                         .log(Level.WARNING, "Unable to close stream", ex);
             }
         }
-        
+
+    }
+
+    /**
+     * reads, transforms and writes one line after another.
+     */
+    private <R> void parseSequential(BufferedReader r, int skip, int minCols,
+            RowHandler<R> handler, TransactionManager tx) throws IOException {
+
+        CliIndeterminateProgress progress = new CliIndeterminateProgress();
+
+        String line; int lnum = 0;
+        while ((line = r.readLine()) != null) {
+            lnum++;
+
+            //skip header
+            if (lnum <= skip) {
+                progress.next("Parsing");
+                continue;
+            }
+
+            String[] cols = splitTabs(line);
+
+            //check line consistency
+            if (cols.length < minCols) {
+                Logger.getLogger(TabDelimParser.class.getName()).log(Level.WARNING, "Invalid line: "+lnum);
+                progress.next("Parsing");
+                continue;
+            }
+
+            R row = handler.transform(cols);
+            if (row != null) {
+                handler.write(row);
+            }
+            tx.rows(1);
+            OperationMetrics.recordRows(1);
+
+            progress.next("Parsing");
+        }
+
+        progress.done();
+    }
+
+    /**
+     * Splits a line at tabs into newly allocated column strings. Gives the same
+     * result as <code>line.split("\t")</code>, including the removal of trailing
+     * empty columns, but scans for tabs with {@link String#indexOf(int)} instead
+     * of a regular expression and allocates the array at its final size.
+     * @param line the line
+     * @return the columns
+     */
+    static String[] splitTabs(String line) {
+        //drop trailing empty columns like String.split() does
+        int end = line.length();
+        while (end > 0 && line.charAt(end-1) == '\t') {
+            end--;
+        }
+        if (end == 0) {
+            return line.length() == 0 ? new String[]{line} : new String[0];
+        }
+        int n = 1;
+        for (int tab = line.indexOf('\t'); tab >= 0 && tab < end; tab = line.indexOf('\t', tab + 1)) {
+            n++;
+        }
+        String[] cols = new String[n];
+        int start = 0;
+        for (int i = 0; i < n - 1; i++) {
+            int tab = line.indexOf('\t', start);
+            cols[i] = line.substring(start, tab);
+            start = tab + 1;
+        }
+        cols[n-1] = line.substring(start, end);
+        return cols;
+    }
+
+    /**
+     * A chunk of consecutive lines and the rows transformed from them.
+     */
+    private static class Chunk<R> {
+
+        /**
+         * line number of the first line in the chunk.
+         */
+        private final int firstLine;
+
+        private final List<String> lines;
+
+        private final List<R> rows;
+
+        /**
+         * line numbers of invalid lines.
+         */
+        private final List<Integer> invalid = new ArrayList<Integer>();
+
+        /**
+         * total number of chunks if this is the end marker, otherwise -1.
+         */
+        private final int total;
+
+        /**
+         * a read error if this is the end marker, otherwise null.
+         */
+        private final IOException error;
+
+        Chunk(int firstLine, List<String> lines) {
+            this.firstLine = firstLine;
+            this.lines = lines;
+            this.rows = new ArrayList<R>(lines.size());
+            this.total = -1;
+            this.error = null;
+        }
+
+        Chunk(int total, IOException error) {
+            this.firstLine = -1;
+            this.lines = null;
+            this.rows = null;
+            this.total = total;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Reader thread, worker pool and writer for the pipelined mode.
+     */
+    private class Pipeline<R> {
+
+        private final BufferedReader reader;
+        private final int skip, minCols;
+        private final boolean ordered;
+        private final RowHandler<R> handler;
+        private final TransactionManager tx;
+        private final ExecutorService workers;
+
+        /**
+         * finished (or, if ordered, submitted) chunks for the writer.
+         */
+        private final BlockingQueue<Future<Chunk<R>>> out = new LinkedBlockingQueue<Future<Chunk<R>>>();
+
+        /**
+         * limits the number of chunks held in memory.
+         */
+        private final Semaphore inFlight;
+
+        Pipeline(BufferedReader reader, int skip, int minCols, boolean ordered,
+                RowHandler<R> handler, TransactionManager tx, int threads) {
+            this.reader = reader;
+            this.skip = skip;
+            this.minCols = minCols;
+            this.ordered = ordered;
+            this.handler = handler;
+            this.tx = tx;
+            this.workers = Executors.newFixedThreadPool(threads);
+            this.inFlight = new Semaphore(threads * CHUNKS_PER_THREAD);
+        }
+
+        void run() {
+
+            Thread readerThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    read();
+                }
+            }, "TabDelimParser-reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+
+            try {
+                write();
+            } finally {
+                readerThread.interrupt();
+                workers.shutdownNow();
+            }
+        }
+
+        /**
+         * cuts the input into chunks and hands them to the workers.
+         */
+        private void read() {
+            int count = 0;
+            IOException error = null;
+            try {
+                String line; int lnum = 0;
+                List<String> lines = new ArrayList<String>(CHUNK_SIZE);
+                int first = skip + 1;
+                while ((line = reader.readLine()) != null) {
+                    lnum++;
+                    if (lnum <= skip) {
+                        continue;
+                    }
+                    lines.add(line);
+                    if (lines.size() == CHUNK_SIZE) {
+                        submit(new Chunk<R>(first, lines));
+                        count++;
+                        first = lnum + 1;
+                        lines = new ArrayList<String>(CHUNK_SIZE);
+                    }
+                }
+                if (!lines.isEmpty()) {
+                    submit(new Chunk<R>(first, lines));
+                    count++;
+                }
+            } catch (IOException ex) {
+                error = ex;
+            } catch (InterruptedException ex) {
+                //the writer has given up.
+                return;
+            } catch (RejectedExecutionException ex) {
+                //the writer has given up.
+                return;
+            }
+            FutureTask<Chunk<R>> end = new FutureTask<Chunk<R>>(
+                    new Transform(new Chunk<R>(count, error)));
+            end.run();
+            out.add(end);
+        }
+
+        private void submit(Chunk<R> chunk) throws InterruptedException {
+            inFlight.acquire();
+            if (ordered) {
+                out.add(workers.submit(new Transform(chunk)));
+            } else {
+                workers.execute(new FutureTask<Chunk<R>>(new Transform(chunk)) {
+                    @Override
+                    protected void done() {
+                        out.add(this);
+                    }
+                });
+            }
+        }
+
+        /**
+         * writes finished chunks on the calling thread.
+         */
+        private void write() {
+
+            CliIndeterminateProgress progress = new CliIndeterminateProgress();
+            Model model = getModel();
+
+            int written = 0, total = -1;
+            while (total < 0 || written < total) {
+                Chunk<R> chunk;
+                try {
+                    chunk = out.take().get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while parsing", ex);
+                } catch (ExecutionException ex) {
+                    throw new RuntimeException("Error transforming rows", ex.getCause());
+                }
+
+                if (chunk.total >= 0) {
+                    if (chunk.error != null) {
+                        throw new RuntimeException("Error reading stream", chunk.error);
+                    }
+                    total = chunk.total;
+                    continue;
+                }
+
+                if (!chunk.invalid.isEmpty()) {
+                    Logger.getLogger(TabDelimParser.class.getName()).log(Level.WARNING,
+                            "Invalid lines in chunk starting at line "+chunk.firstLine
+                            +": "+chunk.invalid);
+                }
+
+                if (model != null) {
+                    model.enterCriticalSection(Lock.WRITE);
+                }
+                try {
+                    for (R row : chunk.rows) {
+                        handler.write(row);
+                        progress.next("Parsing");
+                    }
+                    tx.rows(chunk.rows.size());
+                } finally {
+                    if (model != null) {
+                        model.leaveCriticalSection();
+                    }
+                }
+
+                OperationMetrics.recordRows(chunk.lines.size());
+                written++;
+                inFlight.release();
+            }
+
+            progress.done();
+        }
+
+        /**
+         * tokenizes and transforms the lines of a chunk.
+         */
+        private class Transform implements Callable<Chunk<R>> {
+
+            private final Chunk<R> chunk;
+
+            Transform(Chunk<R> chunk) {
+                this.chunk = chunk;
+            }
+
+            @Override
+            public Chunk<R> call() {
+                if (chunk.lines == null) {
+                    return chunk;
+                }
+                int lnum = chunk.firstLine;
+                for (String line : chunk.lines) {
+                    String[] cols = splitTabs(line);
+                    if (cols.length < minCols) {
+                        chunk.invalid.add(lnum);
+                    } else {
+                        R row = handler.transform(cols);
+                        if (row != null) {
+                            chunk.rows.add(row);
+                        }
+                    }
+                    lnum++;
+                }
+                return chunk;
+            }
+        }
     }
 
     protected abstract void processRow(String[] cols);
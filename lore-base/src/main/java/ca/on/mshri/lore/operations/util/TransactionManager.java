@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import ca.on.mshri.lore.base.LoreModel;
+import ca.on.mshri.lore.operations.Configure;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.tdb.TDB;
+import com.hp.hpl.jena.tdb.store.GraphTDB;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Commits long-running changes to a model in batches. A batch ends whenever
+ * the number of processed rows or the number of changed statements reaches
+ * the configured limits (see {@link Configure#COMMIT_ROWS_KEY} and
+ * {@link Configure#COMMIT_TRIPLES_KEY}).
+ *
+ * <p>If the model supports transactions, a transaction is begun on creation,
+ * committed at the end of each batch and the next one begun. For a TDB dataset
+ * opened through a {@link TransactionalGraph}, as the command line tools do, 
+ * each batch is a TDB write transaction: a crash loses at most the batch in
+ * progress, and a failed operation aborts it. If the data is stored in a TDB
+ * graph used without transactions, the graph is synced to disk at the end of
+ * each batch instead. That bounds the changes held in memory, but a crash
+ * mid-batch can leave the store inconsistent, and a failed operation cannot
+ * be rolled back.</p>
+ *
+ * <p>For any other model, or if committing is switched off
+ * (see {@link Configure#COMMIT_KEY}), all methods do nothing. Callers must
+ * hold the model's write lock when reporting rows, since that may commit, and
+ * must not hold open iterators over the model then.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class TransactionManager {
+
+    private final Model model;
+
+    /**
+     * the TDB graph holding the data, or null.
+     */
+    private final Graph tdbGraph;
+
+    private final boolean active;
+
+    private final long maxRows, maxChanges;
+
+    private long rows = 0;
+
+    /**
+     * statements added or removed in the current transaction.
+     */
+    private final AtomicLong changes = new AtomicLong();
+
+    private int commits = 0;
+
+    private final StatementListener counter = new StatementListener() {
+        @Override
+        public void addedStatement(Statement s) {
+            changes.incrementAndGet();
+        }
+        @Override
+        public void removedStatement(Statement s) {
+            changes.incrementAndGet();
+        }
+    };
+
+    /**
+     * Creates a transaction manager with the configured limits and begins
+     * the first batch.
+     * @param model the model
+     */
+    public TransactionManager(Model model) {
+        this(model, Configure.getCommitRows(), Configure.getCommitTriples());
+    }
+
+    /**
+     * Creates a transaction manager and begins the first batch.
+     * @param model the model
+     * @param maxRows number of rows after which to commit.
+     * @param maxChanges number of changed statements after which to commit.
+     */
+    public TransactionManager(Model model, long maxRows, long maxChanges) {
+        this.model = model;
+        this.maxRows = maxRows;
+        this.maxChanges = maxChanges;
+        Graph data = model == null ? null : LoreModel.dataModel(model).getGraph();
+        this.tdbGraph = data instanceof GraphTDB ? data : null;
+        this.active = model != null && (model.supportsTransactions() || tdbGraph != null)
+                && Configure.isCommitEnabled();
+        if (active) {
+            model.register(counter);
+            begin();
+        }
+    }
+
+    /**
+     * Reports processed rows and commits if a limit has been reached.
+     * @param n number of rows processed since the last call.
+     */
+    public void rows(int n) {
+        rows += n;
+        if (active && (rows >= maxRows || changes.get() >= maxChanges)) {
+            commit();
+        }
+    }
+
+    /**
+     * Commits the current batch and begins the next one.
+     */
+    public void commit() {
+        if (!active) {
+            return;
+        }
+        end();
+        commits++;
+        Logger.getLogger(TransactionManager.class.getName()).log(Level.FINE,
+                "Committed "+changes.get()+" changes from "+rows+" rows.");
+        rows = 0;
+        changes.set(0);
+        begin();
+    }
+
+    private void begin() {
+        if (tdbGraph == null) {
+            model.begin();
+        }
+    }
+
+    /**
+     * commits the transaction, or writes the TDB graph to disk.
+     */
+    private void end() {
+        if (tdbGraph == null) {
+            model.commit();
+        } else {
+            TDB.sync(tdbGraph);
+        }
+    }
+
+    /**
+     * Ends the last batch.
+     * @param success whether to commit the last batch. Otherwise it is
+     * aborted, if the model supports that. Earlier batches stay committed.
+     */
+    public void close(boolean success) {
+        if (!active) {
+            return;
+        }
+        model.unregister(counter);
+        if (success) {
+            end();
+            commits++;
+        } else if (tdbGraph != null) {
+            Logger.getLogger(TransactionManager.class.getName()).log(Level.WARNING,
+                    "Cannot abort: changes since the last commit remain in the model.");
+        } else {
+            try {
+                model.abort();
+            } catch (UnsupportedOperationException ex) {
+                Logger.getLogger(TransactionManager.class.getName()).log(Level.WARNING,
+                        "Cannot abort: changes since the last commit remain in the model.");
+            }
+        }
+    }
+
+    /**
+     * @return the number of commits so far.
+     */
+    public int getCommits() {
+        return commits;
+    }
+
+    /**
+     * @return whether this manager commits at all.
+     */
+    public boolean isActive() {
+        return active;
+    }
+}
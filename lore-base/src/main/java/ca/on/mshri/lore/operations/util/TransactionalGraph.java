@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import ca.on.mshri.lore.base.LoreModel;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.GraphEvents;
+import com.hp.hpl.jena.graph.TransactionHandler;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.TripleMatch;
+import com.hp.hpl.jena.graph.impl.GraphBase;
+import com.hp.hpl.jena.graph.impl.TransactionHandlerBase;
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.ReadWrite;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+/**
+ * <p>The default graph of a transactional dataset (e.g. TDB), written in a
+ * sequence of write transactions. A transaction is begun on creation, and
+ * committing or aborting it through the graph's transaction handler (e.g. with
+ * <code>model.commit()</code>) begins the next one. So a model around this
+ * graph can be used across transactions, while a graph taken from the dataset
+ * is only valid in the transaction it was taken in.</p>
+ *
+ * <p>Transactions belong to the thread that began them, so only the thread
+ * that created the graph may commit or abort. Other threads may read the graph
+ * while that thread does not write. Iterators must be closed before the
+ * transaction ends. After an abort, listeners are notified with
+ * {@link #ABORTED}, since the data has reverted to the last commit.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class TransactionalGraph extends GraphBase {
+
+    /**
+     * event sent to the graph's listeners after a transaction is aborted.
+     */
+    public static final GraphEvents ABORTED = new GraphEvents("aborted", "");
+
+    private final Dataset dataset;
+
+    /**
+     * the thread that began the transactions.
+     */
+    private final Thread owner;
+
+    /**
+     * the default graph of the current transaction.
+     */
+    private volatile Graph current;
+
+    /**
+     * whether the last transaction has ended.
+     */
+    private boolean ended = false;
+
+    private final TransactionHandler handler = new TransactionHandlerBase() {
+        @Override
+        public boolean transactionsSupported() {
+            return true;
+        }
+        @Override
+        public void begin() {
+            //there is always a transaction in progress
+        }
+        @Override
+        public void commit() {
+            checkOwner();
+            dataset.commit();
+            begin(dataset);
+        }
+        @Override
+        public void abort() {
+            checkOwner();
+            dataset.abort();
+            begin(dataset);
+            getEventManager().notifyEvent(TransactionalGraph.this, ABORTED);
+        }
+    };
+
+    /**
+     * Begins the first write transaction on the dataset.
+     * @param dataset a dataset that supports transactions.
+     */
+    public TransactionalGraph(Dataset dataset) {
+        if (!dataset.supportsTransactions()) {
+            throw new IllegalArgumentException("Dataset does not support transactions!");
+        }
+        this.dataset = dataset;
+        this.owner = Thread.currentThread();
+        begin(dataset);
+    }
+
+    /**
+     * @param model a model
+     * @return the transactional graph holding the model's data, or null if
+     * the data is held elsewhere.
+     */
+    public static TransactionalGraph of(Model model) {
+        Graph data = LoreModel.dataModel(model).getGraph();
+        return data instanceof TransactionalGraph ? (TransactionalGraph) data : null;
+    }
+
+    private void begin(Dataset dataset) {
+        dataset.begin(ReadWrite.WRITE);
+        current = dataset.asDatasetGraph().getDefaultGraph();
+    }
+
+    private void checkOwner() {
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("Transactions must be ended by the thread that began them!");
+        }
+    }
+
+    /**
+     * @return whether the calling thread may commit and abort.
+     */
+    public boolean isOwner() {
+        return Thread.currentThread() == owner;
+    }
+
+    @Override
+    public TransactionHandler getTransactionHandler() {
+        return handler;
+    }
+
+    @Override
+    protected ExtendedIterator<Triple> graphBaseFind(TripleMatch m) {
+        return current.find(m);
+    }
+
+    @Override
+    protected boolean graphBaseContains(Triple t) {
+        return current.contains(t);
+    }
+
+    @Override
+    protected int graphBaseSize() {
+        return current.size();
+    }
+
+    @Override
+    public void performAdd(Triple t) {
+        current.add(t);
+    }
+
+    @Override
+    public void performDelete(Triple t) {
+        current.delete(t);
+    }
+
+    /**
+     * Aborts the transaction in progress, which holds whatever has not been
+     * committed, and closes the graph. The dataset stays open.
+     */
+    @Override
+    public synchronized void close() {
+        if (!ended) {
+            checkOwner();
+            dataset.abort();
+            ended = true;
+        }
+        super.close();
+    }
+
+}
@@ -16,11 +16,23 @@
  */
 package ca.on.mshri.lore.operations.util;
 
+import ca.on.mshri.lore.base.IdentityMap;
 import ca.on.mshri.lore.base.LoreModel;
+import ca.on.mshri.lore.base.XRefIndex;
 import ca.on.mshri.lore.operations.Configure;
 import ca.on.mshri.lore.operations.LoreOperation;
 import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Statement;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -35,6 +47,18 @@ public class Workflow {
     
     private LoreModel model;
     
+    private Summary summary = new Summary();
+    
+    /**
+     * compact copy of the model for read-only operations, or null.
+     */
+    private LoreModel compactModel;
+    
+    /**
+     * metrics of the operations run so far.
+     */
+    private List<OperationMetrics> metrics = Collections.synchronizedList(new ArrayList<OperationMetrics>());
+    
     public void add(LoreOperation op) {
         ops.add(op);
     }
@@ -50,37 +74,198 @@ public class Workflow {
         this.model = model;
     }
     
+    /**
+     * Runs all operations of the workflow. Operations are executed one after another,
+     * unless more than one thread is configured (see {@link Configure#THREADS_KEY}),
+     * in which case the remaining operations are handed to a {@link WorkflowScheduler}.
+     * Data in a {@link TransactionalGraph} can only be committed by the thread 
+     * that began its transactions, so then operations always run on this thread.
+     * {@link OperationMetrics} are collected for each operation and written to
+     * the run report at the end, if one is configured (see {@link Configure#REPORT_KEY}).
+     */
     public void run() {
         
-        Summary summary = new Summary();
-        
-        //run operations
-        for (LoreOperation op : ops) {
-            if (op.requiresReasoner()) {
-                op.setModel(new LoreModel(OntModelSpec.OWL_DL_MEM_RDFS_INF, model));
-            } else {
-                op.setModel(model);
+        try {
+            for (int i = 0; i < ops.size(); i++) {
+
+                //the thread count may be changed by a Configure operation along the way
+                int threads = Configure.getThreads();
+                if (threads > 1 && TransactionalGraph.of(model) == null) {
+                    new WorkflowScheduler(this, ops.subList(i, ops.size()), threads).run();
+                    return;
+                }
+
+                LoreOperation op = ops.get(i);
+                prepare(op);
+                assignModel(op);
+                execute(op, true);
             }
+        } finally {
+            writeReport();
+        }
+        
+    }
+    
+    /**
+     * runs a prepared operation and its completion hooks, measuring its metrics.
+     * The model's {@link IdentityMap} and compact copy are released after each 
+     * modifying operation.
+     * @param op the operation
+     * @param commit whether to commit afterwards.
+     */
+    void execute(LoreOperation op, boolean commit) {
+        OperationMetrics m = new OperationMetrics(op, ops.indexOf(op), model);
+        metrics.add(m);
+        boolean success = false;
+        try {
             op.run();
-            
-            String commitProp = System.getProperties().getProperty(Configure.COMMIT_KEY);
-            if (commitProp == null || Boolean.parseBoolean(commitProp)) {
-                if (model.supportsTransactions()) {
-                    Logger.getLogger(Workflow.class.getName())
-                            .log(Level.INFO, "Committing model to database");
-                    model.commit();
-                } else {
-                    Logger.getLogger(Workflow.class.getName())
-                            .log(Level.WARNING, "Cannot commit: Model does not support transactions!");
+            success = true;
+        } finally {
+            m.stop(success);
+            if (!op.getFootprint().isReadOnly()) {
+                IdentityMap.release(model);
+                releaseCompactModel();
+            }
+        }
+        complete(op, commit);
+    }
+    
+    /**
+     * writes the run report and removes the metrics MBeans.
+     */
+    private void writeReport() {
+        List<OperationMetrics> list;
+        synchronized (metrics) {
+            list = new ArrayList<OperationMetrics>(metrics);
+        }
+        Collections.sort(list, new Comparator<OperationMetrics>() {
+            @Override
+            public int compare(OperationMetrics a, OperationMetrics b) {
+                return a.getIndex() - b.getIndex();
+            }
+        });
+        String path = System.getProperty(Configure.REPORT_KEY);
+        if (path != null) {
+            Writer w = null;
+            try {
+                w = new OutputStreamWriter(new FileOutputStream(path), "UTF-8");
+                OperationMetrics.writeReport(w, list);
+                Logger.getLogger(Workflow.class.getName())
+                        .log(Level.INFO, "Run report written to "+path);
+            } catch (IOException ex) {
+                Logger.getLogger(Workflow.class.getName())
+                        .log(Level.WARNING, "Unable to write run report!", ex);
+            } finally {
+                if (w != null) {
+                    try {
+                        w.close();
+                    } catch (IOException ex) {
+                        Logger.getLogger(Workflow.class.getName())
+                                .log(Level.WARNING, "Unable to close stream!", ex);
+                    }
                 }
             }
-            
-            String summaryProp = System.getProperties().getProperty(Configure.SUMMARIES_KEY);
-            if (summaryProp == null || Boolean.parseBoolean(summaryProp)) {
-                summary.printSummary(model);
+        }
+        for (OperationMetrics m : list) {
+            m.unregister();
+        }
+    }
+    
+    /**
+     * lets the operation create the individuals it needs on the workflow model
+     * (see {@link LoreOperation#prepare(LoreModel)}). If that adds anything,
+     * the compact copy is dropped. Must not run alongside other operations.
+     * @param op the operation
+     */
+    void prepare(LoreOperation op) {
+        final boolean[] changed = {false};
+        StatementListener listener = new StatementListener() {
+            @Override
+            public void addedStatement(Statement s) {
+                changed[0] = true;
             }
+        };
+        Model data = LoreModel.dataModel(model);
+        data.register(listener);
+        try {
+            op.prepare(model);
+        } finally {
+            data.unregister(listener);
+        }
+        if (changed[0]) {
+            releaseCompactModel();
+        }
+    }
+    
+    /**
+     * assigns the appropriate model to a prepared operation. For an operation
+     * that requires a reasoner this adds an inference model on top, so it 
+     * must not run alongside other operations; otherwise it only reads.
+     * @param op the operation
+     */
+    void assignModel(LoreOperation op) {
+        if (op.requiresReasoner()) {
+            op.setModel(new LoreModel(OntModelSpec.OWL_DL_MEM_RDFS_INF, model));
+        } else if (Configure.isCompactEnabled() && op.getFootprint().isReadOnly()) {
+            op.setModel(getCompactModel());
+        } else {
+            op.setModel(model);
         }
+    }
+    
+    /**
+     * @return a model over a {@link CompactGraph} copy of the workflow model's
+     * data. The copy is made on first use and kept until an operation modifies
+     * the model.
+     */
+    private synchronized LoreModel getCompactModel() {
+        if (compactModel == null) {
+            Logger.getLogger(Workflow.class.getName())
+                    .log(Level.INFO, "Loading compact copy of the model...");
+            compactModel = new LoreModel(OntModelSpec.OWL_MEM, 
+                    ModelFactory.createModelForGraph(new CompactGraph(model.getBaseModel().getGraph())));
+        }
+        return compactModel;
+    }
+    
+    /**
+     * drops the compact copy, which is out of date after a modification.
+     */
+    private synchronized void releaseCompactModel() {
+        if (compactModel != null) {
+            IdentityMap.release(compactModel);
+            compactModel = null;
+        }
+    }
+    
+    /**
+     * performs the commit and summary hooks after an operation has run.
+     * @param op the operation
+     * @param commit whether to commit (not necessary for read-only operations).
+     */
+    void complete(LoreOperation op, boolean commit) {
         
+        if (commit && Configure.isCommitEnabled()) {
+            if (model.supportsTransactions()) {
+                Logger.getLogger(Workflow.class.getName())
+                        .log(Level.INFO, "Committing model to database");
+                model.commit();
+                //stamp the persisted index only once the data is committed.
+                //the statistics are verified against a full count when saved,
+                //so they are only persisted at the end of the run.
+                XRefIndex.persist(model);
+            } else {
+                Logger.getLogger(Workflow.class.getName())
+                        .log(Level.WARNING, "Cannot commit: Model does not support transactions!");
+            }
+        }
+
+        String summaryProp = System.getProperties().getProperty(Configure.SUMMARIES_KEY);
+        if (summaryProp == null || Boolean.parseBoolean(summaryProp)) {
+            synchronized (summary) {
+                summary.printSummary(model);
+            }
+        }
     }
     
 }
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import ca.on.mshri.lore.operations.LoreOperation;
+import com.hp.hpl.jena.shared.Lock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Runs the operations of a workflow concurrently where their
+ * {@link Footprint}s allow it. The operations are arranged in a dependency graph,
+ * where each operation depends on all earlier operations it conflicts with. An
+ * operation is started as soon as all of its dependencies have finished.</p>
+ *
+ * <p>Independent operations still share the same model, so only read-only
+ * operations actually run side by side. They share the read side of a
+ * read/write lock (and the model's own read critical section), while mutating
+ * operations hold the write side and are thus serialised. The commit and
+ * summary hooks of the workflow are run for each operation while its lock is
+ * still held.</p>
+ *
+ * <p>Before any operation starts, all of them are prepared on the model (see
+ * {@link LoreOperation#prepare(ca.on.mshri.lore.base.LoreModel)}), so that
+ * read-only operations find the individuals they need and do not have to
+ * wait for running operations to take the write lock.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class WorkflowScheduler {
+
+    private Workflow workflow;
+
+    private List<LoreOperation> ops;
+
+    private int threads;
+
+    /**
+     * guards the model: read-only operations take the read lock, everything else the write lock.
+     */
+    private ReadWriteLock lock = new ReentrantReadWriteLock(true);
+
+    /**
+     * Creates a new scheduler
+     * @param workflow the workflow to which the operations belong.
+     * @param ops the operations, in the order they were declared.
+     * @param threads the maximum number of operations to run at the same time.
+     */
+    public WorkflowScheduler(Workflow workflow, List<LoreOperation> ops, int threads) {
+        this.workflow = workflow;
+        this.ops = ops;
+        this.threads = threads;
+    }
+
+    /**
+     * Builds the dependency graph.
+     * @return for each operation the indices of the operations that depend on it.
+     */
+    int[][] dependents(int[] numDependencies) {
+        List<Footprint> footprints = new ArrayList<Footprint>();
+        for (LoreOperation op : ops) {
+            footprints.add(op.getFootprint());
+        }
+        List<List<Integer>> out = new ArrayList<List<Integer>>();
+        for (int i = 0; i < ops.size(); i++) {
+            out.add(new ArrayList<Integer>());
+        }
+        for (int j = 0; j < ops.size(); j++) {
+            for (int i = 0; i < j; i++) {
+                if (footprints.get(i).conflictsWith(footprints.get(j))) {
+                    out.get(i).add(j);
+                    numDependencies[j]++;
+                }
+            }
+        }
+        int[][] arr = new int[ops.size()][];
+        for (int i = 0; i < ops.size(); i++) {
+            arr[i] = new int[out.get(i).size()];
+            for (int k = 0; k < arr[i].length; k++) {
+                arr[i][k] = out.get(i).get(k);
+            }
+        }
+        return arr;
+    }
+
+    /**
+     * Runs all operations and waits for them to finish.
+     * @throws RuntimeException if any of the operations fails. Operations already
+     * running at that time are allowed to finish, but no further operations are started.
+     */
+    public void run() {
+
+        int[] numDependencies = new int[ops.size()];
+        int[][] dependents = dependents(numDependencies);
+
+        for (LoreOperation op : ops) {
+            workflow.prepare(op);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<Integer> completion = new ExecutorCompletionService<Integer>(executor);
+
+        int running = 0;
+        int done = 0;
+        RuntimeException failure = null;
+
+        try {
+            for (int i = 0; i < ops.size(); i++) {
+                if (numDependencies[i] == 0) {
+                    completion.submit(new Task(i), i);
+                    running++;
+                }
+            }
+
+            while (running > 0) {
+                int finished;
+                try {
+                    finished = completion.take().get();
+                } catch (ExecutionException e) {
+                    running--;
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException
+                                ? (RuntimeException) e.getCause()
+                                : new RuntimeException("Operation failed!", e.getCause());
+                    }
+                    continue;
+                } catch (InterruptedException e) {
+                    throw new RuntimeException("Interrupted while waiting for operations!", e);
+                }
+                running--;
+                done++;
+
+                if (failure != null) {
+                    continue;
+                }
+                for (int next : dependents[finished]) {
+                    if (--numDependencies[next] == 0) {
+                        completion.submit(new Task(next), next);
+                        running++;
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+        if (done < ops.size()) {
+            throw new IllegalStateException("Not all operations were executed!");
+        }
+    }
+
+    /**
+     * runs a single operation while holding the appropriate lock.
+     */
+    private class Task implements Runnable {
+
+        private int index;
+
+        Task(int index) {
+            this.index = index;
+        }
+
+        public void run() {
+            LoreOperation op = ops.get(index);
+            boolean readOnly = op.getFootprint().isReadOnly();
+
+            //setting up a reasoner may write schema triples, so it's done under the write lock.
+            java.util.concurrent.locks.Lock setup = readOnly && !op.requiresReasoner() ? lock.readLock() : lock.writeLock();
+            setup.lock();
+            try {
+                workflow.assignModel(op);
+            } finally {
+                setup.unlock();
+            }
+
+            Logger.getLogger(WorkflowScheduler.class.getName())
+                    .log(Level.INFO, "Starting "+op.getClass().getSimpleName()
+                    +(readOnly ? " (read-only)" : ""));
+
+            if (readOnly) {
+                lock.readLock().lock();
+                workflow.getModel().enterCriticalSection(Lock.READ);
+                try {
+                    workflow.execute(op, false);
+                } finally {
+                    workflow.getModel().leaveCriticalSection();
+                    lock.readLock().unlock();
+                }
+            } else {
+                lock.writeLock().lock();
+                try {
+                    workflow.execute(op, true);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+}
@@ -17,7 +17,10 @@
 package ca.on.mshri.lore.base;
 
 import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
 import junit.framework.TestCase;
 
 /**
@@ -76,4 +79,19 @@ public class BaseApiTest extends TestCase {
         
     }
     
+    public void testSharedSchema() throws Exception {
+        
+        Model data = ModelFactory.createDefaultModel();
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, data);
+        LoreModel model2 = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        
+        //schema is visible through the wrapper, but not copied into the data
+        assertNotNull(model.getOntClass(RecordObject.CLASS_URI));
+        assertFalse(data.contains(data.getResource(RecordObject.CLASS_URI), RDF.type, OWL.Class));
+        
+        //and is shared between models
+        assertSame(model.getSubGraphs().get(0), model2.getSubGraphs().get(0));
+        
+    }
+    
 }
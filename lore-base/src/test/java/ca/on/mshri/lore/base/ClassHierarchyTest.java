@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+import com.hp.hpl.jena.ontology.ConversionException;
+import com.hp.hpl.jena.ontology.OntClass;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.vocabulary.RDFS;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class ClassHierarchyTest extends TestCase {
+
+    public ClassHierarchyTest(String testName) {
+        super(testName);
+    }
+
+    public void testMembership() {
+
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        Publication pub = Publication.createOrGet(model, model.PUBMED, "1");
+
+        //publications are record objects, but not authorities
+        assertTrue(LoreModel.hasClass(pub, RecordObject.CLASS_URI));
+        assertFalse(LoreModel.hasClass(pub, Authority.CLASS_URI));
+        assertNotNull(RecordObject.fromIndividual(pub));
+        try {
+            Authority.fromIndividual(pub);
+            fail("Publication must not be castable to Authority.");
+        } catch (ConversionException e) {
+            //expected
+        }
+
+        //direct and indirect listings
+        assertEquals(0, model.listIndividualsOfClass(RecordObject.class, true).size());
+        assertEquals(1, model.listIndividualsOfClass(Publication.class, true).size());
+
+        //new subclasses in the data are picked up
+        OntClass special = model.createClass("urn:test:SpecialPublication");
+        special.addSuperClass(model.getOntClass(Publication.CLASS_URI));
+        assertTrue(LoreModel.isSubClassOf(special, model.getOntClass(RecordObject.CLASS_URI)));
+        special.createIndividual("urn:test:pub2");
+        assertTrue(WrapperFactory.forClass(RecordObject.class)
+                .canCast(model.getIndividual("urn:test:pub2")));
+    }
+
+    /**
+     * instances are kept per model and replaced when the hierarchy changes.
+     */
+    public void testInstances() {
+
+        Model a = ModelFactory.createDefaultModel();
+        Model b = ModelFactory.createDefaultModel();
+
+        ClassHierarchy ha = ClassHierarchy.getInstance(a);
+        ClassHierarchy hb = ClassHierarchy.getInstance(b);
+        assertNotSame(ha, hb);
+        assertSame(ha, ClassHierarchy.getInstance(a));
+        assertSame(hb, ClassHierarchy.getInstance(b));
+
+        a.add(a.createResource("urn:test:B"), RDFS.subClassOf, a.createResource("urn:test:A"));
+        ClassHierarchy rebuilt = ClassHierarchy.getInstance(a);
+        assertNotSame(ha, rebuilt);
+        assertSame(rebuilt, ClassHierarchy.getInstance(a));
+        assertSame(hb, ClassHierarchy.getInstance(b));
+        assertTrue(rebuilt.isSubClassOf(
+                a.createResource("urn:test:B").asNode(), a.createResource("urn:test:A").asNode()));
+
+        ClassHierarchy.invalidate(b);
+        assertNotSame(hb, ClassHierarchy.getInstance(b));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class IdentityMapTest extends TestCase {
+    
+    public IdentityMapTest(String testName) {
+        super(testName);
+    }
+    
+    public void testCreateOrGet() throws Exception {
+        
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        Authority auth = Authority.createOrGet(model, "A");
+        
+        RecordObject r1 = RecordObject.createOrGet(model, auth, "1");
+        long size = model.size();
+        
+        final int[] added = {0};
+        model.getBaseModel().register(new StatementListener() {
+            @Override
+            public void addedStatement(Statement s) {
+                added[0]++;
+            }
+        });
+        
+        //repeated calls do not write anything
+        assertEquals(r1, RecordObject.createOrGet(model, auth, "1"));
+        assertEquals(0, added[0]);
+        assertEquals(size, model.size());
+        
+        //removed statements are restored on the next call
+        model.removeAll(r1, BaseVocab.hasXRef, null);
+        assertTrue(r1.listXRefs().isEmpty());
+        RecordObject.createOrGet(model, auth, "1");
+        assertEquals(1, r1.listXRefs().size());
+        assertEquals(size, model.size());
+        
+        //after a release, existing statements are not added again
+        IdentityMap.release(model);
+        added[0] = 0;
+        RecordObject.createOrGet(model, auth, "1");
+        assertEquals(0, added[0]);
+        assertEquals(size, model.size());
+    }
+    
+    public void testMarkAfterWrites() throws Exception {
+        
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        IdentityMap known = IdentityMap.getInstance(model);
+        Resource r = model.getResource("urn:lore:RecordObject#test");
+        
+        //an individual is not known until its creator marks it
+        assertTrue(known.create(r, RecordObject.CLASS_URI));
+        assertFalse(known.contains(r.getURI()));
+        assertTrue(known.create(r, RecordObject.CLASS_URI));
+        
+        known.add(r.getURI());
+        assertFalse(known.create(r, RecordObject.CLASS_URI));
+    }
+    
+    public void testBloomFilter() throws Exception {
+        
+        System.setProperty(IdentityMap.BLOOM_KEY, "1000");
+        try {
+            LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+            Authority auth = Authority.createOrGet(model, "A");
+            RecordObject r1 = RecordObject.createOrGet(model, auth, "1");
+            long size = model.size();
+            
+            IdentityMap.release(model);
+            RecordObject.createOrGet(model, auth, "1");
+            RecordObject.createOrGet(model, auth, "2");
+            assertEquals(size + 5, model.size());
+            assertEquals(1, r1.listXRefs().size());
+        } finally {
+            System.clearProperty(IdentityMap.BLOOM_KEY);
+        }
+        
+        BloomFilter filter = new BloomFilter(100);
+        for (int i = 0; i < 100; i++) {
+            filter.add("urn:lore:Test#"+i);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertTrue(filter.mightContain("urn:lore:Test#"+i));
+        }
+    }
+}
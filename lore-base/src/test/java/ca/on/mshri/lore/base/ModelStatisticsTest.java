@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+import java.io.File;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class ModelStatisticsTest extends TestCase {
+
+    public ModelStatisticsTest(String testName) {
+        super(testName);
+    }
+
+    public void testUpdates() {
+
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        ModelStatistics stats = ModelStatistics.getInstance(model);
+        Node recordObject = Node.createURI(RecordObject.CLASS_URI);
+        stats.takeDelta();
+
+        Authority auth = Authority.createOrGet(model, "A");
+        RecordObject o1 = RecordObject.createOrGet(model, auth, "1");
+        RecordObject o2 = RecordObject.createOrGet(model, auth, "2");
+
+        assertEquals(2, stats.getCount(recordObject));
+        long xrefs = stats.getPropertyCount(BaseVocab.hasXRef.asNode());
+        assertTrue(xrefs >= 2);
+        Map<Node,long[]> delta = stats.takeDelta();
+        assertEquals(2, delta.get(recordObject)[0]);
+        assertEquals(0, delta.get(recordObject)[1]);
+
+        o2.remove();
+        assertEquals(1, stats.getCount(recordObject));
+        assertEquals(xrefs - 1, stats.getPropertyCount(BaseVocab.hasXRef.asNode()));
+        delta = stats.takeDelta();
+        assertEquals(0, delta.get(recordObject)[0]);
+        assertEquals(1, delta.get(recordObject)[1]);
+
+        //re-adding an existing statement must not inflate the counts
+        model.add(o1, RDF.type, model.getResource(RecordObject.CLASS_URI));
+        assertEquals(1, stats.getCount(recordObject));
+        assertTrue(stats.takeDelta().isEmpty());
+
+        //the schema is not counted
+        assertFalse(stats.getClassCounts().containsKey(OWL.Class.asNode()));
+    }
+
+    /**
+     * Jena reports redundant additions and removals of absent statements
+     * as well. On verification, the total has drifted from the graph, and
+     * the touched classes and properties are recounted.
+     */
+    public void testRedundantEvents() {
+
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        ModelStatistics stats = ModelStatistics.getInstance(model);
+        Node recordObject = Node.createURI(RecordObject.CLASS_URI);
+        Node authority = Node.createURI(Authority.CLASS_URI);
+
+        Authority auth = Authority.createOrGet(model, "A");
+        RecordObject o1 = RecordObject.createOrGet(model, auth, "1");
+        long authorities = stats.getCount(authority);
+        stats.takeDelta();
+
+        model.add(o1, RDF.type, model.getResource(RecordObject.CLASS_URI));
+        model.remove(o1, RDF.type, model.getResource(Authority.CLASS_URI));
+        model.remove(o1, RDFS.label, model.createLiteral("absent"));
+        stats.verify();
+
+        assertEquals(1, stats.getCount(recordObject));
+        Model data = model.getBaseModel();
+        assertEquals(data.listStatements(null, RDF.type, (RDFNode) null).toList().size(),
+                stats.getPropertyCount(RDF.type.asNode()));
+        assertEquals(data.listStatements(null, RDFS.label, (RDFNode) null).toList().size(),
+                stats.getPropertyCount(RDFS.label.asNode()));
+        assertEquals(authorities, stats.getCount(authority));
+        assertTrue(stats.takeDelta().isEmpty());
+
+        //real changes after redundant ones are still counted
+        model.add(o1, RDF.type, model.getResource(RecordObject.CLASS_URI));
+        RecordObject.createOrGet(model, auth, "2");
+        o1.remove();
+        stats.verify();
+        assertEquals(1, stats.getCount(recordObject));
+        Map<Node,long[]> delta = stats.takeDelta();
+        assertEquals(1, delta.get(recordObject)[0]);
+        assertEquals(1, delta.get(recordObject)[1]);
+    }
+
+    public void testPersistence() throws Exception {
+
+        File file = File.createTempFile("statistics", ".tsv");
+        file.delete();
+        File generation = File.createTempFile("generation", "");
+        generation.delete();
+        System.setProperty(ModelStatistics.FILE_KEY, file.getAbsolutePath());
+        System.setProperty(Generation.FILE_KEY, generation.getAbsolutePath());
+
+        try {
+            LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+            Authority auth = Authority.createOrGet(model, "A");
+            RecordObject.createOrGet(model, auth, "1");
+            RecordObject o2 = RecordObject.createOrGet(model, auth, "2");
+            ModelStatistics stats = ModelStatistics.getInstance(model);
+            Map<Node,Long> counts = stats.getClassCounts();
+            Map<Node,Long> properties = stats.getPropertyCounts();
+            ModelStatistics.persist(model);
+            assertTrue(file.exists());
+
+            //an identical copy of the data picks up the stored counts
+            Model copy = ModelFactory.createDefaultModel().add(model.getBaseModel());
+            LoreModel model2 = new LoreModel(OntModelSpec.OWL_MEM, copy);
+            assertEquals(counts, ModelStatistics.getInstance(model2).getClassCounts());
+            assertEquals(properties, ModelStatistics.getInstance(model2).getPropertyCounts());
+
+            //a change of the same size makes the stored counts out of date
+            Model copy2 = ModelFactory.createDefaultModel().add(model.getBaseModel());
+            LoreModel model3 = new LoreModel(OntModelSpec.OWL_MEM, copy2);
+            Resource r = model3.getResource(o2.getURI());
+            model3.remove(r, RDF.type, model3.getResource(RecordObject.CLASS_URI));
+            model3.add(r, RDF.type, model3.getResource(Authority.CLASS_URI));
+            Model copy3 = ModelFactory.createDefaultModel().add(copy2);
+            LoreModel model4 = new LoreModel(OntModelSpec.OWL_MEM, copy3);
+            assertEquals(counts.get(Node.createURI(RecordObject.CLASS_URI)) - 1, 
+                    ModelStatistics.getInstance(model4).getCount(Node.createURI(RecordObject.CLASS_URI)));
+
+        } finally {
+            System.clearProperty(ModelStatistics.FILE_KEY);
+            System.clearProperty(Generation.FILE_KEY);
+            file.delete();
+            generation.delete();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.base;
+
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+import java.io.File;
+import java.util.Collections;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class XRefIndexTest extends TestCase {
+
+    public XRefIndexTest(String testName) {
+        super(testName);
+    }
+
+    public void testUpdates() {
+
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        Authority authA = Authority.createOrGet(model, "A");
+        Authority authB = Authority.createOrGet(model, "B");
+
+        RecordObject o1 = RecordObject.createOrGet(model, authA, "1");
+
+        XRefIndex index = XRefIndex.getInstance(model);
+        assertEquals("1", o1.getXRefValue(authA));
+        assertNull(o1.getXRefValue(authB));
+
+        //additions after the index was built must be visible
+        o1.addXRef(authB, "x");
+        RecordObject o2 = RecordObject.createOrGet(model, authA, "2");
+        o2.addXRef(authB, "x");
+
+        assertEquals("x", o1.getXRefValue(authB));
+        assertEquals(2, index.lookup(authB, "x").size());
+        assertEquals(2, index.listValues(authA).size());
+
+        //as must removals
+        o2.remove();
+        assertEquals(1, index.lookup(authB, "x").size());
+        assertTrue(index.lookup(authA, "2").isEmpty());
+
+        //all wrappers around the same data share the index
+        LoreModel other = new LoreModel(OntModelSpec.OWL_MEM, model.getBaseModel());
+        assertSame(index, XRefIndex.getInstance(other));
+    }
+
+    public void testPersistence() throws Exception {
+
+        File file = File.createTempFile("xref-index", ".tsv.gz");
+        file.delete();
+        File generation = File.createTempFile("generation", "");
+        generation.delete();
+        System.setProperty(XRefIndex.FILE_KEY, file.getAbsolutePath());
+        System.setProperty(Generation.FILE_KEY, generation.getAbsolutePath());
+
+        try {
+            LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+            Authority authA = Authority.createOrGet(model, "A");
+            RecordObject o1 = RecordObject.createOrGet(model, authA, "1");
+            o1.addXRef(authA, "with\ttab");
+
+            XRefIndex.getInstance(model);
+            long size = model.getBaseModel().size();
+            XRefIndex.persist(model);
+            assertTrue(file.exists());
+            assertTrue(generation.exists());
+            //the generation is kept out of the data
+            assertEquals(size, model.getBaseModel().size());
+
+            //an identical copy of the data picks up the stored index
+            Model copy = ModelFactory.createDefaultModel().add(model.getBaseModel());
+            LoreModel model2 = new LoreModel(OntModelSpec.OWL_MEM, copy);
+            XRefIndex index2 = XRefIndex.getInstance(model2);
+            assertEquals(1, index2.lookup(authA, "with\ttab").size());
+            assertEquals(2, index2.getValues(o1.asNode(), authA).size());
+
+        } finally {
+            System.clearProperty(XRefIndex.FILE_KEY);
+            System.clearProperty(Generation.FILE_KEY);
+            file.delete();
+            generation.delete();
+        }
+    }
+
+    public void testStaleFile() throws Exception {
+
+        File file = File.createTempFile("xref-index", ".tsv.gz");
+        file.delete();
+        File generation = File.createTempFile("generation", "");
+        generation.delete();
+        System.setProperty(XRefIndex.FILE_KEY, file.getAbsolutePath());
+        System.setProperty(Generation.FILE_KEY, generation.getAbsolutePath());
+
+        try {
+            LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+            Authority authA = Authority.createOrGet(model, "A");
+            RecordObject o1 = RecordObject.createOrGet(model, authA, "1");
+            RecordObject o2 = RecordObject.createOrGet(model, authA, "2");
+
+            XRefIndex.getInstance(model).lookup(authA, "1");
+            XRefIndex.persist(model);
+
+            //move an XRef to another object without changing the size of the graph
+            Model copy = ModelFactory.createDefaultModel().add(model.getBaseModel());
+            LoreModel model2 = new LoreModel(OntModelSpec.OWL_MEM, copy);
+            Resource xref = model2.getResource(o1.getPropertyResourceValue(BaseVocab.hasXRef).getURI());
+            model2.remove(model2.getResource(o1.getURI()), BaseVocab.hasXRef, xref);
+            model2.add(model2.getResource(o2.getURI()), BaseVocab.hasXRef, xref);
+
+            //the persisted index no longer matches and must not be loaded
+            assertEquals(Collections.singleton(o2.asNode()),
+                    XRefIndex.getInstance(model2).lookup(authA, "1"));
+
+        } finally {
+            System.clearProperty(XRefIndex.FILE_KEY);
+            System.clearProperty(Generation.FILE_KEY);
+            file.delete();
+            generation.delete();
+        }
+    }
+
+    public void testBulkRemoval() {
+
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        Authority authA = Authority.createOrGet(model, "A");
+        RecordObject.createOrGet(model, authA, "1");
+
+        XRefIndex index = XRefIndex.getInstance(model);
+        assertEquals(1, index.lookup(authA, "1").size());
+
+        //pattern removals do not report each statement
+        model.removeAll(null, BaseVocab.hasXRef, null);
+        assertTrue(index.lookup(authA, "1").isEmpty());
+    }
+}
@@ -99,4 +99,46 @@ public class ContextBasedMergerTest extends TestCase {
         assertEquals(2, model.listIndividualsOfClass(Experiment.class, false).size());
         
     }
+    
+    /**
+     * Merges pairs of duplicates among many experiments with several workers.
+     */
+    public void testMergeParallel() {
+        
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        Authority authA = Authority.createOrGet(model,"A");
+        Property obsIn = model.getProperty(LoreModel.URI+"#observedIn");
+        
+        //experiment 2i and 2i+1 share the objects observed in them.
+        for (int i = 0; i < 5000; i++) {
+            Experiment exp = Experiment.createOrGet(model, "exp"+i);
+            RecordObject.createOrGet(model, authA, "o"+(i/2)).addProperty(obsIn, exp);
+            RecordObject.createOrGet(model, authA, "p"+(i/2)).addProperty(obsIn, exp);
+        }
+        
+        System.setProperty(Configure.THREADS_KEY, "4");
+        try {
+            ContextBasedMerger instance = new ContextBasedMerger();
+            instance.setParameter(instance.selectionP, instance.selectionP.validate(
+                    "SELECT ?exp WHERE {?exp <"+RDF.type.getURI()+"> "
+                    + "<"+Experiment.CLASS_URI+">}"));
+            instance.setParameter(instance.contextRestrictionsP, instance.contextRestrictionsP
+                    .validate(RecordObject.CLASS_URI));
+            instance.setModel(model);
+            instance.run();
+        } finally {
+            System.clearProperty(Configure.THREADS_KEY);
+        }
+        
+        assertEquals(2500, model.listIndividualsOfClass(Experiment.class, false).size());
+    }
+    
+    public void testFingerprint() {
+        
+        long[] a = {1, 5, (3L << 32) | 7};
+        long[] b = {1, 5, (3L << 32) | 8};
+        
+        assertEquals(new ContextBasedMerger.Fingerprint(a), new ContextBasedMerger.Fingerprint(a.clone()));
+        assertFalse(new ContextBasedMerger.Fingerprint(a).equals(new ContextBasedMerger.Fingerprint(b)));
+    }
 }
@@ -72,4 +72,71 @@ public class ExportImportTest extends TestCase {
         assertEquals(1, ros.size());
         assertEquals(o.getURI(), ros.get(0).getURI());
     }
+    
+    public void testStreaming() throws Exception {
+        
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        
+        RecordObject o = RecordObject.createOrGet(model, model.PUBMED, "test");
+        o.addLabel("\"quoted\"\nline \u00e9\u4e2d", "en");
+        o.addProperty(model.createProperty("urn:test:blank"), model.createResource());
+        
+        File testFile = File.createTempFile("rdftest", ".nq.gz");
+        
+        String oldThreads = System.getProperty(Configure.THREADS_KEY);
+        System.setProperty(Configure.THREADS_KEY, "2");
+        try {
+            RDFExport exporter = new RDFExport();
+            exporter.setModel(model);
+            exporter.setParameter(exporter.outfileP, testFile.getAbsolutePath());
+            exporter.setParameter(exporter.formatP, "N-QUADS");
+            exporter.setParameter(exporter.graphP, "urn:test:graph");
+            exporter.run();
+        } finally {
+            if (oldThreads == null) {
+                System.clearProperty(Configure.THREADS_KEY);
+            } else {
+                System.setProperty(Configure.THREADS_KEY, oldThreads);
+            }
+        }
+        
+        LoreModel model2 = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        
+        RDFImport importer = new RDFImport();
+        importer.setModel(model2);
+        importer.setParameter(importer.srcP, testFile.toURI().toURL());
+        importer.run();
+        
+        assertTrue(model.getBaseModel().isIsomorphicWith(model2.getBaseModel()));
+    }
+    
+    public void testPartitioned() throws Exception {
+        
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        RecordObject.createOrGet(model, model.PUBMED, "test");
+        
+        File testFile = File.createTempFile("rdftest", ".nt.gz");
+        
+        RDFExport exporter = new RDFExport();
+        exporter.setModel(model);
+        exporter.setParameter(exporter.outfileP, testFile.getAbsolutePath());
+        exporter.setParameter(exporter.formatP, "N-TRIPLE");
+        exporter.setParameter(exporter.partitionP, "class");
+        exporter.run();
+        
+        LoreModel model2 = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        assertTrue(new File(RDFExport.partitionFile(testFile.getAbsolutePath(), "RecordObject")).exists());
+        
+        String base = testFile.getName().substring(0, testFile.getName().indexOf('.'));
+        for (File part : testFile.getParentFile().listFiles()) {
+            if (part.getName().startsWith(base+".") && !part.equals(testFile)) {
+                RDFImport importer = new RDFImport();
+                importer.setModel(model2);
+                importer.setParameter(importer.srcP, part.toURI().toURL());
+                importer.run();
+            }
+        }
+        
+        assertTrue(model.getBaseModel().isIsomorphicWith(model2.getBaseModel()));
+    }
 }
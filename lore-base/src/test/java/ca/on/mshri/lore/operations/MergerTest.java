@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations;
+
+import ca.on.mshri.lore.base.Authority;
+import ca.on.mshri.lore.base.LoreModel;
+import ca.on.mshri.lore.base.RecordObject;
+import com.hp.hpl.jena.graph.TransactionHandler;
+import com.hp.hpl.jena.graph.impl.TransactionHandlerBase;
+import com.hp.hpl.jena.mem.GraphMem;
+import com.hp.hpl.jena.ontology.Individual;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class MergerTest extends TestCase {
+
+    public MergerTest(String testName) {
+        super(testName);
+    }
+
+    public void testBulkMerge() {
+
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        Authority authA = Authority.createOrGet(model, "A");
+        Property link = model.createProperty("urn:test:link");
+
+        RecordObject o1 = RecordObject.createOrGet(model, authA, "1");
+        RecordObject o2 = RecordObject.createOrGet(model, authA, "2");
+        RecordObject o3 = RecordObject.createOrGet(model, authA, "3");
+        RecordObject other = RecordObject.createOrGet(model, authA, "other");
+
+        //incoming and outgoing edges on the redundant objects
+        other.addProperty(link, o2);
+        o3.addProperty(link, other);
+
+        //overlapping sets must end up in the same unit
+        Collection<Set<Individual>> mergeSets = new ArrayList<Set<Individual>>();
+        Set<Individual> s1 = new HashSet<Individual>();
+        s1.add(o1);
+        s1.add(o2);
+        mergeSets.add(s1);
+        Set<Individual> s2 = new HashSet<Individual>();
+        s2.add(o2);
+        s2.add(o3);
+        mergeSets.add(s2);
+
+        Merger merger = new Merger();
+        merger.setParameter(merger.mergeSetsP, (Collection)mergeSets);
+        merger.setModel(model);
+        merger.run();
+
+        List<RecordObject> objects = model.listIndividualsOfClass(RecordObject.class, false);
+        assertEquals("Wrong number of objects after merging.", 2, objects.size());
+        assertTrue(merger.getRewrittenCount() > 0);
+
+        objects.remove(other);
+        RecordObject keeper = objects.get(0);
+        assertTrue(other.hasProperty(link, keeper));
+        assertTrue(keeper.hasProperty(link, other));
+        assertEquals(3, keeper.listXRefs().size());
+    }
+
+    public void testBulkTransaction() {
+
+        //records the size of the graph at each commit
+        final List<Integer> commits = new ArrayList<Integer>();
+        final GraphMem graph = new GraphMem() {
+            @Override
+            public TransactionHandler getTransactionHandler() {
+                return new TransactionHandlerBase() {
+                    @Override
+                    public boolean transactionsSupported() {
+                        return true;
+                    }
+                    @Override
+                    public void begin() {
+                    }
+                    @Override
+                    public void abort() {
+                        throw new UnsupportedOperationException();
+                    }
+                    @Override
+                    public void commit() {
+                        commits.add(size());
+                    }
+                };
+            }
+        };
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createModelForGraph(graph));
+        Authority authA = Authority.createOrGet(model, "A");
+        Property link = model.createProperty("urn:test:link");
+        RecordObject other = RecordObject.createOrGet(model, authA, "other");
+
+        //a merge with many more rewrites than the commit thresholds
+        Set<Individual> set = new HashSet<Individual>();
+        for (int i = 0; i < 20; i++) {
+            RecordObject o = RecordObject.createOrGet(model, authA, "" + i);
+            other.addProperty(link, o);
+            set.add(o);
+        }
+        Collection<Set<Individual>> mergeSets = new ArrayList<Set<Individual>>();
+        mergeSets.add(set);
+
+        System.setProperty(Configure.COMMIT_ROWS_KEY, "5");
+        System.setProperty(Configure.COMMIT_TRIPLES_KEY, "5");
+        try {
+            Merger merger = new Merger();
+            merger.setParameter(merger.mergeSetsP, (Collection)mergeSets);
+            merger.setModel(model);
+            merger.run();
+            assertTrue(merger.getRewrittenCount() > 5);
+        } finally {
+            System.clearProperty(Configure.COMMIT_ROWS_KEY);
+            System.clearProperty(Configure.COMMIT_TRIPLES_KEY);
+        }
+
+        //the deletions and additions are committed together at the end
+        assertEquals(1, commits.size());
+        assertEquals(graph.size(), (int) commits.get(0));
+        assertEquals(2, model.listIndividualsOfClass(RecordObject.class, false).size());
+    }
+}
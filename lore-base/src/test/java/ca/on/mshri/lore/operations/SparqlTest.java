@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations;
+
+import com.hp.hpl.jena.ontology.Individual;
+import com.hp.hpl.jena.ontology.OntClass;
+import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.query.QuerySolutionMap;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class SparqlTest extends TestCase {
+
+    private OntModel model;
+
+    private Sparql sparql;
+
+    public SparqlTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        model = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM);
+        Property part = model.createProperty("urn:test:hasParticipant");
+        Property type = model.createProperty("urn:test:type");
+        Resource physical = model.createResource("urn:test:Physical");
+        OntClass protein = model.createClass("urn:test:Protein");
+        for (int i = 0; i < 7; i++) {
+            model.createResource("urn:test:ia"+i)
+                    .addProperty(type, physical)
+                    .addProperty(part, protein.createIndividual("urn:test:p"+i));
+        }
+
+        sparql = Sparql.getInstance(SparqlTest.class.getProtectionDomain().getCodeSource());
+    }
+
+    private List<Individual> drain(ExtendedIterator<Individual> it) {
+        List<Individual> out = new ArrayList<Individual>();
+        while (it.hasNext()) {
+            out.add(it.next());
+        }
+        return out;
+    }
+
+    public void testStreaming() {
+
+        List<Individual> all = drain(sparql.iterateIndividuals(model, 
+                "listTestParticipants", "p", new QuerySolutionMap()));
+        assertEquals(7, all.size());
+        assertEquals(7, new HashSet<Individual>(all).size());
+
+        //stopping early releases the open iterators
+        ExtendedIterator<Individual> it = sparql.iterateIndividuals(model, 
+                "listTestParticipants", "p", new QuerySolutionMap());
+        assertTrue(it.hasNext());
+        it.next();
+        it.close();
+        assertFalse(it.hasNext());
+    }
+
+    public void testPaging() {
+
+        List<Individual> all = drain(sparql.iterateIndividuals(model, 
+                "listTestParticipants", "p", new QuerySolutionMap()));
+
+        //pages of 3, 3 and 1, without duplicates or gaps
+        List<Individual> paged = drain(sparql.iterateIndividuals(model, 
+                "listTestParticipants", "p", new QuerySolutionMap(), 3));
+        assertEquals(7, paged.size());
+        assertEquals(new HashSet<Individual>(all), new HashSet<Individual>(paged));
+
+        //bound variables restrict every page
+        QuerySolutionMap bindings = new QuerySolutionMap();
+        bindings.add("ia", model.getResource("urn:test:ia2"));
+        paged = drain(sparql.iterateIndividuals(model, 
+                "listTestParticipants", "p", bindings, 3));
+        assertEquals(1, paged.size());
+        assertEquals("urn:test:p2", paged.get(0).getURI());
+    }
+}
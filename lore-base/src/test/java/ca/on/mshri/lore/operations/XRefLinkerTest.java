@@ -29,6 +29,7 @@ import com.hp.hpl.jena.rdf.model.NodeIterator;
 import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.vocabulary.RDF;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import junit.framework.TestCase;
 
@@ -97,6 +98,97 @@ public class XRefLinkerTest extends TestCase {
         assertTrue(connected.contains(s2));
         assertTrue(connected.contains(s3));
         
+        //existing links are not added again
+        long size = model.size();
+        linker.run();
+        assertEquals(size, model.size());
+        
+    }
+    
+    public void testSpilled() {
+        
+        List<String> inMemory = linkAll(null, null);
+        List<String> spilled = linkAll("2", null);
+        
+        assertEquals(14, inMemory.size());
+        assertEquals(inMemory, spilled);
+    }
+    
+    public void testPartitioned() {
+        
+        List<String> single = linkAll(null, null);
+        
+        assertEquals(single, linkAll(null, "4"));
+        assertEquals(single, linkAll("2", "3"));
+    }
+    
+    /**
+     * links ten publications to ten species over shared keys, with the given 
+     * limit of keys held in memory and number of threads. One link exists 
+     * beforehand.
+     * @return the links as sorted strings.
+     */
+    private List<String> linkAll(String memoryKeys, String threads) {
+        
+        String oldKeys = System.getProperty(Configure.MEMORY_KEYS_KEY);
+        if (memoryKeys != null) {
+            System.setProperty(Configure.MEMORY_KEYS_KEY, memoryKeys);
+        }
+        if (threads != null) {
+            System.setProperty(Configure.THREADS_KEY, threads);
+        }
+        try {
+            LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+
+            Property testProperty = model.getProperty(LoreModel.URI+"#testProperty");
+
+            Authority authA = Authority.createOrGet(model,"A");
+
+            List<Publication> pubs = new ArrayList<Publication>();
+            List<Species> species = new ArrayList<Species>();
+            for (int i = 0; i < 10; i++) {
+                pubs.add(Publication.createOrGet(model, authA, "k"+i));
+                species.add(Species.createOrGet(model, authA, "k"+i));
+            }
+            //shared keys across objects
+            for (int i = 0; i < 4; i++) {
+                species.get(i).addXRef(authA, "k"+(i+5));
+            }
+            //already linked
+            pubs.get(0).addProperty(testProperty, species.get(0));
+
+            XRefBasedLinker linker = new XRefBasedLinker();
+
+            linker.setParameter(linker.fromSetP, linker.fromSetP.validate(
+                    "SELECT ?exp WHERE {?exp <"+RDF.type.getURI()+"> "
+                    + "<"+Publication.CLASS_URI+">}"));
+            linker.setParameter(linker.toSetP, linker.toSetP.validate(
+                    "SELECT ?exp WHERE {?exp <"+RDF.type.getURI()+"> "
+                    + "<"+Species.CLASS_URI+">}"));
+            linker.setParameter(linker.authorityP, linker.authorityP.validate(authA.getURI()));
+            linker.setParameter(linker.propertyP, linker.propertyP.validate(testProperty.getURI()));
+
+            linker.setModel(model);
+            linker.run();
+
+            List<String> result = new ArrayList<String>();
+            for (Publication pub : pubs) {
+                NodeIterator nit = pub.listPropertyValues(testProperty);
+                while (nit.hasNext()) {
+                    result.add(pub.getURI()+" -> "+nit.next().asResource().getURI());
+                }
+            }
+            Collections.sort(result);
+            return result;
+            
+        } finally {
+            System.clearProperty(Configure.THREADS_KEY);
+            if (oldKeys == null) {
+                System.clearProperty(Configure.MEMORY_KEYS_KEY);
+            } else {
+                System.setProperty(Configure.MEMORY_KEYS_KEY, oldKeys);
+            }
+        }
     }
     
 }
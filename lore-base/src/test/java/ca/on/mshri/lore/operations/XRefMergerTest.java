@@ -27,6 +27,8 @@ import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.vocabulary.RDF;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import junit.framework.TestCase;
 
@@ -132,6 +134,72 @@ public class XRefMergerTest extends TestCase {
         }
     }
     
+    public void testSpilled() {
+        
+        List<String> inMemory = mergeChains(null);
+        List<String> spilled = mergeChains("2");
+        
+        assertEquals("Wrong number of objects after merging.", 6, inMemory.size());
+        assertEquals(inMemory, spilled);
+    }
+    
+    /**
+     * merges four chains of three objects and two single objects, with the
+     * given limit of keys held in memory.
+     * @return the sorted XRef values of each remaining object, sorted.
+     */
+    private List<String> mergeChains(String memoryKeys) {
+        
+        String oldKeys = System.getProperty(Configure.MEMORY_KEYS_KEY);
+        if (memoryKeys != null) {
+            System.setProperty(Configure.MEMORY_KEYS_KEY, memoryKeys);
+        }
+        try {
+            LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+
+            Authority authA = Authority.createOrGet(model,"A");
+
+            for (int i = 0; i < 14; i++) {
+                RecordObject o = RecordObject.createOrGet(model, authA, "k"+i);
+                if (i < 12 && i % 3 != 2) {
+                    o.addXRef(authA, "k"+(i+1));
+                }
+            }
+
+            XRefBasedMerger merger = new XRefBasedMerger();
+
+            ResourceReferences<RecordObject> selection = merger.selectionP.validate(
+                    "SELECT ?exp WHERE {?exp <"+RDF.type.getURI()+"> "
+                    + "<"+RecordObject.CLASS_URI+">}");
+            ResourceReferences<Authority> authority = merger.authorityP.validate(authA.getURI());
+
+            merger.setParameter(merger.selectionP, selection);
+            merger.setParameter(merger.authorityP, authority);
+
+            merger.setModel(model);
+            merger.run();
+
+            List<String> result = new ArrayList<String>();
+            for (RecordObject o : model.listIndividualsOfClass(RecordObject.class, false)) {
+                List<String> values = new ArrayList<String>();
+                for (XRef xref : o.listXRefs()) {
+                    values.add(xref.getValue());
+                }
+                Collections.sort(values);
+                result.add(values.toString());
+            }
+            Collections.sort(result);
+            return result;
+            
+        } finally {
+            if (oldKeys == null) {
+                System.clearProperty(Configure.MEMORY_KEYS_KEY);
+            } else {
+                System.setProperty(Configure.MEMORY_KEYS_KEY, oldKeys);
+            }
+        }
+    }
+    
     public void testUnique() {
         
         LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
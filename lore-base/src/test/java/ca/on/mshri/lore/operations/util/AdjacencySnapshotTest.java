@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2013 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import java.util.BitSet;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class AdjacencySnapshotTest extends TestCase {
+
+    private static final String NS = "urn:test:";
+
+    public AdjacencySnapshotTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Builds a chain of proteins a-b-c-d connected by interaction nodes, plus
+     * a shortcut a-e-d.
+     */
+    private Model createModel() {
+        Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefix("t", NS);
+        Property hasParticipant = model.createProperty(NS+"hasParticipant");
+        String[][] edges = {{"a","b"},{"b","c"},{"c","d"},{"a","e"},{"e","d"}};
+        for (String[] edge : edges) {
+            Resource ia = model.createResource(NS+"ia_"+edge[0]+edge[1]);
+            ia.addProperty(hasParticipant, model.createResource(NS+edge[0]));
+            ia.addProperty(hasParticipant, model.createResource(NS+edge[1]));
+        }
+        return model;
+    }
+
+    private int id(AdjacencySnapshot s, Model model, String name) {
+        return s.indexOf(model.createResource(NS+name).asNode());
+    }
+
+    public void testCompile() {
+
+        Model model = createModel();
+        AdjacencySnapshot s = AdjacencySnapshot.compile(model.getGraph(),
+                "^t:hasParticipant/t:hasParticipant", model);
+
+        assertEquals(5, s.size());
+        assertEquals(10, s.numEdges());
+        assertEquals(2, s.degree(id(s, model, "a")));
+        assertEquals(2, s.degree(id(s, model, "d")));
+
+        assertFalse(AdjacencySnapshot.isCompilable("t:hasParticipant*", model));
+    }
+
+    public void testShortestPath() {
+
+        Model model = createModel();
+        AdjacencySnapshot s = AdjacencySnapshot.compile(model.getGraph(),
+                "^<"+NS+"hasParticipant>/<"+NS+"hasParticipant>", model);
+
+        BitSet targets = new BitSet();
+        targets.set(id(s, model, "d"));
+
+        int[] path = s.shortestPath(id(s, model, "a"), targets, null);
+        assertEquals(3, path.length);
+        assertEquals(id(s, model, "e"), path[1]);
+
+        //forbidding the shortcut forces the long way round
+        BitSet forbidden = new BitSet();
+        forbidden.set(id(s, model, "e"));
+        path = s.shortestPath(id(s, model, "a"), targets, forbidden);
+        assertEquals(4, path.length);
+
+        //cutting off both ways leaves no path
+        forbidden.set(id(s, model, "b"));
+        assertNull(s.shortestPath(id(s, model, "a"), targets, forbidden));
+    }
+
+    /**
+     * wrappers around the same data share one snapshot.
+     */
+    public void testSharedSnapshot() {
+
+        Model model = createModel();
+        OntModel a = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM, model);
+        OntModel b = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM, model);
+        String pattern = "^<"+NS+"hasParticipant>/<"+NS+"hasParticipant>";
+
+        ShortestPath sp = new ShortestPath();
+        AdjacencySnapshot s = sp.getSnapshot(a, pattern);
+        assertSame(model.getGraph(), s.getGraph());
+        assertSame(s, sp.getSnapshot(b, pattern));
+    }
+}
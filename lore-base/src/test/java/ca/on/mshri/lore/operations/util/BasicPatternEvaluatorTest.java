@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class BasicPatternEvaluatorTest extends TestCase {
+
+    public BasicPatternEvaluatorTest(String testName) {
+        super(testName);
+    }
+
+    public void testInversePath() {
+
+        Model model = ModelFactory.createDefaultModel();
+        Property part = model.createProperty("urn:test:hasParticipant");
+        Property type = model.createProperty("urn:test:type");
+        Resource a = model.createResource("urn:test:a");
+        Resource ia1 = model.createResource("urn:test:ia1");
+        Resource ia2 = model.createResource("urn:test:ia2");
+        Resource ia3 = model.createResource("urn:test:ia3");
+        Resource physical = model.createResource("urn:test:Physical");
+        Resource genetic = model.createResource("urn:test:Genetic");
+
+        ia1.addProperty(part, a).addProperty(type, physical);
+        ia2.addProperty(part, a).addProperty(type, genetic);
+        ia3.addProperty(type, physical);
+
+        Query query = QueryFactory.create("SELECT ?ia WHERE {"
+                + "?p ^<urn:test:hasParticipant> ?ia. ?ia <urn:test:type> ?t.}");
+        BasicPatternEvaluator evaluator = BasicPatternEvaluator.compile(query);
+        assertNotNull(evaluator);
+
+        Map<String,Node> bindings = new HashMap<String, Node>();
+        bindings.put("p", a.asNode());
+        bindings.put("t", physical.asNode());
+        List<Node> result = evaluator.evaluate(model.getGraph(), bindings, "ia");
+        assertEquals(Collections.singletonList(ia1.asNode()), result);
+
+        bindings.remove("t");
+        result = evaluator.evaluate(model.getGraph(), bindings, "ia");
+        assertEquals(2, new HashSet<Node>(result).size());
+    }
+
+    public void testNotCompilable() {
+        assertNull(BasicPatternEvaluator.compile(QueryFactory.create(
+                "SELECT ?x WHERE {?x <urn:test:p>+ ?y}")));
+        assertNull(BasicPatternEvaluator.compile(QueryFactory.create(
+                "SELECT ?x WHERE {{?x <urn:test:p> ?y} UNION {?x <urn:test:q> ?y}}")));
+        assertNull(BasicPatternEvaluator.compile(QueryFactory.create(
+                "SELECT ?x WHERE {?x <urn:test:p> ?y} LIMIT 1")));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.shared.AddDeniedException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class CompactGraphTest extends TestCase {
+
+    public CompactGraphTest(String testName) {
+        super(testName);
+    }
+
+    public void testFind() {
+
+        Graph source = ModelFactory.createDefaultModel().getGraph();
+        Random random = new Random(1234);
+        Node[] nodes = new Node[20];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = i < 15 ? Node.createURI("urn:test#"+i) : Node.createLiteral("literal "+i);
+        }
+        for (int i = 0; i < 500; i++) {
+            source.add(Triple.create(nodes[random.nextInt(15)],
+                    nodes[random.nextInt(5)], nodes[random.nextInt(20)]));
+        }
+
+        CompactGraph compact = new CompactGraph(source);
+        assertEquals(source.size(), compact.size());
+
+        //every pattern gives the same result as the source
+        Node absent = Node.createURI("urn:test#absent");
+        for (int i = 0; i < 200; i++) {
+            Node s = pick(random, nodes, absent);
+            Node p = pick(random, nodes, absent);
+            Node o = pick(random, nodes, absent);
+            assertEquals(set(source, s, p, o), set(compact, s, p, o));
+            if (s != Node.ANY && p != Node.ANY && o != Node.ANY) {
+                assertEquals(source.contains(s, p, o), compact.contains(s, p, o));
+            }
+        }
+
+        try {
+            compact.add(Triple.create(nodes[0], nodes[0], nodes[0]));
+            fail("Compact graph must be read-only");
+        } catch (AddDeniedException e) {
+            //expected
+        }
+    }
+
+    public void testLiteralValues() {
+
+        Graph source = ModelFactory.createDefaultModel().getGraph();
+        Node s = Node.createURI("urn:test#s");
+        Node p = Node.createURI("urn:test#p");
+        Node typedString = Node.createLiteral("abc", null, XSDDatatype.XSDstring);
+        Node seven = Node.createLiteral("7", null, XSDDatatype.XSDint);
+        source.add(Triple.create(s, p, typedString));
+        source.add(Triple.create(s, p, seven));
+        source.add(Triple.create(s, p, Node.createLiteral("abc", "en", false)));
+
+        CompactGraph compact = new CompactGraph(source);
+
+        //literals match by value, as in the source
+        Node plain = Node.createLiteral("abc");
+        Node padded = Node.createLiteral("07", null, XSDDatatype.XSDint);
+        for (Node o : new Node[]{plain, padded, typedString, seven}) {
+            assertEquals(1, set(compact, Node.ANY, Node.ANY, o).size());
+            assertEquals(set(source, Node.ANY, Node.ANY, o), set(compact, Node.ANY, Node.ANY, o));
+            assertEquals(set(source, s, p, o), set(compact, s, p, o));
+            assertTrue(compact.contains(s, p, o));
+            assertEquals(source.contains(s, p, o), compact.contains(s, p, o));
+        }
+        Node eight = Node.createLiteral("8", null, XSDDatatype.XSDint);
+        assertTrue(set(compact, Node.ANY, Node.ANY, eight).isEmpty());
+        assertFalse(compact.contains(s, p, eight));
+    }
+
+    private Node pick(Random random, Node[] nodes, Node absent) {
+        int r = random.nextInt(nodes.length + 8);
+        if (r < nodes.length) {
+            return nodes[r];
+        }
+        return r == nodes.length ? absent : Node.ANY;
+    }
+
+    private Set<Triple> set(Graph graph, Node s, Node p, Node o) {
+        return new HashSet<Triple>(graph.find(s, p, o).toList());
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class DisjointSetsTest extends TestCase {
+
+    public DisjointSetsTest(String testName) {
+        super(testName);
+    }
+
+    public void testUnion() {
+
+        DisjointSets sets = new DisjointSets(2);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, sets.add());
+        }
+        assertEquals(100, sets.size());
+
+        //a chain over the even elements
+        for (int i = 2; i < 100; i += 2) {
+            sets.union(i - 2, i);
+        }
+        //a separate pair
+        sets.union(1, 99);
+
+        int even = sets.find(0);
+        for (int i = 0; i < 100; i += 2) {
+            assertEquals(even, sets.find(i));
+        }
+        assertEquals(sets.find(1), sets.find(99));
+        assertFalse(sets.find(1) == even);
+        assertEquals(3, sets.find(3));
+    }
+}
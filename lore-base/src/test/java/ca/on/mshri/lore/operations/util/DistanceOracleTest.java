@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import java.util.BitSet;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class DistanceOracleTest extends TestCase {
+
+    private static final String NS = "urn:test:";
+
+    public DistanceOracleTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Builds a random sparse interaction network.
+     */
+    private Model createModel(int nodes, int edges, long seed) {
+        Model model = ModelFactory.createDefaultModel();
+        Property hasParticipant = model.createProperty(NS+"hasParticipant");
+        Random random = new Random(seed);
+        for (int i = 0; i < edges; i++) {
+            int a = random.nextInt(nodes), b = random.nextInt(nodes);
+            Resource ia = model.createResource(NS+"ia_"+i);
+            ia.addProperty(hasParticipant, model.createResource(NS+"p"+a));
+            ia.addProperty(hasParticipant, model.createResource(NS+"p"+b));
+        }
+        return model;
+    }
+
+    public void testAgainstBreadthFirstSearch() {
+
+        Model model = createModel(300, 400, 1);
+        AdjacencySnapshot s = AdjacencySnapshot.compile(model.getGraph(),
+                "^<"+NS+"hasParticipant>/<"+NS+"hasParticipant>", model);
+        DistanceOracle oracle = new DistanceOracle(s, 4);
+
+        Random random = new Random(2);
+        for (int q = 0; q < 500; q++) {
+            int from = random.nextInt(s.size());
+            BitSet targets = new BitSet();
+            for (int i = 0; i < 1 + random.nextInt(5); i++) {
+                targets.set(random.nextInt(s.size()));
+            }
+            BitSet forbidden = new BitSet();
+            if (q % 2 == 0) {
+                forbidden.set(random.nextInt(s.size()));
+            }
+
+            int[] path = s.shortestPath(from, targets, forbidden);
+            int expected = path == null ? -1 : path.length - 1;
+            assertEquals(expected, oracle.distance(from, targets, forbidden));
+
+            //without forbidden nodes the true distance lies within the bounds
+            path = s.shortestPath(from, targets, null);
+            if (path != null) {
+                int d = path.length - 1;
+                assertTrue(oracle.lowerBound(from, targets) <= d);
+                assertTrue(oracle.upperBound(from, targets) >= d);
+            } else {
+                assertEquals(-1, oracle.distance(from, targets, null));
+            }
+        }
+    }
+
+    public void testForbiddenNeighbour() {
+
+        Model model = createModel(300, 600, 3);
+        AdjacencySnapshot s = AdjacencySnapshot.compile(model.getGraph(),
+                "^<"+NS+"hasParticipant>/<"+NS+"hasParticipant>", model);
+        DistanceOracle oracle = new DistanceOracle(s, 8);
+
+        //as in disease path queries, forbid a direct interactor of the start
+        Random random = new Random(4);
+        for (int q = 0; q < 1000; q++) {
+            int from = random.nextInt(s.size());
+            int[] neighbours = s.neighbours(from);
+            if (neighbours.length == 0) {
+                continue;
+            }
+            BitSet forbidden = new BitSet();
+            forbidden.set(neighbours[random.nextInt(neighbours.length)]);
+            BitSet targets = new BitSet();
+            for (int i = 0; i < 1 + random.nextInt(20); i++) {
+                targets.set(random.nextInt(s.size()));
+            }
+
+            int[] path = s.shortestPath(from, targets, forbidden);
+            int expected = path == null ? -1 : path.length - 1;
+            assertEquals(expected, oracle.distance(from, targets, forbidden));
+            if (path != null) {
+                assertTrue(oracle.upperBound(from, targets, forbidden) >= expected);
+            }
+        }
+    }
+
+    public void testDirectedPattern() {
+        Model model = ModelFactory.createDefaultModel();
+        Property p = model.createProperty(NS+"p");
+        model.createResource(NS+"a").addProperty(p, model.createResource(NS+"b"));
+        AdjacencySnapshot s = AdjacencySnapshot.compile(model.getGraph(), "<"+NS+"p>", model);
+        try {
+            new DistanceOracle(s, 1);
+            fail("Directed snapshots must be rejected.");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+}
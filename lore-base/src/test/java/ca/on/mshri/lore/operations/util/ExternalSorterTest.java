@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class ExternalSorterTest extends TestCase {
+
+    public ExternalSorterTest(String testName) {
+        super(testName);
+    }
+
+    public void testSort() throws Exception {
+
+        ExternalSorter sorter = new ExternalSorter(3);
+        try {
+            for (int i = 9; i >= 0; i--) {
+                sorter.add("k" + (i % 4), i);
+            }
+            assertEquals(10, sorter.size());
+            assertTrue(sorter.getRuns() > 1);
+
+            ExternalSorter.Cursor cursor = sorter.sort();
+            String lastKey = "";
+            long lastValue = -1;
+            int n = 0;
+            while (cursor.next()) {
+                int c = cursor.getKey().compareTo(lastKey);
+                assertTrue(c > 0 || (c == 0 && cursor.getValue() > lastValue));
+                lastKey = cursor.getKey();
+                lastValue = cursor.getValue();
+                n++;
+            }
+            assertEquals(10, n);
+        } finally {
+            sorter.close();
+        }
+    }
+
+    public void testKeyGroups() throws Exception {
+
+        KeyGroups groups = new KeyGroups(2);
+        try {
+            for (int i = 0; i < 10; i++) {
+                groups.add("k" + (i % 4), i);
+            }
+            assertTrue(groups.isSpilled());
+
+            final Map<String,Integer> sizes = new HashMap<String, Integer>();
+            groups.forEach(new KeyGroups.Handler() {
+                @Override
+                public void group(String key, long[] values, int n) {
+                    assertNull(sizes.put(key, n));
+                }
+            });
+            assertEquals(4, sizes.size());
+            assertEquals(3, (int) sizes.get("k0"));
+            assertEquals(2, (int) sizes.get("k3"));
+        } finally {
+            groups.close();
+        }
+    }
+
+    public void testStringTable() throws Exception {
+
+        StringTable table = new StringTable();
+        try {
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i, table.add("s" + i + (i % 7 == 0 ? "\u00e9\u4e2d" : "")));
+            }
+            assertEquals(100, table.size());
+            assertEquals("s42", table.get(42));
+            assertEquals("s7\u00e9\u4e2d", table.get(7));
+            assertEquals("s3", table.get(3));
+
+            StringTable.Reader reader = table.read();
+            try {
+                for (int i = 0; i < 100; i++) {
+                    assertEquals(table.get(i), reader.next());
+                }
+                assertNull(reader.next());
+            } finally {
+                reader.close();
+            }
+        } finally {
+            table.close();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class NTriplesReaderTest extends TestCase {
+
+    public NTriplesReaderTest(String testName) {
+        super(testName);
+    }
+
+    public void testRoundTrip() throws Exception {
+
+        Node p = Node.createURI("http://example.org/p");
+        Node[] objects = {
+            Node.createLiteral("plain \"quoted\"\n\tline"),
+            Node.createLiteral("caf\u00e9", "fr", false),
+            Node.createLiteral("42", null, XSDDatatype.XSDint),
+            Node.createURI("http://example.org/\u00e9")
+        };
+
+        List<Triple> expected = new ArrayList<Triple>();
+        StringWriter w = new StringWriter();
+        for (int i = 0; i < NTriplesReader.CHUNK_SIZE * 2 + 5; i++) {
+            Triple t = Triple.create(Node.createURI("http://example.org/s"+i), p,
+                    objects[i % objects.length]);
+            expected.add(t);
+            NTriples.write(w, t, i % 2 == 0 ? Node.createURI("http://example.org/g") : null);
+            if (i == 10) {
+                w.write("# a comment\n\nnot a statement\n");
+            }
+        }
+        byte[] data = w.toString().getBytes("UTF-8");
+
+        for (int threads : new int[]{1, 4}) {
+            final List<Triple> parsed = new ArrayList<Triple>();
+            NTriplesReader reader = new NTriplesReader(threads, true);
+            long n = reader.read(new ByteArrayInputStream(data), new NTriplesReader.BatchHandler() {
+                @Override
+                public int handle(List<Triple> batch) {
+                    parsed.addAll(batch);
+                    return batch.size();
+                }
+            });
+            assertEquals(expected.size(), n);
+            assertEquals(n, reader.getSubmitted());
+            assertEquals(1, reader.getInvalidLines());
+            assertEquals(expected, parsed);
+        }
+    }
+
+    public void testBlankNodes() throws Exception {
+        Triple a = NTriples.parse("_:x1 <http://example.org/p> _:x2 .", "s1:");
+        Triple b = NTriples.parse("_:x2 <http://example.org/p> _:x1 .", "s1:");
+        assertEquals(a.getSubject(), b.getObject());
+        assertEquals(a.getObject(), b.getSubject());
+        Triple c = NTriples.parse("_:x1 <http://example.org/p> _:x2 .", "s2:");
+        assertFalse(a.getSubject().equals(c.getSubject()));
+    }
+
+    public void testBlankNodeScope() throws Exception {
+
+        //the same label in the first and the last chunk
+        StringWriter w = new StringWriter();
+        w.write("_:x1 <http://example.org/p> <http://example.org/o> .\n");
+        for (int i = 0; i < NTriplesReader.CHUNK_SIZE * 2; i++) {
+            w.write("<http://example.org/s"+i+"> <http://example.org/p> \"v\" .\n");
+        }
+        w.write("<http://example.org/s> <http://example.org/p> _:x1 .\n");
+        byte[] data = w.toString().getBytes("UTF-8");
+
+        NTriplesReader reader = new NTriplesReader(4);
+        List<Triple> first = readAll(reader, data);
+        assertEquals(first.get(0).getSubject(), first.get(first.size()-1).getObject());
+
+        //the same reader keeps its blank nodes, another one does not share them
+        assertEquals(first.get(0).getSubject(), readAll(reader, data).get(0).getSubject());
+        List<Triple> other = readAll(new NTriplesReader(4), data);
+        assertFalse(first.get(0).getSubject().equals(other.get(0).getSubject()));
+    }
+
+    public void testVerify() throws Exception {
+        byte[] data = ("<http://example.org/s> <http://example.org/p> \"a\" .\n"
+                + "<http://example.org/s> <http://example.org/p> \"b\" .\n").getBytes("UTF-8");
+        try {
+            new NTriplesReader(1).read(new ByteArrayInputStream(data), new NTriplesReader.BatchHandler() {
+                @Override
+                public int handle(List<Triple> batch) {
+                    return batch.size() - 1;
+                }
+            });
+            fail("A dropped statement was not detected.");
+        } catch (RuntimeException e) {
+            //expected
+        }
+    }
+
+    public void testInvalidLines() throws Exception {
+        StringWriter w = new StringWriter();
+        for (int i = 0; i < NTriplesReader.CHUNK_SIZE + 5; i++) {
+            w.write("<http://example.org/s"+i+"> <http://example.org/p> \"v\" .\n");
+        }
+        w.write("not a statement\n");
+        byte[] data = w.toString().getBytes("UTF-8");
+
+        for (int threads : new int[]{1, 4}) {
+            try {
+                readAll(new NTriplesReader(threads), data);
+                fail("An invalid line was not reported.");
+            } catch (RuntimeException e) {
+                //expected
+            }
+            NTriplesReader reader = new NTriplesReader(threads, true);
+            assertEquals(NTriplesReader.CHUNK_SIZE + 5, readAll(reader, data).size());
+            assertEquals(1, reader.getInvalidLines());
+        }
+    }
+
+    public void testStore() throws Exception {
+        Graph graph = ModelFactory.createDefaultModel().getGraph();
+        Triple a = NTriples.parse("<http://example.org/s> <http://example.org/p> \"a\" .", "");
+        Triple b = NTriples.parse("<http://example.org/s> <http://example.org/p> \"b\" .", "");
+        Triple c = NTriples.parse("<http://example.org/s> <http://example.org/p> \"c\" .", "");
+        graph.add(a);
+
+        //one statement already present, one repeated
+        List<Triple> batch = new ArrayList<Triple>();
+        batch.add(a);
+        batch.add(b);
+        batch.add(c);
+        batch.add(b);
+        NTriplesReader.GraphStore store = new NTriplesReader.GraphStore(graph, graph);
+        assertEquals(4, store.handle(batch));
+        assertEquals(2, store.getAdded());
+        assertEquals(3, graph.size());
+
+        //statements that do not reach the store are not counted
+        Graph other = ModelFactory.createDefaultModel().getGraph();
+        Graph empty = ModelFactory.createDefaultModel().getGraph();
+        NTriplesReader.GraphStore lost = new NTriplesReader.GraphStore(other, empty);
+        assertEquals(0, lost.handle(batch));
+        assertEquals(0, lost.getAdded());
+    }
+
+    private List<Triple> readAll(NTriplesReader reader, byte[] data) throws Exception {
+        final List<Triple> parsed = new ArrayList<Triple>();
+        reader.read(new ByteArrayInputStream(data), new NTriplesReader.BatchHandler() {
+            @Override
+            public int handle(List<Triple> batch) {
+                parsed.addAll(batch);
+                return batch.size();
+            }
+        });
+        return parsed;
+    }
+}
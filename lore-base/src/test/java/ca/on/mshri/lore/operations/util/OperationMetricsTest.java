@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import ca.on.mshri.lore.base.LoreModel;
+import ca.on.mshri.lore.operations.Configure;
+import ca.on.mshri.lore.operations.LoreOperation;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class OperationMetricsTest extends TestCase {
+
+    public OperationMetricsTest(String testName) {
+        super(testName);
+    }
+
+    public void testReport() throws Exception {
+
+        File report = File.createTempFile("lore-report", ".json");
+        System.setProperty(Configure.REPORT_KEY, report.getAbsolutePath());
+        System.setProperty(Configure.SUMMARIES_KEY, "false");
+
+        try {
+            Workflow workflow = new Workflow();
+            workflow.setModel(new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel()));
+            workflow.add(new WritingOperation());
+            workflow.run();
+
+            StringBuilder b = new StringBuilder();
+            BufferedReader r = new BufferedReader(new FileReader(report));
+            String line;
+            while ((line = r.readLine()) != null) {
+                b.append(line);
+            }
+            r.close();
+            String json = b.toString();
+            assertTrue(json, json.contains("\"operation\": \"WritingOperation\""));
+            assertTrue(json, json.contains("\"triplesAdded\": 3"));
+            assertTrue(json, json.contains("\"triplesRemoved\": 1"));
+            assertTrue(json, json.contains("\"failed\": false"));
+
+            //the MBean is gone after the run
+            assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(
+                    new ObjectName("ca.on.mshri.lore:type=Operation,name=0-WritingOperation")));
+        } finally {
+            System.clearProperty(Configure.REPORT_KEY);
+            System.clearProperty(Configure.SUMMARIES_KEY);
+            report.delete();
+        }
+    }
+
+    private static class WritingOperation extends LoreOperation {
+
+        @Override
+        public void run() {
+            //the MBean is visible while the operation runs
+            try {
+                assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(
+                        new ObjectName("ca.on.mshri.lore:type=Operation,name=0-WritingOperation")));
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+            Resource r = getModel().createResource("urn:test:r");
+            Property p = getModel().createProperty("urn:test:p");
+            r.addProperty(p, "a");
+            r.addProperty(p, "b");
+            r.addProperty(p, "c");
+            getModel().remove(r, p, getModel().createLiteral("b"));
+        }
+
+        @Override
+        public boolean requiresReasoner() {
+            return false;
+        }
+    }
+}
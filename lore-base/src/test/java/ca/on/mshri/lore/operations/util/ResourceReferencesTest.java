@@ -21,7 +21,10 @@ import ca.on.mshri.lore.base.LoreModel;
 import ca.on.mshri.lore.base.RecordObject;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import junit.framework.TestCase;
 
 /**
@@ -72,6 +75,35 @@ public class ResourceReferencesTest extends TestCase {
         assertEquals(2, list.size());
     }
     
+    public void testPaging() {
+        
+        for (int i = 3; i <= 10; i++) {
+            RecordObject.createOrGet(model, model.PUBMED, Integer.toString(i));
+        }
+        
+        String desc = "SELECT ?res WHERE {?res <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <http://llama.mshri.on.ca/lore-base.owl#RecordObject>}";
+        ResourceReferences<RecordObject> rl = new ResourceReferences<RecordObject>(desc, RecordObject.class);
+        
+        //pages of 3, 3, 3 and 1, without duplicates
+        Set<RecordObject> seen = new HashSet<RecordObject>();
+        ExtendedIterator<RecordObject> it = rl.iterate(model, 3);
+        while (it.hasNext()) {
+            assertTrue(seen.add(it.next()));
+        }
+        assertEquals(10, seen.size());
+        
+        //paging within a limit
+        desc = "SELECT ?res WHERE {?res <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <http://llama.mshri.on.ca/lore-base.owl#RecordObject>} LIMIT 5";
+        rl = new ResourceReferences<RecordObject>(desc, RecordObject.class);
+        assertEquals(5, rl.iterate(model, 2).toList().size());
+        
+        //the lazy variant of listIndividualsOfClass
+        it = model.iterateIndividualsOfClass(RecordObject.class, false);
+        assertTrue(it.hasNext());
+        it.close();
+        assertEquals(10, model.listIndividualsOfClass(RecordObject.class, false).size());
+    }
+    
     public void testMalformed() {
         
         String desc = "SELECT ?res WHERE {?res <http://www.w3.org/1999/02/22-rdf-syntax-ns#type>";
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import ca.on.mshri.lore.operations.Configure;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class TabDelimParserTest extends TestCase {
+
+    public TabDelimParserTest(String testName) {
+        super(testName);
+    }
+
+    public void testSplitTabs() {
+        String[] lines = {"", "a", "\t", "a\tb", "a\t\tb", "a\tb\t\t", "\ta", "\t\t", "\ta\t"};
+        for (String line : lines) {
+            assertTrue(line, Arrays.equals(line.split("\t"), TabDelimParser.splitTabs(line)));
+        }
+    }
+
+    /**
+     * a header line, then three chunks' worth of rows. Every 100th row is
+     * missing its second column.
+     */
+    private InputStream createInput(int rows) {
+        StringBuilder b = new StringBuilder("id\tvalue\n");
+        for (int i = 0; i < rows; i++) {
+            b.append(i);
+            if (i % 100 != 0) {
+                b.append('\t').append(i * 2);
+            }
+            b.append('\n');
+        }
+        return new ByteArrayInputStream(b.toString().getBytes());
+    }
+
+    public void testPipelined() {
+
+        int rows = TabDelimParser.CHUNK_SIZE * 3 + 17;
+        String oldThreads = System.getProperty(Configure.THREADS_KEY);
+        System.setProperty(Configure.THREADS_KEY, "4");
+        try {
+            //ordered
+            CollectingParser parser = new CollectingParser();
+            parser.parseTabDelim(createInput(rows), 1, 2);
+            assertEquals(rows - (rows / 100 + 1), parser.rows.size());
+            for (int i = 1; i < parser.rows.size(); i++) {
+                assertTrue(parser.rows.get(i-1) < parser.rows.get(i));
+            }
+
+            //unordered
+            final Set<Integer> values = new HashSet<Integer>();
+            parser.parseTabDelim(createInput(rows), 1, 2, false,
+                    new TabDelimParser.RowHandler<Integer>() {
+                @Override
+                public Integer transform(String[] cols) {
+                    return Integer.parseInt(cols[1]);
+                }
+                @Override
+                public void write(Integer row) {
+                    values.add(row);
+                }
+            });
+            assertEquals(parser.rows.size(), values.size());
+            assertTrue(values.contains(2));
+            assertFalse(values.contains(200));
+
+        } finally {
+            if (oldThreads == null) {
+                System.clearProperty(Configure.THREADS_KEY);
+            } else {
+                System.setProperty(Configure.THREADS_KEY, oldThreads);
+            }
+        }
+    }
+
+    private static class CollectingParser extends TabDelimParser {
+
+        private List<Integer> rows = new ArrayList<Integer>();
+
+        @Override
+        protected void processRow(String[] cols) {
+            rows.add(Integer.parseInt(cols[0]));
+        }
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public boolean requiresReasoner() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import com.hp.hpl.jena.graph.TransactionHandler;
+import com.hp.hpl.jena.graph.impl.TransactionHandlerBase;
+import com.hp.hpl.jena.mem.GraphMem;
+import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.query.ReadWrite;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.tdb.TDBFactory;
+import java.io.File;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class TransactionManagerTest extends TestCase {
+
+    public TransactionManagerTest(String testName) {
+        super(testName);
+    }
+
+    public void testBatches() {
+
+        final int[] commits = {0};
+        GraphMem graph = new GraphMem() {
+            @Override
+            public TransactionHandler getTransactionHandler() {
+                return new TransactionHandlerBase() {
+                    @Override
+                    public boolean transactionsSupported() {
+                        return true;
+                    }
+                    @Override
+                    public void begin() {
+                    }
+                    @Override
+                    public void abort() {
+                        throw new UnsupportedOperationException();
+                    }
+                    @Override
+                    public void commit() {
+                        commits[0]++;
+                    }
+                };
+            }
+        };
+        Model model = ModelFactory.createModelForGraph(graph);
+        Resource r = model.createResource("urn:test:r");
+        Property p = model.createProperty("urn:test:p");
+
+        //commit every 10 rows
+        TransactionManager tx = new TransactionManager(model, 10, 1000);
+        assertTrue(tx.isActive());
+        for (int i = 0; i < 25; i++) {
+            r.addLiteral(p, (long) i);
+            tx.rows(1);
+        }
+        assertEquals(2, commits[0]);
+        tx.close(true);
+        assertEquals(3, commits[0]);
+
+        //commit every 5 changed statements
+        commits[0] = 0;
+        tx = new TransactionManager(model, 1000, 5);
+        for (int i = 0; i < 12; i++) {
+            r.addLiteral(p, (long) i + 100);
+            tx.rows(1);
+        }
+        assertEquals(2, commits[0]);
+        tx.close(false);
+        assertEquals(2, commits[0]);
+    }
+
+    public void testTDB() throws Exception {
+
+        File dir = File.createTempFile("lore-tdb", "");
+        dir.delete();
+        dir.mkdir();
+        Dataset dataset = TDBFactory.createDataset(dir.getAbsolutePath());
+        try {
+            //the TDB graph is found below the ontology model
+            OntModel model = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM,
+                    dataset.getDefaultModel());
+            Resource r = model.createResource("urn:test:r");
+            Property p = model.createProperty("urn:test:p");
+
+            TransactionManager tx = new TransactionManager(model, 10, 1000);
+            assertTrue(tx.isActive());
+            for (int i = 0; i < 25; i++) {
+                r.addLiteral(p, (long) i);
+                tx.rows(1);
+            }
+            assertEquals(2, tx.getCommits());
+            tx.close(true);
+            assertEquals(3, tx.getCommits());
+            assertEquals(25, dataset.getDefaultModel().size());
+        } finally {
+            dataset.close();
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    public void testTransactionalTDB() throws Exception {
+
+        File dir = File.createTempFile("lore-tdb", "");
+        dir.delete();
+        dir.mkdir();
+        Dataset dataset = TDBFactory.createDataset(dir.getAbsolutePath());
+        try {
+            TransactionalGraph graph = new TransactionalGraph(dataset);
+            OntModel model = ModelFactory.createOntologyModel(OntModelSpec.OWL_MEM,
+                    ModelFactory.createModelForGraph(graph));
+            Resource r = model.createResource("urn:test:r");
+            Property p = model.createProperty("urn:test:p");
+
+            TransactionManager tx = new TransactionManager(model, 10, 1000);
+            assertTrue(tx.isActive());
+            for (int i = 0; i < 25; i++) {
+                r.addLiteral(p, (long) i);
+                tx.rows(1);
+            }
+            assertEquals(2, tx.getCommits());
+            //the last batch is rolled back
+            tx.close(false);
+            assertEquals(20, model.getBaseModel().size());
+            graph.close();
+
+            dataset.begin(ReadWrite.READ);
+            try {
+                assertEquals(20, dataset.getDefaultModel().size());
+            } finally {
+                dataset.end();
+            }
+        } finally {
+            dataset.close();
+            for (File f : dir.listFiles()) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    public void testInactive() {
+        TransactionManager tx = new TransactionManager(ModelFactory.createDefaultModel(), 1, 1);
+        assertFalse(tx.isActive());
+        tx.rows(5);
+        tx.close(true);
+        assertEquals(0, tx.getCommits());
+    }
+}
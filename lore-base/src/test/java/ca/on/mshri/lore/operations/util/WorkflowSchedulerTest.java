@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.operations.util;
+
+import ca.on.mshri.lore.base.Authority;
+import ca.on.mshri.lore.base.LoreModel;
+import ca.on.mshri.lore.operations.Configure;
+import ca.on.mshri.lore.operations.LoreOperation;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.vocabulary.RDF;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class WorkflowSchedulerTest extends TestCase {
+
+    public WorkflowSchedulerTest(String testName) {
+        super(testName);
+    }
+
+    public void testConflicts() {
+        assertFalse(Footprint.readOnly().conflictsWith(Footprint.readOnly()));
+        assertTrue(Footprint.readOnly().conflictsWith(Footprint.mutating()));
+        assertTrue(Footprint.mutating().conflictsWith(Footprint.readOnly()));
+        assertTrue(Footprint.mutating().conflictsWith(Footprint.mutating()));
+    }
+
+    public void testOrdering() {
+
+        List<String> log = Collections.synchronizedList(new ArrayList<String>());
+
+        Workflow workflow = new Workflow();
+        workflow.setModel(new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel()));
+
+        Configure configure = new Configure();
+        configure.setParameter(configure.threadsP, 4);
+        configure.setParameter(configure.summariesP, false);
+        workflow.add(configure);
+        workflow.add(new LoggingOperation("write1", false, log));
+        workflow.add(new LoggingOperation("read1", true, log));
+        workflow.add(new LoggingOperation("read2", true, log));
+        workflow.add(new LoggingOperation("write2", false, log));
+
+        try {
+            workflow.run();
+        } finally {
+            System.clearProperty(Configure.THREADS_KEY);
+            System.clearProperty(Configure.SUMMARIES_KEY);
+            System.clearProperty(Configure.COMMIT_KEY);
+        }
+
+        assertEquals(4, log.size());
+        assertEquals("write1", log.get(0));
+        assertEquals("write2", log.get(3));
+    }
+
+    public void testAnalysesOverlap() {
+
+        LoreModel model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        Workflow workflow = new Workflow();
+        workflow.setModel(model);
+
+        CountDownLatch latch = new CountDownLatch(2);
+        AnalysisOperation a = new AnalysisOperation(latch);
+        AnalysisOperation b = new AnalysisOperation(latch);
+        assertFalse(a.getFootprint().conflictsWith(b.getFootprint()));
+
+        Configure configure = new Configure();
+        configure.setParameter(configure.threadsP, 2);
+        configure.setParameter(configure.summariesP, false);
+        configure.setParameter(configure.compactP, true);
+        workflow.add(configure);
+        workflow.add(a);
+        workflow.add(b);
+
+        try {
+            workflow.run();
+        } finally {
+            System.clearProperty(Configure.THREADS_KEY);
+            System.clearProperty(Configure.SUMMARIES_KEY);
+            System.clearProperty(Configure.COMMIT_KEY);
+            System.clearProperty(Configure.MEMORY_KEYS_KEY);
+            System.clearProperty(Configure.COMPACT_KEY);
+        }
+
+        //each waited for the other, on a compact copy that cannot be written
+        assertTrue(a.overlapped);
+        assertTrue(b.overlapped);
+        assertTrue(model.contains(model.getResource(Authority.IND_URI_PRE+"Analysis"),
+                RDF.type, model.getResource(Authority.CLASS_URI)));
+    }
+
+    /**
+     * a read-only operation that, like the edgotype analyses, wraps its model
+     * and looks up an authority, then waits for another operation to overlap.
+     */
+    private static class AnalysisOperation extends LoreOperation {
+
+        private CountDownLatch latch;
+        private volatile boolean overlapped;
+
+        AnalysisOperation(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void prepare(LoreModel model) {
+            Authority.createOrGet(model, "Analysis");
+        }
+
+        @Override
+        public void run() {
+            LoreModel wrapper = new LoreModel(OntModelSpec.OWL_MEM, getModel());
+            Authority.createOrGet(wrapper, "Analysis");
+            latch.countDown();
+            try {
+                overlapped = latch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public boolean requiresReasoner() {
+            return false;
+        }
+
+        @Override
+        public Footprint getFootprint() {
+            return Footprint.readOnly();
+        }
+    }
+
+    private static class LoggingOperation extends LoreOperation {
+
+        private String name;
+        private boolean readOnly;
+        private List<String> log;
+
+        LoggingOperation(String name, boolean readOnly, List<String> log) {
+            this.name = name;
+            this.readOnly = readOnly;
+            this.log = log;
+        }
+
+        @Override
+        public void run() {
+            log.add(name);
+        }
+
+        @Override
+        public boolean requiresReasoner() {
+            return false;
+        }
+
+        @Override
+        public Footprint getFootprint() {
+            return readOnly ? Footprint.readOnly() : Footprint.mutating();
+        }
+    }
+}
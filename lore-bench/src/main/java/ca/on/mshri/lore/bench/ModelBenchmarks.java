@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.bench;
+
+import ca.on.mshri.lore.base.LoreModel;
+import ca.on.mshri.lore.genome.Gene;
+import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.molecules.Protein;
+import ca.on.mshri.lore.operations.Sparql;
+import ca.on.mshri.lore.operations.util.Connection;
+import ca.on.mshri.lore.operations.util.ShortestPath;
+import com.hp.hpl.jena.ontology.Individual;
+import com.hp.hpl.jena.ontology.OntClass;
+import com.hp.hpl.jena.query.Query;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for model access: class membership tests, SPARQL lookup and
+ * execution, neighbourhood listing and shortest path search on a synthetic
+ * interaction network. Each benchmark cycles through the proteins (or genes)
+ * of the model, so no single node stays hot in the caches.
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ModelBenchmarks {
+
+    private static final String PARTNERS = "^<"+InteractionModel.URI+"#hasParticipant>"
+            + "/<"+InteractionModel.URI+"#hasParticipant>";
+
+    /**
+     * number of proteins in the model.
+     */
+    @Param({"1000", "10000"})
+    public int proteins;
+
+    /**
+     * interactions per protein.
+     */
+    @Param({"3"})
+    public int degree;
+
+    private InteractionModel model;
+
+    private Protein[] proteinArray;
+
+    private Gene[] geneArray;
+
+    private OntClass proteinClass;
+
+    private Sparql sparql;
+
+    private ShortestPath shortestPath;
+
+    private int cursor = 0;
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData();
+        model = data.createModel(proteins, proteins * degree, 2, 2);
+        proteinArray = data.getProteins().toArray(new Protein[proteins]);
+        geneArray = data.getGenes().toArray(new Gene[proteins]);
+        proteinClass = model.getOntClass(Protein.CLASS_URI);
+        sparql = Sparql.getInstance(ModelBenchmarks.class.getProtectionDomain().getCodeSource());
+        shortestPath = new ShortestPath();
+    }
+
+    /**
+     * @return the index of the next protein or gene to use.
+     */
+    private int next() {
+        cursor = (cursor + 1) % proteins;
+        return cursor;
+    }
+
+    @Benchmark
+    public boolean hasClass() {
+        return LoreModel.hasClass(proteinArray[next()], proteinClass);
+    }
+
+    @Benchmark
+    public boolean hasClassByUri() {
+        return LoreModel.hasClass(proteinArray[next()], Protein.CLASS_URI);
+    }
+
+    @Benchmark
+    public Query sparqlGet() {
+        return sparql.get("interactorsOfProtein");
+    }
+
+    /**
+     * a plain triple pattern, evaluated directly against the graph.
+     */
+    @Benchmark
+    public List<Individual> sparqlBasicPattern() {
+        return sparql.queryIndividuals(model, "allelesOfGene", "allele",
+                Sparql.bind("gene", geneArray[next()]));
+    }
+
+    /**
+     * a property path with a filter, evaluated by the query engine.
+     */
+    @Benchmark
+    public List<Individual> sparqlPropertyPath() {
+        return sparql.queryIndividuals(model, "interactorsOfProtein", "partner",
+                Sparql.bind("protein", proteinArray[next()]));
+    }
+
+    @Benchmark
+    public Set<Connection> findConnections() {
+        return Connection.findConnections(proteinArray[next()]);
+    }
+
+    @Benchmark
+    public ShortestPath.PathNode shortestPath() {
+        int from = next();
+        int to = (from + proteins / 2) % proteins;
+        return shortestPath.find(proteinArray[from], proteinArray[to], PARTNERS);
+    }
+
+}
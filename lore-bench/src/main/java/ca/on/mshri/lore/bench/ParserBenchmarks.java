@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.bench;
+
+import ca.on.mshri.lore.generic.OboParser;
+import ca.on.mshri.lore.molecules.util.PDBParser;
+import ca.on.mshri.lore.molecules.util.Structure;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the file parsers. The files are generated once and parsed
+ * from memory, so disk access is not measured.
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ParserBenchmarks {
+
+    /**
+     * number of residues in the PDB file and number of terms in the OBO file.
+     */
+    @Param({"1000", "10000"})
+    public int size;
+
+    private byte[] pdb;
+
+    private byte[] obo;
+
+    @Setup
+    public void setup() throws IOException {
+        SyntheticData data = new SyntheticData();
+        pdb = data.pdbFile(size).getBytes("US-ASCII");
+        obo = data.oboFile(size).getBytes("US-ASCII");
+    }
+
+    @Benchmark
+    public Structure parsePDB() {
+        return new PDBParser().parse(new ByteArrayInputStream(pdb));
+    }
+
+    @Benchmark
+    public Map<String, OboParser.Stanza> parseOBO() throws IOException {
+        return new OboParser().parse(new ByteArrayInputStream(obo));
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.bench;
+
+import ca.on.mshri.lore.genome.util.GeneticCode;
+import ca.on.mshri.lore.genome.util.LocalAlignment;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for sequence handling: local alignment of two protein
+ * sequences and translation of a coding sequence codon by codon.
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SequenceBenchmarks {
+
+    /**
+     * sequence length in residues.
+     */
+    @Param({"100", "500"})
+    public int length;
+
+    private String seqA;
+
+    private String seqB;
+
+    private String cds;
+
+    private GeneticCode code;
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData();
+        seqA = data.proteinSequence(length);
+        //a variant of the first sequence, so that the alignment is non-trivial
+        StringBuilder b = new StringBuilder(seqA);
+        String other = data.proteinSequence(length / 10 + 1);
+        for (int i = 0; i < other.length(); i++) {
+            b.setCharAt((i * 10) % length, other.charAt(i));
+        }
+        seqB = b.toString();
+        cds = data.dnaSequence(length * 3);
+        code = GeneticCode.getInstance();
+    }
+
+    @Benchmark
+    public LocalAlignment localAlignment() {
+        return new LocalAlignment(seqA, seqB);
+    }
+
+    @Benchmark
+    public void translate(Blackhole bh) {
+        for (int i = 0; i + 3 <= cds.length(); i += 3) {
+            bh.consume(code.translate(cds.substring(i, i + 3)));
+        }
+    }
+
+}
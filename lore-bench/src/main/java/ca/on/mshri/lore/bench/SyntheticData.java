@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.bench;
+
+import ca.on.mshri.lore.base.Experiment;
+import ca.on.mshri.lore.genome.Allele;
+import ca.on.mshri.lore.genome.Gene;
+import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.interaction.PhysicalInteraction;
+import ca.on.mshri.lore.molecules.Protein;
+import com.hp.hpl.jena.ontology.OntClass;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates synthetic test data for the benchmarks. The output only depends
+ * on the seed, so two generators with the same seed produce identical models
+ * and files.
+ *
+ * <p>The model contains one gene per protein, a number of alleles per gene,
+ * a number of extra cross-references per protein and random physical
+ * interactions between pairs of proteins.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class SyntheticData {
+
+    public static final long DEFAULT_SEED = 1234L;
+
+    private static final String AMINOACIDS = "ACDEFGHIKLMNPQRSTVWY";
+
+    private static final String[] RESIDUES = {
+        "ALA","CYS","ASP","GLU","PHE","GLY","HIS","ILE","LYS","LEU",
+        "MET","ASN","PRO","GLN","ARG","SER","THR","VAL","TRP","TYR"
+    };
+
+    private static final String[] BACKBONE = {"N", "CA", "C", "O"};
+
+    private static final String NUCLEOTIDES = "ACGT";
+
+    private final Random random;
+
+    private InteractionModel model;
+
+    private List<Protein> proteins;
+
+    private List<Gene> genes;
+
+    private List<Allele> alleles;
+
+    public SyntheticData(long seed) {
+        random = new Random(seed);
+    }
+
+    public SyntheticData() {
+        this(DEFAULT_SEED);
+    }
+
+    /**
+     * Creates a new in-memory model with synthetic content.
+     *
+     * @param numProteins number of proteins (and genes)
+     * @param numInteractions number of binary physical interactions
+     * @param allelesPerGene number of alleles per gene
+     * @param xrefsPerProtein number of cross-references per protein in addition
+     * to its primary identifier.
+     * @return the model
+     */
+    public InteractionModel createModel(int numProteins, int numInteractions,
+            int allelesPerGene, int xrefsPerProtein) {
+
+        if (numProteins < 2 && numInteractions > 0) {
+            throw new IllegalArgumentException("Interactions require at least two proteins.");
+        }
+
+        model = new InteractionModel(OntModelSpec.OWL_MEM, ModelFactory.createDefaultModel());
+        proteins = new ArrayList<Protein>(numProteins);
+        genes = new ArrayList<Gene>(numProteins);
+        alleles = new ArrayList<Allele>(numProteins * allelesPerGene);
+
+        for (int i = 0; i < numProteins; i++) {
+
+            Gene gene = Gene.createOrGet(model, model.ENTREZ, Integer.toString(1000 + i));
+            gene.addXRef(model.HGNC, "SYN"+i);
+            genes.add(gene);
+
+            for (int j = 0; j < allelesPerGene; j++) {
+                Allele allele = Allele.createOrGet(model, model.ENTREZ, (1000 + i)+"-"+j);
+                allele.setGene(gene);
+                alleles.add(allele);
+            }
+
+            Protein protein = Protein.createOrGet(model, model.UNIPROT, accession(i));
+            protein.setEncodingGene(gene);
+            for (int j = 0; j < xrefsPerProtein; j++) {
+                protein.addXRef(j % 2 == 0 ? model.PDB : model.PFAM,
+                        (j % 2 == 0 ? "S" : "PF")+i+"_"+j);
+            }
+            proteins.add(protein);
+        }
+
+        Experiment experiment = Experiment.createOrGet(model, "synthetic");
+        OntClass type = model.getOntClass(PhysicalInteraction.CLASS_URI);
+        for (int i = 0; i < numInteractions; i++) {
+            int a = random.nextInt(numProteins);
+            int b = random.nextInt(numProteins - 1);
+            if (b >= a) {
+                b++;
+            }
+            PhysicalInteraction.createOrGet(model, experiment, type,
+                    proteins.get(a), proteins.get(b));
+        }
+
+        return model;
+    }
+
+    /**
+     * a UniProt-style accession.
+     */
+    private static String accession(int i) {
+        return String.format(Locale.US, "Q%05d", i);
+    }
+
+    /**
+     * @return the proteins of the last created model, in creation order.
+     */
+    public List<Protein> getProteins() {
+        return proteins;
+    }
+
+    /**
+     * @return the genes of the last created model, in creation order.
+     */
+    public List<Gene> getGenes() {
+        return genes;
+    }
+
+    /**
+     * @return the alleles of the last created model, in creation order.
+     */
+    public List<Allele> getAlleles() {
+        return alleles;
+    }
+
+    /**
+     * @param length number of residues
+     * @return a random protein sequence in one-letter code.
+     */
+    public String proteinSequence(int length) {
+        return randomString(AMINOACIDS, length);
+    }
+
+    /**
+     * @param length number of nucleotides
+     * @return a random DNA sequence.
+     */
+    public String dnaSequence(int length) {
+        return randomString(NUCLEOTIDES, length);
+    }
+
+    private String randomString(String alphabet, int length) {
+        StringBuilder b = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            b.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return b.toString();
+    }
+
+    /**
+     * Creates the contents of a PDB file with a chain of backbone atoms.
+     *
+     * @param residues the number of residues
+     * @return the file contents.
+     */
+    public String pdbFile(int residues) {
+        StringBuilder b = new StringBuilder(residues * BACKBONE.length * 81);
+        b.append("HEADER    SYNTHETIC STRUCTURE\n");
+        int serial = 1;
+        double x = 0, y = 0, z = 0;
+        for (int i = 1; i <= residues; i++) {
+            String resName = RESIDUES[random.nextInt(RESIDUES.length)];
+            for (String atom : BACKBONE) {
+                x += random.nextDouble() * 3 - 1.5;
+                y += random.nextDouble() * 3 - 1.5;
+                z += random.nextDouble() * 3 - 1.5;
+                b.append(String.format(Locale.US,
+                        "ATOM  %5d %-4s %3s %1s%4d    %8.3f%8.3f%8.3f%6.2f%6.2f          %2s  \n",
+                        serial++, atom, resName, "A", i, x, y, z, 1.0,
+                        random.nextDouble() * 50, atom.substring(0, 1)));
+            }
+        }
+        b.append("END\n");
+        return b.toString();
+    }
+
+    /**
+     * Creates the contents of an OBO file with a random term hierarchy.
+     *
+     * @param terms the number of terms
+     * @return the file contents.
+     */
+    public String oboFile(int terms) {
+        StringBuilder b = new StringBuilder(terms * 80);
+        b.append("format-version: 1.2\n");
+        b.append("ontology: synthetic\n\n");
+        for (int i = 0; i < terms; i++) {
+            b.append("[Term]\n");
+            b.append("id: SYN:").append(String.format(Locale.US, "%07d", i)).append('\n');
+            b.append("name: synthetic term ").append(i).append('\n');
+            b.append("def: \"Synthetic term number ").append(i).append(".\" []\n");
+            if (i > 0) {
+                int parent = random.nextInt(i);
+                b.append("is_a: SYN:").append(String.format(Locale.US, "%07d", parent))
+                        .append(" ! synthetic term ").append(parent).append('\n');
+            }
+            b.append('\n');
+        }
+        return b.toString();
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.bench;
+
+import ca.on.mshri.lore.generic.OboParser;
+import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.molecules.util.PDBParser;
+import ca.on.mshri.lore.molecules.util.Structure;
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class SyntheticDataTest extends TestCase {
+
+    public SyntheticDataTest(String testName) {
+        super(testName);
+    }
+
+    public void testDeterministicModel() {
+
+        SyntheticData d1 = new SyntheticData(7);
+        InteractionModel m1 = d1.createModel(50, 100, 2, 2);
+        InteractionModel m2 = new SyntheticData(7).createModel(50, 100, 2, 2);
+
+        assertEquals(50, d1.getProteins().size());
+        assertEquals(100, d1.getAlleles().size());
+        assertTrue(m1.getBaseModel().isIsomorphicWith(m2.getBaseModel()));
+    }
+
+    public void testFiles() throws Exception {
+
+        SyntheticData data = new SyntheticData();
+        assertEquals(data.pdbFile(20), new SyntheticData().pdbFile(20));
+
+        Structure structure = new PDBParser().parse(new ByteArrayInputStream(data.pdbFile(20).getBytes()));
+        assertNotNull(structure);
+
+        Map<String, OboParser.Stanza> stanzas = new OboParser()
+                .parse(new ByteArrayInputStream(data.oboFile(20).getBytes()));
+        //20 terms plus the header
+        assertEquals(21, stanzas.size());
+    }
+}
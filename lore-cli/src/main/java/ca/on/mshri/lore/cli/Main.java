@@ -16,11 +16,17 @@
  */
 package ca.on.mshri.lore.cli;
 
+import ca.on.mshri.lore.base.Generation;
 import ca.on.mshri.lore.base.LoreModel;
+import ca.on.mshri.lore.base.ModelStatistics;
+import ca.on.mshri.lore.base.XRefIndex;
+import ca.on.mshri.lore.operations.Configure;
+import ca.on.mshri.lore.operations.util.TransactionalGraph;
 import ca.on.mshri.lore.operations.util.Workflow;
 import ca.on.mshri.lore.operations.util.WorkflowParser;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.tdb.TDBFactory;
 import de.jweile.yogiutil.MainWrapper;
 import java.io.File;
@@ -61,7 +67,9 @@ public class Main extends MainWrapper {
         File tdbFile = new File(tdbLoc);
 
         Dataset tdbSet = null;
+        TransactionalGraph graph = null;
         LoreModel model = null;
+        boolean success = false;
         InputStream in = null;
         try {
             
@@ -70,18 +78,45 @@ public class Main extends MainWrapper {
             Workflow workflow = wp.parse(in);
             
             tdbSet = TDBFactory.createDataset(tdbFile.getAbsolutePath());
-            model = new LoreModel(OntModelSpec.OWL_MEM, tdbSet.getDefaultModel());
+            //keep the xref index and statistics next to the database
+            if (System.getProperty(Generation.FILE_KEY) == null) {
+                System.setProperty(Generation.FILE_KEY, 
+                        new File(tdbFile, "generation").getAbsolutePath());
+            }
+            if (System.getProperty(XRefIndex.FILE_KEY) == null) {
+                System.setProperty(XRefIndex.FILE_KEY, 
+                        new File(tdbFile, "xref-index.tsv.gz").getAbsolutePath());
+            }
+            if (System.getProperty(ModelStatistics.FILE_KEY) == null) {
+                System.setProperty(ModelStatistics.FILE_KEY, 
+                        new File(tdbFile, "statistics.tsv").getAbsolutePath());
+            }
+            if (System.getProperty(Configure.REPORT_KEY) == null) {
+                System.setProperty(Configure.REPORT_KEY, 
+                        new File(tdbFile, "lore-report.json").getAbsolutePath());
+            }
+            //all changes are written in TDB transactions
+            graph = new TransactionalGraph(tdbSet);
+            model = new LoreModel(OntModelSpec.OWL_MEM, ModelFactory.createModelForGraph(graph));
             
             workflow.setModel(model);
             workflow.run();
+            success = true;
             
             
         } catch (IOException ex) {
             throw new RuntimeException("Cannot read workflow file: "+
                     workflowFile.getAbsolutePath(), ex);
         } finally {
-            if (model != null) {
+            if (model != null && success) {
                 model.commit();
+                //stamp the persisted files only once the data is committed
+                XRefIndex.persist(model);
+                ModelStatistics.persist(model);
+            }
+            if (graph != null) {
+                //aborts whatever a failed operation has left uncommitted
+                graph.close();
             }
             if (tdbSet != null) {
                 tdbSet.close();
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.cli;
+
+import ca.on.mshri.lore.operations.Configure;
+import ca.on.mshri.lore.operations.RDFImport;
+import ca.on.mshri.lore.operations.util.NTriplesReader;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.query.Dataset;
+import com.hp.hpl.jena.tdb.TDB;
+import com.hp.hpl.jena.tdb.TDBFactory;
+import de.jweile.yogiutil.MainWrapper;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Restores RDF snapshots (e.g. written by <code>RDFExport</code>) into a TDB
+ * database. Unlike the <code>RDFImport</code> operation, the statements are
+ * added straight to the database's default graph, without an ontology model
+ * on top. N-Triples and N-Quads files are parsed on the configured number of
+ * threads (see {@link Configure#THREADS_KEY}); an invalid line fails the
+ * restore, and each batch is checked to be held by the database after it is 
+ * added. All files are read with one
+ * reader, so blank nodes shared between them (e.g. between the partitions of
+ * one export) stay the same. The database's generation file is deleted, so 
+ * that persisted indexes are rebuilt (see <code>Generation</code>).
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class Restore extends MainWrapper {
+
+    public static void main(String[] args) {
+
+        Restore r = new Restore();
+        r.setLogFileName("lore-restore.log");
+        r.start(args);
+
+    }
+
+    @Override
+    public void run(String[] args) {
+
+        if (args.length < 2) {
+            usageAndDie();
+        }
+
+        for (int i = 1; i < args.length; i++) {
+            if (!new File(args[i]).exists()) {
+                throw new RuntimeException(args[i]+" does not exist!");
+            }
+        }
+
+        //the data changes behind the back of any persisted index or statistics
+        File generation = new File(args[0], "generation");
+        if (generation.exists() && !generation.delete()) {
+            throw new RuntimeException("Cannot delete "+generation);
+        }
+
+        Dataset tdbSet = TDBFactory.createDataset(new File(args[0]).getAbsolutePath());
+        try {
+            Graph graph = tdbSet.asDatasetGraph().getDefaultGraph();
+            NTriplesReader reader = new NTriplesReader(Configure.getThreads());
+            for (int i = 1; i < args.length; i++) {
+                load(tdbSet, graph, reader, args[i]);
+            }
+        } finally {
+            TDB.sync(tdbSet);
+            tdbSet.close();
+        }
+
+    }
+
+    private void load(Dataset tdbSet, Graph graph, NTriplesReader reader, String file) {
+
+        Logger.getLogger(Restore.class.getName())
+                .log(Level.INFO, "Restoring from "+file);
+
+        InputStream in = null;
+        try {
+            in = RDFImport.decompress(new FileInputStream(file));
+            String format = RDFImport.guessFormat(file);
+
+            if (RDFImport.isLineBased(format)) {
+                NTriplesReader.GraphStore store = new NTriplesReader.GraphStore(graph, graph);
+                long read = reader.read(in, store);
+                RDFImport.verify(read, reader.getInvalidLines(), reader.getSubmitted(), 
+                        store.getAdded());
+            } else {
+                long before = graph.size();
+                tdbSet.getDefaultModel().read(in, null, format);
+                Logger.getLogger(Restore.class.getName()).log(Level.INFO,
+                        file+": "+(graph.size() - before)+" statements added.");
+            }
+
+        } catch (IOException ex) {
+            throw new RuntimeException("Unable to restore "+file, ex);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(Restore.class.getName())
+                            .log(Level.WARNING, "Cannot close stream", ex);
+                }
+            }
+        }
+    }
+
+    private void usageAndDie() {
+        System.err.println("Usage: java -cp lore-cli.jar "+Restore.class.getName()
+                +" <DbLocation> <File> [<File> ...]");
+        System.exit(1);
+    }
+
+}
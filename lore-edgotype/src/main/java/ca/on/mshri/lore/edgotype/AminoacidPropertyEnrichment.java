@@ -21,11 +21,13 @@ import ca.on.mshri.lore.genome.Allele;
 import ca.on.mshri.lore.genome.Mutation;
 import ca.on.mshri.lore.genome.PointMutation;
 import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.interaction.InteractionVocab;
 import ca.on.mshri.lore.interaction.PhysicalInteraction;
 import ca.on.mshri.lore.molecules.Molecule;
 import ca.on.mshri.lore.molecules.Protein;
 import ca.on.mshri.lore.molecules.util.AminoacidProps;
 import ca.on.mshri.lore.operations.LoreOperation;
+import ca.on.mshri.lore.operations.util.Footprint;
 import ca.on.mshri.lore.operations.util.Parameter;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntModelSpec;
@@ -61,8 +63,8 @@ public class AminoacidPropertyEnrichment extends LoreOperation {
         AminoacidProps props = new AminoacidProps();
         
         InteractionModel model = new InteractionModel(OntModelSpec.OWL_MEM, getModel());
-        pos = model.getProperty(InteractionModel.URI+"#affectsPositively");
-        neg = model.getProperty(InteractionModel.URI+"#affectsNegatively");
+        pos = InteractionVocab.affectsPositively;
+        neg = InteractionVocab.affectsNegatively;
         
         StringBuilder b = new StringBuilder();
         
@@ -136,6 +138,16 @@ public class AminoacidPropertyEnrichment extends LoreOperation {
         return false;
     }
 
+    @Override
+    public Footprint getFootprint() {
+        return Footprint.readOnly();
+    }
+
+    @Override
+    public void prepare(LoreModel model) {
+        prepareWrapper(model, InteractionModel.class);
+    }
+
     public PointMutation getMutation(Allele allele, InteractionModel model) {
         for (Mutation mut :allele.listMutations()) {
             if (LoreModel.hasClass(mut, model.getOntClass(PointMutation.CLASS_URI))) {
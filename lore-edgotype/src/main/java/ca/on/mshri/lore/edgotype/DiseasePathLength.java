@@ -17,26 +17,31 @@
 package ca.on.mshri.lore.edgotype;
 
 import ca.on.mshri.lore.base.Authority;
+import ca.on.mshri.lore.base.LoreModel;
 import ca.on.mshri.lore.genome.Allele;
 import ca.on.mshri.lore.genome.Gene;
 import ca.on.mshri.lore.interaction.Interaction;
 import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.interaction.InteractionVocab;
 import ca.on.mshri.lore.interaction.PhysicalInteraction;
 import ca.on.mshri.lore.molecules.Molecule;
 import ca.on.mshri.lore.molecules.Protein;
 import ca.on.mshri.lore.operations.LoreOperation;
+import ca.on.mshri.lore.operations.Configure;
 import ca.on.mshri.lore.operations.Sparql;
+import ca.on.mshri.lore.operations.util.AdjacencySnapshot;
+import ca.on.mshri.lore.operations.util.DistanceOracle;
+import ca.on.mshri.lore.operations.util.Footprint;
 import ca.on.mshri.lore.operations.util.Parameter;
 import ca.on.mshri.lore.operations.util.ShortestPath;
 import ca.on.mshri.lore.operations.util.ShortestPath.PathNode;
+import ca.on.mshri.lore.operations.util.SolutionIterator;
 import ca.on.mshri.lore.phenotype.Phenotype;
-import ca.on.mshri.lore.phenotype.PhenotypeModel;
+import ca.on.mshri.lore.phenotype.PhenotypeVocab;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntModelSpec;
-import com.hp.hpl.jena.query.QueryExecution;
-import com.hp.hpl.jena.query.QueryExecutionFactory;
 import com.hp.hpl.jena.query.QuerySolution;
-import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.NodeIterator;
 import com.hp.hpl.jena.rdf.model.Property;
 import de.jweile.yogiutil.CliProgressBar;
@@ -47,6 +52,7 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -55,6 +61,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -85,6 +96,10 @@ public class DiseasePathLength extends LoreOperation {
             Parameter.make("diseaseGroupMin", Integer.class, 5);
     public final Parameter<Integer> diseaseGroupMaxP = 
             Parameter.make("diseaseGroupMax", Integer.class, 20);
+    public final Parameter<Integer> permutationsP = 
+            Parameter.make("permutations", Integer.class, 5);
+    public final Parameter<Integer> seedP = 
+            Parameter.make("seed", Integer.class, 0);
     
 
     private Property isAssociatedWith, causes, affectsNegatively, affectsPositively, isa;
@@ -112,6 +127,8 @@ public class DiseasePathLength extends LoreOperation {
         
         int groupMin = getParameterValue(diseaseGroupMinP);
         int groupMax = getParameterValue(diseaseGroupMaxP);
+        int permutations = getParameterValue(permutationsP);
+        long seed = getParameterValue(seedP);
         
         //initialize sparql engine for pre-defined queries in this module.
         Sparql sparql = Sparql.getInstance(DiseasePathLength.class
@@ -129,16 +146,11 @@ public class DiseasePathLength extends LoreOperation {
         
         
         //define some needed properties
-        isAssociatedWith = getModel()
-                .getProperty(PhenotypeModel.URI+"#isAssociatedWith");
-        causes = getModel()
-                .getProperty(PhenotypeModel.URI+"#isCausallyAssociatedWith");
-        affectsNegatively = getModel()
-                .getProperty(InteractionModel.URI+"#affectsNegatively");
-        affectsPositively = getModel()
-                .getProperty(InteractionModel.URI+"#affectsPositively");
-        isa = getModel()
-                .getProperty(PhenotypeModel.URI+"#is_a");
+        isAssociatedWith = PhenotypeVocab.isAssociatedWith;
+        causes = PhenotypeVocab.isCausallyAssociatedWith;
+        affectsNegatively = InteractionVocab.affectsNegatively;
+        affectsPositively = InteractionVocab.affectsPositively;
+        isa = PhenotypeVocab.is_a;
         
         //prepare some arrays to store the results
         IntArrayList disruptedList = new IntArrayList(),
@@ -318,8 +330,7 @@ public class DiseasePathLength extends LoreOperation {
                     textB.append("\tInf");
                 }
 
-                int degree = Interaction
-                        .listInteractions(interactor, PhysicalInteraction.class).size();
+                int degree = Interaction.getDegree(interactor, PhysicalInteraction.class);
                 disruptedDegreeList.add(degree);
                 textB.append("\t").append(degree).append("\n");
 
@@ -356,7 +367,7 @@ public class DiseasePathLength extends LoreOperation {
                     textB.append("\tInf");
                 }
 
-                int degree = Interaction.listInteractions(interactor, PhysicalInteraction.class).size();
+                int degree = Interaction.getDegree(interactor, PhysicalInteraction.class);
                 maintainedDegreeList.add(degree);
                 textB.append("\t").append(degree).append("\n");
 
@@ -430,7 +441,7 @@ public class DiseasePathLength extends LoreOperation {
 //                        textB.append("\tInf");
 //                    }
 //                    
-//                    int degree = Interaction.listInteractions(interactor, PhysicalInteraction.class).size();
+//                    int degree = Interaction.getDegree(interactor, PhysicalInteraction.class);
 //                    currentDegreeList.add(degree);
 //                    textB.append("\t").append(degree).append("\n");
 //                    
@@ -462,42 +473,22 @@ public class DiseasePathLength extends LoreOperation {
         logger.log(Level.INFO, "Computing permuted controls...");
         pb = new CliProgressBar(allDisruptedOrigins.size()+allMaintainedOrigins.size());
         
-        Random random = new Random();
+        //all control searches run on a shared read-only distance oracle
+        PermutedControls controls = new PermutedControls(
+                shortestPath, model, iaPattern, allTargets, permutations, seed);
+        List<Pair<Protein>> allOrigins = new ArrayList<Pair<Protein>>(allDisruptedOrigins);
+        allOrigins.addAll(allMaintainedOrigins);
+        int[][] randomDistances = controls.compute(allOrigins, 
+                controls.isParallel() ? Configure.getThreads() : 1, pb);
+        
         IntArrayList disruptedRandomList = new IntArrayList();
-        for (Pair<Protein> pair : allDisruptedOrigins) {
-            
-            for (int i=0; i<5; i++) {
-                Set<Protein> randomTarget = allTargets.get(random.nextInt(allTargets.size()));
-
-                PathNode path = shortestPath.find(pair.getB(), randomTarget, iaPattern, Collections.singleton(pair.getA()));
-                if (path != null) {
-                    //add path to result set
-                    disruptedRandomList.add(path.getDistance());
-                } else {
-                    //if no path is found add -1 to the list to symbolize Infinity.
-                    disruptedRandomList.add(-1);
-
-                }
-            }
-            pb.next();
-        }
         IntArrayList maintainedRandomList = new IntArrayList();
-        for (Pair<Protein> pair: allMaintainedOrigins) {
-            
-            for (int i=0; i<5; i++) {
-                Set<Protein> randomTarget = allTargets.get(random.nextInt(allTargets.size()));
-
-                PathNode path = shortestPath.find(pair.getB(), randomTarget, iaPattern, Collections.singleton(pair.getA()));
-                if (path != null) {
-                    //add path to result set
-                    maintainedRandomList.add(path.getDistance());
-                } else {
-                    //if no path is found add -1 to the list to symbolize Infinity.
-                    maintainedRandomList.add(-1);
-
-                }
+        for (int k = 0; k < allOrigins.size(); k++) {
+            IntArrayList list = k < allDisruptedOrigins.size() ? 
+                    disruptedRandomList : maintainedRandomList;
+            for (int d : randomDistances[k]) {
+                list.add(d);
             }
-            pb.next();
         }
         
         //write results to file
@@ -605,7 +596,7 @@ public class DiseasePathLength extends LoreOperation {
 //            Individual lastOut = null;
 //            while (currRoot != null) {
 //                //find genes
-//                List<Individual> inds = sparql.queryIndividuals(getModel(), "getGenesOfDiseaseGroup", "gene", currRoot.getURI());
+//                List<Individual> inds = sparql.queryIndividuals(getModel(), "getGenesOfDiseaseGroup", "gene", Sparql.bind("root", currRoot));
 //                for (Individual ind : inds) {
 //                    out.addAll(Protein.listEncodedProteins(Gene.fromIndividual(ind)));
 //                    lastOut = currRoot;
@@ -633,6 +624,21 @@ public class DiseasePathLength extends LoreOperation {
         return false;
     }
 
+    @Override
+    public Footprint getFootprint() {
+        return Footprint.readOnly();
+    }
+
+    /**
+     * {@inheritDoc} Also creates the authorities looked up while running.
+     */
+    @Override
+    public void prepare(LoreModel model) {
+        prepareWrapper(model, InteractionModel.class);
+        Authority.createOrGet(model, "CCSB-Mutant");
+        Authority.createOrGet(model, "DO");
+    }
+
 //    private Map<Gene,Phenotype> gene2pheno;
     private LazyInitMap<Phenotype,Set<Gene>> pheno2geneSet;
     
@@ -645,11 +651,9 @@ public class DiseasePathLength extends LoreOperation {
         
         
         //find all transitive gene->phenotype associations
-        QueryExecution qexec = QueryExecutionFactory
-                .create(sparql.get("disease2genes"), getModel());
+        SolutionIterator r = new SolutionIterator(getModel(), sparql.get("disease2genes"), null);
         
         try {
-            ResultSet r = qexec.execSelect();
             while (r.hasNext()) {
                 QuerySolution sol = r.next();
                 
@@ -661,7 +665,7 @@ public class DiseasePathLength extends LoreOperation {
                 
             }
         } finally {
-            qexec.close();
+            r.close();
         }
         
 //        //find the best phenotype for each gene
@@ -698,14 +702,14 @@ public class DiseasePathLength extends LoreOperation {
                 
         
         //for each phenotype associated with the allele
-        for (Individual ind : sparql.queryIndividuals(getModel(), "getPhenoOfAllele", "disease", allele.getURI())) {
+        for (Individual ind : sparql.queryIndividuals(getModel(), "getPhenoOfAllele", "disease", Sparql.bind("allele", allele))) {
             Phenotype pheno = Phenotype.fromIndividual(ind);
             
             Set<Gene> genes = pheno2geneSet.get(pheno);
             
             //work-around for sparql bug
             if (genes == null) {
-                for (Individual geneInd : sparql.queryIndividuals(getModel(), "getGenesForPhenotype", "gene", pheno.getURI())) {
+                for (Individual geneInd : sparql.queryIndividuals(getModel(), "getGenesForPhenotype", "gene", Sparql.bind("phenotype", pheno))) {
                     pheno2geneSet.getOrCreate(pheno).add(Gene.fromIndividual(geneInd));
                 }
             }
@@ -727,7 +731,7 @@ public class DiseasePathLength extends LoreOperation {
             }
             
             //for each parent of that phenotype
-            for (Individual parInd : sparql.queryIndividuals(getModel(), "getParents", "parent", pheno.getURI())) {
+            for (Individual parInd : sparql.queryIndividuals(getModel(), "getParents", "parent", Sparql.bind("phenotype", pheno))) {
                 Phenotype parent = Phenotype.fromIndividual(parInd);
                 
                 num = pheno2geneSet.get(parent).size();
@@ -749,4 +753,167 @@ public class DiseasePathLength extends LoreOperation {
     }
     
     
+    
+    /**
+     * Computes the permuted controls: For each origin, the shortest path
+     * lengths to a number of randomly drawn disease target sets.
+     * 
+     * <p>Each origin draws its targets from its own random number generator,
+     * seeded from the global seed and the origin's position in the list. 
+     * The result thus only depends on the seed, not on the number of threads
+     * or the order in which origins are processed. If the interaction pattern
+     * can be compiled into an adjacency snapshot, the origins are processed 
+     * in parallel on a distance oracle for that snapshot; otherwise they are processed sequentially
+     * via the given ShortestPath object.</p>
+     */
+    static class PermutedControls {
+        
+        private final ShortestPath shortestPath;
+        private final String pattern;
+        private final List<Set<Protein>> targets;
+        private final int permutations;
+        private final long seed;
+        
+        /**
+         * the shared distance oracle and its snapshot, or null if unavailable.
+         */
+        private final DistanceOracle oracle;
+        private final AdjacencySnapshot snapshot;
+        
+        /**
+         * the target sets translated to snapshot node ids.
+         */
+        private final BitSet[] targetSets;
+
+        PermutedControls(ShortestPath shortestPath, Model model, String pattern,
+                List<Set<Protein>> targets, int permutations, long seed) {
+            
+            this.shortestPath = shortestPath;
+            this.pattern = pattern;
+            this.targets = targets;
+            this.permutations = permutations;
+            this.seed = seed;
+            
+            oracle = shortestPath.getOracle(model, pattern);
+            snapshot = oracle == null ? null : oracle.getSnapshot();
+            if (snapshot != null) {
+                targetSets = new BitSet[targets.size()];
+                for (int t = 0; t < targets.size(); t++) {
+                    targetSets[t] = new BitSet(snapshot.size());
+                    for (Protein p : targets.get(t)) {
+                        int id = snapshot.indexOf(p.asNode());
+                        if (id >= 0) {
+                            targetSets[t].set(id);
+                        }
+                    }
+                }
+            } else {
+                targetSets = null;
+            }
+        }
+        
+        /**
+         * @return whether the controls can be computed concurrently.
+         */
+        boolean isParallel() {
+            return snapshot != null;
+        }
+        
+        /**
+         * Computes the controls for all origins.
+         * @param origins pairs of (protein, interactor); paths start at the 
+         * interactor and must not traverse the protein.
+         * @param threads number of threads
+         * @param pb progress bar. Advanced once per origin.
+         * @return the path lengths for each origin, -1 where no path exists.
+         */
+        int[][] compute(final List<Pair<Protein>> origins, int threads, CliProgressBar pb) {
+            
+            int[][] out = new int[origins.size()][];
+            
+            if (threads <= 1) {
+                for (int k = 0; k < origins.size(); k++) {
+                    out[k] = compute(k, origins.get(k));
+                    pb.next();
+                }
+                return out;
+            }
+            
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<int[]>> futures = new ArrayList<Future<int[]>>(origins.size());
+                for (int k = 0; k < origins.size(); k++) {
+                    final int index = k;
+                    futures.add(executor.submit(new Callable<int[]>() {
+                        @Override
+                        public int[] call() {
+                            return compute(index, origins.get(index));
+                        }
+                    }));
+                }
+                for (int k = 0; k < futures.size(); k++) {
+                    out[k] = futures.get(k).get();
+                    pb.next();
+                }
+                return out;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while computing permuted controls", ex);
+            } catch (ExecutionException ex) {
+                throw new RuntimeException("Failed to compute permuted controls", ex.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        
+        /**
+         * computes the controls for a single origin.
+         */
+        private int[] compute(int index, Pair<Protein> origin) {
+            Random random = new Random(seedFor(index));
+            int[] out = new int[permutations];
+            for (int i = 0; i < permutations; i++) {
+                out[i] = distance(origin, random.nextInt(targets.size()));
+            }
+            return out;
+        }
+        
+        /**
+         * mixes the global seed with the origin index (SplitMix64 finalizer), 
+         * so that neighbouring origins get unrelated random streams.
+         */
+        private long seedFor(int index) {
+            long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+        
+        /**
+         * shortest path length from the interactor to the given target set, 
+         * avoiding the protein; or -1 if there is no such path.
+         */
+        private int distance(Pair<Protein> origin, int target) {
+            
+            if (snapshot == null) {
+                PathNode path = shortestPath.find(origin.getB(), targets.get(target), 
+                        pattern, Collections.singleton(origin.getA()));
+                return path == null ? -1 : path.getDistance();
+            }
+            
+            int from = snapshot.indexOf(origin.getB().asNode());
+            if (from < 0) {
+                return targets.get(target).contains(origin.getB()) ? 0 : -1;
+            }
+            if (targetSets[target].isEmpty()) {
+                return -1;
+            }
+            BitSet forbidden = new BitSet(snapshot.size());
+            int forbiddenId = snapshot.indexOf(origin.getA().asNode());
+            if (forbiddenId >= 0) {
+                forbidden.set(forbiddenId);
+            }
+            return oracle.distance(from, targetSets[target], forbidden);
+        }
+    }
 }
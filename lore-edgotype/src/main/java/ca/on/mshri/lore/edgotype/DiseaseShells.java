@@ -16,22 +16,26 @@
  */
 package ca.on.mshri.lore.edgotype;
 
+import ca.on.mshri.lore.base.LoreModel;
+import ca.on.mshri.lore.base.RecordObject;
 import ca.on.mshri.lore.genome.Allele;
 import ca.on.mshri.lore.genome.Gene;
 import ca.on.mshri.lore.genome.Mutation;
 import ca.on.mshri.lore.genome.PointMutation;
 import ca.on.mshri.lore.interaction.Interaction;
 import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.interaction.InteractionVocab;
 import ca.on.mshri.lore.interaction.PhysicalInteraction;
 import ca.on.mshri.lore.molecules.Molecule;
 import ca.on.mshri.lore.molecules.Protein;
 import ca.on.mshri.lore.operations.LoreOperation;
 import ca.on.mshri.lore.operations.Sparql;
+import ca.on.mshri.lore.operations.util.Footprint;
 import ca.on.mshri.lore.operations.util.Parameter;
 import ca.on.mshri.lore.operations.util.ShortestPath;
 import ca.on.mshri.lore.operations.util.ShortestPath.PathNode;
 import ca.on.mshri.lore.phenotype.Phenotype;
-import ca.on.mshri.lore.phenotype.PhenotypeModel;
+import ca.on.mshri.lore.phenotype.PhenotypeVocab;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.rdf.model.NodeIterator;
@@ -90,14 +94,10 @@ public class DiseaseShells extends LoreOperation {
         
         
         //define some needed properties
-        isAssociatedWith = getModel()
-                .getProperty(PhenotypeModel.URI+"#isAssociatedWith");
-        causes = getModel()
-                .getProperty(PhenotypeModel.URI+"#isCausallyAssociatedWith");
-        affectsNegatively = getModel()
-                .getProperty(InteractionModel.URI+"#affectsNegatively");
-        affectsPositively = getModel()
-                .getProperty(InteractionModel.URI+"#affectsPositively");
+        isAssociatedWith = PhenotypeVocab.isAssociatedWith;
+        causes = PhenotypeVocab.isCausallyAssociatedWith;
+        affectsNegatively = InteractionVocab.affectsNegatively;
+        affectsPositively = InteractionVocab.affectsPositively;
         
         
         //create shortcut to interaction model interface
@@ -144,7 +144,7 @@ public class DiseaseShells extends LoreOperation {
                     //get all the genes that are associated with the same phenotype
                     List<Individual> geneInds = sparql
                             .queryIndividuals(model, 
-                            "getGenesForPhenotype", "gene", pheno.getURI(), pheno.getURI()
+                            "getGenesForPhenotype", "gene", Sparql.bind("phenotype", pheno)
                     );
 
                     //for each of these genes...
@@ -347,6 +347,16 @@ public class DiseaseShells extends LoreOperation {
     public boolean requiresReasoner() {
         return false;
     }
+
+    @Override
+    public Footprint getFootprint() {
+        return Footprint.readOnly();
+    }
+
+    @Override
+    public void prepare(LoreModel model) {
+        prepareWrapper(model, InteractionModel.class);
+    }
 //
 //    private void processPath(PathNode path, Protein focalProtein, boolean disrupted, MiniNetwork net) {
 //        
@@ -429,12 +439,8 @@ public class DiseaseShells extends LoreOperation {
         
         Set<Protein> neighbours = new HashSet<Protein>();
         
-        for (PhysicalInteraction ia : Interaction.listInteractions(p, PhysicalInteraction.class)) {
-            for (Molecule participant : ia.listParticipants()) {
-                if (!participant.equals(p)) {
-                    neighbours.add(Protein.fromIndividual(participant));
-                }
-            }
+        for (RecordObject partner : Interaction.listPartners(p, PhysicalInteraction.class)) {
+            neighbours.add(Protein.fromIndividual(partner));
         }
         
         return neighbours;
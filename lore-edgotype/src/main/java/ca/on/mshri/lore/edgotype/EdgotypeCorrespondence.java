@@ -1,16 +1,19 @@
 package ca.on.mshri.lore.edgotype;
 
+import ca.on.mshri.lore.base.LoreModel;
 import ca.on.mshri.lore.genome.Allele;
 import ca.on.mshri.lore.genome.Gene;
 import ca.on.mshri.lore.genome.Mutation;
 import ca.on.mshri.lore.genome.PointMutation;
-import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.interaction.InteractionVocab;
 import ca.on.mshri.lore.interaction.PhysicalInteraction;
 import ca.on.mshri.lore.molecules.Molecule;
 import ca.on.mshri.lore.molecules.Protein;
 import ca.on.mshri.lore.operations.LoreOperation;
+import ca.on.mshri.lore.operations.util.Footprint;
 import ca.on.mshri.lore.phenotype.Phenotype;
 import ca.on.mshri.lore.phenotype.PhenotypeModel;
+import ca.on.mshri.lore.phenotype.PhenotypeVocab;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.rdf.model.NodeIterator;
@@ -38,9 +41,9 @@ public class EdgotypeCorrespondence extends LoreOperation {
     
     void init() {
         phenoModel = new PhenotypeModel(OntModelSpec.OWL_MEM, getModel());
-        affectsNegatively = phenoModel.getProperty(InteractionModel.URI+"#affectsNegatively");
-        affectsPositively = phenoModel.getProperty(InteractionModel.URI+"#affectsPositively");
-        isAssociatedWith = phenoModel.getProperty(PhenotypeModel.URI+"#isAssociatedWith");
+        affectsNegatively = InteractionVocab.affectsNegatively;
+        affectsPositively = InteractionVocab.affectsPositively;
+        isAssociatedWith = PhenotypeVocab.isAssociatedWith;
     }
     
     @Override
@@ -140,6 +143,16 @@ public class EdgotypeCorrespondence extends LoreOperation {
         return false;
     }
 
+    @Override
+    public Footprint getFootprint() {
+        return Footprint.readOnly();
+    }
+
+    @Override
+    public void prepare(LoreModel model) {
+        prepareWrapper(model, PhenotypeModel.class);
+    }
+
     /**
      * Retrives the edgotype profile of the given allele.
      * This is represented as a set of strings which indicate positive or negative effects
@@ -1,17 +1,20 @@
 package ca.on.mshri.lore.edgotype;
 
+import ca.on.mshri.lore.base.LoreModel;
 import ca.on.mshri.lore.genome.Allele;
 import ca.on.mshri.lore.genome.Gene;
 import ca.on.mshri.lore.genome.Mutation;
 import ca.on.mshri.lore.genome.PointMutation;
 import ca.on.mshri.lore.interaction.Interaction;
-import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.interaction.InteractionVocab;
 import ca.on.mshri.lore.interaction.PhysicalInteraction;
 import ca.on.mshri.lore.molecules.Molecule;
 import ca.on.mshri.lore.molecules.Protein;
 import ca.on.mshri.lore.operations.LoreOperation;
+import ca.on.mshri.lore.operations.util.Footprint;
 import ca.on.mshri.lore.phenotype.Phenotype;
 import ca.on.mshri.lore.phenotype.PhenotypeModel;
+import ca.on.mshri.lore.phenotype.PhenotypeVocab;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.rdf.model.NodeIterator;
@@ -42,9 +45,9 @@ public class EdgotypeCorrespondenceV2 extends LoreOperation {
     
     void init() {
         phenoModel = new PhenotypeModel(OntModelSpec.OWL_MEM, getModel());
-        affectsNegatively = phenoModel.getProperty(InteractionModel.URI+"#affectsNegatively");
-        affectsPositively = phenoModel.getProperty(InteractionModel.URI+"#affectsPositively");
-        isCausallyAssociatedWith = phenoModel.getProperty(PhenotypeModel.URI+"#isCausallyAssociatedWith");
+        affectsNegatively = InteractionVocab.affectsNegatively;
+        affectsPositively = InteractionVocab.affectsPositively;
+        isCausallyAssociatedWith = PhenotypeVocab.isCausallyAssociatedWith;
     }
     
     @Override
@@ -210,6 +213,16 @@ public class EdgotypeCorrespondenceV2 extends LoreOperation {
         return false;
     }
 
+    @Override
+    public Footprint getFootprint() {
+        return Footprint.readOnly();
+    }
+
+    @Override
+    public void prepare(LoreModel model) {
+        prepareWrapper(model, PhenotypeModel.class);
+    }
+
     /**
      * Retrieves the edgotype profile of the given allele.
      * This is represented as a set of strings which indicate positive or negative effects
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.edgotype;
+
+import ca.on.mshri.lore.base.Authority;
+import ca.on.mshri.lore.base.Experiment;
+import ca.on.mshri.lore.genome.Allele;
+import ca.on.mshri.lore.genome.Gene;
+import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.interaction.InteractionVocab;
+import ca.on.mshri.lore.interaction.PhysicalInteraction;
+import ca.on.mshri.lore.molecules.Protein;
+import ca.on.mshri.lore.operations.Configure;
+import ca.on.mshri.lore.operations.util.CompactGraph;
+import ca.on.mshri.lore.operations.util.Parameter;
+import ca.on.mshri.lore.operations.util.ShortestPath;
+import ca.on.mshri.lore.operations.util.Workflow;
+import ca.on.mshri.lore.phenotype.Phenotype;
+import ca.on.mshri.lore.phenotype.PhenotypeModel;
+import ca.on.mshri.lore.phenotype.PhenotypeVocab;
+import com.hp.hpl.jena.ontology.OntClass;
+import com.hp.hpl.jena.ontology.OntModelSpec;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import de.jweile.yogiutil.CliProgressBar;
+import de.jweile.yogiutil.Pair;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class DiseasePathLengthTest extends TestCase {
+
+    /**
+     * number of proteins in the synthetic interactome.
+     */
+    private static final int N = 12;
+
+    public DiseasePathLengthTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Runs the analysis once on the plain model and once on a compact copy,
+     * which must give the same output.
+     */
+    public void testCompact() throws Exception {
+
+        System.out.println("compact");
+
+        Model data = ModelFactory.createDefaultModel();
+        InteractionModel model = interactome(data);
+
+        File plainDir = tempDir();
+        File compactDir = tempDir();
+
+        try {
+            System.setProperty(Configure.SUMMARIES_KEY, "false");
+
+            DiseasePathLength plain = run(model, plainDir);
+            assertSame(data.getGraph(), plain.getModel().getBaseModel().getGraph());
+
+            System.setProperty(Configure.COMPACT_KEY, "true");
+
+            DiseasePathLength compact = run(model, compactDir);
+            assertTrue(compact.getModel().getBaseModel().getGraph() instanceof CompactGraph);
+
+            for (String name : plainDir.list()) {
+                String expected = read(new File(plainDir, name));
+                assertFalse(name, expected.length() == 0);
+                assertEquals(name, expected, read(new File(compactDir, name)));
+            }
+            assertEquals(7, compactDir.list().length);
+
+        } finally {
+            System.clearProperty(Configure.SUMMARIES_KEY);
+            System.clearProperty(Configure.COMPACT_KEY);
+            delete(plainDir);
+            delete(compactDir);
+        }
+    }
+
+    /**
+     * The permuted controls must only depend on the seed, not on the number
+     * of threads.
+     */
+    public void testPermutedControls() {
+
+        System.out.println("permutedControls");
+
+        InteractionModel model = interactome(ModelFactory.createDefaultModel());
+        Protein[] proteins = new Protein[N];
+        for (int i = 0; i < N; i++) {
+            proteins[i] = Protein.createOrGet(model, model.ENTREZ, ""+i);
+        }
+
+        List<Set<Protein>> targets = new ArrayList<Set<Protein>>();
+        targets.add(new HashSet<Protein>(Arrays.asList(proteins[5])));
+        targets.add(new HashSet<Protein>(Arrays.asList(proteins[7], proteins[8])));
+        targets.add(new HashSet<Protein>(Arrays.asList(proteins[2])));
+        targets.add(new HashSet<Protein>(Arrays.asList(proteins[10])));
+
+        List<Pair<Protein>> origins = new ArrayList<Pair<Protein>>();
+        origins.add(new Pair<Protein>(proteins[0], proteins[1]));
+        origins.add(new Pair<Protein>(proteins[0], proteins[N - 1]));
+        origins.add(new Pair<Protein>(proteins[0], proteins[N / 2]));
+        origins.add(new Pair<Protein>(proteins[3], proteins[4]));
+        origins.add(new Pair<Protein>(proteins[9], proteins[8]));
+
+        String hp = "<"+InteractionModel.URI+"#hasParticipant>";
+        String pattern = "^"+hp+"/"+hp;
+
+        DiseasePathLength.PermutedControls controls = new DiseasePathLength
+                .PermutedControls(new ShortestPath(), model, pattern, targets, 20, 1);
+        assertTrue(controls.isParallel());
+
+        int[][] sequential = controls.compute(origins, 1, new CliProgressBar(origins.size()));
+        int[][] parallel = controls.compute(origins, 4, new CliProgressBar(origins.size()));
+        assertTrue(Arrays.deepEquals(sequential, parallel));
+
+        int[][] reseeded = new DiseasePathLength
+                .PermutedControls(new ShortestPath(), model, pattern, targets, 20, 2)
+                .compute(origins, 4, new CliProgressBar(origins.size()));
+        assertFalse(Arrays.deepEquals(sequential, reseeded));
+    }
+
+    /**
+     * runs the analysis in a workflow, writing its output to the given directory.
+     */
+    private DiseasePathLength run(InteractionModel model, File dir) {
+        DiseasePathLength op = new DiseasePathLength();
+        setOutFile(op, op.disruptedOutFileP, dir);
+        setOutFile(op, op.disruptedRandomOutFileP, dir);
+        setOutFile(op, op.disruptedDegreeOutFileP, dir);
+        setOutFile(op, op.maintainedOutFileP, dir);
+        setOutFile(op, op.maintainedRandomOutFileP, dir);
+        setOutFile(op, op.maintainedDegreeOutFileP, dir);
+        setOutFile(op, op.tableOutFileP, dir);
+
+        Workflow workflow = new Workflow();
+        workflow.setModel(model);
+        workflow.add(op);
+        workflow.run();
+        return op;
+    }
+
+    private void setOutFile(DiseasePathLength op, Parameter<String> param, File dir) {
+        op.setParameter(param, new File(dir, param.getDefaultValue()).getPath());
+    }
+
+    /**
+     * Builds a ring of proteins with two chords. The allele of the first gene
+     * disrupts one of its edges and maintains the other two, and is associated
+     * with a disease of five other genes.
+     */
+    private InteractionModel interactome(Model data) {
+
+        InteractionModel model = new InteractionModel(OntModelSpec.OWL_MEM, data);
+        PhenotypeModel phenoModel = new PhenotypeModel(OntModelSpec.OWL_MEM, data);
+
+        Experiment exp = Experiment.createOrGet(model, "Test");
+        OntClass type = model.getOntClass(PhysicalInteraction.CLASS_URI);
+
+        Protein[] proteins = new Protein[N];
+        Gene[] genes = new Gene[N];
+        for (int i = 0; i < N; i++) {
+            proteins[i] = Protein.createOrGet(model, model.ENTREZ, ""+i);
+            genes[i] = Gene.createOrGet(model, model.ENTREZ, ""+i);
+            proteins[i].setEncodingGene(genes[i]);
+        }
+
+        PhysicalInteraction[] ring = new PhysicalInteraction[N];
+        for (int i = 0; i < N; i++) {
+            ring[i] = PhysicalInteraction.createOrGet(model, exp, type,
+                    proteins[i], proteins[(i + 1) % N]);
+        }
+        PhysicalInteraction chord = PhysicalInteraction.createOrGet(model, exp, type,
+                proteins[0], proteins[N / 2]);
+        PhysicalInteraction.createOrGet(model, exp, type, proteins[3], proteins[9]);
+
+        Phenotype disease = Phenotype.createOrGet(phenoModel, phenoModel.DO, "1");
+        for (int i = 5; i < 10; i++) {
+            genes[i].addProperty(PhenotypeVocab.isAssociatedWith, disease);
+        }
+
+        Allele allele = Allele.createOrGet(model,
+                Authority.createOrGet(model, "CCSB-Mutant"), "1");
+        allele.setGene(genes[0]);
+        allele.addProperty(PhenotypeVocab.isAssociatedWith, disease);
+        allele.addProperty(InteractionVocab.affectsNegatively, ring[0]);
+        allele.addProperty(InteractionVocab.affectsPositively, ring[N - 1]);
+        allele.addProperty(InteractionVocab.affectsPositively, chord);
+
+        return model;
+    }
+
+    private File tempDir() throws IOException {
+        File dir = File.createTempFile("diseasePathLength", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Unable to create "+dir);
+        }
+        return dir;
+    }
+
+    private void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private String read(File file) throws IOException {
+        StringBuilder b = new StringBuilder();
+        BufferedReader r = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = r.readLine()) != null) {
+                b.append(line).append('\n');
+            }
+        } finally {
+            r.close();
+        }
+        return b.toString();
+    }
+}
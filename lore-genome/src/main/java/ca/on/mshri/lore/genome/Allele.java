@@ -16,8 +16,9 @@
  */
 package ca.on.mshri.lore.genome;
 
+import ca.on.mshri.lore.base.Accessors;
 import ca.on.mshri.lore.base.Authority;
-import ca.on.mshri.lore.base.InconsistencyException;
+import ca.on.mshri.lore.base.IdentityMap;
 import ca.on.mshri.lore.base.LoreModel;
 import ca.on.mshri.lore.base.RecordObject;
 import com.hp.hpl.jena.enhanced.EnhGraph;
@@ -26,10 +27,6 @@ import com.hp.hpl.jena.ontology.ConversionException;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntClass;
 import com.hp.hpl.jena.ontology.impl.IndividualImpl;
-import com.hp.hpl.jena.query.QueryExecution;
-import com.hp.hpl.jena.query.QueryExecutionFactory;
-import com.hp.hpl.jena.query.QuerySolution;
-import com.hp.hpl.jena.query.ResultSet;
 import com.hp.hpl.jena.rdf.model.NodeIterator;
 import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.rdf.model.RDFNode;
@@ -52,9 +49,8 @@ public class Allele extends RecordObject {
     
     public static Allele fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl)i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new Allele(impl.asNode(), impl.getGraph());
             
         } else {
@@ -64,34 +60,8 @@ public class Allele extends RecordObject {
     
     public Gene getGene() {
         
-        List<Gene> genes = new ArrayList<Gene>();
-        
-        String qry = "PREFIX : <http://llama.mshri.on.ca/lore-genome.owl#>\n SELECT ?gene WHERE {?gene :hasAllele <"+this.getURI()+">}";
-        
-        QueryExecution qexec = null;
-        try {
-            qexec = QueryExecutionFactory
-                .create(qry,getModel());
-            ResultSet result = qexec.execSelect();
-            while (result.hasNext()) {
-                QuerySolution sol = result.next();
-                genes.add(Gene.fromIndividual(sol.get("gene").as(Individual.class)));
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Query failed: "+qry, e);
-        } finally {
-            if (qexec != null) {
-                qexec.close();
-            }
-        }
-        
-        if (genes.isEmpty()) {
-            return null;
-        } else if (genes.size() > 1) {
-            throw new InconsistencyException(getURI()+"has more than one associated Gene!");
-        } else {
-            return genes.get(0);
-        }
+        Node gene = Accessors.getSubject(this, GenomeVocab.hasAllele, "associated Gene");
+        return gene == null ? null : Gene.fromIndividual(getModel().asRDFNode(gene).as(Individual.class));
         
     }
     
@@ -101,7 +71,7 @@ public class Allele extends RecordObject {
             throw new NullPointerException();
         }
         
-        Property hasAllele = getModel().getProperty(GenomeModel.URI+"#hasAllele");
+        Property hasAllele = GenomeVocab.hasAllele;
         
         Gene existing = getGene();
         if (existing != null) {
@@ -115,13 +85,13 @@ public class Allele extends RecordObject {
     }
     
     public void addMutation(Mutation m) {
-        Property hasMut = getModel().getProperty(GenomeModel.URI+"#hasMutation");
+        Property hasMut = GenomeVocab.hasMutation;
         addProperty(hasMut, m);
     }
     
     public List<Mutation> listMutations() {
         List<Mutation> list = new ArrayList<Mutation>();
-        Property hasMut = getModel().getProperty(GenomeModel.URI+"#hasMutation");
+        Property hasMut = GenomeVocab.hasMutation;
         NodeIterator it = listPropertyValues(hasMut);
         while (it.hasNext()) {
             list.add(Mutation.fromIndividual(it.next().as(Individual.class)));
@@ -130,9 +100,12 @@ public class Allele extends RecordObject {
     }
     
     public static Allele createOrGet(GenomeModel model, Authority auth, String id) {
-        Allele out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:Allele#"+auth.getAuthorityId()+":"+id));
-        out.addXRef(auth, id);
+        Allele out = new Allele(Node.createURI("urn:lore:Allele#"+auth.getAuthorityId()+":"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            out.addXRef(auth, id);
+            known.add(out.getURI());
+        }
         return out;
     }
     
@@ -16,8 +16,9 @@
  */
 package ca.on.mshri.lore.genome;
 
+import ca.on.mshri.lore.base.Accessors;
 import ca.on.mshri.lore.base.Authority;
-import ca.on.mshri.lore.base.InconsistencyException;
+import ca.on.mshri.lore.base.IdentityMap;
 import ca.on.mshri.lore.base.LoreModel;
 import com.hp.hpl.jena.enhanced.EnhGraph;
 import com.hp.hpl.jena.graph.Node;
@@ -47,9 +48,8 @@ public class Gene extends NucleotideFeature {
     
     public static Gene fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl)i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new Gene(impl.asNode(), impl.getGraph());
             
         } else {
@@ -58,15 +58,18 @@ public class Gene extends NucleotideFeature {
     }
     
     public static Gene createOrGet(GenomeModel model, Authority auth, String id) {
-        Gene out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:Gene#"+auth.getAuthorityId()+":"+id));
-        out.addXRef(auth, id);
+        Gene out = new Gene(Node.createURI("urn:lore:Gene#"+auth.getAuthorityId()+":"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            out.addXRef(auth, id);
+            known.add(out.getURI());
+        }
         return out;
     }
     
     public List<Allele> listAlleles() {
         List<Allele> list = new ArrayList<Allele>();
-        NodeIterator it = listPropertyValues(getModel().getProperty(GenomeModel.URI+"#hasAllele"));
+        NodeIterator it = listPropertyValues(GenomeVocab.hasAllele);
         while (it.hasNext()) {
             list.add(Allele.fromIndividual(it.next().as(Individual.class)));
         }
@@ -75,23 +78,12 @@ public class Gene extends NucleotideFeature {
     }
     
     public String getSequence() {
-        
-        NodeIterator it = listPropertyValues(getModel().getProperty(GenomeModel.URI+"#sequence"));
-        String out = null;
-        while (it.hasNext()) {
-            if (out == null) {
-                out = it.next().asLiteral().getString();
-            } else {
-                //TODO: this might cause problems?
-                throw new InconsistencyException("Gene "+getURI()+" should only have one sequence!");
-            }
-        }
-        return out;
+        return Accessors.getString(this, GenomeVocab.sequence, "sequence");
     }
     
     public void setSequence(String seq) {
         
-        Property enc = getModel().getProperty(GenomeModel.URI+"#sequence");
+        Property enc = GenomeVocab.sequence;
         RDFNode existing = getPropertyValue(enc);
         if (existing != null) {
             Logger.getLogger(Gene.class.getName())
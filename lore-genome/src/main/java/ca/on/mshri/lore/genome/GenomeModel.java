@@ -47,8 +47,8 @@ public class GenomeModel extends LoreModel {
     public GenomeModel(OntModelSpec spec, Model model) {
         //super constructor loads dependencies, recursively
         super(spec, model);
-        //read owl specs
-        read(GenomeModel.class.getClassLoader().getResourceAsStream("lore-genome.owl"), null);
+        //attach shared owl specs
+        addSchema("lore-genome.owl");
         
         ENTREZ = Authority.createOrGet(this, "EntrezGene");
         HGNC = Authority.createOrGet(this, "HGNC");
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.genome;
+
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.ResourceFactory;
+
+/**
+ * Property handles of the lore-genome ontology, see {@link ca.on.mshri.lore.base.BaseVocab}.
+ * 
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public final class GenomeVocab {
+    
+    /**
+     * The namespace of the ontology.
+     */
+    public static final String NS = GenomeModel.URI+"#";
+    
+    public static final Property sequence = property("sequence");
+
+    public static final Property hasAllele = property("hasAllele");
+
+    public static final Property hasMutation = property("hasMutation");
+
+    public static final Property fromAA = property("fromAA");
+
+    public static final Property toAA = property("toAA");
+
+    public static final Property position = property("position");
+    
+    private GenomeVocab() {
+    }
+    
+    private static Property property(String localName) {
+        return ResourceFactory.createProperty(NS, localName);
+    }
+    
+}
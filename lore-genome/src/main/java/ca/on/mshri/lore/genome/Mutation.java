@@ -16,6 +16,7 @@
  */
 package ca.on.mshri.lore.genome;
 
+import ca.on.mshri.lore.base.IdentityMap;
 import ca.on.mshri.lore.base.LoreModel;
 import com.hp.hpl.jena.enhanced.EnhGraph;
 import com.hp.hpl.jena.graph.Node;
@@ -38,9 +39,8 @@ public class Mutation extends IndividualImpl {
     
     public static Mutation fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl)i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new Mutation(impl.asNode(), impl.getGraph());
             
         } else {
@@ -49,8 +49,11 @@ public class Mutation extends IndividualImpl {
     }
     
     public static Mutation createOrGet(GenomeModel model, String id) {
-        Mutation out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:Mutation#"+id));
+        Mutation out = new Mutation(Node.createURI("urn:lore:Mutation#"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            known.add(out.getURI());
+        }
         return out;
     }
     
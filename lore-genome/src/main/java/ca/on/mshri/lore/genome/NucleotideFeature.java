@@ -17,6 +17,7 @@
 package ca.on.mshri.lore.genome;
 
 import ca.on.mshri.lore.base.Authority;
+import ca.on.mshri.lore.base.IdentityMap;
 import ca.on.mshri.lore.base.LoreModel;
 import ca.on.mshri.lore.base.RecordObject;
 import com.hp.hpl.jena.enhanced.EnhGraph;
@@ -42,9 +43,8 @@ public class NucleotideFeature extends RecordObject {
         
         IndividualImpl impl = (IndividualImpl)i;
         
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new NucleotideFeature(impl.asNode(), impl.getGraph());
             
         } else {
@@ -53,9 +53,12 @@ public class NucleotideFeature extends RecordObject {
     }
     
     public static NucleotideFeature createOrGet(GenomeModel model, Authority auth, String id) {
-        NucleotideFeature out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:NucleotideFeature#"+auth.getAuthorityId()+":"+id));
-        out.addXRef(auth, id);
+        NucleotideFeature out = new NucleotideFeature(Node.createURI("urn:lore:NucleotideFeature#"+auth.getAuthorityId()+":"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            out.addXRef(auth, id);
+            known.add(out.getURI());
+        }
         return out;
     }
     
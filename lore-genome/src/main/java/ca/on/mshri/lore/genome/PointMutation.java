@@ -16,6 +16,7 @@
  */
 package ca.on.mshri.lore.genome;
 
+import ca.on.mshri.lore.base.IdentityMap;
 import ca.on.mshri.lore.genome.util.GeneticCode;
 import ca.on.mshri.lore.base.LoreModel;
 import com.hp.hpl.jena.enhanced.EnhGraph;
@@ -41,9 +42,8 @@ public class PointMutation extends Mutation {
     
     public static PointMutation fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl)i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new PointMutation(impl.asNode(), impl.getGraph());
             
         } else {
@@ -66,29 +66,32 @@ public class PointMutation extends Mutation {
         int position = Integer.parseInt(mutInfo[1]);
         String toAA = mutInfo[2];
         
-        PointMutation out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:PointMutation#"+allele.getURI().substring(16)+
-                ":"+fromAA+position+toAA));
+        PointMutation out = new PointMutation(Node.createURI("urn:lore:PointMutation#"
+                +allele.getURI().substring(16)+":"+fromAA+position+toAA), model);
         
-        out.addProperty(model.getProperty(GenomeModel.URI+"#fromAA"), fromAA);
-        out.addProperty(model.getProperty(GenomeModel.URI+"#position"), position);
-        out.addProperty(model.getProperty(GenomeModel.URI+"#toAA"), toAA);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            out.addProperty(GenomeVocab.fromAA, fromAA);
+            out.addProperty(GenomeVocab.position, position);
+            out.addProperty(GenomeVocab.toAA, toAA);
+            known.add(out.getURI());
+        }
         
         return out;
     }
     
     public int getPosition() {
-        return getPropertyValue(getModel().getProperty(GenomeModel.URI+"#position"))
+        return getPropertyValue(GenomeVocab.position)
                 .asLiteral().getInt();
     }
     
     public String getFromAminoAcid() {
-        return getPropertyValue(getModel().getProperty(GenomeModel.URI+"#fromAA"))
+        return getPropertyValue(GenomeVocab.fromAA)
                 .asLiteral().getString();
     }
     
     public String getToAminoAcid() {
-        return getPropertyValue(getModel().getProperty(GenomeModel.URI+"#toAA"))
+        return getPropertyValue(GenomeVocab.toAA)
                 .asLiteral().getString();
     }
     
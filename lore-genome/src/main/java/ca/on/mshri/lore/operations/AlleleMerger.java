@@ -137,6 +137,7 @@ public class AlleleMerger extends LoreOperation {
         }
         
         Merger merger = new Merger();
+        merger.setModel(model);
         merger.setParameter(merger.mergeSetsP, mutationSetList);
         merger.run();
         
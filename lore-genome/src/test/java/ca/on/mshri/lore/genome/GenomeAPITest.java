@@ -54,6 +54,8 @@ public class GenomeAPITest extends TestCase {
             System.out.println(xref);
             System.out.println(" -> "+xref.getAuthority());
             System.out.println(" -> "+xref.getValue());
+            assertEquals(model.ENTREZ, xref.getAuthority());
+            assertEquals("7001", xref.getValue());
             
         }
     }
@@ -67,6 +69,10 @@ public class GenomeAPITest extends TestCase {
         Allele a1 = Allele.createOrGet(model, model.ENTREZ, "7001.1");
         
         a1.setGene(g1);
+        assertEquals(g1, a1.getGene());
+        
+        g1.setSequence("ATG");
+        assertEquals("ATG", g1.getSequence());
         
     }
 }
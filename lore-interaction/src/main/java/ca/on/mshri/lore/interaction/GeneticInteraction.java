@@ -44,9 +44,8 @@ public class GeneticInteraction extends Interaction {
     
     public static GeneticInteraction fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl) i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new GeneticInteraction(impl.asNode(), impl.getGraph());
         } else {
             throw new ConversionException(i.getURI()+" cannot be cast as GeneticInteraction!");
@@ -57,7 +56,7 @@ public class GeneticInteraction extends Interaction {
     public List<NucleotideFeature> listParticipants() {
         List<NucleotideFeature> out = new ArrayList<NucleotideFeature>();
         
-        Property hasParticipant = getModel().getProperty(InteractionModel.URI+"#hasParticipant");
+        Property hasParticipant = InteractionVocab.hasParticipant;
         NodeIterator it = listPropertyValues(hasParticipant);
         while (it.hasNext()) {
             NucleotideFeature participant = NucleotideFeature.fromIndividual(it.next().as(Individual.class));
@@ -77,12 +76,10 @@ public class GeneticInteraction extends Interaction {
     public static GeneticInteraction createOrGet(InteractionModel model, 
             Experiment e, OntClass type, NucleotideFeature... participants) {
         
-        OntClass thisType = model.getOntClass(CLASS_URI);
-        
-        if (!type.equals(thisType) && !thisType.hasSubClass(type, false)) {
+        if (!LoreModel.isSubClassOf(type, model.getOntClass(CLASS_URI))) {
             throw new ConversionException(type+" is not a subclass of "+CLASS_URI);
         }
         
-        return fromIndividual(Interaction.createOrGet(model, e, type, participants));
+        return new GeneticInteraction(Interaction.createOrGet(model, e, type, participants).asNode(), model);
     }
 }
@@ -16,10 +16,13 @@
  */
 package ca.on.mshri.lore.interaction;
 
+import ca.on.mshri.lore.base.BaseVocab;
+import ca.on.mshri.lore.base.ClassHierarchy;
 import ca.on.mshri.lore.base.Experiment;
+import ca.on.mshri.lore.base.IdentityMap;
 import ca.on.mshri.lore.base.LoreModel;
 import ca.on.mshri.lore.base.RecordObject;
-import ca.on.mshri.lore.operations.Sparql;
+import ca.on.mshri.lore.base.WrapperFactory;
 import com.hp.hpl.jena.enhanced.EnhGraph;
 import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.ontology.ConversionException;
@@ -32,7 +35,9 @@ import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -51,9 +56,8 @@ public class Interaction extends IndividualImpl {
     public static Interaction fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl) i;
         
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new Interaction(impl.asNode(), impl.getGraph());
             
         } else {
@@ -66,7 +70,7 @@ public class Interaction extends IndividualImpl {
         
         List<Experiment> out = new ArrayList<Experiment>();
         
-        Property observedIn = getModel().getProperty(LoreModel.URI+"#observedIn");
+        Property observedIn = BaseVocab.observedIn;
         NodeIterator it = listPropertyValues(observedIn);
         while (it.hasNext()) {
             Experiment participant = Experiment.fromIndividual(it.next().as(Individual.class));
@@ -78,7 +82,7 @@ public class Interaction extends IndividualImpl {
     
     public void addExperiment(Experiment e) {
         
-        Property observedIn = getModel().getProperty(LoreModel.URI+"#observedIn");
+        Property observedIn = BaseVocab.observedIn;
         addProperty(observedIn, e);
     }
     
@@ -86,7 +90,7 @@ public class Interaction extends IndividualImpl {
     public List<? extends RecordObject> listParticipants() {
         List<RecordObject> out = new ArrayList<RecordObject>();
         
-        Property hasParticipant = getModel().getProperty(InteractionModel.URI+"#hasParticipant");
+        Property hasParticipant = InteractionVocab.hasParticipant;
         NodeIterator it = listPropertyValues(hasParticipant);
         while (it.hasNext()) {
             RecordObject participant = RecordObject.fromIndividual(it.next().as(Individual.class));
@@ -99,29 +103,61 @@ public class Interaction extends IndividualImpl {
     
     public static <I extends Interaction> List<I> listInteractions(RecordObject obj, Class<I> interactionType) {
         
-        Sparql sparql = Sparql.getInstance(Interaction.class.getProtectionDomain().getCodeSource());
-        
-        String iaType;
-        try {
-            iaType = (String)interactionType.getField("CLASS_URI").get(null);
-        } catch (Exception ex) {
-            throw new RuntimeException("Class without CLASS_URI field!",ex);
-        } 
-        
-        List<I> list = new ArrayList<I>();
-        for (Individual ind : sparql.queryIndividuals(obj.getModel(), "listInteractions", "interaction", obj.getURI(), iaType)) {
-            I interaction;
-            try {
-                interaction = (I)interactionType.getMethod("fromIndividual", Individual.class).invoke(null, ind);
-            } catch (Exception ex) {
-                throw new RuntimeException("Class without \"fromIndividual()\" method!",ex);
-            } 
-            list.add(interaction);
+        WrapperFactory<I> factory = WrapperFactory.forClass(interactionType);
+        
+        List<Node> nodes = InteractionIndex.getInstance(obj.getModel())
+                .getInteractions(obj.asNode(), factory.getClassNode(), 
+                ClassHierarchy.getInstance(obj.getModel()));
+        
+        EnhGraph graph = ((IndividualImpl) obj).getGraph();
+        List<I> list = new ArrayList<I>(nodes.size());
+        for (Node node : nodes) {
+            list.add(factory.wrap(node, graph));
         }
         
         return list;
     }
     
+    /**
+     * Counts the interactions of the given type that an object participates in,
+     * without creating the interaction objects.
+     * @param obj the participant
+     * @param interactionType the interaction type
+     * @return the number of interactions.
+     */
+    public static int getDegree(RecordObject obj, Class<? extends Interaction> interactionType) {
+        return InteractionIndex.getInstance(obj.getModel())
+                .getDegree(obj.asNode(), WrapperFactory.forClass(interactionType).getClassNode(), 
+                ClassHierarchy.getInstance(obj.getModel()));
+    }
+    
+    
+    /**
+     * Lists the other participants of all interactions of the given type
+     * that an object participates in.
+     * @param obj the participant
+     * @param interactionType the interaction type
+     * @return the interaction partners, without duplicates.
+     */
+    public static Set<RecordObject> listPartners(RecordObject obj, Class<? extends Interaction> interactionType) {
+        
+        InteractionIndex index = InteractionIndex.getInstance(obj.getModel());
+        Node type = WrapperFactory.forClass(interactionType).getClassNode();
+        WrapperFactory<RecordObject> factory = WrapperFactory.forClass(RecordObject.class);
+        EnhGraph graph = ((IndividualImpl) obj).getGraph();
+        
+        Set<RecordObject> out = new LinkedHashSet<RecordObject>();
+        ClassHierarchy hierarchy = ClassHierarchy.getInstance(obj.getModel());
+        for (Node ia : index.getInteractions(obj.asNode(), type, hierarchy)) {
+            for (Node participant : index.getParticipants(ia)) {
+                if (!participant.equals(obj.asNode())) {
+                    out.add(factory.wrap(participant, graph));
+                }
+            }
+        }
+        return out;
+    }
+    
     
     /**
      * Pseudo-constructor. 
@@ -163,16 +199,19 @@ public class Interaction extends IndividualImpl {
 //        b.append(e.getURI());
 //        }
        
-        Interaction out = fromIndividual(type
-                            .createIndividual(b.toString()));
+        Interaction out = new Interaction(Node.createURI(b.toString()), model);
         
-        Property hasParticipant = model.getProperty(InteractionModel.URI+"#hasParticipant");
-        for (RecordObject o : participants) {
-            out.addProperty(hasParticipant, o);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, type.getURI())) {
+            Property hasParticipant = InteractionVocab.hasParticipant;
+            for (RecordObject o : participants) {
+                known.ensure(out, hasParticipant, o);
+            }
+            known.add(out.getURI());
         }
+        //the experiment is not part of the identity
         if (e != null) {
-            Property observedIn = model.getProperty(LoreModel.URI+"#observedIn");
-            out.addProperty(observedIn, e);
+            known.ensure(out, BaseVocab.observedIn, e);
         }
         
         
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.interaction;
+
+import ca.on.mshri.lore.base.ClassHierarchy;
+import ca.on.mshri.lore.base.LoreModel;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.RDF;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * <p>An in-memory adjacency index over the <code>hasParticipant</code> relation.
+ * For each participant it holds its interactions grouped by their
+ * <code>rdf:type</code>s, and for each interaction its participants. Neighbourhood
+ * and degree lookups are thus simple map lookups instead of SPARQL queries.
+ * Since only the asserted types are indexed, lookups match them against the
+ * requested type through the model's {@link ClassHierarchy}.</p>
+ *
+ * <p>There is one index per underlying data graph, shared by all model wrappers
+ * around that graph, and it holds the types asserted in that graph. It is built
+ * on the first request and rebuilt on the next request after a
+ * <code>hasParticipant</code> statement or the type of an indexed interaction
+ * was added to or removed from the graph.</p>
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class InteractionIndex {
+
+    /**
+     * instances by data graph.
+     */
+    private static final Map<Graph,InteractionIndex> instances = new WeakHashMap<Graph, InteractionIndex>();
+
+    private static final Node TYPE = RDF.type.asNode();
+
+    private static final Node HAS_PARTICIPANT = InteractionVocab.hasParticipant.asNode();
+
+    /**
+     * interactions of each participant, by interaction type.
+     */
+    private Map<Node,Map<Node,List<Node>>> interactions = new HashMap<Node, Map<Node, List<Node>>>();
+
+    /**
+     * participants of each interaction.
+     */
+    private Map<Node,List<Node>> participants = new HashMap<Node, List<Node>>();
+
+    /**
+     * set when the indexed statements change.
+     */
+    private volatile boolean stale = false;
+
+    private InteractionIndex(Graph graph) {
+        build(graph);
+    }
+
+    /**
+     * Returns the interaction index of the data underlying the given model.
+     * @param model the model
+     * @return the index.
+     */
+    public static synchronized InteractionIndex getInstance(Model model) {
+        Model base = LoreModel.dataModel(model);
+        Graph graph = base.getGraph();
+        InteractionIndex index = instances.get(graph);
+        if (index == null || index.stale) {
+            if (index == null) {
+                base.register(new Listener(graph));
+            }
+            index = new InteractionIndex(graph);
+            instances.put(graph, index);
+        }
+        return index;
+    }
+
+    /**
+     * scans the participant statements and the types of their subjects.
+     */
+    private void build(Graph graph) {
+        ExtendedIterator<Triple> it = graph.find(Node.ANY, HAS_PARTICIPANT, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                List<Node> ps = participants.get(t.getSubject());
+                if (ps == null) {
+                    ps = new ArrayList<Node>(2);
+                    participants.put(t.getSubject(), ps);
+                }
+                ps.add(t.getObject());
+            }
+        } finally {
+            it.close();
+        }
+
+        for (Map.Entry<Node,List<Node>> entry : participants.entrySet()) {
+            Node ia = entry.getKey();
+            ExtendedIterator<Triple> types = graph.find(ia, TYPE, Node.ANY);
+            try {
+                while (types.hasNext()) {
+                    Node type = types.next().getObject();
+                    for (Node p : entry.getValue()) {
+                        add(p, type, ia);
+                    }
+                }
+            } finally {
+                types.close();
+            }
+        }
+    }
+
+    private void add(Node participant, Node type, Node interaction) {
+        Map<Node,List<Node>> byType = interactions.get(participant);
+        if (byType == null) {
+            byType = new HashMap<Node, List<Node>>(4);
+            interactions.put(participant, byType);
+        }
+        List<Node> list = byType.get(type);
+        if (list == null) {
+            list = new ArrayList<Node>(4);
+            byType.put(type, list);
+        }
+        list.add(interaction);
+    }
+
+    /**
+     * Lists the interactions of the given type that a resource participates in.
+     * @param participant the participant
+     * @param type the interaction type
+     * @param hierarchy the class hierarchy of the calling model, used to find
+     * the interactions whose asserted type is a subclass of the given type.
+     * @return an unmodifiable list of interaction nodes.
+     */
+    public List<Node> getInteractions(Node participant, Node type, ClassHierarchy hierarchy) {
+        Map<Node,List<Node>> byType = interactions.get(participant);
+        if (byType == null) {
+            return Collections.emptyList();
+        }
+        List<Node> first = null;
+        Set<Node> merged = null;
+        for (Map.Entry<Node,List<Node>> entry : byType.entrySet()) {
+            if (hierarchy.isSubClassOf(entry.getKey(), type)) {
+                if (first == null) {
+                    first = entry.getValue();
+                } else {
+                    //an interaction may have several matching types
+                    if (merged == null) {
+                        merged = new LinkedHashSet<Node>(first);
+                    }
+                    merged.addAll(entry.getValue());
+                }
+            }
+        }
+        if (merged != null) {
+            return Collections.unmodifiableList(new ArrayList<Node>(merged));
+        }
+        return first == null ? Collections.<Node>emptyList() : Collections.unmodifiableList(first);
+    }
+
+    /**
+     * @param participant the participant
+     * @param type the interaction type
+     * @param hierarchy the class hierarchy of the calling model.
+     * @return the number of interactions of the given type the resource participates in.
+     */
+    public int getDegree(Node participant, Node type, ClassHierarchy hierarchy) {
+        return getInteractions(participant, type, hierarchy).size();
+    }
+
+    /**
+     * @param interaction the interaction
+     * @return an unmodifiable list of its participant nodes.
+     */
+    public List<Node> getParticipants(Node interaction) {
+        List<Node> list = participants.get(interaction);
+        return list == null ? Collections.<Node>emptyList() : Collections.unmodifiableList(list);
+    }
+
+    /**
+     * marks the index as stale when a participant statement or the type of
+     * an indexed interaction changes.
+     */
+    private static class Listener extends StatementListener {
+
+        private WeakReference<Graph> graph;
+
+        Listener(Graph graph) {
+            this.graph = new WeakReference<Graph>(graph);
+        }
+
+        @Override
+        public void addedStatement(Statement s) {
+            check(s);
+        }
+
+        @Override
+        public void removedStatement(Statement s) {
+            check(s);
+        }
+
+        private void check(Statement s) {
+            Property p = s.getPredicate();
+            boolean participant = p.equals(InteractionVocab.hasParticipant);
+            if (participant || p.equals(RDF.type)) {
+                synchronized (InteractionIndex.class) {
+                    InteractionIndex index = instances.get(graph.get());
+                    if (index != null && (participant 
+                            || index.participants.containsKey(s.getSubject().asNode()))) {
+                        index.stale = true;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -16,7 +16,6 @@
  */
 package ca.on.mshri.lore.interaction;
 
-import ca.on.mshri.lore.genome.GenomeModel;
 import ca.on.mshri.lore.molecules.MoleculesModel;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.rdf.model.Model;
@@ -32,8 +31,8 @@ public class InteractionModel extends MoleculesModel {
     public InteractionModel(OntModelSpec spec, Model model) {
         //read dependencies
         super(spec, model);
-        //read owl specs
-        read(GenomeModel.class.getClassLoader().getResourceAsStream("lore-interaction.owl"), null);
+        //attach shared owl specs
+        addSchema("lore-interaction.owl");
     }
     
 }
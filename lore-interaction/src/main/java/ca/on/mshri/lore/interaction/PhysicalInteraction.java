@@ -45,9 +45,8 @@ public class PhysicalInteraction extends Interaction {
     
     public static PhysicalInteraction fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl) i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new PhysicalInteraction(impl.asNode(), impl.getGraph());
         } else {
             throw new ConversionException(i.getURI()+" cannot be cast as PhysicalInteraction!");
@@ -58,7 +57,7 @@ public class PhysicalInteraction extends Interaction {
     public List<Molecule> listParticipants() {
         List<Molecule> out = new ArrayList<Molecule>();
         
-        Property hasParticipant = getModel().getProperty(InteractionModel.URI+"#hasParticipant");
+        Property hasParticipant = InteractionVocab.hasParticipant;
         NodeIterator it = listPropertyValues(hasParticipant);
         while (it.hasNext()) {
             Molecule participant = Molecule.fromIndividual(it.next().as(Individual.class));
@@ -80,12 +79,10 @@ public class PhysicalInteraction extends Interaction {
     public static PhysicalInteraction createOrGet(InteractionModel model, 
             Experiment e, OntClass type, Molecule... participants) {
         
-        OntClass thisType = model.getOntClass(CLASS_URI);
-        
-        if (!type.equals(thisType) && !thisType.hasSubClass(type, false)) {
+        if (!LoreModel.isSubClassOf(type, model.getOntClass(CLASS_URI))) {
             throw new ConversionException(type+" is not a subclass of "+CLASS_URI);
         }
         
-        return fromIndividual(Interaction.createOrGet(model, e, type, participants));
+        return new PhysicalInteraction(Interaction.createOrGet(model, e, type, participants).asNode(), model);
     }
 }
@@ -21,6 +21,7 @@ import ca.on.mshri.lore.base.Experiment;
 import ca.on.mshri.lore.genome.Allele;
 import ca.on.mshri.lore.genome.Gene;
 import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.interaction.InteractionVocab;
 import ca.on.mshri.lore.interaction.PhysicalInteraction;
 import ca.on.mshri.lore.molecules.Protein;
 import ca.on.mshri.lore.operations.util.Parameter;
@@ -73,8 +74,8 @@ public class InteractionParser extends TabDelimParser {
         ccsbMut = Authority.createOrGet(iaModel, "CCSB-Mutant");
         ccsbOrf = Authority.createOrGet(iaModel, "CCSB-ORF");
         physIntType = iaModel.getOntClass(PhysicalInteraction.CLASS_URI);
-        pos = iaModel.getProperty(InteractionModel.URI+"#affectsPositively");
-        neg = iaModel.getProperty(InteractionModel.URI+"#affectsNegatively");
+        pos = InteractionVocab.affectsPositively;
+        neg = InteractionVocab.affectsNegatively;
         
         //get input source
         URL url = getParameterValue(srcP);
@@ -23,6 +23,7 @@ import ca.on.mshri.lore.genome.Allele;
 import ca.on.mshri.lore.genome.Gene;
 import ca.on.mshri.lore.genome.PointMutation;
 import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.interaction.InteractionVocab;
 import ca.on.mshri.lore.interaction.PhysicalInteraction;
 import ca.on.mshri.lore.molecules.Protein;
 import ca.on.mshri.lore.operations.util.Parameter;
@@ -41,7 +42,10 @@ import java.util.logging.Logger;
 
 
 /**
- * Parses version 2 of the edgotyping initiative file format
+ * Parses version 2 of the edgotyping initiative file format. Rows are parsed
+ * and validated on the parser's worker threads (see {@link TabDelimParser});
+ * filtering by gene and all model updates happen on the writing thread, in
+ * file order.
  * 
  * @author Jochen Weile <jochenweile@gmail.com>
  */
@@ -107,8 +111,8 @@ public class InteractionParserV2 extends TabDelimParser {
         ccsbOrf = Authority.createOrGet(iaModel, "CCSB-ORF");
         hgmd = Authority.createOrGet(iaModel, "HGMD");
         physIntType = iaModel.getOntClass(PhysicalInteraction.CLASS_URI);
-        pos = iaModel.getProperty(InteractionModel.URI+"#affectsPositively");
-        neg = iaModel.getProperty(InteractionModel.URI+"#affectsNegatively");
+        pos = InteractionVocab.affectsPositively;
+        neg = InteractionVocab.affectsNegatively;
         
         //get input source
         URL url = getParameterValue(srcP);
@@ -118,7 +122,7 @@ public class InteractionParserV2 extends TabDelimParser {
         
         //start parsing
         try {
-            parseTabDelim(url.openStream(), 2, 7);
+            parseTabDelim(url.openStream(), 2, ltGrowth + 1, true, rowHandler);
         } catch (IOException ex) {
             throw new RuntimeException("Unable to open "+url, ex);
         }
@@ -126,64 +130,127 @@ public class InteractionParserV2 extends TabDelimParser {
         
     }
 
+    /**
+     * A parsed row of the file.
+     */
+    private static class Row {
+        
+        private final String dbOrf, dbGeneSymbol, dbEntrez;
+        private final String adOrf, adGeneSymbol, adEntrez;
+        
+        /**
+         * allele id. Major alleles have id=OrfID.0, minor alleles have id=MutantId
+         */
+        private final String allele;
+        private final String hgmdId;
+        
+        /**
+         * the point mutation, or null for the major allele.
+         */
+        private final String mutation;
+        private final Growth growth;
+        
+        /**
+         * false if the longterm growth failed.
+         */
+        private final boolean grown;
+
+        Row(String[] cols) {
+            dbOrf = cols[dbOrfId];
+            dbGeneSymbol = cols[dbSymbol];
+            dbEntrez = cols[dbEntrezId];
+            adOrf = cols[adOrfId];
+            adGeneSymbol = cols[adSymbol];
+            adEntrez = cols[adEntrezId];
+            allele = cols[mutId].equals("0") ? cols[dbOrfId]+".0" : cols[mutId];
+            hgmdId = cols[hgmdAcc];
+            mutation = cols[mutAAPos].equals("WT") ? null : cols[mutAAPos];
+            growth = Growth.fromKey(cols[score]);
+            grown = Integer.parseInt(cols[ltGrowth]) != 0;
+        }
+    }
+    
+    /**
+     * Parses rows on the worker threads and writes them on the calling thread.
+     */
+    private final RowHandler<Row> rowHandler = new RowHandler<Row>() {
+        
+        @Override
+        public Row transform(String[] cols) {
+            try {
+                return new Row(cols);
+            } catch (NumberFormatException ex) {
+                throw new RuntimeException("Invalid longterm growth value: "+cols[ltGrowth], ex);
+            }
+        }
+
+        @Override
+        public void write(Row row) {
+            writeRow(row);
+        }
+    };
+
     /**
      * Processes a row from the tab delimited file.
      * @param cols 
      */
     @Override
     protected void processRow(String[] cols) {
+        writeRow(rowHandler.transform(cols));
+    }
+    
+    /**
+     * Adds a parsed row to the model.
+     * @param row 
+     */
+    private void writeRow(Row row) {
         
         //if DB gene or AD gene already have a different ORF, then skip this row
-        if (isDuplicate(cols, dbEntrezId, dbOrfId) 
-                || isDuplicate(cols, adEntrezId, adOrfId)) {
+        if (isDuplicate(row.dbEntrez, row.dbOrf) 
+                || isDuplicate(row.adEntrez, row.adOrf)) {
             Logger.getLogger(InteractionParserV2.class.getName())
                     .log(Level.WARNING, "Skipping allelic ORF");
             return;
         }
         
         //if longterm growth failed skip this row too, as it's a technical failure
-        if (Integer.parseInt(cols[ltGrowth]) == 0) {
+        if (!row.grown) {
             Logger.getLogger(InteractionParserV2.class.getName())
                     .log(Level.WARNING, "Skipping LT growth failure");
             return;
         }
         
         //Make DB gene and DB protein. Protein will be identified with the ORF id
-        Gene dbGene = getOrMakeGene(cols, dbEntrezId, dbSymbol);
-        Protein dbProtein = getOrMakeProtein(cols, dbGene, dbEntrezId, dbSymbol, dbOrfId);
+        Gene dbGene = getOrMakeGene(row.dbEntrez, row.dbGeneSymbol);
+        Protein dbProtein = getOrMakeProtein(dbGene, row.dbEntrez, row.dbGeneSymbol, row.dbOrf);
 
         //Make AD gene and AD protein. as above.
-        Gene adGene = getOrMakeGene(cols, adEntrezId, adSymbol);
-        Protein adProtein = getOrMakeProtein(cols, adGene, adEntrezId, adSymbol, adOrfId);
+        Gene adGene = getOrMakeGene(row.adEntrez, row.adGeneSymbol);
+        Protein adProtein = getOrMakeProtein(adGene, row.adEntrez, row.adGeneSymbol, row.adOrf);
 
         //Create the interaction between the proteins
         PhysicalInteraction interaction = PhysicalInteraction
                 .createOrGet(iaModel, exp, physIntType, dbProtein, adProtein);
 
-        //Create the allele. Major alleles have URI=OrfID.0
-        //Minor alleles have URI=MutantId
-        Allele dbAllele = Allele.createOrGet(iaModel, ccsbMut, 
-                cols[mutId].equals("0") ? 
-                cols[dbOrfId]+".0" : 
-                cols[mutId]
-        );
+        //Create the allele.
+        Allele dbAllele = Allele.createOrGet(iaModel, ccsbMut, row.allele);
         //Connect allele to gene if not already done.
         if (dbAllele.getGene() == null || !dbAllele.getGene().equals(dbGene)) {
             dbAllele.setGene(dbGene);
         }
         //Add HGMD ID to allele if not already done.
         if (dbAllele.getXRefValue(hgmd) == null) {
-            dbAllele.addXRef(hgmd, cols[hgmdAcc]);
+            dbAllele.addXRef(hgmd, row.hgmdId);
         }
         //Add Mutation to Allele if not already done or Major allele.
-        if (dbAllele.listMutations().isEmpty() && !cols[mutAAPos].equals("WT")) {
+        if (dbAllele.listMutations().isEmpty() && row.mutation != null) {
             PointMutation pmut = PointMutation
-                    .createOrGet(iaModel, dbAllele, cols[mutAAPos]);
+                    .createOrGet(iaModel, dbAllele, row.mutation);
             dbAllele.addMutation(pmut);
         }
 
         //Connect allele to interaction regarding positive or negative influece
-        Growth growth = Growth.fromKey(cols[score]);
+        Growth growth = row.growth;
         if (growth != Growth.UNKNOWN) {
             if (growth != Growth.NEG) {
                 if (dbAllele.hasProperty(neg, interaction)) {
@@ -206,16 +273,15 @@ public class InteractionParserV2 extends TabDelimParser {
     /**
      * Get the gene object for the given IDs or make a new one if it doesn't 
      * exist yet.
-     * @param cols the column array
-     * @param entrezIndex the array index for the entrez id
-     * @param symbolIndex the array index for the gene symbol
+     * @param entrezId the entrez id
+     * @param symbol the gene symbol
      * @return the gene object.
      */
-    private Gene getOrMakeGene(String[] cols, int entrezIndex, int symbolIndex) {
+    private Gene getOrMakeGene(String entrezId, String symbol) {
         //get model components
-        Gene gene = Gene.createOrGet(iaModel, iaModel.ENTREZ, cols[entrezIndex]);
+        Gene gene = Gene.createOrGet(iaModel, iaModel.ENTREZ, entrezId);
         if (gene.getXRefValue(iaModel.HGNC) == null) {
-            gene.addXRef(iaModel.HGNC, cols[symbolIndex]);
+            gene.addXRef(iaModel.HGNC, symbol);
         }
         return gene;
     }
@@ -223,22 +289,21 @@ public class InteractionParserV2 extends TabDelimParser {
     /**
      * Get the protein object for the given ID or make a new one if it doesn't
      * exist yet. 
-     * @param cols The column array.
      * @param gene Gene that encodes for this protein
-     * @param entrezIndex Array index for the entrez id
-     * @param symbolIndex Array index for gene symbol
-     * @param orfIndex Array index for ORF ID
+     * @param entrezId the entrez id
+     * @param symbol the gene symbol
+     * @param orfId the ORF ID
      * @return the protein object.
      */
-    private Protein getOrMakeProtein(String[] cols, Gene gene, int entrezIndex, 
-            int symbolIndex, int orfIndex) {
+    private Protein getOrMakeProtein(Gene gene, String entrezId, 
+            String symbol, String orfId) {
         
-        Protein protein = Protein.createOrGet(iaModel, ccsbOrf, cols[orfIndex]);
+        Protein protein = Protein.createOrGet(iaModel, ccsbOrf, orfId);
         if (protein.getXRefValue(iaModel.HGNC) == null) {
-            protein.addXRef(iaModel.HGNC, cols[symbolIndex]);
+            protein.addXRef(iaModel.HGNC, symbol);
         }
         if (protein.getXRefValue(iaModel.ENTREZ) == null) {
-            protein.addXRef(iaModel.ENTREZ, cols[entrezIndex]);
+            protein.addXRef(iaModel.ENTREZ, entrezId);
         }
         if (protein.getEncodingGene() == null || !protein.getEncodingGene().equals(gene)) {
             protein.setEncodingGene(gene);
@@ -248,15 +313,11 @@ public class InteractionParserV2 extends TabDelimParser {
 
     /**
      * Returns whether another ORF already exists for this gene.
-     * @param cols column array
-     * @param entrezIndex array index for entrez id
-     * @param orfIndex array index for orf id
+     * @param entrezId the entrez id
+     * @param orfId the orf id
      * @return 
      */
-    private boolean isDuplicate(String[] cols, int entrezIndex, int orfIndex) {
-        
-        String entrezId = cols[entrezIndex];
-        String orfId = cols[orfIndex];
+    private boolean isDuplicate(String entrezId, String orfId) {
         
         String knownOrf = gene2allele.get(entrezId);
         if (knownOrf == null || knownOrf.equals(orfId)) {
@@ -21,8 +21,9 @@ import ca.on.mshri.lore.genome.Allele;
 import ca.on.mshri.lore.genome.Gene;
 import ca.on.mshri.lore.genome.Mutation;
 import ca.on.mshri.lore.genome.PointMutation;
-import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.interaction.InteractionVocab;
 import ca.on.mshri.lore.operations.LoreOperation;
+import ca.on.mshri.lore.operations.util.Footprint;
 import ca.on.mshri.lore.operations.util.Parameter;
 import com.hp.hpl.jena.ontology.OntClass;
 import com.hp.hpl.jena.rdf.model.NodeIterator;
@@ -71,8 +72,8 @@ public class SeqDistAnalysis extends LoreOperation {
         StringBuilder out = new StringBuilder();
         
         pMutClass = getModel().getOntClass(PointMutation.CLASS_URI);
-        affectsPositively = getModel().getProperty(InteractionModel.URI+"#affectsPositively");
-        affectsNegatively = getModel().getProperty(InteractionModel.URI+"#affectsNegatively");
+        affectsPositively = InteractionVocab.affectsPositively;
+        affectsNegatively = InteractionVocab.affectsNegatively;
         
         Logger.getLogger(SeqDistAnalysis.class.getName())
                 .log(Level.INFO, "Analyzing edgotype profiles...");
@@ -189,6 +190,11 @@ public class SeqDistAnalysis extends LoreOperation {
         return false;
     }
 
+    @Override
+    public Footprint getFootprint() {
+        return Footprint.readOnly();
+    }
+
 
     /**
      * Writes the given contents to a new file with the given file name.
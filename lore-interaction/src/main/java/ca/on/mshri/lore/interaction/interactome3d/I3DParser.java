@@ -20,12 +20,14 @@ import ca.on.mshri.lore.base.Authority;
 import ca.on.mshri.lore.base.Experiment;
 import ca.on.mshri.lore.genome.util.LocalAlignment;
 import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.interaction.InteractionVocab;
 import ca.on.mshri.lore.interaction.PhysicalInteraction;
 import ca.on.mshri.lore.molecules.Protein;
 import ca.on.mshri.lore.molecules.Structure3D;
 import ca.on.mshri.lore.molecules.Structure3D.SeqMap;
 import ca.on.mshri.lore.molecules.operations.FetchUniprotSeqs;
 import ca.on.mshri.lore.molecules.util.Structure;
+import ca.on.mshri.lore.molecules.util.StructureCache;
 import ca.on.mshri.lore.operations.util.Parameter;
 import ca.on.mshri.lore.operations.util.TabDelimParser;
 import ca.on.mshri.lore.operations.util.URLParameter;
@@ -36,6 +38,8 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.biojava3.alignment.Alignments;
@@ -48,6 +52,10 @@ import org.biojava3.core.sequence.ProteinSequence;
 import org.biojava3.core.sequence.compound.AminoAcidCompound;
 
 /**
+ * Parses the interaction table of Interactome3D. If more than one thread is
+ * configured, the PDB files, UniProt sequences and alignments of each row
+ * are loaded on the parser's worker threads, leaving only the model updates
+ * to the writing thread.
  *
  * @author Jochen Weile <jochenweile@gmail.com>
  */
@@ -106,10 +114,19 @@ public class I3DParser extends TabDelimParser {
         exp = Experiment.createOrGet(iaModel, expName);
         
         physInt = iaModel.getOntClass(PhysicalInteraction.CLASS_URI);
-        involved = iaModel.getProperty(InteractionModel.URI+"#involvedIn");
+        involved = InteractionVocab.involvedIn;
+        
+        //sequences already in the model need not be fetched again
+        for (Protein p : iaModel.listIndividualsOfClass(Protein.class, false)) {
+            String uniprot = p.getXRefValue(iaModel.UNIPROT);
+            String seq = p.getSequence();
+            if (uniprot != null && seq != null) {
+                sequences.put(uniprot, seq);
+            }
+        }
         
         try {
-            parseTabDelim(src.openStream(), 1, 22);
+            parseTabDelim(src.openStream(), 1, 22, true, rowHandler);
         } catch (IOException ex) {
             throw new RuntimeException("Unable to read "+src, ex);
         }
@@ -122,63 +139,140 @@ public class I3DParser extends TabDelimParser {
     private FetchUniprotSeqs seqFetcher = new FetchUniprotSeqs();
     
     /**
-     * process the current row.
-     * @param cols 
+     * protein sequences by UniProt accession. Holds an empty string for 
+     * accessions that UniProt has no sequence for.
      */
-    @Override
-    protected void processRow(String[] cols) {
+    private ConcurrentMap<String,String> sequences = new ConcurrentHashMap<String, String>();
+    
+    /**
+     * A row of the interaction table, with its structure loaded and aligned
+     * to the protein sequences.
+     */
+    private static class Row {
         
-        if (cols[prot1].equals(lastP1) && cols[prot2].equals(lastP2)) {
-            //skip this row, since it's a lower scoring interaction
-            return;
+        private final String uniprot1, uniprot2, pdb, file;
+        private final String seq1, seq2;
+        
+        /**
+         * location of the PDB file, or null if it does not exist.
+         */
+        private final URL source;
+        private final SeqMap seqMap;
+
+        Row(String uniprot1, String uniprot2, String pdb, String file, 
+                String seq1, String seq2, URL source, SeqMap seqMap) {
+            this.uniprot1 = uniprot1;
+            this.uniprot2 = uniprot2;
+            this.pdb = pdb;
+            this.file = file;
+            this.seq1 = seq1;
+            this.seq2 = seq2;
+            this.source = source;
+            this.seqMap = seqMap;
         }
+    }
+    
+    /**
+     * Loads structures and sequences and aligns them on the worker threads;
+     * creates the individuals on the writing thread.
+     */
+    private final RowHandler<Row> rowHandler = new RowHandler<Row>() {
         
-        //proteins
-        Protein p1 = Protein.createOrGet(iaModel, iaModel.UNIPROT, cols[prot1]);
-        seqFetcher.fetchSequenceForProtein(p1, iaModel);
-        Protein p2 = Protein.createOrGet(iaModel, iaModel.UNIPROT, cols[prot2]);
-        seqFetcher.fetchSequenceForProtein(p2, iaModel);
-        
-        //interaction
-        PhysicalInteraction interaction = PhysicalInteraction.createOrGet(iaModel, exp, physInt, p1, p2);
-        
-        //structure
-        File pdbFile = new File(pdbLoc,cols[fileName]);
-        if (pdbFile.exists()) {
-                
-            Structure3D structure = Structure3D.createOrGet(iaModel, domAuth, cols[fileName]);
-            structure.addXRef(iaModel.PDB, cols[pdbId]);
-
-            Structure3D.addStructureToObject(structure, interaction);
-                
-            try {
-                
-                structure.setSource(pdbFile.toURI().toURL());
-                SeqMap sm = buildSeqMap(
-                        structure.getStructureObject(), 
-                        p1, cols[prot1], cols[chain1], 
-                        p2, cols[prot2], cols[chain2]
+        @Override
+        public Row transform(String[] cols) {
+            
+            String seq1 = getSequence(cols[prot1]);
+            String seq2 = getSequence(cols[prot2]);
+            
+            URL source = null;
+            SeqMap sm = null;
+            File pdbFile = new File(pdbLoc,cols[fileName]);
+            if (pdbFile.exists()) {
+                try {
+                    source = pdbFile.toURI().toURL();
+                } catch (MalformedURLException ex) {
+                    throw new RuntimeException("Malformed URL for file! Report this as a bug!");
+                }
+                sm = buildSeqMap(
+                        StructureCache.getInstance().getStructureForURL(source), 
+                        seq1, cols[prot1], cols[chain1], 
+                        seq2, cols[prot2], cols[chain2]
                 );
-                structure.setSeqMap(sm);
-                
-            } catch (MalformedURLException ex) {
-                throw new RuntimeException("Malformed URL for file! Report this as a bug!");
             }
             
-        } else {
-            Logger.getLogger(I3DParser.class.getName())
-                    .log(Level.WARNING, "PDB file not found: "+pdbFile);
+            return new Row(cols[prot1], cols[prot2], cols[pdbId], cols[fileName], 
+                    seq1, seq2, source, sm);
+        }
+
+        @Override
+        public void write(Row row) {
+            
+            if (row.uniprot1.equals(lastP1) && row.uniprot2.equals(lastP2)) {
+                //skip this row, since it's a lower scoring interaction
+                return;
+            }
+
+            //proteins
+            Protein p1 = Protein.createOrGet(iaModel, iaModel.UNIPROT, row.uniprot1);
+            setSequence(p1, row.seq1);
+            Protein p2 = Protein.createOrGet(iaModel, iaModel.UNIPROT, row.uniprot2);
+            setSequence(p2, row.seq2);
+
+            //interaction
+            PhysicalInteraction interaction = PhysicalInteraction.createOrGet(iaModel, exp, physInt, p1, p2);
+
+            //structure
+            if (row.source != null) {
+
+                Structure3D structure = Structure3D.createOrGet(iaModel, domAuth, row.file);
+                structure.addXRef(iaModel.PDB, row.pdb);
+
+                Structure3D.addStructureToObject(structure, interaction);
+
+                structure.setSource(row.source);
+                structure.setSeqMap(row.seqMap);
+
+            } else {
+                Logger.getLogger(I3DParser.class.getName())
+                        .log(Level.WARNING, "PDB file not found: "+new File(pdbLoc, row.file));
+            }
+
+            lastP1 = row.uniprot1;
+            lastP2 = row.uniprot2;
+        }
+    };
+    
+    /**
+     * process the current row.
+     * @param cols 
+     */
+    @Override
+    protected void processRow(String[] cols) {
+        rowHandler.write(rowHandler.transform(cols));
+    }
+    
+    /**
+     * gets the sequence for a UniProt accession, fetching it if it isn't known yet.
+     * Safe to call from several threads.
+     * @param uniprot the accession
+     * @return the sequence or null if UniProt has none.
+     */
+    private String getSequence(String uniprot) {
+        String seq = sequences.get(uniprot);
+        if (seq == null) {
+            seq = seqFetcher.fetchSequence(uniprot);
+            sequences.putIfAbsent(uniprot, seq == null ? "" : seq);
+        }
+        return seq == null || seq.length() == 0 ? null : seq;
+    }
+    
+    /**
+     * sets the sequence on a protein that doesn't have one yet.
+     */
+    private void setSequence(Protein p, String seq) {
+        if (seq != null && p.getSequence() == null) {
+            p.setSequence(seq);
         }
-        
-        //        ProteinDomain d1 = makeDomain(p1, cols, seq_begin1, seq_end1);
-        //        ProteinDomain d2 = makeDomain(p2, cols, seq_begin2, seq_end2);
-        
-        
-//        d1.addProperty(involved, interaction);
-//        d2.addProperty(involved, interaction);
-        
-        lastP1 = cols[prot1];
-        lastP2 = cols[prot2];
     }
 
     
@@ -212,24 +306,24 @@ public class I3DParser extends TabDelimParser {
         return false;
     }
     
-    private SeqMap buildSeqMap(Structure struc, Protein p1, String uniprot1, String chain1, 
-            Protein p2, String uniprot2, String chain2) {
+    private SeqMap buildSeqMap(Structure struc, String seq1, String uniprot1, String chain1, 
+            String seq2, String uniprot2, String chain2) {
         
         SeqMap sm = new SeqMap();
         
-        addToSeqMap(sm, struc, p1, uniprot1, chain1);
-        addToSeqMap(sm, struc, p2, uniprot2, chain2);
+        addToSeqMap(sm, struc, seq1, uniprot1, chain1);
+        addToSeqMap(sm, struc, seq2, uniprot2, chain2);
         
         return sm;
         
     }
 
 
-    private void addToSeqMap(SeqMap sm, Structure struc, Protein p, String uniprot, String chain) {
+    private void addToSeqMap(SeqMap sm, Structure struc, String seq, String uniprot, String chain) {
         
         
         ProteinSequence strucSeq = new ProteinSequence(struc.getChainSequence(chain));
-        ProteinSequence protSeq = new ProteinSequence(p.getSequence());
+        ProteinSequence protSeq = new ProteinSequence(seq);
         
         SubstitutionMatrix<AminoAcidCompound> blosum62 = new SimpleSubstitutionMatrix<AminoAcidCompound>();
         SequencePair<ProteinSequence, AminoAcidCompound> pair = Alignments.getPairwiseAlignment(strucSeq,protSeq,
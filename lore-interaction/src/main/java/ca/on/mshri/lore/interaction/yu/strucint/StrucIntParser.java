@@ -20,6 +20,7 @@ import ca.on.mshri.lore.base.Authority;
 import ca.on.mshri.lore.base.Experiment;
 import ca.on.mshri.lore.base.InconsistencyException;
 import ca.on.mshri.lore.interaction.InteractionModel;
+import ca.on.mshri.lore.interaction.InteractionVocab;
 import ca.on.mshri.lore.interaction.PhysicalInteraction;
 import ca.on.mshri.lore.molecules.Protein;
 import ca.on.mshri.lore.molecules.ProteinDomain;
@@ -81,7 +82,7 @@ public class StrucIntParser extends TabDelimParser {
         iaModel = new InteractionModel(OntModelSpec.OWL_MEM, getModel());
         physInt = iaModel.getOntClass(PhysicalInteraction.CLASS_URI);
         domAuth = Authority.createOrGet(iaModel, "LoreProteinDomain");
-        involvedIn = iaModel.getProperty(InteractionModel.URI+"#involvedIn");
+        involvedIn = InteractionVocab.involvedIn;
         exp = Experiment.createOrGet(iaModel, getParameterValue(experimentP));
         
         //check out source URL
@@ -25,6 +25,7 @@ import com.hp.hpl.jena.ontology.OntClass;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import junit.framework.TestCase;
 
@@ -59,6 +60,22 @@ public class InteractionsTest extends TestCase {
         List<GeneticInteraction> interactions = Interaction.listInteractions(g1, GeneticInteraction.class);
         assertEquals(1,interactions.size());
         assertTrue(interactions.contains(interaction));
+        assertEquals(1, Interaction.getDegree(g1, GeneticInteraction.class));
+        assertEquals(Collections.singleton(g2), Interaction.listPartners(g1, GeneticInteraction.class));
+        
+        //the index picks up new interactions
+        final Gene g3 = Gene.createOrGet(model, model.ENTREZ, "2345");
+        GeneticInteraction.createOrGet(model, exp, iType, g1, g3);
+        assertEquals(2, Interaction.getDegree(g1, GeneticInteraction.class));
+        assertEquals(1, Interaction.getDegree(g3, GeneticInteraction.class));
+        assertEquals(0, Interaction.getDegree(g3, PhysicalInteraction.class));
+        
+        //wrappers around the same data share the index and see each other's writes
+        InteractionModel sibling = new InteractionModel(OntModelSpec.OWL_MEM, model.getBaseModel());
+        assertSame(InteractionIndex.getInstance(model), InteractionIndex.getInstance(sibling));
+        final Gene g4 = Gene.createOrGet(sibling, sibling.ENTREZ, "3456");
+        GeneticInteraction.createOrGet(sibling, exp, sibling.getOntClass(iType.getURI()), g1, g4);
+        assertEquals(3, Interaction.getDegree(g1, GeneticInteraction.class));
         
     }
     
@@ -99,12 +99,14 @@ public class I3DParserTest extends TestCase {
 //                
 //                System.out.println("  -> "+protein);
 //                
+//                QuerySolutionMap bindings = new QuerySolutionMap();
+//                bindings.add("protein", protein);
+//                bindings.add("interaction", interaction);
 //                List<Individual> domains = sparql.queryIndividuals(
 //                        model, 
 //                        "getDomains", 
 //                        "domain", 
-//                        protein.getURI(), 
-//                        interaction.getURI()
+//                        bindings
 //                );
 //                
 //                for (Individual domainInd : domains) {
@@ -17,6 +17,7 @@
 package ca.on.mshri.lore.molecules;
 
 import ca.on.mshri.lore.base.Authority;
+import ca.on.mshri.lore.base.IdentityMap;
 import ca.on.mshri.lore.base.LoreModel;
 import ca.on.mshri.lore.base.RecordObject;
 import com.hp.hpl.jena.enhanced.EnhGraph;
@@ -40,9 +41,8 @@ public class Molecule extends RecordObject {
     
     public static Molecule fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl) i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new Molecule(impl.asNode(), impl.getGraph());
         } else {
             throw new ConversionException(i.getURI()+" cannot be cast as Molecule!");
@@ -58,9 +58,12 @@ public class Molecule extends RecordObject {
      * @return 
      */
     public static Molecule createOrGet(MoleculesModel model, Authority auth, String id) {
-        Molecule out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:Molecule#"+auth.getAuthorityId()+":"+id));
-        out.addXRef(auth, id);
+        Molecule out = new Molecule(Node.createURI("urn:lore:Molecule#"+auth.getAuthorityId()+":"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            out.addXRef(auth, id);
+            known.add(out.getURI());
+        }
         return out;
     }
 }
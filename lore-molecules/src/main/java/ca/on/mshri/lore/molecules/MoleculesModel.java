@@ -37,8 +37,8 @@ public class MoleculesModel extends GenomeModel {
     public MoleculesModel(OntModelSpec spec, Model model) {
         //read dependencies
         super(spec, model);
-        //read owl specs
-        read(GenomeModel.class.getClassLoader().getResourceAsStream("lore-molecules.owl"), null);
+        //attach shared owl specs
+        addSchema("lore-molecules.owl");
     }
     
     
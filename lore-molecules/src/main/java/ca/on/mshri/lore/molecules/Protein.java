@@ -16,11 +16,12 @@
  */
 package ca.on.mshri.lore.molecules;
 
+import ca.on.mshri.lore.base.Accessors;
 import ca.on.mshri.lore.base.Authority;
-import ca.on.mshri.lore.base.InconsistencyException;
+import ca.on.mshri.lore.base.IdentityMap;
 import ca.on.mshri.lore.base.LoreModel;
 import ca.on.mshri.lore.genome.Gene;
-import ca.on.mshri.lore.genome.GenomeModel;
+import ca.on.mshri.lore.genome.GenomeVocab;
 import ca.on.mshri.lore.operations.Sparql;
 import com.hp.hpl.jena.enhanced.EnhGraph;
 import com.hp.hpl.jena.graph.Node;
@@ -28,7 +29,6 @@ import com.hp.hpl.jena.ontology.ConversionException;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntClass;
 import com.hp.hpl.jena.ontology.impl.IndividualImpl;
-import com.hp.hpl.jena.rdf.model.NodeIterator;
 import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.hp.hpl.jena.rdf.model.Resource;
@@ -51,9 +51,8 @@ public class Protein extends Molecule {
     
     public static Protein fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl) i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new Protein(impl.asNode(), impl.getGraph());
         } else {
             throw new ConversionException(i.getURI()+" cannot be cast as Molecule!");
@@ -61,21 +60,12 @@ public class Protein extends Molecule {
     }
     
     public Gene getEncodingGene() {
-        NodeIterator it = listPropertyValues(getModel().getProperty(MoleculesModel.URI+"#encodedBy"));
-        Gene out = null;
-        while (it.hasNext()) {
-            if (out == null) {
-                out = Gene.fromIndividual(it.next().as(Individual.class));
-            } else {
-                //TODO: this might cause problems?
-                throw new InconsistencyException("Protein "+getURI()+" should only have one encoding gene!");
-            }
-        }
-        return out;
+        Individual gene = Accessors.getIndividual(this, MoleculesVocab.encodedBy, "encoding gene");
+        return gene == null ? null : Gene.fromIndividual(gene);
     }
     
     public void setEncodingGene(Gene gene) {
-        Property enc = getModel().getProperty(MoleculesModel.URI+"#encodedBy");
+        Property enc = MoleculesVocab.encodedBy;
         Resource existing = getPropertyResourceValue(enc);
         if (existing != null) {
             Logger.getLogger(Protein.class.getName())
@@ -88,7 +78,7 @@ public class Protein extends Molecule {
     public static List<Protein> listEncodedProteins(Gene gene) {
         
         Sparql sparql = Sparql.getInstance(Protein.class.getProtectionDomain().getCodeSource());
-        List<Individual> is = sparql.queryIndividuals(gene.getModel(), "listProteins", "protein", gene.getURI());
+        List<Individual> is = sparql.queryIndividuals(gene.getModel(), "listProteins", "protein", Sparql.bind("gene", gene));
         
         List<Protein> ps = new ArrayList<Protein>();
         for (Individual i : is) {
@@ -105,30 +95,22 @@ public class Protein extends Molecule {
      * @return 
      */
     public static Protein createOrGet(MoleculesModel model, Authority auth, String id) {
-        Protein out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:Protein#"+auth.getAuthorityId()+":"+id));
-        out.addXRef(auth, id);
+        Protein out = new Protein(Node.createURI("urn:lore:Protein#"+auth.getAuthorityId()+":"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            out.addXRef(auth, id);
+            known.add(out.getURI());
+        }
         return out;
     }
 
     public String getSequence() {
-        
-        NodeIterator it = listPropertyValues(getModel().getProperty(GenomeModel.URI+"#sequence"));
-        String out = null;
-        while (it.hasNext()) {
-            if (out == null) {
-                out = it.next().asLiteral().getString();
-            } else {
-                //TODO: this might cause problems?
-                throw new InconsistencyException("Protein "+getURI()+" should only have one sequence!");
-            }
-        }
-        return out;
+        return Accessors.getString(this, GenomeVocab.sequence, "sequence");
     }
     
     public void setSequence(String seq) {
         
-        Property enc = getModel().getProperty(GenomeModel.URI+"#sequence");
+        Property enc = GenomeVocab.sequence;
         RDFNode existing = getPropertyValue(enc);
         if (existing != null) {
             Logger.getLogger(Protein.class.getName())
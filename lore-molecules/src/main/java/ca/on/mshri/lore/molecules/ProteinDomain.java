@@ -16,8 +16,9 @@
  */
 package ca.on.mshri.lore.molecules;
 
+import ca.on.mshri.lore.base.Accessors;
 import ca.on.mshri.lore.base.Authority;
-import ca.on.mshri.lore.base.InconsistencyException;
+import ca.on.mshri.lore.base.IdentityMap;
 import ca.on.mshri.lore.base.LoreModel;
 import ca.on.mshri.lore.base.RecordObject;
 import com.hp.hpl.jena.enhanced.EnhGraph;
@@ -48,9 +49,8 @@ public class ProteinDomain extends RecordObject {
     
     public static ProteinDomain fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl) i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new ProteinDomain(impl.asNode(), impl.getGraph());
         } else {
             throw new ConversionException(i.getURI()+" cannot be cast as Molecule!");
@@ -58,60 +58,36 @@ public class ProteinDomain extends RecordObject {
     }
     
     public void setStart(int start) {
-        Property prop = getModel().getProperty(MoleculesModel.URI+"#start");
+        Property prop = MoleculesVocab.start;
         cleanup(prop, "start value");
         
         addProperty(prop, start);
     }
     
     public Integer getStart() {
-        Property prop = getModel().getProperty(MoleculesModel.URI+"#start");
-        NodeIterator it = listPropertyValues(prop);
-        Integer start = null;
-        while (it.hasNext()) {
-            if (start != null) {
-                throw new InconsistencyException("Domain has more than one start attribute!");
-            }
-            start = it.next().asLiteral().getInt();
-        }
-        return start;
+        return Accessors.getInt(this, MoleculesVocab.start, "start attribute");
     }
     
     public void setEnd(int end) {
-        Property prop = getModel().getProperty(MoleculesModel.URI+"#end");
+        Property prop = MoleculesVocab.end;
         cleanup(prop, "end value");
         
         addProperty(prop, end);
     }
     
     public Integer getEnd() {
-        NodeIterator it = listPropertyValues(getModel().getProperty(MoleculesModel.URI+"#end"));
-        Integer end = null;
-        while (it.hasNext()) {
-            if (end != null) {
-                throw new InconsistencyException("Domain has more than one end attribute!");
-            }
-            end = it.next().asLiteral().getInt();
-        }
-        return end;
+        return Accessors.getInt(this, MoleculesVocab.end, "end attribute");
     }
     
     public void setProtein(Protein protein) {
-        Property prop = getModel().getProperty(MoleculesModel.URI+"#domainOf");
+        Property prop = MoleculesVocab.domainOf;
         cleanup(prop, "protein");
         addProperty(prop, protein);
     }
     
     public Protein getProtein() {
-        NodeIterator it = listPropertyValues(getModel().getProperty(MoleculesModel.URI+"#domainOf"));
-        Protein protein = null;
-        while (it.hasNext()) {
-            if (protein != null) {
-                throw new InconsistencyException("Domain has more than one protein!");
-            }
-            protein = Protein.fromIndividual(it.next().as(Individual.class));
-        }    
-        return protein;
+        Individual protein = Accessors.getIndividual(this, MoleculesVocab.domainOf, "protein");
+        return protein == null ? null : Protein.fromIndividual(protein);
     }
         
     /**
@@ -122,9 +98,12 @@ public class ProteinDomain extends RecordObject {
      * @return 
      */
     public static ProteinDomain createOrGet(MoleculesModel model, Authority auth, String id) {
-        ProteinDomain out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:ProteinDomain#"+auth.getAuthorityId()+":"+id));
-        out.addXRef(auth, id);
+        ProteinDomain out = new ProteinDomain(Node.createURI("urn:lore:ProteinDomain#"+auth.getAuthorityId()+":"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            out.addXRef(auth, id);
+            known.add(out.getURI());
+        }
         return out;
     }
 
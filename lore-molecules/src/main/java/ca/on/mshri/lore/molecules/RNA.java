@@ -17,6 +17,7 @@
 package ca.on.mshri.lore.molecules;
 
 import ca.on.mshri.lore.base.Authority;
+import ca.on.mshri.lore.base.IdentityMap;
 import ca.on.mshri.lore.base.LoreModel;
 import com.hp.hpl.jena.enhanced.EnhGraph;
 import com.hp.hpl.jena.graph.Node;
@@ -39,9 +40,8 @@ public class RNA extends Molecule {
     
     public static RNA fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl) i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new RNA(impl.asNode(), impl.getGraph());
         } else {
             throw new ConversionException(i.getURI()+" cannot be cast as RNA!");
@@ -57,9 +57,12 @@ public class RNA extends Molecule {
      * @return 
      */
     public static RNA createOrGet(MoleculesModel model, Authority auth, String id) {
-        RNA out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:RNA#"+auth.getAuthorityId()+":"+id));
-        out.addXRef(auth, id);
+        RNA out = new RNA(Node.createURI("urn:lore:RNA#"+auth.getAuthorityId()+":"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            out.addXRef(auth, id);
+            known.add(out.getURI());
+        }
         return out;
     }
 }
@@ -16,7 +16,9 @@
  */
 package ca.on.mshri.lore.molecules;
 
+import ca.on.mshri.lore.base.Accessors;
 import ca.on.mshri.lore.base.Authority;
+import ca.on.mshri.lore.base.IdentityMap;
 import ca.on.mshri.lore.base.InconsistencyException;
 import ca.on.mshri.lore.base.LoreModel;
 import ca.on.mshri.lore.base.RecordObject;
@@ -55,9 +57,8 @@ public class Structure3D extends RecordObject {
     
     public static Structure3D fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl) i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new Structure3D(impl.asNode(), impl.getGraph());
         } else {
             throw new ConversionException(i.getURI()+" cannot be cast as Structure3D!");
@@ -65,7 +66,7 @@ public class Structure3D extends RecordObject {
     }
     
     public void setSource(URL src) {
-        Property source = getModel().getProperty(MoleculesModel.URI+"#source");
+        Property source = MoleculesVocab.source;
         RDFNode existing = getPropertyValue(source);
         if (existing != null) {
             Logger.getLogger(Structure3D.class.getName())
@@ -76,15 +77,7 @@ public class Structure3D extends RecordObject {
     }
     
     public URL getSource() {
-        NodeIterator it = listPropertyValues(getModel().getProperty(MoleculesModel.URI+"#source"));
-        String out = null;
-        while (it.hasNext()) {
-            if (out == null) {
-                out = it.next().asLiteral().getString();
-            } else {
-                throw new InconsistencyException("Structure3D "+getURI()+" should only have one source URL!");
-            }
-        }
+        String out = Accessors.getString(this, MoleculesVocab.source, "source URL");
         try {
             return new URL(out);
         } catch (MalformedURLException ex) {
@@ -102,7 +95,7 @@ public class Structure3D extends RecordObject {
     }
     
     public void setSeqMap(SeqMap map) {
-        Property smProp = getModel().getProperty(MoleculesModel.URI+"#seqmap");
+        Property smProp = MoleculesVocab.seqmap;
         RDFNode existing = getPropertyValue(smProp);
         if (existing != null) {
             Logger.getLogger(Structure3D.class.getName())
@@ -113,20 +106,11 @@ public class Structure3D extends RecordObject {
     }
     
     public SeqMap getSeqMap() {
-        NodeIterator it = listPropertyValues(getModel().getProperty(MoleculesModel.URI+"#seqmap"));
-        String out = null;
-        while (it.hasNext()) {
-            if (out == null) {
-                out = it.next().asLiteral().getString();
-            } else {
-                throw new InconsistencyException("Structure3D "+getURI()+" should only have one SeqMap!");
-            }
-        }
-        return SeqMap.deserialize(out);
+        return SeqMap.deserialize(Accessors.getString(this, MoleculesVocab.seqmap, "SeqMap"));
     }
     
     public static List<Structure3D> listStructuresOfObject(Individual obj) {
-        NodeIterator it = obj.listPropertyValues(obj.getModel().getProperty(MoleculesModel.URI+"#hasStructure"));
+        NodeIterator it = obj.listPropertyValues(MoleculesVocab.hasStructure);
         List<Structure3D> out = new ArrayList<Structure3D>();
         while (it.hasNext()) {
             out.add(Structure3D.fromIndividual(it.next().as(Individual.class)));
@@ -135,7 +119,7 @@ public class Structure3D extends RecordObject {
     }
     
     public static void addStructureToObject(Structure3D struc, Individual obj) {
-        Property enc = obj.getModel().getProperty(MoleculesModel.URI+"#hasStructure");
+        Property enc = MoleculesVocab.hasStructure;
         obj.addProperty(enc, struc);
     }
     
@@ -148,9 +132,12 @@ public class Structure3D extends RecordObject {
      * @return 
      */
     public static Structure3D createOrGet(MoleculesModel model, Authority auth, String id) {
-        Structure3D out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:Structure3D#"+auth.getAuthorityId()+":"+id));
-        out.addXRef(auth, id);
+        Structure3D out = new Structure3D(Node.createURI("urn:lore:Structure3D#"+auth.getAuthorityId()+":"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            out.addXRef(auth, id);
+            known.add(out.getURI());
+        }
         return out;
     }
     
@@ -116,11 +116,22 @@ public class FetchUniprotSeqs extends LoreOperation {
         
         if (uniprotId != null && protein.getSequence() == null) {
             
-            String seq = fetchSeq("http://www.uniprot.org/uniprot/"+uniprotId+".fasta");
-            if (seq != null && seq.length() > 0) {
+            String seq = fetchSequence(uniprotId);
+            if (seq != null) {
                 protein.setSequence(seq);
             }
         }
     }
     
+    /**
+     * fetches a sequence from UniProt without touching any model, so it can
+     * be called from several threads at once.
+     * @param uniprotId the UniProt accession.
+     * @return the sequence, or null if UniProt returned none.
+     */
+    public String fetchSequence(String uniprotId) {
+        String seq = fetchSeq("http://www.uniprot.org/uniprot/"+uniprotId+".fasta");
+        return seq.length() > 0 ? seq : null;
+    }
+    
 }
@@ -19,12 +19,15 @@ package ca.on.mshri.lore.molecules.util;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Caches parsed PDB structures by URL. Safe for concurrent use; two threads
+ * asking for the same uncached structure may both parse it, but only the first
+ * result is kept.
  *
  * @author Jochen Weile <jochenweile@gmail.com>
  */
@@ -33,12 +36,12 @@ public class StructureCache {
     /**
      * singleton.
      */
-    private static StructureCache instance;
+    private static final StructureCache instance = new StructureCache();
     
     /**
      * cache index by URL
      */
-    private Map<URL, Structure> index = new HashMap<URL, Structure>();
+    private ConcurrentMap<URL, Structure> index = new ConcurrentHashMap<URL, Structure>();
 
     /**
      * private constructor for singleton pattern
@@ -50,9 +53,6 @@ public class StructureCache {
      * @return 
      */
     public static StructureCache getInstance() {
-        if (instance == null) {
-            instance = new StructureCache();
-        }
         return instance;
     }
     
@@ -60,7 +60,10 @@ public class StructureCache {
         Structure s = index.get(url);
         if (s == null) {
             s = parsePDB(url);
-            index.put(url, s);
+            Structure existing = index.putIfAbsent(url, s);
+            if (existing != null) {
+                s = existing;
+            }
         }
         return s;
     }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2014 Department of Molecular Genetics, University of Toronto
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ca.on.mshri.lore.molecules;
+
+import ca.on.mshri.lore.base.OntologySchema;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import junit.framework.TestCase;
+
+/**
+ * Checks that every handle in {@link MoleculesVocab} is declared in lore-molecules.owl.
+ *
+ * @author Jochen Weile <jochenweile@gmail.com>
+ */
+public class MoleculesVocabTest extends TestCase {
+    
+    public MoleculesVocabTest(String testName) {
+        super(testName);
+    }
+
+    public void testDeclared() throws Exception {
+        
+        Model schema = OntologySchema.get("lore-molecules.owl", MoleculesVocab.class.getClassLoader());
+        
+        int n = 0;
+        for (Field field : MoleculesVocab.class.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) 
+                    || !Property.class.equals(field.getType())) {
+                continue;
+            }
+            Property p = (Property) field.get(null);
+            assertTrue(field.getName()+" is not declared in lore-molecules.owl",
+                    schema.contains(p, RDF.type, OWL.ObjectProperty)
+                    || schema.contains(p, RDF.type, OWL.DatatypeProperty));
+            n++;
+        }
+        assertTrue(n > 0);
+    }
+}
@@ -17,6 +17,7 @@
 package ca.on.mshri.lore.phenotype;
 
 import ca.on.mshri.lore.base.Authority;
+import ca.on.mshri.lore.base.IdentityMap;
 import ca.on.mshri.lore.base.LoreModel;
 import ca.on.mshri.lore.base.RecordObject;
 import com.hp.hpl.jena.enhanced.EnhGraph;
@@ -41,9 +42,8 @@ public class Phenotype extends RecordObject {
     
     public static Phenotype fromIndividual(Individual i) {
         IndividualImpl impl = (IndividualImpl)i;
-        OntClass thisType = i.getModel().getResource(CLASS_URI).as(OntClass.class);
                 
-        if (LoreModel.hasClass(i, thisType)) {
+        if (LoreModel.hasClass(i, CLASS_URI)) {
             return new Phenotype(impl.asNode(), impl.getGraph());
             
         } else {
@@ -52,9 +52,12 @@ public class Phenotype extends RecordObject {
     }
     
     public static Phenotype createOrGet(PhenotypeModel model, Authority auth, String id) {
-        Phenotype out = fromIndividual(model.getOntClass(CLASS_URI)
-                .createIndividual("urn:lore:Phenotype#"+auth.getAuthorityId()+":"+id));
-        out.addXRef(auth, id);
+        Phenotype out = new Phenotype(Node.createURI("urn:lore:Phenotype#"+auth.getAuthorityId()+":"+id), model);
+        IdentityMap known = IdentityMap.getInstance(model);
+        if (known.create(out, CLASS_URI)) {
+            out.addXRef(auth, id);
+            known.add(out.getURI());
+        }
         return out;
     }
 
@@ -38,8 +38,8 @@ public class PhenotypeModel extends GenomeModel {
     public PhenotypeModel(OntModelSpec spec, Model model) {
         //super constructor loads dependencies, recursively
         super(spec, model);
-        //read owl specs
-        read(GenomeModel.class.getClassLoader().getResourceAsStream("lore-phenotype.owl"), null);
+        //attach shared owl specs
+        addSchema("lore-phenotype.owl");
         
         HPO = Authority.createOrGet(this, "HPO");
         DO = Authority.createOrGet(this, "DO");
@@ -23,6 +23,7 @@ import ca.on.mshri.lore.operations.LoreOperation;
 import ca.on.mshri.lore.operations.util.URLParameter;
 import ca.on.mshri.lore.phenotype.Phenotype;
 import ca.on.mshri.lore.phenotype.PhenotypeModel;
+import ca.on.mshri.lore.phenotype.PhenotypeVocab;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.rdf.model.Property;
 import java.io.IOException;
@@ -55,7 +56,7 @@ public class DiseaseOntologyParser extends LoreOperation {
                 .log(Level.INFO, "Parsing Disease Ontology.");
         
         phenoModel = new PhenotypeModel(OntModelSpec.OWL_MEM, getModel());
-        isaProp = phenoModel.getProperty(PhenotypeModel.URI+"#is_a");
+        isaProp = PhenotypeVocab.is_a;
         
         URL src = getParameterValue(srcP);
         
@@ -17,11 +17,11 @@
 package ca.on.mshri.lore.phenotype.hdo;
 
 import ca.on.mshri.lore.base.Authority;
-import ca.on.mshri.lore.base.XRef;
 import ca.on.mshri.lore.operations.LoreOperation;
 import ca.on.mshri.lore.operations.util.URLParameter;
 import ca.on.mshri.lore.phenotype.Phenotype;
 import ca.on.mshri.lore.phenotype.PhenotypeModel;
+import ca.on.mshri.lore.phenotype.PhenotypeVocab;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.rdf.model.Property;
 import com.hp.hpl.jena.rdf.model.RDFNode;
@@ -57,7 +57,7 @@ public class ManualMapper extends LoreOperation {
         URL src = getParameterValue(srcP);
         
         PhenotypeModel model = new PhenotypeModel(OntModelSpec.OWL_MEM, getModel());
-        Property is_a = model.getProperty(PhenotypeModel.URI+"#is_a");
+        Property is_a = PhenotypeVocab.is_a;
         
         int entity = 0;
         int name = 1;
@@ -174,11 +174,8 @@ public class ManualMapper extends LoreOperation {
         List<Phenotype> phenos = model.listIndividualsOfClass(Phenotype.class, true);
         CliProgressBar pb = new CliProgressBar(phenos.size());
         for (Phenotype pheno : phenos) {
-            for (XRef xref :pheno.listXRefs()) {
-                if (xref.getAuthority().equals(doAuth)) {
-                    String doid = xref.getValue();
-                    index.put(doid,pheno);
-                }
+            for (String doid : pheno.listXRefValues(doAuth)) {
+                index.put(doid,pheno);
             }
             pb.next();
         }
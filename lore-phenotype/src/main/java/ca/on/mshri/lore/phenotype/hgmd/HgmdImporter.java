@@ -24,6 +24,7 @@ import ca.on.mshri.lore.operations.LoreOperation;
 import ca.on.mshri.lore.operations.util.URLParameter;
 import ca.on.mshri.lore.phenotype.Phenotype;
 import ca.on.mshri.lore.phenotype.PhenotypeModel;
+import ca.on.mshri.lore.phenotype.PhenotypeVocab;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.rdf.model.Property;
 import de.jweile.yogiutil.CliIndeterminateProgress;
@@ -53,8 +54,8 @@ public class HgmdImporter extends LoreOperation {
         
         PhenotypeModel model = new PhenotypeModel(OntModelSpec.OWL_DL_MEM, getModel());
         Authority hgmdPhenoAuth = Authority.createOrGet(model, "HGMD-Disease");
-        Property association = model.getProperty(PhenotypeModel.URI+"#isAssociatedWith");
-        Property causes = model.getProperty(PhenotypeModel.URI+"#isCausallyAssociatedWith");
+        Property association = PhenotypeVocab.isAssociatedWith;
+        Property causes = PhenotypeVocab.isCausallyAssociatedWith;
                         
         URL inURL = getParameterValue(srcP);
         InputStream in = null;
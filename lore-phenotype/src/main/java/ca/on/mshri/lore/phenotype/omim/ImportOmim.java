@@ -19,15 +19,13 @@ package ca.on.mshri.lore.phenotype.omim;
 import ca.on.mshri.lore.genome.Allele;
 import ca.on.mshri.lore.genome.Gene;
 import ca.on.mshri.lore.operations.Sparql;
+import ca.on.mshri.lore.operations.util.SolutionIterator;
 import ca.on.mshri.lore.phenotype.Phenotype;
 import ca.on.mshri.lore.phenotype.PhenotypeModel;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.query.Dataset;
-import com.hp.hpl.jena.query.QueryExecution;
-import com.hp.hpl.jena.query.QueryExecutionFactory;
 import com.hp.hpl.jena.query.QuerySolution;
-import com.hp.hpl.jena.query.ResultSet;
 import com.hp.hpl.jena.tdb.TDBFactory;
 import de.jweile.yogiutil.MainWrapper;
 import java.io.File;
@@ -120,8 +118,7 @@ public class ImportOmim {
 //            }
 //        }
         
-        QueryExecution qry = QueryExecutionFactory.create(sparql.get("geneAlleleDisease"), model);
-        ResultSet result = qry.execSelect();
+        SolutionIterator result = new SolutionIterator(model, sparql.get("geneAlleleDisease"), null);
         while (result.hasNext()) {
             QuerySolution sol = result.next();
             Gene gene = Gene.fromIndividual(sol.get("gene").as(Individual.class));
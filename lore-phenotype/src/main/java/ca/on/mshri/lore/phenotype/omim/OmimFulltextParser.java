@@ -16,7 +16,7 @@
  */
 package ca.on.mshri.lore.phenotype.omim;
 
-import ca.on.mshri.lore.base.LoreModel;
+import ca.on.mshri.lore.base.BaseVocab;
 import ca.on.mshri.lore.base.XRef;
 import ca.on.mshri.lore.genome.Allele;
 import ca.on.mshri.lore.genome.Gene;
@@ -24,6 +24,7 @@ import ca.on.mshri.lore.genome.Mutation;
 import ca.on.mshri.lore.genome.PointMutation;
 import ca.on.mshri.lore.phenotype.Phenotype;
 import ca.on.mshri.lore.phenotype.PhenotypeModel;
+import ca.on.mshri.lore.phenotype.PhenotypeVocab;
 import com.hp.hpl.jena.rdf.model.Property;
 import de.jweile.yogiutil.CliIndeterminateProgress;
 import de.jweile.yogiutil.CliProgressBar;
@@ -66,7 +67,7 @@ public class OmimFulltextParser {
      */
     public void parse(PhenotypeModel model, InputStream in) {
         
-        inheritance = model.getProperty(PhenotypeModel.URI+"#inheritanceMode");
+        inheritance = PhenotypeVocab.inheritanceMode;
         
         Record currRecord = null;
         StringBuilder currField = null;
@@ -139,7 +140,7 @@ public class OmimFulltextParser {
      */
     public void linkAlleles(PhenotypeModel model) {
         
-        Property association = model.getProperty(PhenotypeModel.URI+"#isAssociatedWith");
+        Property association = PhenotypeVocab.isAssociatedWith;
         
         CliProgressBar pb = new CliProgressBar(allele2variant.keySet().size());
         
@@ -358,7 +359,7 @@ public class OmimFulltextParser {
                         Matcher xrefMatcher = dbSnpPattern.matcher(var.getMutation());
                         if (xrefMatcher.find()) {
                             XRef xref = XRef.createOrGet(model, model.DB_SNP, xrefMatcher.group(1));
-                            mut.addProperty(model.getProperty(LoreModel.URI+"#hasXRef"), xref);
+                            mut.addProperty(BaseVocab.hasXRef, xref);
                         }
                     } catch (IllegalArgumentException ex) {
                         Logger.getLogger(OmimFulltextParser.class.getName()).log(Level.WARNING, "Invalid mutation description!\n"+ex.getMessage());
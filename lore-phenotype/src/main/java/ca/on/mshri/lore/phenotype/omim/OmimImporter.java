@@ -21,6 +21,7 @@ import ca.on.mshri.lore.operations.LoreOperation;
 import ca.on.mshri.lore.operations.util.Parameter;
 import ca.on.mshri.lore.phenotype.Phenotype;
 import ca.on.mshri.lore.phenotype.PhenotypeModel;
+import ca.on.mshri.lore.phenotype.PhenotypeVocab;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.rdf.model.Property;
 import de.jweile.yogiutil.CliIndeterminateProgress;
@@ -224,7 +225,7 @@ public class OmimImporter extends LoreOperation {
 
     void parseMorbidMap(PhenotypeModel model, InputStream in) {
         
-        Property association = model.getProperty(PhenotypeModel.URI+"#isAssociatedWith");
+        Property association = PhenotypeVocab.isAssociatedWith;
         
         int name_mim_meth = 0;
         int symbols = 1;
@@ -22,9 +22,10 @@ import ca.on.mshri.lore.genome.Gene;
 import ca.on.mshri.lore.genome.Mutation;
 import ca.on.mshri.lore.genome.PointMutation;
 import ca.on.mshri.lore.operations.LoreOperation;
+import ca.on.mshri.lore.operations.util.Footprint;
 import ca.on.mshri.lore.operations.util.Parameter;
 import ca.on.mshri.lore.phenotype.Phenotype;
-import ca.on.mshri.lore.phenotype.PhenotypeModel;
+import ca.on.mshri.lore.phenotype.PhenotypeVocab;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntClass;
 import com.hp.hpl.jena.rdf.model.NodeIterator;
@@ -60,7 +61,7 @@ public class SeqDistAnalysis extends LoreOperation {
 //        PhenotypeModel phenoModel = new PhenotypeModel(OntModelSpec.OWL_MEM, getModel());
         
         pMutClass = getModel().getOntClass(PointMutation.CLASS_URI);
-        isAssociatedWith = getModel().getProperty(PhenotypeModel.URI+"#isAssociatedWith");
+        isAssociatedWith = PhenotypeVocab.isAssociatedWith;
         
         List<Gene> genes = getModel().listIndividualsOfClass(Gene.class, false);
         
@@ -139,6 +140,11 @@ public class SeqDistAnalysis extends LoreOperation {
         return false;
     }
 
+    @Override
+    public Footprint getFootprint() {
+        return Footprint.readOnly();
+    }
+
     private boolean haveCommonMember(List<Phenotype> diseases_i, List<Phenotype> diseases_j) {
         for (Phenotype pheno : diseases_i) {
             if (diseases_j.contains(pheno)) {
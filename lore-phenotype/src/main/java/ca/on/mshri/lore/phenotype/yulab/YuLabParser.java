@@ -22,6 +22,7 @@ import ca.on.mshri.lore.operations.Sparql;
 import ca.on.mshri.lore.operations.util.URLParameter;
 import ca.on.mshri.lore.phenotype.Phenotype;
 import ca.on.mshri.lore.phenotype.PhenotypeModel;
+import ca.on.mshri.lore.phenotype.PhenotypeVocab;
 import ca.on.mshri.lore.phenotype.omim.Levenshtein;
 import com.hp.hpl.jena.ontology.Individual;
 import com.hp.hpl.jena.ontology.OntModelSpec;
@@ -107,7 +108,7 @@ public class YuLabParser extends LoreOperation {
 //                double totalMaxScore = Double.NEGATIVE_INFINITY;
 //                Phenotype maxPheno;
 //                
-//                NodeIterator phenoIt = gene.listPropertyValues(model.getProperty(PhenotypeModel.URI+"#isAssociatedWith"));
+//                NodeIterator phenoIt = gene.listPropertyValues(PhenotypeVocab.isAssociatedWith);
 //                while (phenoIt.hasNext()) {
 //                    
 //                    Phenotype pheno = Phenotype.fromIndividual(phenoIt.next().as(Individual.class));
@@ -167,7 +168,7 @@ public class YuLabParser extends LoreOperation {
                 continue;
             }
             
-            NodeIterator phenoIt = gene.listPropertyValues(model.getProperty(PhenotypeModel.URI+"#isAssociatedWith"));
+            NodeIterator phenoIt = gene.listPropertyValues(PhenotypeVocab.isAssociatedWith);
             while (phenoIt.hasNext()) {
                 Phenotype pheno = Phenotype.fromIndividual(phenoIt.next().as(Individual.class));
                 